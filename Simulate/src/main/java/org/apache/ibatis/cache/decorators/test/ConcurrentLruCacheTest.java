@@ -0,0 +1,81 @@
+package org.apache.ibatis.cache.decorators.test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.decorators.ConcurrentLruCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+
+/**
+ * 比较eviction="LRU"(LruCache + SynchronizedCache)和eviction="CONCURRENT_LRU"(ConcurrentLruCache，不加SynchronizedCache)
+ * 在多线程读取二级缓存时的吞吐量和命中率，不需要数据库
+ * 每个线程按倾斜分布(少数热点key占大部分访问)读取缓存，未命中时放入缓存，读远多于写:
+ * 1) LRU: 每次getObject()都要获取SynchronizedCache的锁并修改LinkedHashMap的访问顺序，线程越多争用越严重
+ * 2) CONCURRENT_LRU: 读操作不加锁，访问记录批量回放，吞吐量随线程数增加，命中率与LRU接近
+ * 多核机器上才能看出差别；只有一个CPU时不存在锁争用，CONCURRENT_LRU记录访问的开销反而使吞吐量低于LRU
+ */
+public class ConcurrentLruCacheTest {
+	public static final int CACHE_SIZE = 10000;
+	public static final int KEY_COUNT = 30000;
+	public static final int OPERATIONS_PER_THREAD = 1000000;
+	public static final int[] THREADS = { 1, 4, 16 };
+
+	public static void main(String[] args) throws Exception {
+		for (int threads : THREADS) {
+			run(LruCache.class, threads);
+			run(ConcurrentLruCache.class, threads);
+		}
+	}
+
+	private static void run(Class<? extends Cache> eviction, final int threads) throws Exception {
+		final Cache cache = new CacheBuilder("concurrent-lru").addDecorator(eviction).size(CACHE_SIZE).build();
+		// 预热，填满缓存
+		replay(cache, new Random(-1), OPERATIONS_PER_THREAD / 10);
+		final AtomicLong hits = new AtomicLong();
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		for (int i = 0; i < threads; i++) {
+			final long seed = i;
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						hits.addAndGet(replay(cache, new Random(seed), OPERATIONS_PER_THREAD));
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						done.countDown();
+					}
+				}
+			};
+			thread.start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		done.await();
+		long elapsed = System.nanoTime() - begin;
+		long operations = (long) threads * OPERATIONS_PER_THREAD;
+		System.out.println(String.format("%-20s threads=%-3d outer=%-18s %8.0f ops/ms  hit ratio %6.2f%%  size=%d",
+				eviction.getSimpleName(), threads, cache.getClass().getSimpleName(),
+				operations / (elapsed / 1000000.0), 100.0 * hits.get() / operations, cache.getSize()));
+	}
+
+	// 按倾斜分布访问缓存，未命中时放入，返回命中次数
+	private static long replay(Cache cache, Random random, int operations) {
+		long hits = 0;
+		for (int i = 0; i < operations; i++) {
+			double r = random.nextDouble();
+			Integer key = Integer.valueOf((int) (KEY_COUNT * r * r * r));
+			if (cache.getObject(key) != null) {
+				hits++;
+			} else {
+				cache.putObject(key, Boolean.TRUE);
+			}
+		}
+		return hits;
+	}
+}
@@ -0,0 +1,95 @@
+package org.apache.ibatis.cache.decorators.test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.decorators.FifoCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.TinyLfuCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+
+/**
+ * 比较TINYLFU、LRU、FIFO三种淘汰策略的命中率，不需要数据库
+ * 每种访问序列都按"未命中则放入缓存"的方式回放，缓存值只是一个占位对象:
+ * 1) zipf: 少数热点key占大部分访问，模拟一般的查询
+ * 2) zipf + 扫描: 每隔一段访问插入一批只访问一次的key，模拟扫描大量数据的查询，LRU、FIFO的热点数据会被挤出去
+ * 3) 循环: 按顺序循环访问略多于缓存容量的key，LRU、FIFO的命中率接近0
+ */
+public class TinyLfuCacheTest {
+	public static final int KEY_COUNT = 100000;
+	public static final int TRACE_LENGTH = 2000000;
+	public static final int[] CACHE_SIZES = { 1000, 10000 };
+
+	public static void main(String[] args) {
+		Map<String, int[]> traces = new LinkedHashMap<String, int[]>();
+		traces.put("zipf(0.9)", zipf(0.9, 1, 0, 0));
+		traces.put("zipf(0.9) + scan 5000/50000", zipf(0.9, 2, 50000, 5000));
+		traces.put("zipf(0.7) + scan 20000/100000", zipf(0.7, 3, 100000, 20000));
+		traces.put("loop 1200", loop(1200, TRACE_LENGTH / 2));
+		for (int size : CACHE_SIZES) {
+			for (Map.Entry<String, int[]> trace : traces.entrySet()) {
+				System.out.println(String.format("size=%-6d %-32s LRU %6.2f%%  FIFO %6.2f%%  TINYLFU %6.2f%%", size, trace.getKey(),
+						hitRatio(LruCache.class, size, trace.getValue()),
+						hitRatio(FifoCache.class, size, trace.getValue()),
+						hitRatio(TinyLfuCache.class, size, trace.getValue())));
+			}
+		}
+	}
+
+	// 回放访问序列，返回命中率(百分比)
+	private static double hitRatio(Class<? extends Cache> eviction, int size, int[] trace) {
+		Cache cache = new CacheBuilder("hit-ratio").addDecorator(eviction).size(size).build();
+		int hits = 0;
+		for (int key : trace) {
+			if (cache.getObject(key) != null) {
+				hits++;
+			} else {
+				cache.putObject(key, Boolean.TRUE);
+			}
+		}
+		if (cache.getSize() > size) {
+			throw new AssertionError(eviction.getSimpleName() + "缓存项个数" + cache.getSize() + "超出上限" + size);
+		}
+		return 100.0 * hits / trace.length;
+	}
+
+	/**
+	 * 生成服从zipf分布的访问序列，scanInterval大于0时每隔scanInterval次访问插入scanLength个只访问一次的key
+	 */
+	private static int[] zipf(double exponent, long seed, int scanInterval, int scanLength) {
+		double[] cdf = new double[KEY_COUNT];
+		double sum = 0;
+		for (int i = 0; i < KEY_COUNT; i++) {
+			sum += 1.0 / Math.pow(i + 1, exponent);
+			cdf[i] = sum;
+		}
+		Random random = new Random(seed);
+		int[] trace = new int[TRACE_LENGTH];
+		int scanKey = KEY_COUNT;   // 扫描的key与热点key不重叠
+		int position = 0;
+		while (position < TRACE_LENGTH) {
+			if (scanInterval > 0 && position > 0 && position % scanInterval == 0) {
+				for (int i = 0; i < scanLength && position < TRACE_LENGTH; i++) {
+					trace[position++] = scanKey++;
+				}
+				if (position >= TRACE_LENGTH) {
+					break;
+				}
+			}
+			int key = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+			trace[position++] = key < 0 ? -key - 1 : key;
+		}
+		return trace;
+	}
+
+	private static int[] loop(int keyCount, int length) {
+		int[] trace = new int[length];
+		for (int i = 0; i < length; i++) {
+			trace[i] = i % keyCount;
+		}
+		return trace;
+	}
+}
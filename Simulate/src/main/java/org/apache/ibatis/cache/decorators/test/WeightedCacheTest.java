@@ -0,0 +1,124 @@
+package org.apache.ibatis.cache.decorators.test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMemoryBudget;
+import org.apache.ibatis.cache.decorators.FifoCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.TinyLfuCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.session.test.helper.Row;
+
+/**
+ * 按字节数限制二级缓存(<cache maxBytes="..."/>、全局CacheMemoryBudget)的效果，不需要数据库
+ * 1) 只按个数限制时，缓存项是大小不一的List<Row>，堆内存占用取决于碰巧缓存了哪些大结果；
+ *    配置maxBytes之后，无论结果多大，占用都不超过预算
+ * 2) 按字节数清理缓存项时通知淘汰策略(LRU、FIFO、TINYLFU)，淘汰策略记录的key数与实际缓存项数一致，
+ *    超出预算不缓存的大结果也不会留在淘汰策略中
+ * 3) 多个命名空间共享一个CacheMemoryBudget时，总字节数不超过全局预算
+ * 估算的字节数通过一个足够大的CacheMemoryBudget观察
+ */
+public class WeightedCacheTest {
+	public static final int CACHE_SIZE = 256;
+	public static final long MAX_BYTES = 4L * 1024 * 1024;
+	public static final int QUERIES = 5000;
+	public static final int MAX_ROWS = 2000;
+
+	public static void main(String[] args) throws Exception {
+		System.out.println("===只按个数限制 vs 按字节数限制===");
+		long countOnly = retainedHeap(new CacheBuilder("count-only").size(CACHE_SIZE).build());
+		CacheMemoryBudget observer = new CacheMemoryBudget(Long.MAX_VALUE);
+		long weighted = retainedHeap(new CacheBuilder("weighted").size(CACHE_SIZE).maxBytes(MAX_BYTES).memoryBudget(observer).build());
+		System.out.println("size=" + CACHE_SIZE + ":                  heap retained " + countOnly / 1024 + "KB");
+		System.out.println("size=" + CACHE_SIZE + ", maxBytes=" + MAX_BYTES / 1024 + "KB: heap retained " + weighted / 1024
+				+ "KB, estimated " + observer.getUsedBytes() / 1024 + "KB");
+
+		System.out.println("===淘汰策略记录的key===");
+		for (Class<? extends Cache> eviction : Arrays.<Class<? extends Cache>>asList(LruCache.class, FifoCache.class, TinyLfuCache.class)) {
+			Cache cache = new CacheBuilder("eviction").addDecorator(eviction).size(CACHE_SIZE).maxBytes(MAX_BYTES).build();
+			Random random = new Random(7);
+			for (int i = 0; i < QUERIES; i++) {
+				cache.putObject(i, rows(1 + random.nextInt(MAX_ROWS)));
+			}
+			cache.putObject("oversized", rows(200000));   // 超出预算，不缓存
+			System.out.println(String.format("%-13s stored=%-4d tracked by policy=%-4d oversized cached=%s",
+					eviction.getSimpleName(), cache.getSize(), trackedKeys(cache, eviction), cache.getObject("oversized") != null));
+		}
+
+		System.out.println("===全局预算===");
+		CacheMemoryBudget budget = new CacheMemoryBudget(MAX_BYTES);
+		Cache users = new CacheBuilder("users").size(CACHE_SIZE).memoryBudget(budget).build();
+		Cache orders = new CacheBuilder("orders").size(CACHE_SIZE).memoryBudget(budget).build();
+		Random random = new Random(11);
+		for (int i = 0; i < QUERIES; i++) {
+			Cache cache = i % 2 == 0 ? users : orders;
+			cache.putObject(i, rows(1 + random.nextInt(MAX_ROWS)));
+		}
+		System.out.println("budget " + MAX_BYTES / 1024 + "KB, used " + budget.getUsedBytes() / 1024 + "KB, users=" + users.getSize()
+				+ " entries, orders=" + orders.getSize() + " entries");
+	}
+
+	// 执行QUERIES次结果行数随机的"查询"并放入缓存，返回缓存占用的堆内存
+	private static long retainedHeap(Cache cache) {
+		long before = usedHeap();
+		Random random = new Random(3);
+		for (int i = 0; i < QUERIES; i++) {
+			cache.putObject(i, rows(1 + random.nextInt(MAX_ROWS)));
+		}
+		return usedHeap() - before;
+	}
+
+	private static List<Row> rows(int count) {
+		List<Row> rows = new ArrayList<Row>(count);
+		for (int i = 0; i < count; i++) {
+			Row row = new Row("name-" + i, null);
+			row.setId(Long.valueOf(i));
+			row.setScore(Integer.valueOf(i % 100));
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	// 淘汰策略内部记录的key数，只用于观察，通过反射读取
+	private static int trackedKeys(Cache cache, Class<? extends Cache> eviction) throws Exception {
+		Cache policy = cache;
+		while (!eviction.isInstance(policy)) {
+			policy = (Cache) field(policy, "delegate");
+		}
+		if (policy instanceof LruCache) {
+			return ((Map<?, ?>) field(policy, "keyMap")).size();
+		} else if (policy instanceof FifoCache) {
+			return ((Collection<?>) field(policy, "keyList")).size();
+		}
+		return ((Map<?, ?>) field(policy, "window")).size() + ((Map<?, ?>) field(policy, "probation")).size()
+				+ ((Map<?, ?>) field(policy, "protectedKeys")).size();
+	}
+
+	private static Object field(Object object, String name) throws Exception {
+		for (Class<?> type = object.getClass(); type != null; type = type.getSuperclass()) {
+			try {
+				Field field = type.getDeclaredField(name);
+				field.setAccessible(true);
+				return field.get(object);
+			} catch (NoSuchFieldException e) {
+				// 继续在父类中查找
+			}
+		}
+		throw new NoSuchFieldException(name);
+	}
+}
@@ -0,0 +1,138 @@
+package org.apache.ibatis.cache.impl.test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.session.test.helper.Row;
+
+/**
+ * 堆外二级缓存(type="OFF_HEAP")的效果，不需要数据库
+ * 1) 与readOnly="false"的默认缓存(SerializedCache + LRU，byte[]保存在堆中)缓存相同的结果，比较堆内存占用
+ * 2) 大小级别: 缓存值大小不一时，序列化结果保存在能容纳它的最小的块中，已分配的直接内存不超过capacity，
+ *    块内浪费的空间约在20%以内
+ * 3) slab重新分配: 先用小结果占满直接内存，再缓存大结果，空出的slab分配给大结果所在的级别，大结果仍然可以被缓存
+ * 4) <cache size>同样限制OFF_HEAP的缓存项个数
+ */
+public class OffHeapCacheTest {
+	public static final int ENTRIES = 2000;
+	public static final int MAX_ROWS = 100;
+	public static final long CAPACITY = 8L * 1024 * 1024;
+	public static final int SLAB_SIZE = 256 * 1024;
+
+	public static void main(String[] args) throws Exception {
+		System.out.println("===堆内存占用===");
+		long serialized = retainedHeap(new CacheBuilder("serialized").size(ENTRIES).readWrite(true).build());
+		long offHeap = retainedHeap(newOffHeapCache("off-heap", CAPACITY * 4, null));
+		System.out.println("SerializedCache: heap retained " + serialized / 1024 + "KB");
+		System.out.println("OFF_HEAP:        heap retained " + offHeap / 1024 + "KB");
+
+		System.out.println("===大小级别===");
+		Cache cache = newOffHeapCache("size-classes", CAPACITY, null);
+		OffHeapCache offHeapCache = unwrap(cache);
+		Random random = new Random(5);
+		for (int i = 0; i < ENTRIES * 5; i++) {
+			cache.putObject(i, rows(1 + random.nextInt(MAX_ROWS)));
+		}
+		System.out.println(String.format("entries=%d, serialized %dKB in %dKB of slabs (capacity %dKB), chunk utilization %.1f%%",
+				cache.getSize(), offHeapCache.getUsedBytes() / 1024, offHeapCache.getAllocatedBytes() / 1024, CAPACITY / 1024,
+				100.0 * offHeapCache.getUsedBytes() / chunkBytesUsed(cache)));
+
+		System.out.println("===slab重新分配===");
+		cache.clear();
+		for (int i = 0; i < ENTRIES * 20; i++) {
+			cache.putObject("small-" + i, rows(1));
+		}
+		System.out.println("after small values: entries=" + cache.getSize() + ", allocated " + offHeapCache.getAllocatedBytes() / 1024 + "KB");
+		int cachedLarge = 0;
+		for (int i = 0; i < 20; i++) {
+			cache.putObject("large-" + i, rows(1000));
+		}
+		for (int i = 0; i < 20; i++) {
+			cachedLarge += cache.getObject("large-" + i) != null ? 1 : 0;
+		}
+		System.out.println("after large values: entries=" + cache.getSize() + ", large cached " + cachedLarge + "/20, allocated "
+				+ offHeapCache.getAllocatedBytes() / 1024 + "KB");
+
+		System.out.println("===<cache size>===");
+		Cache limited = newOffHeapCache("limited", CAPACITY, 100);
+		for (int i = 0; i < 1000; i++) {
+			limited.putObject(i, rows(1));
+		}
+		System.out.println("size=100: entries=" + limited.getSize() + ", latest cached=" + (limited.getObject(999) != null)
+				+ ", eldest cached=" + (limited.getObject(0) != null));
+	}
+
+	private static Cache newOffHeapCache(String id, long capacity, Integer size) {
+		Properties properties = new Properties();
+		properties.setProperty("capacity", String.valueOf(capacity));
+		properties.setProperty("slabSize", String.valueOf(SLAB_SIZE));
+		return new CacheBuilder(id).implementation(OffHeapCache.class).size(size).properties(properties).build();
+	}
+
+	// 缓存ENTRIES个结果，返回缓存占用的堆内存
+	private static long retainedHeap(Cache cache) {
+		long before = usedHeap();
+		Random random = new Random(3);
+		for (int i = 0; i < ENTRIES; i++) {
+			cache.putObject(i, rows(1 + random.nextInt(MAX_ROWS)));
+		}
+		return usedHeap() - before;
+	}
+
+	private static ArrayList<Row> rows(int count) {
+		ArrayList<Row> rows = new ArrayList<Row>(count);
+		for (int i = 0; i < count; i++) {
+			Row row = new Row("name-" + i, null);
+			row.setId(Long.valueOf(i));
+			row.setScore(Integer.valueOf(i % 100));
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	// 所有缓存项占用的块的字节数之和，只用于观察，通过反射读取索引中每个缓存项所属级别的块大小
+	private static long chunkBytesUsed(Cache cache) throws Exception {
+		long total = 0;
+		for (Object entry : ((Map<?, ?>) field(unwrap(cache), "index")).values()) {
+			Object slab = field(entry, "slab");
+			Object sizeClass = field(slab, "sizeClass");
+			total += ((Integer) field(sizeClass, "chunkSize")).intValue();
+		}
+		return total;
+	}
+
+	// CacheBuilder在OffHeapCache外层添加了LoggingCache
+	private static OffHeapCache unwrap(Cache cache) throws Exception {
+		while (!(cache instanceof OffHeapCache)) {
+			cache = (Cache) field(cache, "delegate");
+		}
+		return (OffHeapCache) cache;
+	}
+
+	private static Object field(Object object, String name) throws Exception {
+		for (Class<?> type = object.getClass(); type != null; type = type.getSuperclass()) {
+			try {
+				Field field = type.getDeclaredField(name);
+				field.setAccessible(true);
+				return field.get(object);
+			} catch (NoSuchFieldException e) {
+				// 继续在父类中查找
+			}
+		}
+		throw new NoSuchFieldException(name);
+	}
+}
@@ -0,0 +1,159 @@
+package org.apache.ibatis.cache.test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.test.helper.LegacyCacheKey;
+import org.apache.ibatis.mapping.CacheBuilder;
+
+/**
+ * 对比优化之前的CacheKey(LegacyCacheKey)和当前CacheKey的内存分配和哈希开销，不需要数据库
+ * 每次查找都按BaseExecutor.createCacheKey的方式创建一个由8个部分组成的key，分别在两种缓存中查找:
+ * 1) local: 一级缓存(PerpetualCache)
+ * 2) L2: 由CacheBuilder按<cache eviction="LRU" readOnly="true"/>构建的二级缓存装饰链，
+ *    readOnly="true"时没有SerializedCache，耗时主要来自key的创建、hashCode和equals
+ * 输出每次查找分配的字节数(需要HotSpot的com.sun.management.ThreadMXBean)和耗时，
+ * 以及两个相等的key调用equals的耗时、不同key的hashCode冲突个数
+ * 最后验证数组参数的语义与优化之前相同: 按元素展开，与逐个update()每个元素得到的key相等
+ */
+public class CacheKeyTest {
+	public static final String STATEMENT_ID = "com.example.UserMapper.selectByFilter";
+	public static final String SQL = "select id, name, age from users where tenant = ? and status = ? and created > ?";
+	public static final int DISTINCT_KEYS = 1000;
+	public static final int WARMUP_ROUNDS = 5;
+	public static final int LOOKUPS = 2000000;
+	public static final int EQUALS_CALLS = 5000000;
+	public static final int COLLISION_KEYS = 100000;
+
+	private static long sink;   // 避免JIT消除没有使用结果的调用
+
+	// 按BaseExecutor.createCacheKey的方式创建key
+	private interface KeyFactory {
+		Object createKey(int parameter);
+	}
+
+	private static final KeyFactory LEGACY = new KeyFactory() {
+		@Override
+		public Object createKey(int parameter) {
+			LegacyCacheKey cacheKey = new LegacyCacheKey();
+			cacheKey.update(STATEMENT_ID);
+			cacheKey.update(0);
+			cacheKey.update(Integer.MAX_VALUE);
+			cacheKey.update(SQL);
+			cacheKey.update("tenant-7");
+			cacheKey.update(parameter);
+			cacheKey.update(1690000000000L);
+			cacheKey.update("development");
+			return cacheKey;
+		}
+	};
+
+	private static final KeyFactory CURRENT = new KeyFactory() {
+		@Override
+		public Object createKey(int parameter) {
+			CacheKey cacheKey = new CacheKey(8);
+			cacheKey.update(STATEMENT_ID);
+			cacheKey.update(0);
+			cacheKey.update(Integer.MAX_VALUE);
+			cacheKey.update(SQL);
+			cacheKey.update("tenant-7");
+			cacheKey.update(parameter);
+			cacheKey.update(1690000000000L);
+			cacheKey.update("development");
+			return cacheKey.freeze();
+		}
+	};
+
+	public static void main(String[] args) {
+		run("LegacyCacheKey", LEGACY);
+		run("CacheKey", CURRENT);
+		checkArraySemantics();
+	}
+
+	private static void run(String name, KeyFactory keyFactory) {
+		System.out.println("===" + name + "===");
+		Cache local = new PerpetualCache("local");
+		Cache l2 = new CacheBuilder("com.example.UserMapper")
+				.implementation(PerpetualCache.class)
+				.addDecorator(LruCache.class)
+				.readWrite(false)
+				.build();
+		for (int i = 0; i < DISTINCT_KEYS; i++) {
+			local.putObject(keyFactory.createKey(i), "value-" + i);
+			l2.putObject(keyFactory.createKey(i), "value-" + i);
+		}
+		lookup("local", local, keyFactory);
+		lookup("L2", l2, keyFactory);
+
+		Object first = keyFactory.createKey(5);
+		Object second = keyFactory.createKey(5);
+		for (int i = 0; i < EQUALS_CALLS; i++) {
+			sink += first.equals(second) ? 1 : 0;
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < EQUALS_CALLS; i++) {
+			sink += first.equals(second) ? 1 : 0;
+		}
+		System.out.println(String.format("equals     %.1f ns/call", (System.nanoTime() - start) / (double) EQUALS_CALLS));
+
+		Set<Integer> hashCodes = new HashSet<Integer>();
+		for (int i = 0; i < COLLISION_KEYS; i++) {
+			hashCodes.add(keyFactory.createKey(i).hashCode());
+		}
+		System.out.println("hashCode   " + (COLLISION_KEYS - hashCodes.size()) + " collisions in " + COLLISION_KEYS + " keys (sink " + sink + ")");
+	}
+
+	private static void lookup(String name, Cache cache, KeyFactory keyFactory) {
+		for (int round = 0; round < WARMUP_ROUNDS; round++) {
+			for (int i = 0; i < LOOKUPS / 10; i++) {
+				sink += cache.getObject(keyFactory.createKey(i % DISTINCT_KEYS)) != null ? 1 : 0;
+			}
+		}
+		long allocatedBefore = allocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < LOOKUPS; i++) {
+			sink += cache.getObject(keyFactory.createKey(i % DISTINCT_KEYS)) != null ? 1 : 0;
+		}
+		long elapsed = System.nanoTime() - start;
+		long allocated = allocatedBytes() - allocatedBefore;
+		System.out.println(String.format("%-10s %.1f ns/lookup, %s bytes/lookup", name, elapsed / (double) LOOKUPS,
+				allocatedBefore < 0 ? "n/a" : String.format("%.1f", allocated / (double) LOOKUPS)));
+	}
+
+	// 数组参数按元素展开，int[]{1, 2}与依次update(1)、update(2)得到的key相等，组成部分的个数也相同
+	private static void checkArraySemantics() {
+		System.out.println("===数组参数===");
+		CacheKey arrayKey = new CacheKey();
+		arrayKey.update(new int[] { 1, 2 });
+		CacheKey elementKey = new CacheKey();
+		elementKey.update(1);
+		elementKey.update(2);
+		LegacyCacheKey legacyArrayKey = new LegacyCacheKey();
+		legacyArrayKey.update(new int[] { 1, 2 });
+		LegacyCacheKey legacyElementKey = new LegacyCacheKey();
+		legacyElementKey.update(1);
+		legacyElementKey.update(2);
+		System.out.println("LegacyCacheKey: equals=" + legacyArrayKey.equals(legacyElementKey) + ", updateCount=" + legacyArrayKey.getUpdateCount());
+		System.out.println("CacheKey:       equals=" + arrayKey.equals(elementKey) + ", hashCode equal=" + (arrayKey.hashCode() == elementKey.hashCode())
+				+ ", updateCount=" + arrayKey.getUpdateCount());
+		if (arrayKey.equals(elementKey) != legacyArrayKey.equals(legacyElementKey)
+				|| arrayKey.getUpdateCount() != legacyArrayKey.getUpdateCount()) {
+			throw new AssertionError("CacheKey的数组参数语义与优化之前不同");
+		}
+	}
+
+	// 当前线程累计分配的字节数，JVM不支持时返回-1
+	private static long allocatedBytes() {
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,129 @@
+package org.apache.ibatis.cursor.defaults.test;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.cursor.Flow;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.test.helper.SimulatedDriver;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.session.test.helper.Row;
+import org.apache.ibatis.session.test.helper.SimulatedSessions;
+
+/**
+ * 流式读取查询结果(selectCursor、selectPublisher)的效果，不需要真实的数据库
+ * SimulatedDriver按fetchSize分批读取行，读取的行数和次数反映驱动实际从数据库传输了多少数据
+ * 1) selectList: 一次映射全部ROWS行，结果全部留在堆中
+ * 2) selectCursor: 逐行映射，遍历全部行时堆中只有当前行；只读取前面一部分行就close()时，不会继续读取剩下的行
+ * 3) selectPublisher: 订阅者每次request(BATCH)，fetchSize随未满足的请求数调整，
+ *    已读取的行数只比订阅者收到的行数多出不到一批；取消订阅之后不再读取，并关闭ResultSet和Statement
+ */
+public class CursorBackPressureTest {
+	public static final int ROWS = 100000;
+	public static final int DEFAULT_FETCH_SIZE = 1000;
+	public static final int BATCH = 10;
+	public static final int CONSUMED = 55;
+	public static final String URL = SimulatedDriver.URL_PREFIX + "cursor;rows=" + ROWS;
+
+	public static void main(String[] args) throws Exception {
+		SimulatedDriver.register();
+		PooledDataSource dataSource = new PooledDataSource(SimulatedDriver.class.getName(), URL, "sa", "");
+		Configuration configuration = SimulatedSessions.newConfiguration(dataSource);
+		configuration.setDefaultFetchSize(DEFAULT_FETCH_SIZE);
+		SqlSessionFactory sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+
+		System.out.println("===全部行===");
+		SqlSession session = sqlSessionFactory.openSession();
+		try {
+			long before = usedHeap();
+			List<Row> rows = session.selectList(SimulatedSessions.SELECT_ROWS);
+			System.out.println(String.format("selectList:   %d rows, heap retained %dKB", rows.size(), (usedHeap() - before) / 1024));
+			rows = null;
+
+			before = usedHeap();
+			Cursor<Row> cursor = session.selectCursor(SimulatedSessions.SELECT_ROWS);
+			long scoreSum = 0;
+			long peak = 0;
+			int count = 0;
+			for (Row row : cursor) {
+				scoreSum += row.getScore();
+				if (++count % (ROWS / 5) == 0) {
+					peak = Math.max(peak, usedHeap() - before);
+				}
+			}
+			cursor.close();
+			System.out.println(String.format("selectCursor: %d rows, heap retained while iterating %dKB (score sum %d)", count, peak / 1024, scoreSum));
+		} finally {
+			session.close();
+		}
+
+		System.out.println("===只读取前" + CONSUMED + "行===");
+		session = sqlSessionFactory.openSession();
+		try {
+			SimulatedDriver.resetCounters();
+			Cursor<Row> cursor = session.selectCursor(SimulatedSessions.SELECT_ROWS);
+			Iterator<Row> iterator = cursor.iterator();
+			for (int i = 0; i < CONSUMED; i++) {
+				iterator.next();
+			}
+			cursor.close();
+			System.out.println(String.format("selectCursor:    consumed %d, rows fetched from database %d in %d round trips",
+					CONSUMED, SimulatedDriver.ROWS_FETCHED.get(), SimulatedDriver.FETCH_ROUND_TRIPS.get()));
+
+			SimulatedDriver.resetCounters();
+			Flow.Publisher<Row> publisher = session.selectPublisher(SimulatedSessions.SELECT_ROWS);
+			BatchSubscriber subscriber = new BatchSubscriber();
+			publisher.subscribe(subscriber);
+			System.out.println(String.format("selectPublisher: received %d, rows fetched from database %d in %d round trips, completed=%s",
+					subscriber.received, SimulatedDriver.ROWS_FETCHED.get(), SimulatedDriver.FETCH_ROUND_TRIPS.get(), subscriber.completed));
+		} finally {
+			session.close();
+		}
+		dataSource.close();
+	}
+
+	// 每次请求BATCH行，收到CONSUMED行之后取消订阅
+	private static class BatchSubscriber implements Flow.Subscriber<Row> {
+		private Flow.Subscription subscription;
+		private int received;
+		private boolean completed;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(BATCH);
+		}
+
+		@Override
+		public void onNext(Row item) {
+			received++;
+			if (received == CONSUMED) {
+				subscription.cancel();
+			} else if (received % BATCH == 0) {
+				subscription.request(BATCH);
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			throwable.printStackTrace();
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+		}
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,224 @@
+package org.apache.ibatis.datasource.routing.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.routing.ReadWriteRouting;
+import org.apache.ibatis.datasource.routing.ReadWriteRoutingDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
+import org.apache.ibatis.transaction.TransactionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+
+/**
+ * 读写分离的测试，一个主库和一个从库，模拟的驱动按URL记录每条语句在哪个库上执行
+ * 1) 会话中第一条SELECT语句路由到从库
+ * 2) INSERT语句路由到主库，之后同一个会话中的SELECT也使用主库(读到自己写入的数据)
+ * 3) 新的会话重新从从库读取
+ * 4) 使用JdbcTransaction时，语句执行完成和会话关闭之后线程上也不会残留路由提示
+ * 事务工厂通过别名READ_WRITE_ROUTING获取，与<transactionManager type="READ_WRITE_ROUTING"/>相同
+ */
+public class ReadWriteRoutingDataSourceTest {
+	public static final String PRIMARY_URL = "jdbc:routing:primary";
+	public static final String REPLICA_URL = "jdbc:routing:replica";
+
+	// 按执行顺序记录每条语句执行时所在库的URL
+	private static final List<String> EXECUTED = new ArrayList<String>();
+
+	public static void main(String[] args) throws Exception {
+		DriverManager.registerDriver(new RecordingDriver());
+		PooledDataSource primary = new PooledDataSource(RecordingDriver.class.getName(), PRIMARY_URL, "sa", "");
+		PooledDataSource replica = new PooledDataSource(RecordingDriver.class.getName(), REPLICA_URL, "sa", "");
+		ReadWriteRoutingDataSource dataSource = new ReadWriteRoutingDataSource(primary, Arrays.asList(replica));
+
+		Configuration configuration = new Configuration();
+		TransactionFactory transactionFactory = (TransactionFactory) configuration.getTypeAliasRegistry().resolveAlias("READ_WRITE_ROUTING").newInstance();
+		configuration.setEnvironment(new Environment("routing", transactionFactory, dataSource));
+		configuration.addMappedStatement(new MappedStatement.Builder(configuration, "user.select",
+				new StaticSqlSource(configuration, "select id from user"), SqlCommandType.SELECT)
+				.resultMaps(Arrays.asList(new ResultMap.Builder(configuration, "user.select-Inline", Map.class,
+						new ArrayList<ResultMapping>()).build()))
+				.build());
+		configuration.addMappedStatement(new MappedStatement.Builder(configuration, "user.insert",
+				new StaticSqlSource(configuration, "insert into user(id) values(1)"), SqlCommandType.INSERT).build());
+		SqlSessionFactory sqlSessionFactory = new DefaultSqlSessionFactory(configuration);
+
+		SqlSession session = sqlSessionFactory.openSession();
+		try {
+			session.selectList("user.select");
+			check("SELECT路由到从库", REPLICA_URL);
+			session.insert("user.insert");
+			check("INSERT路由到主库", PRIMARY_URL);
+			session.selectList("user.select");
+			check("写操作之后同一个会话中的SELECT使用主库", PRIMARY_URL);
+			session.commit();
+		} finally {
+			session.close();
+		}
+
+		session = sqlSessionFactory.openSession();
+		try {
+			session.selectList("user.select");
+			check("新的会话中的SELECT重新路由到从库", REPLICA_URL);
+		} finally {
+			session.close();
+		}
+		System.out.println("执行顺序: " + EXECUTED);
+
+		// JdbcTransaction不会清除路由提示，由Executor在语句执行完成和会话关闭时清除
+		configuration.setEnvironment(new Environment("jdbc", new JdbcTransactionFactory(), dataSource));
+		session = sqlSessionFactory.openSession();
+		try {
+			ReadWriteRouting.setReadOnly(true);
+			session.selectList("user.select");
+			System.out.println("SELECT执行完成后的语句类型提示: " + ReadWriteRouting.getCommandType());
+		} finally {
+			session.close();
+		}
+		System.out.println("会话关闭后的只读标记: " + ReadWriteRouting.isReadOnly());
+		primary.close();
+		replica.close();
+	}
+
+	// 检查最近一条语句执行时所在的库
+	private static void check(String description, String expectedUrl) {
+		String actualUrl;
+		synchronized (EXECUTED) {
+			actualUrl = EXECUTED.isEmpty() ? null : EXECUTED.get(EXECUTED.size() - 1);
+		}
+		if (!expectedUrl.equals(actualUrl)) {
+			throw new AssertionError(description + ": 期望" + expectedUrl + "，实际" + actualUrl);
+		}
+		System.out.println(description + ": " + actualUrl);
+	}
+
+	/**
+	 * 模拟的驱动，接受jdbc:routing:开头的URL，查询返回空结果集，更新返回1
+	 */
+	public static class RecordingDriver implements Driver {
+
+		@Override
+		public Connection connect(String url, Properties info) throws SQLException {
+			if (!acceptsURL(url)) {
+				return null;
+			}
+			return (Connection) newProxy(Connection.class, new SimulatedObject(url));
+		}
+
+		@Override
+		public boolean acceptsURL(String url) {
+			return url != null && url.startsWith("jdbc:routing:");
+		}
+
+		@Override
+		public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+			return new DriverPropertyInfo[0];
+		}
+
+		@Override
+		public int getMajorVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getMinorVersion() {
+			return 0;
+		}
+
+		@Override
+		public boolean jdbcCompliant() {
+			return false;
+		}
+
+		@Override
+		public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+			throw new SQLFeatureNotSupportedException();
+		}
+
+		private static Object newProxy(Class<?> type, InvocationHandler handler) {
+			return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+		}
+
+		// 模拟的Connection、PreparedStatement、ResultSet和ResultSetMetaData
+		private static class SimulatedObject implements InvocationHandler {
+			private final String url;
+			private boolean autoCommit = true;
+			private boolean closed;
+
+			SimulatedObject(String url) {
+				this.url = url;
+			}
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if ("hashCode".equals(name)) {
+					return System.identityHashCode(proxy);
+				} else if ("equals".equals(name)) {
+					return proxy == args[0];
+				} else if ("toString".equals(name)) {
+					return "Simulated@" + url;
+				} else if ("close".equals(name)) {
+					closed = true;
+					return null;
+				} else if ("isClosed".equals(name)) {
+					return closed;
+				} else if ("getAutoCommit".equals(name)) {
+					return autoCommit;
+				} else if ("setAutoCommit".equals(name)) {
+					autoCommit = (Boolean) args[0];
+					return null;
+				} else if ("getTransactionIsolation".equals(name)) {
+					return Connection.TRANSACTION_READ_COMMITTED;
+				} else if (name.startsWith("prepare")) {
+					return newProxy(PreparedStatement.class, new SimulatedObject(url));
+				} else if (name.startsWith("execute")) {
+					synchronized (EXECUTED) {
+						EXECUTED.add(url);
+					}
+					return "executeUpdate".equals(name) ? (Object) 1 : (Object) Boolean.TRUE;
+				} else if ("getResultSet".equals(name)) {
+					return newProxy(ResultSet.class, new SimulatedObject(url));
+				} else if ("getMetaData".equals(name)) {
+					return newProxy(ResultSetMetaData.class, new SimulatedObject(url));
+				} else if ("getUpdateCount".equals(name)) {
+					return -1;
+				}
+				Class<?> returnType = method.getReturnType();
+				if (returnType == boolean.class) {
+					return false;
+				} else if (returnType == int.class) {
+					return 0;
+				} else if (returnType == long.class) {
+					return 0L;
+				}
+				return null;
+			}
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package org.apache.ibatis.datasource.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.apache.ibatis.datasource.pooled.PoolState;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+
+/**
+ * 模拟数据库负载，观察PooledDataSource自适应调整最大活跃连接数的过程，不需要真实的数据库
+ * SimulatedDriver模拟一个只能同时处理DB_CAPACITY条语句的数据库，同时执行的语句越多，每条语句的耗时越长，
+ * 创建连接也有固定的耗时
+ * 分三个阶段施加负载:
+ * 1) 低负载: 上限逐步缩小到poolMinimumActiveConnections附近
+ * 2) 高负载: 出现阻塞等待，上限扩大；连接过多导致语句耗时明显变长时，上限回落，最终稳定在数据库的处理能力附近
+ * 3) 低负载: 上限重新缩小
+ */
+public class AdaptivePoolSizingTest {
+	public static final String URL = "jdbc:simulated:adaptive";
+	public static final int DB_CAPACITY = 8;             // 数据库同时处理语句的能力
+	public static final long STATEMENT_TIME = 10;        // 数据库空闲时每条语句的耗时(毫秒)
+	public static final long CONNECT_TIME = 20;          // 创建连接的耗时(毫秒)
+	public static final int LIGHT_THREADS = 3;
+	public static final int HEAVY_THREADS = 40;
+	public static final long PHASE_TIME = 8000;
+
+	private static volatile int activeThreads = 0;        // 当前阶段施加负载的线程数
+	private static volatile boolean running = true;
+	private static final AtomicLong EXECUTED = new AtomicLong();
+
+	public static void main(String[] args) throws Exception {
+		DriverManager.registerDriver(new SimulatedDriver());
+		final PooledDataSource dataSource = new PooledDataSource(SimulatedDriver.class.getName(), URL, "sa", "");
+		dataSource.setPoolMaximumActiveConnections(30);
+		dataSource.setPoolMaximumIdleConnections(30);
+		dataSource.setPoolMinimumActiveConnections(4);
+		dataSource.setPoolTimeToWait(1000);
+		dataSource.setPoolAdaptiveSizingInterval(250);
+
+		Thread[] threads = new Thread[HEAVY_THREADS];
+		for (int i = 0; i < HEAVY_THREADS; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					while (running) {
+						if (index >= activeThreads) {
+							AdaptivePoolSizingTest.sleep(5);
+							continue;
+						}
+						try {
+							Connection conn = dataSource.getConnection();
+							PreparedStatement stmt = conn.prepareStatement("select 1");
+							stmt.executeQuery();
+							stmt.close();
+							conn.close();
+							EXECUTED.incrementAndGet();
+						} catch (SQLException e) {
+							System.out.println("[Thread-" + index + "] " + e.getMessage());
+						}
+					}
+				}
+			};
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+
+		runPhase("低负载", LIGHT_THREADS, dataSource);
+		runPhase("高负载", HEAVY_THREADS, dataSource);
+		runPhase("低负载", LIGHT_THREADS, dataSource);
+		running = false;
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		dataSource.setPoolAdaptiveSizingInterval(0);
+		System.out.println("数据库连接池最终状态:" + dataSource.getPoolState());
+	}
+
+	// 以指定的线程数施加负载，每秒打印一次当前生效的上限、吞吐量和耗时
+	private static void runPhase(String name, int threads, PooledDataSource dataSource) {
+		System.out.println("===" + name + "(" + threads + "个线程)===");
+		activeThreads = threads;
+		PoolState state = dataSource.getPoolState();
+		for (long elapsed = 0; elapsed < PHASE_TIME; elapsed += 1000) {
+			long executed = EXECUTED.get();
+			sleep(1000);
+			System.out.println("上限=" + dataSource.getEffectiveMaximumActiveConnections()
+					+ " 活跃连接=" + state.getActiveConnectionCount()
+					+ " 空闲连接=" + state.getIdleConnectionCount()
+					+ " 每秒语句数=" + (EXECUTED.get() - executed)
+					+ " checkout时长p50=" + state.getCheckoutTimeP50() + "ms"
+					+ " 等待次数=" + state.getHadToWaitCount());
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * 模拟的数据库驱动，接受jdbc:simulated:开头的URL
+	 * 语句的耗时 = STATEMENT_TIME * max(1, 正在执行的语句数 / DB_CAPACITY)
+	 */
+	public static class SimulatedDriver implements Driver {
+		private static final AtomicInteger RUNNING_STATEMENTS = new AtomicInteger();
+
+		@Override
+		public Connection connect(String url, Properties info) throws SQLException {
+			if (!acceptsURL(url)) {
+				return null;
+			}
+			AdaptivePoolSizingTest.sleep(CONNECT_TIME);
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, new SimulatedObject(true));
+		}
+
+		@Override
+		public boolean acceptsURL(String url) {
+			return url != null && url.startsWith("jdbc:simulated:");
+		}
+
+		@Override
+		public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+			return new DriverPropertyInfo[0];
+		}
+
+		@Override
+		public int getMajorVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getMinorVersion() {
+			return 0;
+		}
+
+		@Override
+		public boolean jdbcCompliant() {
+			return false;
+		}
+
+		@Override
+		public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+			throw new SQLFeatureNotSupportedException();
+		}
+
+		// 模拟的Connection和PreparedStatement
+		private static class SimulatedObject implements InvocationHandler {
+			private final boolean connection;
+			private boolean autoCommit = true;
+			private boolean closed;
+
+			SimulatedObject(boolean connection) {
+				this.connection = connection;
+			}
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if ("hashCode".equals(name)) {
+					return System.identityHashCode(proxy);
+				} else if ("equals".equals(name)) {
+					return proxy == args[0];
+				} else if ("toString".equals(name)) {
+					return "Simulated" + (connection ? "Connection@" : "Statement@") + Integer.toHexString(System.identityHashCode(proxy));
+				} else if ("close".equals(name)) {
+					closed = true;
+					return null;
+				} else if ("isClosed".equals(name)) {
+					return closed;
+				} else if ("getAutoCommit".equals(name)) {
+					return autoCommit;
+				} else if ("setAutoCommit".equals(name)) {
+					autoCommit = (Boolean) args[0];
+					return null;
+				} else if ("getTransactionIsolation".equals(name)) {
+					return Connection.TRANSACTION_READ_COMMITTED;
+				} else if (connection && name.startsWith("prepare")) {
+					return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+							new Class<?>[] { PreparedStatement.class }, new SimulatedObject(false));
+				} else if (!connection && name.startsWith("execute")) {
+					int running = RUNNING_STATEMENTS.incrementAndGet();
+					try {
+						AdaptivePoolSizingTest.sleep(STATEMENT_TIME * Math.max(DB_CAPACITY, running) / DB_CAPACITY);
+					} finally {
+						RUNNING_STATEMENTS.decrementAndGet();
+					}
+				}
+				Class<?> returnType = method.getReturnType();
+				if (returnType == boolean.class) {
+					return false;
+				} else if (returnType == int.class) {
+					return 0;
+				}
+				return null;
+			}
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package org.apache.ibatis.datasource.test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.ibatis.datasource.pooled.PoolState;
+import org.apache.ibatis.datasource.pooled.PooledConnection;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.test.helper.SimulatedDriver;
+
+/**
+ * 比较两种连接池引擎，不需要真实的数据库
+ * 1) poolConcurrentBagEnabled=false: 获取和归还连接都要获取state.lock
+ * 2) poolConcurrentBagEnabled=true: ConcurrentBag通过CAS借出和归还连接，当前线程最近归还的连接优先
+ * 多个线程反复获取连接、执行一条语句、归还连接，最多MAXIMUM_ACTIVE_CONNECTIONS个连接，输出吞吐量、等待次数和创建的物理连接数；
+ * 线程数超过连接数时，旧引擎的线程在state.lock上排队等待，差别最明显；第一组结果包含JIT预热
+ * 最后验证失效的连接归还时，两种引擎都会关闭真实连接，物理连接的创建数和关闭数相等
+ */
+public class ConcurrentBagEngineTest {
+	public static final String URL = SimulatedDriver.URL_PREFIX + "concurrent-bag";
+	public static final int MAXIMUM_ACTIVE_CONNECTIONS = 8;
+	public static final int OPERATIONS_PER_THREAD = 200000;
+	public static final int[] THREADS = { 1, 4, 16 };
+
+	public static void main(String[] args) throws Exception {
+		SimulatedDriver.register();
+		System.out.println("===吞吐量===");
+		for (int threads : THREADS) {
+			run(false, threads);
+			run(true, threads);
+		}
+
+		System.out.println("===归还失效的连接===");
+		for (boolean concurrentBag : new boolean[] { false, true }) {
+			SimulatedDriver.resetCounters();
+			PooledDataSource dataSource = newDataSource(concurrentBag);
+			Connection conn = dataSource.getConnection();
+			// 只将有效状态位置为false，真实连接仍然是打开的
+			((PooledConnection) Proxy.getInvocationHandler(conn)).invalidate();
+			conn.close();
+			System.out.println(String.format("poolConcurrentBagEnabled=%-5s bad connections=%d, connections opened=%d, closed=%d",
+					concurrentBag, dataSource.getPoolState().getBadConnectionCount(),
+					SimulatedDriver.CONNECTIONS_OPENED.get(), SimulatedDriver.CONNECTIONS_CLOSED.get()));
+			dataSource.close();
+		}
+	}
+
+	private static void run(boolean concurrentBag, int threads) throws Exception {
+		SimulatedDriver.resetCounters();
+		final PooledDataSource dataSource = newDataSource(concurrentBag);
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		for (int i = 0; i < threads; i++) {
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int j = 0; j < OPERATIONS_PER_THREAD; j++) {
+							Connection conn = dataSource.getConnection();
+							try {
+								conn.prepareStatement("select 1").execute();
+							} finally {
+								conn.close();
+							}
+						}
+					} catch (Exception e) {
+						e.printStackTrace();
+					} finally {
+						done.countDown();
+					}
+				}
+			};
+			thread.start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		done.await();
+		long elapsed = System.nanoTime() - begin;
+		PoolState state = dataSource.getPoolState();
+		System.out.println(String.format("poolConcurrentBagEnabled=%-5s threads=%-3d %8.0f ops/ms  waits=%-6d connections opened=%d",
+				concurrentBag, threads, (long) threads * OPERATIONS_PER_THREAD / (elapsed / 1000000.0), state.getHadToWaitCount(),
+				SimulatedDriver.CONNECTIONS_OPENED.get()));
+		dataSource.close();
+	}
+
+	private static PooledDataSource newDataSource(boolean concurrentBag) {
+		PooledDataSource dataSource = new PooledDataSource(SimulatedDriver.class.getName(), URL, "sa", "");
+		dataSource.setPoolConcurrentBagEnabled(concurrentBag);
+		dataSource.setPoolMaximumActiveConnections(MAXIMUM_ACTIVE_CONNECTIONS);
+		dataSource.setPoolMaximumIdleConnections(MAXIMUM_ACTIVE_CONNECTIONS);
+		return dataSource;
+	}
+}
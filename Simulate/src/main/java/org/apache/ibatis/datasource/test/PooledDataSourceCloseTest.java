@@ -0,0 +1,93 @@
+package org.apache.ibatis.datasource.test;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.management.ObjectName;
+
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.test.helper.SimulatedDriver;
+
+/**
+ * 验证PooledDataSource.close()释放连接池的全部资源，不需要真实的数据库
+ * 1) 开启后台维护、自适应调整、并行创建连接和JMX之后，close()停止全部后台线程并注销MBean
+ * 2) 关闭时仍在使用的连接(包括子连接池中的连接)归还时直接关闭，物理连接的创建数和关闭数相等
+ * 3) forceCloseAll()只关闭连接，不会触发后台维护线程重新预创建连接
+ * 4) 关闭之后获取连接抛出SQLException，修改配置也不会重新启动后台线程
+ * 5) 没有调用close()就丢弃的连接池，后台线程不阻止它被回收，回收后后台线程自动退出
+ */
+public class PooledDataSourceCloseTest {
+	public static final String URL = SimulatedDriver.URL_PREFIX + "close";
+
+	public static void main(String[] args) throws Exception {
+		SimulatedDriver.register();
+		for (boolean concurrentBag : new boolean[] { false, true }) {
+			SimulatedDriver.resetCounters();
+			PooledDataSource dataSource = newDataSource(concurrentBag);
+			dataSource.setPoolName("close-test-" + concurrentBag);
+			dataSource.setPoolJmxEnabled(true);
+			Thread.sleep(300);   // 等待后台维护线程预创建连接
+
+			Connection conn = dataSource.getConnection();
+			Connection partitionConn = dataSource.getConnection("reporter", "secret");
+			long opened = SimulatedDriver.CONNECTIONS_OPENED.get();
+			dataSource.forceCloseAll();
+			Thread.sleep(100);
+			System.out.println("poolConcurrentBagEnabled=" + concurrentBag);
+			System.out.println("  forceCloseAll(): connections opened before=" + opened + ", after=" + SimulatedDriver.CONNECTIONS_OPENED.get());
+			System.out.println("  before close(): background threads=" + countPoolThreads() + ", MBeans=" + countMBeans());
+
+			dataSource.close();
+			dataSource.close();   // 可以重复调用
+			conn.close();
+			partitionConn.close();
+			Thread.sleep(100);
+			System.out.println("  after close():  background threads=" + countPoolThreads() + ", MBeans=" + countMBeans()
+					+ ", connections opened=" + SimulatedDriver.CONNECTIONS_OPENED.get() + ", closed=" + SimulatedDriver.CONNECTIONS_CLOSED.get());
+			try {
+				dataSource.getConnection();
+				System.out.println("  getConnection() after close(): no exception");
+			} catch (SQLException e) {
+				System.out.println("  getConnection() after close(): " + e.getMessage());
+			}
+			dataSource.setPoolHousekeepingInterval(100);
+			System.out.println("  setPoolHousekeepingInterval() after close(): background threads=" + countPoolThreads());
+		}
+
+		// 丢弃一个没有关闭的连接池
+		newDataSource(false);
+		Thread.sleep(300);
+		System.out.println("unreferenced pool: background threads=" + countPoolThreads());
+		for (int i = 0; i < 10 && countPoolThreads() > 0; i++) {
+			System.gc();
+			Thread.sleep(300);
+		}
+		System.out.println("after gc: background threads=" + countPoolThreads());
+	}
+
+	private static PooledDataSource newDataSource(boolean concurrentBag) {
+		PooledDataSource dataSource = new PooledDataSource(SimulatedDriver.class.getName(), URL, "sa", "");
+		dataSource.setPoolConcurrentBagEnabled(concurrentBag);
+		dataSource.setPoolMinimumIdle(4);
+		dataSource.setPoolConnectionCreationParallelism(4);
+		dataSource.setPoolAdaptiveSizingInterval(100);
+		dataSource.setPoolHousekeepingInterval(200);
+		return dataSource;
+	}
+
+	// 后台维护、自适应调整和连接创建线程的名称都以PooledDataSource-开头
+	private static int countPoolThreads() {
+		int count = 0;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.isAlive() && thread.getName().startsWith("PooledDataSource-")) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static int countMBeans() throws Exception {
+		return ManagementFactory.getPlatformMBeanServer().queryNames(new ObjectName("org.apache.ibatis.datasource.pooled:*"), null).size();
+	}
+}
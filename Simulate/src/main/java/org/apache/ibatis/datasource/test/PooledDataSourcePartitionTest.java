@@ -0,0 +1,102 @@
+package org.apache.ibatis.datasource.test;
+
+import java.sql.Connection;
+import java.util.Map;
+
+import org.apache.ibatis.datasource.pooled.PoolState;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.test.helper.SimulatedDriver;
+
+/**
+ * 按用户名和密码划分子连接池(getConnection(username, password))的效果，不需要真实的数据库
+ * 1) 默认用户和其他用户交替获取连接: 各自的连接留在各自的子连接池中复用，不会因为连接类型不匹配而关闭后重新创建
+ * 2) 隔离: 一个用户占满了自己的poolPartitionMaximumActiveConnections，其他用户获取连接不需要等待
+ * 3) poolMaximumTotalConnections: 连接总数达到上限时，移出其他连接池中的空闲连接腾出名额，总数不超过上限
+ * 4) 同一个用户名使用不同的密码时是不同的子连接池，子连接池的名称中不包含密码；
+ *    连接全部因空闲超时被关闭之后，后台维护线程移除子连接池
+ */
+public class PooledDataSourcePartitionTest {
+	public static final String URL = SimulatedDriver.URL_PREFIX + "partition";
+	public static final int ROUNDS = 1000;
+
+	public static void main(String[] args) throws Exception {
+		SimulatedDriver.register();
+		for (boolean concurrentBag : new boolean[] { false, true }) {
+			System.out.println("===poolConcurrentBagEnabled=" + concurrentBag + "===");
+			reuse(concurrentBag);
+			isolation(concurrentBag);
+			totalConnections(concurrentBag);
+			retirement(concurrentBag);
+		}
+	}
+
+	private static void reuse(boolean concurrentBag) throws Exception {
+		SimulatedDriver.resetCounters();
+		PooledDataSource dataSource = newDataSource(concurrentBag);
+		for (int i = 0; i < ROUNDS; i++) {
+			Connection conn = i % 2 == 0 ? dataSource.getConnection() : dataSource.getConnection("reporter", "secret");
+			conn.close();
+		}
+		System.out.println("alternating users, " + ROUNDS + " checkouts: connections opened=" + SimulatedDriver.CONNECTIONS_OPENED.get()
+				+ ", partitions=" + dataSource.getPartitionStates().keySet());
+		dataSource.close();
+	}
+
+	private static void isolation(boolean concurrentBag) throws Exception {
+		PooledDataSource dataSource = newDataSource(concurrentBag);
+		dataSource.setPoolPartitionMaximumActiveConnections(2);
+		dataSource.setPoolTimeToWait(1000);
+		Connection first = dataSource.getConnection("batch", "secret");
+		Connection second = dataSource.getConnection("batch", "secret");
+		long start = System.currentTimeMillis();
+		Connection other = dataSource.getConnection("reporter", "secret");
+		System.out.println("user batch holds 2/2 connections, user reporter waited " + (System.currentTimeMillis() - start) + " ms");
+		first.close();
+		second.close();
+		other.close();
+		dataSource.close();
+	}
+
+	private static void totalConnections(boolean concurrentBag) throws Exception {
+		SimulatedDriver.resetCounters();
+		PooledDataSource dataSource = newDataSource(concurrentBag);
+		dataSource.setPoolMaximumTotalConnections(4);
+		Connection[] conns = new Connection[4];
+		for (int i = 0; i < conns.length; i++) {
+			conns[i] = dataSource.getConnection("tenant-a", "secret");
+		}
+		for (Connection conn : conns) {
+			conn.close();   // 4个连接都空闲在tenant-a的子连接池中
+		}
+		for (int i = 0; i < 2; i++) {
+			conns[i] = dataSource.getConnection("tenant-b", "secret");
+		}
+		PoolState a = dataSource.getPartitionState("tenant-a", "secret");
+		PoolState b = dataSource.getPartitionState("tenant-b", "secret");
+		System.out.println("poolMaximumTotalConnections=4: tenant-a idle=" + a.getIdleConnectionCount() + ", tenant-b active="
+				+ b.getActiveConnectionCount() + ", connections open="
+				+ (SimulatedDriver.CONNECTIONS_OPENED.get() - SimulatedDriver.CONNECTIONS_CLOSED.get()));
+		conns[0].close();
+		conns[1].close();
+		dataSource.close();
+	}
+
+	private static void retirement(boolean concurrentBag) throws Exception {
+		PooledDataSource dataSource = newDataSource(concurrentBag);
+		dataSource.setPoolMaximumIdleTime(200);
+		dataSource.setPoolHousekeepingInterval(100);
+		dataSource.getConnection("reporter", "secret").close();
+		dataSource.getConnection("reporter", "rotated").close();
+		Map<String, PoolState> states = dataSource.getPartitionStates();
+		System.out.println("same user, two passwords: partitions=" + states.keySet());
+		Thread.sleep(600);
+		System.out.println("after idle timeout: partitions=" + dataSource.getPartitionStates().keySet());
+		dataSource.close();
+	}
+
+	private static PooledDataSource newDataSource(boolean concurrentBag) {
+		PooledDataSource dataSource = new PooledDataSource(SimulatedDriver.class.getName(), URL, "sa", "");
+		dataSource.setPoolConcurrentBagEnabled(concurrentBag);
+		return dataSource;
+	}
+}
@@ -0,0 +1,78 @@
+package org.apache.ibatis.datasource.test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import org.apache.ibatis.datasource.pooled.PoolState;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.test.helper.SimulatedDriver;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.session.test.helper.SimulatedSessions;
+
+/**
+ * PooledDataSource的PreparedStatement缓存(poolPreparedStatementCacheSize)的效果，不需要真实的数据库
+ * 1) 每个会话执行同一条映射语句，预编译每条语句耗时1毫秒: 不开启缓存时每次查询都预编译，
+ *    开启缓存之后每个物理连接只预编译一次
+ * 2) 放回缓存的语句不带上一次使用的状态: addBatch()之后没有executeBatch()就close()，
+ *    下一次取出同一条语句时，executeBatch()只执行本次加入的语句；修改过的fetchSize恢复为驱动的默认值
+ */
+public class PreparedStatementCacheTest {
+	public static final String URL = SimulatedDriver.URL_PREFIX + "statement-cache;rows=10;prepareDelay=1";
+	public static final String INSERT_SQL = "insert into row_table (name, payload) values (?, ?)";
+	public static final int SESSIONS = 2000;
+
+	public static void main(String[] args) throws Exception {
+		SimulatedDriver.register();
+		System.out.println("===预编译次数===");
+		for (int cacheSize : new int[] { 0, 16 }) {
+			SimulatedDriver.resetCounters();
+			PooledDataSource dataSource = newDataSource(cacheSize);
+			SqlSessionFactory sqlSessionFactory = new SqlSessionFactoryBuilder().build(SimulatedSessions.newConfiguration(dataSource));
+			long start = System.nanoTime();
+			for (int i = 0; i < SESSIONS; i++) {
+				SqlSession session = sqlSessionFactory.openSession();
+				try {
+					session.selectList(SimulatedSessions.SELECT_ROWS);
+				} finally {
+					session.close();
+				}
+			}
+			long elapsed = (System.nanoTime() - start) / 1000000;
+			PoolState state = dataSource.getPoolState();
+			System.out.println(String.format("poolPreparedStatementCacheSize=%-3d %d queries, %d statements prepared, hit=%d, miss=%d, %d ms",
+					cacheSize, SESSIONS, SimulatedDriver.STATEMENTS_PREPARED.get(), state.getStatementCacheHitCount(),
+					state.getStatementCacheMissCount(), elapsed));
+			dataSource.close();
+		}
+
+		System.out.println("===放回缓存时清除语句状态===");
+		SimulatedDriver.resetCounters();
+		PooledDataSource dataSource = newDataSource(16);
+		Connection conn = dataSource.getConnection();
+		try {
+			PreparedStatement first = conn.prepareStatement(INSERT_SQL);
+			first.addBatch();
+			first.addBatch();
+			first.setFetchSize(Integer.MIN_VALUE);
+			first.close();   // 没有executeBatch()，放回缓存
+
+			PreparedStatement second = conn.prepareStatement(INSERT_SQL);
+			second.addBatch();
+			int executed = second.executeBatch().length;
+			System.out.println("same statement reused=" + (SimulatedDriver.STATEMENTS_PREPARED.get() == 1)
+					+ ", executeBatch() after 1 addBatch() executed " + executed + " statements, fetchSize=" + second.getFetchSize());
+			second.close();
+		} finally {
+			conn.close();
+			dataSource.close();
+		}
+	}
+
+	private static PooledDataSource newDataSource(int cacheSize) {
+		PooledDataSource dataSource = new PooledDataSource(SimulatedDriver.class.getName(), URL, "sa", "");
+		dataSource.setPoolPreparedStatementCacheSize(cacheSize);
+		return dataSource;
+	}
+}
@@ -0,0 +1,133 @@
+package org.apache.ibatis.datasource.test;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+
+/**
+ * 大量线程共享一个20个连接的连接池的压力测试
+ * 运行在JDK 21及以上时通过反射使用虚拟线程(代码仍按Java 8编译)，否则退化为普通线程
+ * 连接池在获取连接时等待、创建/回滚/关闭真实连接时都不会持有synchronized锁，虚拟线程阻塞时会让出载体线程，
+ * 所以几千个虚拟线程只需要少量的载体线程
+ * 验证方式:
+ * 1) 另起一个"心跳"线程每10毫秒醒来一次，记录最大延迟；如果载体线程被固定(pin)耗尽，心跳会被明显推迟
+ * 2) 可以加上-Djdk.tracePinnedThreads=short运行(JDK 21)，连接池相关的代码不应该出现在输出中
+ */
+public class VirtualThreadPoolStressTest {
+	public static final int TASKS = 5000;
+	public static final int POOL_SIZE = 20;
+
+	public static void main(String[] args) throws Exception {
+		DriverManager.registerDriver(new AdaptivePoolSizingTest.SimulatedDriver());
+		System.out.println("使用" + (isVirtualThreadSupported() ? "虚拟线程" : "普通线程(当前JDK不支持虚拟线程)"));
+		run(false);
+		run(true);
+	}
+
+	private static void run(boolean concurrentBag) throws Exception {
+		final PooledDataSource dataSource = new PooledDataSource(AdaptivePoolSizingTest.SimulatedDriver.class.getName(),
+				AdaptivePoolSizingTest.URL, "sa", "");
+		dataSource.setPoolConcurrentBagEnabled(concurrentBag);
+		dataSource.setPoolMaximumActiveConnections(POOL_SIZE);
+		dataSource.setPoolMaximumIdleConnections(POOL_SIZE);
+		dataSource.setPoolMaximumCheckoutTime(60000);
+
+		final AtomicInteger errors = new AtomicInteger();
+		final AtomicInteger inUse = new AtomicInteger();
+		final AtomicInteger maxInUse = new AtomicInteger();
+		final AtomicLong maxHeartbeatDelay = new AtomicLong();
+		final AtomicBoolean finished = new AtomicBoolean();   // 心跳线程读取，主线程写入
+
+		// 心跳线程，测量调度延迟
+		Thread heartbeat = newThread(new Runnable() {
+			@Override
+			public void run() {
+				while (!finished.get()) {
+					long t = System.currentTimeMillis();
+					sleep(10);
+					long delay = System.currentTimeMillis() - t - 10;
+					if (delay > maxHeartbeatDelay.get()) {
+						maxHeartbeatDelay.set(delay);
+					}
+				}
+			}
+		});
+
+		long start = System.currentTimeMillis();
+		List<Thread> threads = new ArrayList<Thread>(TASKS);
+		for (int i = 0; i < TASKS; i++) {
+			threads.add(newThread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Connection conn = dataSource.getConnection();
+						try {
+							int current = inUse.incrementAndGet();
+							if (current > maxInUse.get()) {
+								maxInUse.set(current);
+							}
+							PreparedStatement stmt = conn.prepareStatement("select 1");
+							stmt.executeQuery();
+							stmt.close();
+						} finally {
+							inUse.decrementAndGet();
+							conn.close();
+						}
+					} catch (SQLException e) {
+						errors.incrementAndGet();
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		finished.set(true);
+		heartbeat.join();
+
+		System.out.println("===poolConcurrentBagEnabled=" + concurrentBag + "===");
+		System.out.println("任务数=" + TASKS + " 耗时=" + elapsed + "ms 失败=" + errors.get()
+				+ " 同时使用的最大连接数=" + maxInUse.get() + " 心跳最大延迟=" + maxHeartbeatDelay.get() + "ms"
+				+ " 阻塞等待次数=" + dataSource.getPoolState().getHadToWaitCount()
+				+ " 平均等待时间=" + dataSource.getPoolState().getAverageWaitTime() + "ms");
+		dataSource.forceCloseAll();
+	}
+
+	// 启动一个虚拟线程，当前JDK不支持时启动普通线程
+	private static Thread newThread(Runnable task) throws Exception {
+		if (isVirtualThreadSupported()) {
+			Method startVirtualThread = Thread.class.getMethod("startVirtualThread", Runnable.class);
+			return (Thread) startVirtualThread.invoke(null, task);
+		}
+		Thread thread = new Thread(task);
+		thread.start();
+		return thread;
+	}
+
+	private static boolean isVirtualThreadSupported() {
+		try {
+			Thread.class.getMethod("startVirtualThread", Runnable.class);
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
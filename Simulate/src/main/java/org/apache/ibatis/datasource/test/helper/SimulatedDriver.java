@@ -0,0 +1,471 @@
+package org.apache.ibatis.datasource.test.helper;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * 多个Simulate案例共用的模拟数据库驱动，不需要真实的数据库
+ * URL格式: jdbc:sim:名称[;rows=查询返回的行数][;executeDelay=每条语句的耗时(毫秒)]
+ *                      [;fetchDelay=每读取一行的耗时(毫秒)][;connectDelay=创建连接的耗时(毫秒)]
+ *                      [;prepareDelay=预编译每条语句的耗时(毫秒)]
+ * 1) 以select开头的语句返回rows行，每行三列: id(BIGINT，从1开始)、name(VARCHAR，"name-"+id)、score(INTEGER，id % 100)
+ * 2) 其他语句影响1行，批处理中的每条语句也影响1行
+ * 3) 静态计数器记录创建/关闭的物理连接数、预编译的语句数、执行的语句数、加入批处理的语句数和读取的行数
+ * 4) 结果集按fetchSize分批从"数据库"读取行，ROWS_FETCHED和FETCH_ROUND_TRIPS记录读取的行数和次数；
+ *    fetchSize为0时与MySQL、PostgreSQL的默认行为相同，第一次next()时读取全部行；Integer.MIN_VALUE表示逐行读取
+ */
+public class SimulatedDriver implements Driver {
+	public static final String URL_PREFIX = "jdbc:sim:";
+	public static final String[] COLUMNS = { "id", "name", "score" };
+	private static final int[] COLUMN_TYPES = { Types.BIGINT, Types.VARCHAR, Types.INTEGER };
+	private static final String[] COLUMN_CLASSES = { Long.class.getName(), String.class.getName(), Integer.class.getName() };
+
+	public static final AtomicLong CONNECTIONS_OPENED = new AtomicLong();
+	public static final AtomicLong CONNECTIONS_CLOSED = new AtomicLong();
+	public static final AtomicLong STATEMENTS_PREPARED = new AtomicLong();
+	public static final AtomicLong STATEMENTS_EXECUTED = new AtomicLong();
+	public static final AtomicLong BATCHED_STATEMENTS = new AtomicLong();
+	public static final AtomicLong ROWS_FETCHED = new AtomicLong();
+	public static final AtomicLong FETCH_ROUND_TRIPS = new AtomicLong();
+
+	private static boolean registered;
+
+	public static synchronized void register() throws SQLException {
+		if (!registered) {
+			DriverManager.registerDriver(new SimulatedDriver());
+			registered = true;
+		}
+	}
+
+	public static void resetCounters() {
+		CONNECTIONS_OPENED.set(0);
+		CONNECTIONS_CLOSED.set(0);
+		STATEMENTS_PREPARED.set(0);
+		STATEMENTS_EXECUTED.set(0);
+		BATCHED_STATEMENTS.set(0);
+		ROWS_FETCHED.set(0);
+		FETCH_ROUND_TRIPS.set(0);
+	}
+
+	@Override
+	public Connection connect(String url, Properties info) throws SQLException {
+		if (!acceptsURL(url)) {
+			return null;
+		}
+		Settings settings = new Settings(url);
+		sleep(settings.connectDelay);
+		CONNECTIONS_OPENED.incrementAndGet();
+		return (Connection) newProxy(Connection.class, new SimulatedConnection(settings));
+	}
+
+	@Override
+	public boolean acceptsURL(String url) {
+		return url != null && url.startsWith(URL_PREFIX);
+	}
+
+	@Override
+	public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+		return new DriverPropertyInfo[0];
+	}
+
+	@Override
+	public int getMajorVersion() {
+		return 1;
+	}
+
+	@Override
+	public int getMinorVersion() {
+		return 0;
+	}
+
+	@Override
+	public boolean jdbcCompliant() {
+		return false;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	public static void sleep(long millis) {
+		if (millis <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static Object newProxy(Class<?> type, InvocationHandler handler) {
+		return Proxy.newProxyInstance(SimulatedDriver.class.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+
+	// 没有特殊处理的方法返回对应类型的默认值
+	private static Object defaultValue(Class<?> returnType) {
+		if (returnType == boolean.class) {
+			return false;
+		} else if (returnType == int.class) {
+			return 0;
+		} else if (returnType == long.class) {
+			return 0L;
+		}
+		return null;
+	}
+
+	// 解析URL中的参数
+	private static class Settings {
+		private final String url;
+		private int rows;
+		private long executeDelay;
+		private long fetchDelay;
+		private long connectDelay;
+		private long prepareDelay;
+
+		Settings(String url) {
+			this.url = url;
+			String[] parts = url.split(";");
+			for (int i = 1; i < parts.length; i++) {
+				int index = parts[i].indexOf('=');
+				String name = parts[i].substring(0, index);
+				long value = Long.parseLong(parts[i].substring(index + 1));
+				if ("rows".equals(name)) {
+					rows = (int) value;
+				} else if ("executeDelay".equals(name)) {
+					executeDelay = value;
+				} else if ("fetchDelay".equals(name)) {
+					fetchDelay = value;
+				} else if ("connectDelay".equals(name)) {
+					connectDelay = value;
+				} else if ("prepareDelay".equals(name)) {
+					prepareDelay = value;
+				} else {
+					throw new IllegalArgumentException("Unknown simulated driver setting " + name + " in " + url);
+				}
+			}
+		}
+	}
+
+	private static class SimulatedConnection implements InvocationHandler {
+		private final Settings settings;
+		private boolean autoCommit = true;
+		private int isolation = Connection.TRANSACTION_READ_COMMITTED;
+		private boolean closed;
+
+		SimulatedConnection(Settings settings) {
+			this.settings = settings;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			} else if ("equals".equals(name)) {
+				return proxy == args[0];
+			} else if ("toString".equals(name)) {
+				return "SimulatedConnection@" + Integer.toHexString(System.identityHashCode(proxy));
+			} else if ("close".equals(name)) {
+				if (!closed) {
+					closed = true;
+					CONNECTIONS_CLOSED.incrementAndGet();
+				}
+				return null;
+			} else if ("isClosed".equals(name)) {
+				return closed;
+			} else if ("isValid".equals(name)) {
+				return !closed;
+			} else if ("getAutoCommit".equals(name)) {
+				return autoCommit;
+			} else if ("setAutoCommit".equals(name)) {
+				autoCommit = (Boolean) args[0];
+				return null;
+			} else if ("getTransactionIsolation".equals(name)) {
+				return isolation;
+			} else if ("setTransactionIsolation".equals(name)) {
+				isolation = (Integer) args[0];
+				return null;
+			} else if ("getMetaData".equals(name)) {
+				return newProxy(DatabaseMetaData.class, new SimulatedMetaData(settings.url));
+			} else if ("prepareStatement".equals(name) || "prepareCall".equals(name) || "createStatement".equals(name)) {
+				if (closed) {
+					throw new SQLException("Connection is closed");
+				}
+				String sql = "createStatement".equals(name) ? null : (String) args[0];
+				if (sql != null) {
+					sleep(settings.prepareDelay);
+					STATEMENTS_PREPARED.incrementAndGet();
+				}
+				Class<?> type = "prepareCall".equals(name) ? CallableStatement.class
+						: "prepareStatement".equals(name) ? PreparedStatement.class : Statement.class;
+				return newProxy(type, new SimulatedStatement(settings, (Connection) proxy, sql));
+			}
+			return defaultValue(method.getReturnType());
+		}
+	}
+
+	private static class SimulatedMetaData implements InvocationHandler {
+		private final String url;
+
+		SimulatedMetaData(String url) {
+			this.url = url;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("getURL".equals(name)) {
+				return url;
+			} else if ("getDatabaseProductName".equals(name)) {
+				return "Simulated";
+			} else if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			} else if ("equals".equals(name)) {
+				return proxy == args[0];
+			}
+			return defaultValue(method.getReturnType());
+		}
+	}
+
+	private static class SimulatedStatement implements InvocationHandler {
+		private final Settings settings;
+		private final Connection connection;
+		private final String preparedSql;
+		private int batchCount;
+		private int updateCount = -1;
+		private ResultSet resultSet;
+		private int fetchSize;
+		private boolean closed;
+
+		SimulatedStatement(Settings settings, Connection connection, String preparedSql) {
+			this.settings = settings;
+			this.connection = connection;
+			this.preparedSql = preparedSql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			} else if ("equals".equals(name)) {
+				return proxy == args[0];
+			} else if ("toString".equals(name)) {
+				return "SimulatedStatement[" + preparedSql + "]";
+			} else if ("close".equals(name)) {
+				closed = true;
+				return null;
+			} else if ("isClosed".equals(name)) {
+				return closed;
+			} else if ("getConnection".equals(name)) {
+				return connection;
+			} else if ("addBatch".equals(name)) {
+				batchCount++;
+				BATCHED_STATEMENTS.incrementAndGet();
+				return null;
+			} else if ("clearBatch".equals(name)) {
+				batchCount = 0;
+				return null;
+			} else if ("executeBatch".equals(name)) {
+				STATEMENTS_EXECUTED.incrementAndGet();
+				sleep(settings.executeDelay);
+				int[] counts = new int[batchCount];
+				for (int i = 0; i < counts.length; i++) {
+					counts[i] = 1;
+				}
+				batchCount = 0;
+				return counts;
+			} else if (name.startsWith("execute")) {
+				String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+				STATEMENTS_EXECUTED.incrementAndGet();
+				sleep(settings.executeDelay);
+				boolean query = sql.trim().toLowerCase().startsWith("select");
+				if (query) {
+					resultSet = (ResultSet) newProxy(ResultSet.class, new SimulatedResultSet(settings, (Statement) proxy, fetchSize));
+					updateCount = -1;
+				} else {
+					resultSet = null;
+					updateCount = 1;
+				}
+				if ("executeQuery".equals(name)) {
+					return resultSet;
+				} else if ("executeUpdate".equals(name)) {
+					return updateCount;
+				} else if ("executeLargeUpdate".equals(name)) {
+					return (long) updateCount;
+				}
+				return query;
+			} else if ("getResultSet".equals(name)) {
+				return resultSet;
+			} else if ("getUpdateCount".equals(name)) {
+				return updateCount;
+			} else if ("getMoreResults".equals(name)) {
+				resultSet = null;
+				updateCount = -1;
+				return false;
+			} else if ("getGeneratedKeys".equals(name)) {
+				return newProxy(ResultSet.class, new SimulatedResultSet(null, (Statement) proxy, 0));
+			} else if ("setFetchSize".equals(name)) {
+				fetchSize = (Integer) args[0];
+				return null;
+			} else if ("getFetchSize".equals(name)) {
+				return fetchSize;
+			} else if ("getResultSetType".equals(name)) {
+				return ResultSet.TYPE_FORWARD_ONLY;
+			}
+			return defaultValue(method.getReturnType());
+		}
+	}
+
+	private static class SimulatedResultSet implements InvocationHandler {
+		private final Settings settings;    // 为空时是没有任何行的结果集
+		private final Statement statement;
+		private int row;                    // 当前行，从1开始
+		private int fetched;                // 已经从"数据库"读取的行数
+		private int fetchSize;
+		private boolean closed;
+
+		SimulatedResultSet(Settings settings, Statement statement, int fetchSize) {
+			this.settings = settings;
+			this.statement = statement;
+			this.fetchSize = fetchSize;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			} else if ("equals".equals(name)) {
+				return proxy == args[0];
+			} else if ("next".equals(name)) {
+				if (closed || settings == null || row >= settings.rows) {
+					return false;
+				}
+				if (row == fetched) {
+					// Integer.MIN_VALUE与MySQL驱动相同，表示逐行读取
+					int batch = fetchSize > 0 ? Math.min(fetchSize, settings.rows - fetched)
+							: fetchSize == Integer.MIN_VALUE ? 1 : settings.rows - fetched;
+					fetched += batch;
+					ROWS_FETCHED.addAndGet(batch);
+					FETCH_ROUND_TRIPS.incrementAndGet();
+				}
+				sleep(settings.fetchDelay);
+				row++;
+				return true;
+			} else if ("setFetchSize".equals(name)) {
+				fetchSize = (Integer) args[0];
+				return null;
+			} else if ("getFetchSize".equals(name)) {
+				return fetchSize;
+			} else if ("close".equals(name)) {
+				closed = true;
+				return null;
+			} else if ("isClosed".equals(name)) {
+				return closed;
+			} else if ("getStatement".equals(name)) {
+				return statement;
+			} else if ("getType".equals(name)) {
+				return ResultSet.TYPE_FORWARD_ONLY;
+			} else if ("getMetaData".equals(name)) {
+				return newProxy(ResultSetMetaData.class, new SimulatedResultSetMetaData());
+			} else if ("wasNull".equals(name)) {
+				return false;
+			} else if ("findColumn".equals(name)) {
+				return columnIndex((String) args[0]);
+			} else if (name.startsWith("get") && args != null && args.length >= 1
+					&& (args[0] instanceof Integer || args[0] instanceof String)) {
+				int column = args[0] instanceof Integer ? (Integer) args[0] : columnIndex((String) args[0]);
+				return convert(value(column), method.getReturnType());
+			}
+			return defaultValue(method.getReturnType());
+		}
+
+		private Object value(int column) throws SQLException {
+			if (row == 0 || settings == null || row > settings.rows) {
+				throw new SQLException("No current row");
+			}
+			switch (column) {
+			case 1:
+				return Long.valueOf(row);
+			case 2:
+				return "name-" + row;
+			case 3:
+				return Integer.valueOf(row % 100);
+			default:
+				throw new SQLException("Invalid column index " + column);
+			}
+		}
+
+		private static Object convert(Object value, Class<?> type) {
+			if (type == String.class) {
+				return value.toString();
+			} else if (type == long.class) {
+				return value instanceof Number ? ((Number) value).longValue() : 0L;
+			} else if (type == int.class) {
+				return value instanceof Number ? ((Number) value).intValue() : 0;
+			} else if (type == short.class) {
+				return value instanceof Number ? ((Number) value).shortValue() : (short) 0;
+			} else if (type == double.class) {
+				return value instanceof Number ? ((Number) value).doubleValue() : 0D;
+			} else if (type == BigDecimal.class) {
+				return value instanceof Number ? new BigDecimal(value.toString()) : null;
+			} else if (type == boolean.class) {
+				return false;
+			} else if (type.isInstance(value)) {
+				return value;
+			}
+			return null;
+		}
+	}
+
+	private static class SimulatedResultSetMetaData implements InvocationHandler {
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("getColumnCount".equals(name)) {
+				return COLUMNS.length;
+			} else if ("getColumnLabel".equals(name) || "getColumnName".equals(name)) {
+				return COLUMNS[(Integer) args[0] - 1];
+			} else if ("getColumnType".equals(name)) {
+				return COLUMN_TYPES[(Integer) args[0] - 1];
+			} else if ("getColumnClassName".equals(name)) {
+				return COLUMN_CLASSES[(Integer) args[0] - 1];
+			} else if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			} else if ("equals".equals(name)) {
+				return proxy == args[0];
+			}
+			return defaultValue(method.getReturnType());
+		}
+	}
+
+	private static int columnIndex(String label) throws SQLException {
+		for (int i = 0; i < COLUMNS.length; i++) {
+			if (COLUMNS[i].equalsIgnoreCase(label)) {
+				return i + 1;
+			}
+		}
+		throw new SQLException("Column not found: " + label);
+	}
+}
@@ -0,0 +1,145 @@
+package org.apache.ibatis.executor.resultset.test;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.datasource.test.helper.SimulatedDriver;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
+import org.apache.ibatis.session.test.helper.Row;
+import org.apache.ibatis.session.test.helper.SimulatedSessions;
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+
+/**
+ * 流水线映射(pipelinedResultMapping)的效果，不需要数据库
+ * 驱动每读取一行耗时FETCH_DELAY毫秒，name列使用一个耗时MAPPING_DELAY毫秒的TypeHandler(模拟解密、解析JSON等较慢的转换):
+ * 1) 普通模式: 读取和映射在同一个线程中依次进行，总耗时约为 行数 * (FETCH_DELAY + MAPPING_DELAY)
+ * 2) 流水线模式: 映射交给工作线程，与读取下一行同时进行，总耗时接近 行数 * FETCH_DELAY，结果和顺序与普通模式相同
+ * 3) Configuration.shutdownResultMappingExecutor()关闭Configuration自己创建的工作线程，
+ *    通过setResultMappingExecutor()提供的线程池由使用方关闭，不受影响
+ */
+public class PipelinedResultMappingTest {
+	public static final int ROWS = 500;
+	public static final long FETCH_DELAY = 1;
+	public static final long MAPPING_DELAY = 1;
+	public static final String URL = SimulatedDriver.URL_PREFIX + "pipelined;rows=" + ROWS + ";fetchDelay=" + FETCH_DELAY;
+	public static final String SELECT_SLOW_ROWS = "row.selectSlow";
+
+	public static void main(String[] args) throws Exception {
+		SimulatedDriver.register();
+		UnpooledDataSource dataSource = new UnpooledDataSource(SimulatedDriver.class.getName(), URL, "sa", "");
+		Configuration configuration = SimulatedSessions.newConfiguration(dataSource);
+		addSlowSelect(configuration);
+		configuration.setCacheEnabled(false);
+		DefaultSqlSessionFactory sqlSessionFactory = new DefaultSqlSessionFactory(configuration);
+
+		List<Row> plain = select(sqlSessionFactory, "普通模式");
+		configuration.setPipelinedResultMapping(true);
+		configuration.setResultMappingThreads(4);
+		configuration.setResultMappingQueueSize(16);
+		List<Row> pipelined = select(sqlSessionFactory, "流水线模式");
+		System.out.println("结果相同: " + sameRows(plain, pipelined));
+
+		System.out.println("映射工作线程数: " + countWorkerThreads());
+		configuration.shutdownResultMappingExecutor();
+		Thread.sleep(100);
+		System.out.println("shutdownResultMappingExecutor()之后的映射工作线程数: " + countWorkerThreads());
+
+		ExecutorService userExecutor = Executors.newFixedThreadPool(2);
+		configuration.setResultMappingExecutor(userExecutor);
+		select(sqlSessionFactory, "使用方提供的线程池");
+		configuration.shutdownResultMappingExecutor();
+		System.out.println("使用方提供的线程池被关闭: " + userExecutor.isShutdown());
+		userExecutor.shutdown();
+	}
+
+	private static List<Row> select(DefaultSqlSessionFactory sqlSessionFactory, String name) {
+		SqlSession sqlSession = sqlSessionFactory.openSession();
+		try {
+			long start = System.nanoTime();
+			List<Row> rows = sqlSession.selectList(SELECT_SLOW_ROWS);
+			long elapsed = (System.nanoTime() - start) / 1000000;
+			System.out.println(name + ": " + rows.size() + "行, 耗时" + elapsed + "ms");
+			return rows;
+		} finally {
+			sqlSession.close();
+		}
+	}
+
+	private static boolean sameRows(List<Row> expected, List<Row> actual) {
+		if (expected.size() != actual.size()) {
+			return false;
+		}
+		for (int i = 0; i < expected.size(); i++) {
+			Row a = expected.get(i);
+			Row b = actual.get(i);
+			if (!a.getId().equals(b.getId()) || !a.getName().equals(b.getName()) || !a.getScore().equals(b.getScore())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int countWorkerThreads() {
+		int count = 0;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.isAlive() && thread.getName().startsWith("ResultMapping-worker-")) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	// 与SELECT_ROWS相同的查询，name列使用SlowStringTypeHandler
+	private static void addSlowSelect(Configuration configuration) {
+		List<ResultMapping> resultMappings = new ArrayList<ResultMapping>();
+		resultMappings.add(new ResultMapping.Builder(configuration, "id", "id", Long.class).build());
+		resultMappings.add(new ResultMapping.Builder(configuration, "name", "name", new SlowStringTypeHandler()).build());
+		resultMappings.add(new ResultMapping.Builder(configuration, "score", "score", Integer.class).build());
+		ResultMap resultMap = new ResultMap.Builder(configuration, SELECT_SLOW_ROWS + "-Row", Row.class, resultMappings).build();
+		configuration.addResultMap(resultMap);
+		configuration.addMappedStatement(new MappedStatement.Builder(configuration, SELECT_SLOW_ROWS,
+				new StaticSqlSource(configuration, "select id, name, score from row_table"), SqlCommandType.SELECT)
+				.resultMaps(Collections.singletonList(resultMap))
+				.build());
+	}
+
+	public static class SlowStringTypeHandler extends BaseTypeHandler<String> {
+		@Override
+		public void setNonNullParameter(PreparedStatement ps, int i, String parameter, JdbcType jdbcType) throws SQLException {
+			ps.setString(i, parameter);
+		}
+
+		@Override
+		public String getNullableResult(ResultSet rs, String columnName) throws SQLException {
+			SimulatedDriver.sleep(MAPPING_DELAY);
+			return rs.getString(columnName);
+		}
+
+		@Override
+		public String getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+			SimulatedDriver.sleep(MAPPING_DELAY);
+			return rs.getString(columnIndex);
+		}
+
+		@Override
+		public String getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
+			return cs.getString(columnIndex);
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package org.apache.ibatis.executor.test;
+
+import java.util.List;
+
+import org.apache.ibatis.datasource.test.helper.SimulatedDriver;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
+import org.apache.ibatis.session.test.helper.Row;
+import org.apache.ibatis.session.test.helper.SimulatedSessions;
+
+/**
+ * 大批量导入时BatchExecutor的内存占用，不需要数据库
+ * 在同一个BATCH会话中插入ROWS条记录，每条记录带有PAYLOAD_SIZE字节的payload，最后才调用flushStatements():
+ * 1) 不自动执行批处理: 所有实参保存在BatchResult中直到flushStatements()，堆内存随插入的条数线性增长
+ * 2) batchFlushStatements=FLUSH_STATEMENTS: 每FLUSH_STATEMENTS条自动执行一次，自动执行的结果只保留影响行数，
+ *    堆内存保持稳定
+ */
+public class BatchExecutorTest {
+	public static final String URL = SimulatedDriver.URL_PREFIX + "batch";
+	public static final int ROWS = 100000;
+	public static final int PAYLOAD_SIZE = 1024;
+	public static final int FLUSH_STATEMENTS = 1000;
+	public static final int REPORT_INTERVAL = 20000;
+
+	public static void main(String[] args) throws Exception {
+		SimulatedDriver.register();
+		run("不自动执行", null);
+		run("每" + FLUSH_STATEMENTS + "条自动执行", FLUSH_STATEMENTS);
+	}
+
+	private static void run(String name, Integer flushStatements) {
+		System.out.println("===" + name + "===");
+		UnpooledDataSource dataSource = new UnpooledDataSource(SimulatedDriver.class.getName(), URL, "sa", "");
+		Configuration configuration = SimulatedSessions.newConfiguration(dataSource);
+		configuration.setBatchFlushStatements(flushStatements);
+		SqlSessionFactory sqlSessionFactory = new DefaultSqlSessionFactory(configuration);
+		long baseline = usedHeap();
+		SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH);
+		try {
+			for (int i = 1; i <= ROWS; i++) {
+				session.insert(SimulatedSessions.INSERT_ROW, new Row("name-" + i, new byte[PAYLOAD_SIZE]));
+				if (i % REPORT_INTERVAL == 0) {
+					System.out.println("已插入" + i + "条，堆内存增加" + (usedHeap() - baseline) / 1024 / 1024 + "MB");
+				}
+			}
+			List<BatchResult> results = session.flushStatements();
+			long updated = 0;
+			for (BatchResult result : results) {
+				for (int count : result.getUpdateCounts()) {
+					updated += count;
+				}
+			}
+			session.commit();
+			System.out.println("BatchResult个数=" + results.size() + " 影响行数=" + updated
+					+ " 执行批处理次数=" + configuration.getBatchStatistics().getFlushCount());
+		} finally {
+			session.close();
+		}
+	}
+
+	// GC之后已使用的堆内存
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
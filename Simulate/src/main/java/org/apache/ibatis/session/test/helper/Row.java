@@ -0,0 +1,61 @@
+package org.apache.ibatis.session.test.helper;
+
+import java.io.Serializable;
+
+/**
+ * 模拟数据库中row_table表的一行，列与SimulatedDriver返回的结果集相同，payload只用于插入
+ * 实现Serializable，可以放入readOnly="false"的二级缓存和OFF_HEAP缓存
+ */
+public class Row implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private Long id;
+	private String name;
+	private Integer score;
+	private byte[] payload;
+
+	public Row() {
+	}
+
+	public Row(String name, byte[] payload) {
+		this.name = name;
+		this.payload = payload;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public Integer getScore() {
+		return score;
+	}
+
+	public void setScore(Integer score) {
+		this.score = score;
+	}
+
+	public byte[] getPayload() {
+		return payload;
+	}
+
+	public void setPayload(byte[] payload) {
+		this.payload = payload;
+	}
+
+	@Override
+	public String toString() {
+		return "Row[id=" + id + ", name=" + name + ", score=" + score + "]";
+	}
+}
@@ -0,0 +1,55 @@
+package org.apache.ibatis.session.test.helper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+
+/**
+ * 不使用映射文件，直接通过代码创建Configuration，供使用SimulatedDriver的Simulate案例共用
+ * 注册了两个映射语句:
+ * 1) INSERT_ROW: insert into row_table (name, payload) values (?, ?)，参数是Row对象
+ * 2) SELECT_ROWS: select id, name, score from row_table，结果映射为Row对象
+ */
+public class SimulatedSessions {
+	public static final String INSERT_ROW = "row.insert";
+	public static final String SELECT_ROWS = "row.select";
+
+	private SimulatedSessions() {
+	}
+
+	public static Configuration newConfiguration(DataSource dataSource) {
+		Configuration configuration = new Configuration();
+		configuration.setEnvironment(new Environment("simulated", new JdbcTransactionFactory(), dataSource));
+
+		List<ParameterMapping> parameterMappings = new ArrayList<ParameterMapping>();
+		parameterMappings.add(new ParameterMapping.Builder(configuration, "name", String.class).build());
+		parameterMappings.add(new ParameterMapping.Builder(configuration, "payload", byte[].class).build());
+		configuration.addMappedStatement(new MappedStatement.Builder(configuration, INSERT_ROW,
+				new StaticSqlSource(configuration, "insert into row_table (name, payload) values (?, ?)", parameterMappings),
+				SqlCommandType.INSERT).build());
+
+		List<ResultMapping> resultMappings = new ArrayList<ResultMapping>();
+		resultMappings.add(new ResultMapping.Builder(configuration, "id", "id", Long.class).build());
+		resultMappings.add(new ResultMapping.Builder(configuration, "name", "name", String.class).build());
+		resultMappings.add(new ResultMapping.Builder(configuration, "score", "score", Integer.class).build());
+		ResultMap resultMap = new ResultMap.Builder(configuration, SELECT_ROWS + "-Row", Row.class, resultMappings).build();
+		configuration.addResultMap(resultMap);
+		configuration.addMappedStatement(new MappedStatement.Builder(configuration, SELECT_ROWS,
+				new StaticSqlSource(configuration, "select id, name, score from row_table"), SqlCommandType.SELECT)
+				.resultMaps(Collections.singletonList(resultMap))
+				.build());
+		return configuration;
+	}
+}
@@ -7,10 +7,12 @@ import java.lang.reflect.Type;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.ibatis.annotations.Flush;
 import org.apache.ibatis.annotations.MapKey;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.cursor.Flow;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.reflection.MetaObject;
@@ -35,7 +37,25 @@ public class MapperMethod {
 		this.method = new MethodSignature(config, mapperInterface, method);
 	}
 	
+	/**
+	 * 执行Mapper方法对应的SQL语句
+	 * 方法的返回值是CompletableFuture时，将执行结果(或异常)包装为已完成的CompletableFuture返回
+	 */
 	public Object execute(SqlSession sqlSession, Object[] args) {
+		if (method.returnsFuture()) {
+			CompletableFuture<Object> future = new CompletableFuture<Object>();
+			try {
+				future.complete(executeForResult(sqlSession, args));
+			} catch (RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+			return future;
+		}
+		return executeForResult(sqlSession, args);
+	}
+	
+	// 执行SQL语句并将结果转换为方法声明的返回值类型(CompletableFuture的类型参数)
+	Object executeForResult(SqlSession sqlSession, Object[] args) {
 		Object result = null;
 		// 根据SQL语句的类型调用SqlSession对应的方法完成数据库操作
 		switch (command.getType()) {
@@ -67,6 +87,8 @@ public class MapperMethod {
 		    		result = executeForMap(sqlSession, args);
 		    	} else if (method.returnsCursor) {
 		    		result = executeForCursor(sqlSession, args);
+		    	} else if (method.returnsPublisher) {
+		    		result = executeForPublisher(sqlSession, args);
 		    	} else {
 		    		Object param = method.convertArgsToSqlCommandParam(args);
 		    		result = sqlSession.selectOne(command.getName(), param);
@@ -85,6 +107,18 @@ public class MapperMethod {
 		return result;
 	}
 	
+	public boolean returnsFuture() {
+		return method.returnsFuture();
+	}
+	
+	public boolean returnsCursor() {
+		return method.returnsCursor();
+	}
+	
+	public boolean returnsPublisher() {
+		return method.returnsPublisher();
+	}
+	
 	// 将SQL语句执行的结果转换成为Mapper接口中对应的方法的返回值类型
 	private Object rowCountResult(int rowCount) {
 		final Object result;
@@ -154,6 +188,18 @@ public class MapperMethod {
 		return result;
 	}
 	
+	private <T> Flow.Publisher<T> executeForPublisher(SqlSession sqlSession, Object[] args) {
+		Flow.Publisher<T> result;
+		Object param = method.convertArgsToSqlCommandParam(args);
+		if (method.hasRowBounds()) {
+			RowBounds rowBounds = method.extractRowBounds(args);
+			result = sqlSession.<T>selectPublisher(command.getName(), param, rowBounds);
+		} else {
+			result = sqlSession.<T>selectPublisher(command.getName(), param);
+		}
+		return result;
+	}
+	
 	// 将返回的列表转化为集合对象
 	private <E> Object convertToDeclaredCollection(Configuration config, List<E> list) {
 		// 通过反射的方式创建集合对象
@@ -255,6 +301,8 @@ public class MapperMethod {
 		private final boolean returnsMap;          // 返回类型是否为Map类型
 		private final boolean returnsVoid;         // 返回类型是否为void
 		private final boolean returnsCursor;       // 返回值是否为Cursor类型		
+		private final boolean returnsPublisher;    // 返回值是否为Flow.Publisher类型
+		private final boolean returnsFuture;       // 返回值是否为CompletableFuture类型，此时以下的返回值类型都指其类型参数
 		private final Class<?> returnType;         // 返回值类型
 		private final String mapKey;               // 如果返回值是Map，则该字段记录了作为key的列名
 		private final Integer resultHandlerIndex;  // 用来标记该方法参数列表中ResultHandler类型参数的位置		
@@ -263,16 +311,23 @@ public class MapperMethod {
 		
 		public MethodSignature(Configuration configuration, Class<?> mapperInterface, Method method) {
 			Type resolvedReturnType = TypeParameterResolver.resolveReturnType(method, mapperInterface);
+			// 返回值是CompletableFuture<T>时按照T处理
+			this.returnsFuture = CompletableFuture.class.equals(method.getReturnType());
+			if (this.returnsFuture) {
+				resolvedReturnType = resolvedReturnType instanceof ParameterizedType
+						? ((ParameterizedType) resolvedReturnType).getActualTypeArguments()[0] : Object.class;
+			}
 			if (resolvedReturnType instanceof Class<?>) {
 				this.returnType = (Class<?>) resolvedReturnType;
 			} else if (resolvedReturnType instanceof ParameterizedType) {
 				this.returnType = (Class<?>) ((ParameterizedType) resolvedReturnType).getRawType();
 			} else {
-				this.returnType = method.getReturnType();
+				this.returnType = this.returnsFuture ? Object.class : method.getReturnType();
 			}
-			this.returnsVoid = void.class.equals(this.returnType);
+			this.returnsVoid = void.class.equals(this.returnType) || (this.returnsFuture && Void.class.equals(this.returnType));
 			this.returnsMany = (configuration.getObjectFactory().isCollection(this.returnType) || this.returnType.isArray());
 			this.returnsCursor = Cursor.class.equals(this.returnType);
+			this.returnsPublisher = Flow.Publisher.class.equals(this.returnType);
 			// 若MethodSignature对应的方法的返回值是Map且指定了@MapKey注解，则使用getMapKey()方法处理
 			this.mapKey = getMapKey(method);
 			this.returnsMap = (this.mapKey != null);
@@ -301,7 +356,7 @@ public class MapperMethod {
 	        return resultHandlerIndex != null;
 	    }
 
-	    public ResultHandler extractResultHandler(Object[] args) {
+	    public ResultHandler<?> extractResultHandler(Object[] args) {
 	        return hasResultHandler() ? (ResultHandler) args[resultHandlerIndex] : null;
 	    }
 	    
@@ -327,7 +382,15 @@ public class MapperMethod {
 
 	    public boolean returnsCursor() {
 	        return returnsCursor;
+	    }
+	    
+	    public boolean returnsPublisher() {
+	        return returnsPublisher;
 	    }	    
+
+	    public boolean returnsFuture() {
+	        return returnsFuture;
+	    }
 		
 		// 查找指定类型的参数在参数列表中的位置，主要是为查找RowBounds、ResultHandler类型的参数服务
 		// 对于每个Mapper方法来说，参数列表中RowBounds或ResultHandler类型参数只允许出现一次
@@ -349,7 +412,7 @@ public class MapperMethod {
 		// 若MethodSignature对应方法的返回值是Map且指定了@MapKey注解，则使用getMapKey()方法处理
 		private String getMapKey(Method method) {
 			String mapKey = null;
-			if (Map.class.isAssignableFrom(method.getReturnType())) {
+			if (Map.class.isAssignableFrom(this.returnType)) {
 				final MapKey mapKeyAnnotation = method.getAnnotation(MapKey.class);
 				if (mapKeyAnnotation != null) {
 					mapKey = mapKeyAnnotation.value();
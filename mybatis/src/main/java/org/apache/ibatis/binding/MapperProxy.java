@@ -4,19 +4,27 @@ import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.session.AsyncSqlSession;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionCallback;
 
 /**
  * 使用动态代理，功能实现依赖于MapeprMethod
  * 维护 Method 和其对应的 MapperMethod 之间的映射关系，并对其做了缓存
  * MapperProxy主要是对Mapper接口定义的方法进行了拦截，拦截到了之后的实际处理交给MapperMethod负责
+ * 由AsyncSqlSession创建的代理对象，每次调用都在AsyncSqlSession的线程池中使用新的SqlSession执行:
+ * 返回值为CompletableFuture的方法立即返回，其他方法阻塞等待执行完成
  */
 public class MapperProxy<T> implements InvocationHandler, Serializable {
 
 	private static final long serialVersionUID = 5407795792297704674L;
 	private final SqlSession sqlSession;      // 记录了关联的SqlSession对象
+	private final AsyncSqlSession asyncSqlSession;  // 记录了关联的AsyncSqlSession对象，与sqlSession只有一个不为空
 	private final Class<T> mapperInterface;   // Mapper接口对应的Class对象
 	private final Map<Method, MapperMethod> methodCache; 	// 用于缓存MapperMethod对象，其中key是Mapper接口中方法对应的Method对象，value是对应的
 															// MapperMethod对象。MapperMethod对象会完成参数转换以及SQL语句的执行功能
@@ -24,6 +32,14 @@ public class MapperProxy<T> implements InvocationHandler, Serializable {
 	
 	public MapperProxy(SqlSession sqlSession, Class<T> mapperInterface, Map<Method, MapperMethod> methodCache) {
 		this.sqlSession = sqlSession;
+		this.asyncSqlSession = null;
+		this.mapperInterface = mapperInterface;
+		this.methodCache = methodCache;
+	}
+	
+	public MapperProxy(AsyncSqlSession asyncSqlSession, Class<T> mapperInterface, Map<Method, MapperMethod> methodCache) {
+		this.sqlSession = null;
+		this.asyncSqlSession = asyncSqlSession;
 		this.mapperInterface = mapperInterface;
 		this.methodCache = methodCache;
 	}
@@ -40,14 +56,42 @@ public class MapperProxy<T> implements InvocationHandler, Serializable {
 			}
 		}
 		final MapperMethod mapperMethod = cachedMapperMethod(method);		
+		if (asyncSqlSession != null) {
+			return invokeAsync(method, mapperMethod, args);
+		}
 		return mapperMethod.execute(sqlSession, args);
 	}
+	
+	// 在AsyncSqlSession的线程池中使用新的SqlSession执行
+	private Object invokeAsync(Method method, final MapperMethod mapperMethod, final Object[] args) throws Throwable {
+		// 游标和Flow.Publisher依赖于打开它的SqlSession，而异步执行的SqlSession在执行完成后立即关闭
+		if (mapperMethod.returnsCursor() || mapperMethod.returnsPublisher()) {
+			throw new BindingException("Mapper method '" + mapperInterface.getName() + "." + method.getName()
+					+ "' returns a " + (mapperMethod.returnsCursor() ? "Cursor" : "Flow.Publisher")
+					+ ", which is not supported by asynchronous mappers.");
+		}
+		CompletableFuture<Object> future = asyncSqlSession.execute(new SqlSessionCallback<Object>() {
+			@Override
+			public Object doInSession(SqlSession session) {
+				return mapperMethod.executeForResult(session, args);
+			}
+		});
+		if (mapperMethod.returnsFuture()) {
+			return future;
+		}
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			throw e.getCause() != null ? e.getCause() : e;
+		}
+	}
 
 	// 从cache缓存中获取Method对应的MapperMethod对象，缓存中没有则创建，并缓存到cache中
 	private MapperMethod cachedMapperMethod(Method method) {
 		MapperMethod mapperMethod = methodCache.get(method);
 		if (mapperMethod == null) {
-			mapperMethod = new MapperMethod(mapperInterface, method, sqlSession.getConfiguration());
+			Configuration configuration = sqlSession != null ? sqlSession.getConfiguration() : asyncSqlSession.getConfiguration();
+			mapperMethod = new MapperMethod(mapperInterface, method, configuration);
 			methodCache.put(method, mapperMethod);
 		}
 		return mapperMethod;
@@ -5,6 +5,7 @@ import java.lang.reflect.Proxy;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.ibatis.session.AsyncSqlSession;
 import org.apache.ibatis.session.SqlSession;
 
 /**
@@ -37,6 +38,11 @@ public class MapperProxyFactory<T> {
 		return newInstance(mapperProxy);
 	}
 	
+	public T newInstance(AsyncSqlSession asyncSqlSession) {
+		final MapperProxy<T> mapperProxy = new MapperProxy<T>(asyncSqlSession, mapperInterface, methodCache);
+		return newInstance(mapperProxy);
+	}
+	
 	@SuppressWarnings("unchecked")
 	protected T newInstance(MapperProxy<T> mapperProxy) {
 		return (T) Proxy.newProxyInstance(mapperInterface.getClassLoader(), new Class[] { mapperInterface }, mapperProxy);
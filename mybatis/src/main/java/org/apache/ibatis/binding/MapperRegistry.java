@@ -7,6 +7,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.ibatis.io.ResolverUtil;
+import org.apache.ibatis.session.AsyncSqlSession;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSession;
 
@@ -39,6 +40,20 @@ public class MapperRegistry {
 		}
 	}
 	
+	// 获取AsyncSqlSession使用的Mapper代理对象，与SqlSession的代理对象共享MapperMethod缓存
+	@SuppressWarnings("unchecked")
+	public <T> T getMapper(Class<T> type, AsyncSqlSession asyncSqlSession) {
+		final MapperProxyFactory<T> mapperProxyFactory = (MapperProxyFactory<T>) knowMappers.get(type);
+		if (mapperProxyFactory == null) {
+			throw new BindingException("Type " + type + " is not known to the MapperRegistry.");
+		}
+		try {
+			return mapperProxyFactory.newInstance(asyncSqlSession);
+		} catch (Exception e) {
+			throw new BindingException("Error getting mapper instance. Cause: " + e, e);
+		}
+	}
+	
 	public <T> boolean hasMapper(Class<T> type) {
 		return knowMappers.containsKey(type);
 	}
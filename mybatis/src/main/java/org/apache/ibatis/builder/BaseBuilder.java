@@ -58,6 +58,10 @@ public abstract class BaseBuilder {
 		return value == null ? defaultValue : Integer.valueOf(value);
 	}
 	
+	protected Long longValueOf(String value, Long defaultValue) {
+		return value == null ? defaultValue : Long.valueOf(value);
+	}
+	
 	protected Set<String> stringSetValueOf(String value, String defalutValue) {
 		value = (value == null ? defalutValue : value);
 		return new HashSet<String>(Arrays.asList(value.split(",")));
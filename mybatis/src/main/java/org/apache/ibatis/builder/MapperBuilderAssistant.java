@@ -108,9 +108,16 @@ public class MapperBuilderAssistant extends BaseBuilder {
 	// 创建namespace对应的Cache
 	public Cache useNewCache(Class<? extends Cache> typeClass, Class<? extends Cache> evictionClass, Long flushInterval,
 			Integer size, boolean readWrite, boolean blocking, Properties props) {
+		return useNewCache(typeClass, evictionClass, flushInterval, size, null, readWrite, blocking, props);
+	}
+
+	// 创建namespace对应的Cache，maxBytes是该命名空间缓存项估算的字节数上限，全局的字节数预算来自Configuration
+	public Cache useNewCache(Class<? extends Cache> typeClass, Class<? extends Cache> evictionClass, Long flushInterval,
+			Integer size, Long maxBytes, boolean readWrite, boolean blocking, Properties props) {
 		// 创建Cache对象，这里使用了建造者模式，CacheBuilder是建造者的角色，而Cache是生成的产品
 		Cache cache = new CacheBuilder(currentNamespace).implementation(valueOrDefault(typeClass, PerpetualCache.class))
 				.addDecorator(valueOrDefault(evictionClass, LruCache.class)).clearInterval(flushInterval).size(size)
+				.maxBytes(maxBytes).memoryBudget(configuration.getCacheMemoryBudget())
 				.readWrite(readWrite).blocking(blocking).properties(props).build();
 		// 将Cache对象添加到Configuartion.caches集合中保存，其中会将Cache的id作为key，Cache对象本身作为value
 		configuration.addCache(cache);
@@ -144,6 +144,7 @@ public class XMLConfigBuilder extends BaseBuilder {
      * 	<!-- 全量settings的配置样例 -->
 	 *  <settings>
      *		<setting name="cacheEnabled" value="true"/>                      <!-- 映射器中配置缓存的全局开关 -->
+	 *		<setting name="cacheMaxBytes" value="268435456"/>                <!-- 所有命名空间的二级缓存估算的字节数之和的上限 -->
 	 *  	<setting name="lazyLoadingEnabled" value="true"/>                <!-- 延迟加载的全局开关 -->
 	 *		<setting name="multipleResultSetsEnabled" value="true"/>         <!-- 是否允许单一语句返回多结果集 -->
 	 * 		<setting name="useColumnLabel" value="true"/>                    <!-- 使用列标签代替列名 -->
@@ -153,6 +154,12 @@ public class XMLConfigBuilder extends BaseBuilder {
 	 *		<setting name="defaultExecutorType" value="SIMPLE"/>             <!-- 配置默认的执行器 -->
 	 *		<setting name="defaultStatementTimeout" value="25"/>             <!-- 设置超时时间，它决定驱动等待数据库响应的秒数 -->
 	 *		<setting name="defaultFetchSize" value="100"/>                   <!-- 设置数据库驱动程序默认返回的条数限制 -->
+	 *		<setting name="batchFlushStatements" value="1000"/>              <!-- BATCH执行器缓存的语句达到该条数时自动执行批处理 -->
+	 *		<setting name="batchFlushBytes" value="4194304"/>                <!-- BATCH执行器估算的参数字节数达到该值时自动执行批处理 -->
+	 *		<setting name="batchFlushLingerTime" value="200"/>               <!-- BATCH执行器缓存第一条语句后超过该毫秒数时自动执行批处理 -->
+	 *		<setting name="pipelinedResultMapping" value="false"/>           <!-- 是否由工作线程映射结果对象，与读取结果集并行 -->
+	 *		<setting name="resultMappingThreads" value="4"/>                 <!-- 映射结果对象的工作线程数 -->
+	 *		<setting name="resultMappingQueueSize" value="64"/>              <!-- 每个结果集已读取但还没有交付的行数上限 -->
 	 *		<setting name="safeRowBoundsEnabled" value="false"/>             <!-- 允许在嵌套语句中使用分页 -->
 	 *		<setting name="localCacheScope" value="SESSION"/>                <!-- MyBatis利用本地缓存机制防止循环引用和加速重复嵌套查询 -->
 	 *		<setting name="jdbcTypeForNull" value="OTHER"/>                  <!-- 当没有为参数提供特定的JDBC类型时，为空值指定JDBC类型 -->
@@ -346,6 +353,7 @@ public class XMLConfigBuilder extends BaseBuilder {
 		configuration.setAutoMappingBehavior(AutoMappingBehavior.valueOf(props.getProperty("autoMappingBehavior", "PARTIAL")));
 		configuration.setAutoMappingUnknownColumnBehavior(AutoMappingUnknownColumnBehavior.valueOf(props.getProperty("autoMappingUnknownColumnBehavior", "NONE")));
 		configuration.setCacheEnabled(booleanValueOf(props.getProperty("cacheEnabled"), true));
+		configuration.setCacheMaxBytes(longValueOf(props.getProperty("cacheMaxBytes"), null));
 		configuration.setProxyFactory((ProxyFactory) createInstance(props.getProperty("proxyFactory")));
 	    configuration.setLazyLoadingEnabled(booleanValueOf(props.getProperty("lazyLoadingEnabled"), false));
 	    configuration.setAggressiveLazyLoading(booleanValueOf(props.getProperty("aggressiveLazyLoading"), true));
@@ -355,6 +363,12 @@ public class XMLConfigBuilder extends BaseBuilder {
 	    configuration.setDefaultExecutorType(ExecutorType.valueOf(props.getProperty("defaultExecutorType", "SIMPLE")));
 	    configuration.setDefaultStatementTimeout(integerValueOf(props.getProperty("defaultStatementTimeout"), null));
 	    configuration.setDefaultFetchSize(integerValueOf(props.getProperty("defaultFetchSize"), null));
+	    configuration.setBatchFlushStatements(integerValueOf(props.getProperty("batchFlushStatements"), null));
+	    configuration.setBatchFlushBytes(longValueOf(props.getProperty("batchFlushBytes"), null));
+	    configuration.setBatchFlushLingerTime(longValueOf(props.getProperty("batchFlushLingerTime"), null));
+	    configuration.setPipelinedResultMapping(booleanValueOf(props.getProperty("pipelinedResultMapping"), false));
+	    configuration.setResultMappingThreads(integerValueOf(props.getProperty("resultMappingThreads"), null));
+	    configuration.setResultMappingQueueSize(integerValueOf(props.getProperty("resultMappingQueueSize"), null));
 	    configuration.setMapUnderscoreToCamelCase(booleanValueOf(props.getProperty("mapUnderscoreToCamelCase"), false));
 	    configuration.setSafeRowBoundsEnabled(booleanValueOf(props.getProperty("safeRowBoundsEnabled"), false));	
 	    configuration.setLocalCacheScope(LocalCacheScope.valueOf(props.getProperty("localCacheScope", "SESSION")));
@@ -158,6 +158,10 @@ public class XMLMapperBuilder extends BaseBuilder {
 	 * |              | SOFT 软引用：移除基于垃圾回收器状态和软引用规则的对象 |                      |                                |
 	 * |              | WEAK 弱引用：更积极移除基于垃圾收集器状态和弱引用规则 |                      |                                |
 	 * |              |           的对象                                                                      |                      |                                |
+	 * |              | CONCURRENT_LRU 可并发读取的LRU，读操作不加锁，不再     |                      |                                |
+	 * |              |           添加SynchronizedCache                      |                      |                                |
+	 * |              | TINYLFU W-TinyLFU：新对象的访问频率高于将要移除的对象时  |                      |                                |
+	 * |              |           才进入主缓存区，适合混有大量扫描查询的场景      |                      |                                |
 	 * |-------------------------------------------------------------------------------------------------------------|
 	 * | flushInteval | 这是一个整数，它以毫秒未单位，比如1分钟刷新一次，则配置 |                      | 超过整数后缓存失效，不再读取缓存，而执行SQL |
 	 * |              | 60000。默认为null，也就是没有刷新时间，只有当执行     |        正整数                              | 取回数据                                                                            |
@@ -165,13 +169,19 @@ public class XMLMapperBuilder extends BaseBuilder {
 	 * |-------------------------------------------------------------------------------------------------------------|
 	 * | type         | 自定义缓存类。要求实现接口                                                            | 用于自定义缓存类                               |            ————                |
 	 * |              | org.apache.ibatis.cache.Cache        |                      |                                |
+	 * |              | OFF_HEAP 将序列化后的对象保存在堆外内存中，通过<property> |                      |                                |
+	 * |              |           配置capacity、slabSize、size，size也可以通过  |                      |                                |
+	 * |              |           <cache>的size属性配置，两者都配置时以<property>为准 |                      |                                |
 	 * |-------------------------------------------------------------------------------------------------------------|
 	 * | size         | 缓存对象个数                                                                                       | 正整数，默认值是1024       |            ————               |
+	 * |-------------------------------------------------------------------------------------------------------------|
+	 * | maxBytes     | 缓存对象估算的字节数之和的上限，超出时清理最久未被访问  | 正整数，默认值为null      | 同时受全局设置cacheMaxBytes限制   |
+	 * |              | 的对象，单个对象超出上限时不缓存                           |                      |                                |
 	 *  -------------------------------------------------------------------------------------------------------------
 	 *  
 	 *  配置示例:
 	 *  <cache type="org.apache.ibatis.cache.Cache"
-	 *      blocking="false" readOnly="false" eviction="LRU" flushInteval="" size="1024">
+	 *      blocking="false" readOnly="false" eviction="LRU" flushInteval="" size="1024" maxBytes="">
 	 *  	<property name="xxx" value="yyy"/>
 	 *  </cache>
 	 */
@@ -189,6 +199,8 @@ public class XMLMapperBuilder extends BaseBuilder {
 			Long flushInterval = context.getLongAttribute("flushInterval");
 			// 获取<cache> 节点的size属性，默认值是null
 			Integer size = context.getIntAttribute("size");
+			// 获取<cache> 节点的maxBytes属性，默认值是null
+			Long maxBytes = context.getLongAttribute("maxBytes");
 			// 获取<cache> 节点的readOnly属性，默认值是false
 			boolean readWrite = !context.getBooleanAttribute("readOnly", false);
 			// 获取<cache> 节点的blocking属性，默认值是false
@@ -196,7 +208,7 @@ public class XMLMapperBuilder extends BaseBuilder {
 			// 获取<cache> 节点下的子节点，用于初始化二级缓存
 			Properties props = context.getChildrenAsProperties();
 			// 通过MapperBuilderAssistant创建Cache对象，并添加到Configuration.caches集合中保存
-			builderAssistant.useNewCache(typeClass, evictionClass, flushInterval, size, readWrite, blocking, props);
+			builderAssistant.useNewCache(typeClass, evictionClass, flushInterval, size, maxBytes, readWrite, blocking, props);
 		}
 	}
 
@@ -1,77 +1,130 @@
 package org.apache.ibatis.cache;
 
 import java.io.Serializable;
-import java.lang.reflect.Array;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * CacheKey必须包含多个影响缓存项的因素，不能简单地用String类型表示
- * 这里计算hashCode的原理没有看懂？
+ * 1) 组成部分按顺序保存在预先分配好大小的Object[]中，已知组成部分个数时可以通过CacheKey(int)一次分配到位
+ * 2) 每次update()时增量计算64位的混合哈希值，equals()先比较64位哈希值和个数，不同时直接返回false，
+ *    只有哈希值相同时才逐个比较组成部分
+ * 3) 数组参数按元素展开，每个元素是一个组成部分，与逐个update()每个元素得到的CacheKey相等；
+ *    基本类型的数组按类型直接遍历，不通过反射读取元素
+ * 4) freeze()之后CacheKey不可再修改，作为Map的key时应当使用冻结后的CacheKey
  */
 public class CacheKey implements Cloneable, Serializable {
 
-	private static final long serialVersionUID = -819053198771289308L;
-	
+	private static final long serialVersionUID = 2093215783395240614L;
+
+	private static final Object[] EMPTY = new Object[0];
+
 	public static final CacheKey NULL_CACHE_KEY = new NullCacheKey();
-	
-	private static final int DEFAULT_MULTIPLYER = 37;
-	private static final int DEFAULT_HASHCODE = 17;
-	
-	private int multiplier;           // 参与计算hashcode，默认值是37
-	private int hashcode;             // CacheKey对象的hashcode， 默认值是17
-	private long checksum;            // 校验和
-	private int count;                // updataList集合的个数
-	private List<Object> updateList;  // 由该集合中的所有对象共同决定两个CacheKey是否相同
-	
+
+	private static final int DEFAULT_CAPACITY = 8;
+	private static final long SEED = 0x2545F4914F6CDD1DL;
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	private static final long MIX_MULTIPLIER = 0xBF58476D1CE4E5B9L;
+
+	private long hash;              // 增量计算的64位哈希值
+	private int hashcode;           // 由hash折叠得到的32位哈希值
+	private int count;              // 组成部分的个数
+	private Object[] components;    // 由该数组中的前count个对象共同决定两个CacheKey是否相同
+	private boolean frozen;         // 冻结之后不能再修改
+
 	public CacheKey() {
-		this.hashcode = DEFAULT_HASHCODE;
-		this.multiplier = DEFAULT_MULTIPLYER;
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param expectedComponents 预计的组成部分个数，准确时不需要扩容，freeze()时也不需要复制
+	 */
+	public CacheKey(int expectedComponents) {
+		this.hash = SEED;
+		this.hashcode = fold(SEED);
 		this.count = 0;
-		this.updateList = new ArrayList<Object>();
+		this.components = expectedComponents > 0 ? new Object[expectedComponents] : EMPTY;
 	}
-	
+
 	public CacheKey(Object[] objects) {
-		this();
+		this(objects.length);
 		updateAll(objects);
 	}
-	
+
 	public void updateAll(Object[] objects) {
 		for (Object o : objects) {
 			update(o);
 		}
 	}
-	
+
 	public void update(Object object) {
-		// 添加数组或集合类型
-		if (object != null && object.getClass().isArray()) {
-			int length = Array.getLength(object);
-			for (int i = 0; i < length; i++) {
-				Object element = Array.get(object, i);
-				doUpdate(element);
+		if (frozen) {
+			throw new CacheException("Not allowed to update a frozen CacheKey instance.");
+		}
+		if (object instanceof Object[]) {
+			// 对象数组按元素展开
+			Object[] array = (Object[]) object;
+			ensureCapacity(count + array.length);
+			for (Object element : array) {
+				doUpdate(element, element == null ? 1 : element.hashCode());
 			}
+		} else if (object != null && object.getClass().isArray()) {
+			updatePrimitiveArray(object);
 		} else {
-			doUpdate(object);
+			doUpdate(object, object == null ? 1 : object.hashCode());
+		}
+	}
+
+	private void doUpdate(Object object, int baseHashCode) {
+		ensureCapacity(count + 1);
+		components[count++] = object;
+		// 与组成部分的位置相关的64位混合
+		long h = hash + (baseHashCode & 0xFFFFFFFFL) * GOLDEN_GAMMA + count;
+		h = Long.rotateLeft(h, 31) * MIX_MULTIPLIER;
+		hash = h;
+		hashcode = fold(h);
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > components.length) {
+			components = Arrays.copyOf(components, Math.max(capacity, Math.max(DEFAULT_CAPACITY, components.length * 2)));
 		}
 	}
-	
-	private void doUpdate(Object object) {
-		int baseHashCode = object == null ? 1 : object.hashCode();
-		// 重新计算count、checksum和hashcode的值
-		count++;
-		checksum += baseHashCode;
-		baseHashCode *= count;
-		
-		hashcode = multiplier * hashcode + baseHashCode;
-		// 将object添加到updateList集合中
-		updateList.add(object);
-	}
-	
+
+	private static int fold(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * 冻结CacheKey，之后调用update()会抛出CacheException。存储空间有多余时收缩到实际大小
+	 * 返回的就是当前对象，已经冻结时直接返回
+	 */
+	public CacheKey freeze() {
+		if (!frozen) {
+			if (components.length != count) {
+				components = count == 0 ? EMPTY : Arrays.copyOf(components, count);
+			}
+			frozen = true;
+		}
+		return this;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
 	public int getUpdateCount() {
-		return updateList.size();
+		return count;
 	}
-	
-	// 判断两个Cache是否相等，必须满足各种计算值相同，且每个updateList中的对象都相等
+
+	// 64位哈希值，可用于分片或二次哈希
+	public long getHash64() {
+		return hash;
+	}
+
+	// 判断两个CacheKey是否相等，64位哈希值和个数不同时直接返回false，否则逐个比较组成部分
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -81,53 +134,104 @@ public class CacheKey implements Cloneable, Serializable {
 		if (!(object instanceof CacheKey)) {
 			return false;
 		}
-		
+
 		final CacheKey cacheKey = (CacheKey) object;
-		
-		if (hashcode != cacheKey.hashcode) {
-			return false;
-		}
-		if (checksum != cacheKey.checksum) {
-			return false;
-		}
-		if (count != cacheKey.count) {
+
+		if (hash != cacheKey.hash || count != cacheKey.count) {
 			return false;
 		}
-		
-		for (int i = 0; i < updateList.size(); i++) {
-			Object thisObject = updateList.get(i);
-			Object thatObject = cacheKey.updateList.get(i);
-			if (thisObject == null) {
-				if (thatObject != null) {
-					return false;
-				}
-			} else {
-				if (!thatObject.equals(thisObject)) {
-					return false;
-				}
+
+		final Object[] these = components;
+		final Object[] those = cacheKey.components;
+		for (int i = 0; i < count; i++) {
+			Object thisObject = these[i];
+			Object thatObject = those[i];
+			if (thisObject == thatObject) {
+				continue;
+			}
+			if (thisObject == null || thatObject == null || !thatObject.equals(thisObject)) {
+				return false;
 			}
 		}
 		return true;
 	}
-	
+
 	@Override
 	public int hashCode() {
 		return hashcode;
 	}
-	
+
 	@Override
 	public String toString() {
-		StringBuilder returnValue = new StringBuilder().append(hashcode).append(':').append(checksum);
-		for (Object object : updateList) {
-			returnValue.append(':').append(object);
+		StringBuilder returnValue = new StringBuilder().append(hashcode).append(':').append(Long.toHexString(hash));
+		for (int i = 0; i < count; i++) {
+			returnValue.append(':').append(components[i]);
 		}
 		return returnValue.toString();
 	}
-	
+
+	// 克隆得到的CacheKey没有冻结，可以继续添加组成部分
 	@Override
 	public CacheKey clone() throws CloneNotSupportedException {
 		CacheKey clonedCacheKey = (CacheKey) super.clone();
-		clonedCacheKey.updateList = new ArrayList<Object>(updateList);
+		clonedCacheKey.components = Arrays.copyOf(components, Math.max(count, DEFAULT_CAPACITY));
+		clonedCacheKey.frozen = false;
 		return clonedCacheKey;
 	}
+
+	// 基本类型数组的辅助方法
+	// [start]
+	// 按元素装箱后展开，哈希值与包装类的hashCode()相同
+	private void updatePrimitiveArray(Object array) {
+		if (array instanceof int[]) {
+			int[] values = (int[]) array;
+			ensureCapacity(count + values.length);
+			for (int value : values) {
+				doUpdate(Integer.valueOf(value), Integer.hashCode(value));
+			}
+		} else if (array instanceof long[]) {
+			long[] values = (long[]) array;
+			ensureCapacity(count + values.length);
+			for (long value : values) {
+				doUpdate(Long.valueOf(value), Long.hashCode(value));
+			}
+		} else if (array instanceof byte[]) {
+			byte[] values = (byte[]) array;
+			ensureCapacity(count + values.length);
+			for (byte value : values) {
+				doUpdate(Byte.valueOf(value), Byte.hashCode(value));
+			}
+		} else if (array instanceof char[]) {
+			char[] values = (char[]) array;
+			ensureCapacity(count + values.length);
+			for (char value : values) {
+				doUpdate(Character.valueOf(value), Character.hashCode(value));
+			}
+		} else if (array instanceof short[]) {
+			short[] values = (short[]) array;
+			ensureCapacity(count + values.length);
+			for (short value : values) {
+				doUpdate(Short.valueOf(value), Short.hashCode(value));
+			}
+		} else if (array instanceof double[]) {
+			double[] values = (double[]) array;
+			ensureCapacity(count + values.length);
+			for (double value : values) {
+				doUpdate(Double.valueOf(value), Double.hashCode(value));
+			}
+		} else if (array instanceof float[]) {
+			float[] values = (float[]) array;
+			ensureCapacity(count + values.length);
+			for (float value : values) {
+				doUpdate(Float.valueOf(value), Float.hashCode(value));
+			}
+		} else {
+			boolean[] values = (boolean[]) array;
+			ensureCapacity(count + values.length);
+			for (boolean value : values) {
+				doUpdate(Boolean.valueOf(value), Boolean.hashCode(value));
+			}
+		}
+	}
+	// [end]
 }
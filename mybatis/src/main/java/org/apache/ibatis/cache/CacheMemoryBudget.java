@@ -0,0 +1,81 @@
+package org.apache.ibatis.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 所有命名空间的二级缓存共享的字节数预算，由Configuration根据cacheMaxBytes配置创建
+ * 每个WeightedCache在添加缓存项前申请字节数，删除缓存项后归还
+ * 某个命名空间申请不到字节数时记录待回收的字节数，其他命名空间下一次被访问时清理自己的缓存项归还预算，
+ * 避免先写满预算的命名空间一直占用全部预算
+ */
+public class CacheMemoryBudget {
+
+	private final long maxBytes;
+	private final AtomicLong usedBytes = new AtomicLong();
+	private final AtomicLong reclaimBytes = new AtomicLong();   // 待其他命名空间回收的字节数
+
+	public CacheMemoryBudget(long maxBytes) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("maxBytes must be positive but was " + maxBytes);
+		}
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * 申请指定的字节数，超出预算时不做修改并返回false
+	 */
+	public boolean tryReserve(long bytes) {
+		for (;;) {
+			long used = usedBytes.get();
+			long next = used + bytes;
+			if (next > maxBytes) {
+				return false;
+			}
+			if (usedBytes.compareAndSet(used, next)) {
+				return true;
+			}
+		}
+	}
+
+	public void release(long bytes) {
+		usedBytes.addAndGet(-bytes);
+	}
+
+	// 请求其他命名空间回收指定的字节数，多次请求时取较大值
+	public void requestReclaim(long bytes) {
+		for (;;) {
+			long pending = reclaimBytes.get();
+			if (pending >= bytes || reclaimBytes.compareAndSet(pending, bytes)) {
+				return;
+			}
+		}
+	}
+
+	public boolean hasPendingReclaim() {
+		return reclaimBytes.get() > 0;
+	}
+
+	/**
+	 * 领取回收任务，最多领取available字节，返回实际领取的字节数
+	 */
+	public long claimReclaim(long available) {
+		for (;;) {
+			long pending = reclaimBytes.get();
+			if (pending <= 0) {
+				return 0;
+			}
+			long claimed = Math.min(pending, available);
+			if (reclaimBytes.compareAndSet(pending, pending - claimed)) {
+				return claimed;
+			}
+		}
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public long getUsedBytes() {
+		return usedBytes.get();
+	}
+}
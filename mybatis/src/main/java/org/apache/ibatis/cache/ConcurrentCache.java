@@ -0,0 +1,10 @@
+package org.apache.ibatis.cache;
+
+/**
+ * 标记接口: 实现类自身可以被多个线程并发访问
+ * CacheBuilder构建二级缓存时，如果最外层的淘汰策略装饰器实现了该接口，则不再添加SynchronizedCache装饰器，
+ * 读操作不会在同一把锁上串行执行
+ */
+public interface ConcurrentCache extends Cache {
+
+}
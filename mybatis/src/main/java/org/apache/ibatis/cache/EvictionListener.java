@@ -0,0 +1,14 @@
+package org.apache.ibatis.cache;
+
+/**
+ * 淘汰策略装饰器(LruCache、FifoCache、TinyLfuCache)实现该接口，
+ * 被装饰的Cache对象自行删除缓存项时(例如WeightedCache超出字节数预算)通知淘汰策略，
+ * 淘汰策略同步删除自己记录的key，避免已经不存在的key继续占用缓存项的名额
+ */
+public interface EvictionListener {
+
+	/**
+	 * 被装饰的Cache对象已经删除了key对应的缓存项
+	 */
+	void onEviction(Object key);
+}
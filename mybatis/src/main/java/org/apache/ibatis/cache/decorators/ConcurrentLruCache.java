@@ -0,0 +1,352 @@
+package org.apache.ibatis.cache.decorators;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.ConcurrentCache;
+
+/**
+ * ConcurrentLruCache: 可以并发访问的LRU缓存装饰器，用于替代LruCache + SynchronizedCache
+ * 数据结构: 缓存项保存在ConcurrentHashMap中，LRU顺序由双向链表记录
+ * 1) 读操作只访问ConcurrentHashMap，不加锁。访问记录写入按线程分段的环形缓冲区，缓冲区满时丢弃该次记录
+ * 2) 缓冲区中积累的访问记录达到阈值后，由后台线程获取淘汰锁，将访问过的节点移动到链表尾部
+ * 3) 写操作获取淘汰锁，先回放缓冲区中的访问记录，再更新链表，超出上限时淘汰链表头部的节点
+ *
+ * 注意: 缓存项由该装饰器自己保存，被装饰的Cache对象(一般是PerpetualCache)只提供id，
+ * 因为PerpetualCache底层是HashMap，不能被并发访问
+ */
+public class ConcurrentLruCache implements ConcurrentCache {
+
+	private static final int NCPU = Runtime.getRuntime().availableProcessors();
+	private static final int READ_BUFFERS = ceilingPowerOfTwo(Math.min(4 * NCPU, 64));
+	private static final int READ_BUFFER_SIZE = 32;           // 每个环形缓冲区的容量，必须是2的幂
+	private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+	private static final int DRAIN_THRESHOLD = READ_BUFFER_SIZE / 2;
+
+	private final Cache delegate;
+	private final ConcurrentMap<Object, Node> data;
+	private final ReadBuffer[] readBuffers;
+	private final ReentrantLock evictionLock;                 // 保护LRU链表，链表只在持有该锁时修改
+	private final AtomicBoolean drainScheduled;               // 是否已经提交了回放访问记录的任务
+	private final Runnable drainTask;
+	private Executor executor;
+	private volatile int size;                                // 缓存项的上限
+
+	// LRU链表，head是最久未被访问的节点
+	private Node head;
+	private Node tail;
+
+	public ConcurrentLruCache(Cache delegate) {
+		this.delegate = delegate;
+		this.data = new ConcurrentHashMap<Object, Node>();
+		this.readBuffers = new ReadBuffer[READ_BUFFERS];
+		for (int i = 0; i < READ_BUFFERS; i++) {
+			readBuffers[i] = new ReadBuffer();
+		}
+		this.evictionLock = new ReentrantLock();
+		this.drainScheduled = new AtomicBoolean();
+		this.drainTask = new Runnable() {
+			@Override
+			public void run() {
+				evictionLock.lock();
+				try {
+					drainReadBuffers();
+				} finally {
+					drainScheduled.set(false);
+					evictionLock.unlock();
+				}
+			}
+		};
+		this.executor = ForkJoinPool.commonPool();
+		this.size = 1024;   // 默认缓存上限为1024，与LruCache相同
+	}
+
+	@Override
+	public String getId() {
+		return delegate.getId();
+	}
+
+	@Override
+	public int getSize() {
+		return data.size();
+	}
+
+	public void setSize(int size) {
+		evictionLock.lock();
+		try {
+			this.size = size;
+			evictIfNecessary();
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	// 回放访问记录的线程池，默认使用ForkJoinPool.commonPool()
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	@Override
+	public void putObject(Object key, Object value) {
+		evictionLock.lock();
+		try {
+			drainReadBuffers();
+			Node node = data.get(key);
+			if (node != null) {
+				node.value = value;
+				moveToTail(node);
+			} else {
+				node = new Node(key, value);
+				data.put(key, node);
+				linkLast(node);
+				evictIfNecessary();
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	@Override
+	public Object getObject(Object key) {
+		Node node = data.get(key);
+		if (node == null) {
+			return null;
+		}
+		Object value = node.value;
+		afterRead(node);
+		return value;
+	}
+
+	@Override
+	public Object removeObject(Object key) {
+		evictionLock.lock();
+		try {
+			Node node = data.remove(key);
+			if (node == null) {
+				return null;
+			}
+			unlink(node);
+			return node.value;
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	@Override
+	public void clear() {
+		evictionLock.lock();
+		try {
+			// 缓冲区中可能还有这些节点的访问记录，标记为已删除后回放时会被忽略
+			for (Node node = head; node != null; node = node.next) {
+				node.alive = false;
+			}
+			head = null;
+			tail = null;
+			data.clear();
+			for (ReadBuffer buffer : readBuffers) {
+				buffer.clear();
+			}
+			delegate.clear();
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	@Override
+	public ReadWriteLock getReadWriteLock() {
+		return null;
+	}
+
+	@Override
+	public int hashCode() {
+		return delegate.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return delegate.equals(obj);
+	}
+
+	// 访问记录的缓冲与回放
+	// [start]
+	private void afterRead(Node node) {
+		ReadBuffer buffer = readBuffers[bufferIndex()];
+		if (buffer.offer(node) >= DRAIN_THRESHOLD) {
+			scheduleDrain();
+		}
+	}
+
+	// 按线程选择缓冲区，同一个线程总是写入同一个缓冲区，不同线程之间很少竞争
+	private static int bufferIndex() {
+		int h = (int) Thread.currentThread().getId() * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & (READ_BUFFERS - 1);
+	}
+
+	private void scheduleDrain() {
+		if (drainScheduled.compareAndSet(false, true)) {
+			try {
+				executor.execute(drainTask);
+			} catch (RejectedExecutionException e) {
+				// 线程池拒绝执行时，由当前线程尝试回放，获取不到锁时由持有锁的写操作回放
+				if (evictionLock.tryLock()) {
+					try {
+						drainReadBuffers();
+					} finally {
+						drainScheduled.set(false);
+						evictionLock.unlock();
+					}
+				} else {
+					drainScheduled.set(false);
+				}
+			}
+		}
+	}
+
+	// 调用方必须持有evictionLock
+	private void drainReadBuffers() {
+		for (ReadBuffer buffer : readBuffers) {
+			buffer.drain(this);
+		}
+	}
+
+	// 调用方必须持有evictionLock
+	private void onAccess(Node node) {
+		if (node.alive) {
+			moveToTail(node);
+		}
+	}
+	// [end]
+
+	// LRU链表操作，调用方必须持有evictionLock
+	// [start]
+	private void evictIfNecessary() {
+		while (data.size() > size && head != null) {
+			Node eldest = head;
+			unlink(eldest);
+			data.remove(eldest.key, eldest);
+		}
+	}
+
+	private void linkLast(Node node) {
+		node.prev = tail;
+		node.next = null;
+		if (tail == null) {
+			head = node;
+		} else {
+			tail.next = node;
+		}
+		tail = node;
+	}
+
+	private void unlink(Node node) {
+		if (node.prev == null) {
+			head = node.next;
+		} else {
+			node.prev.next = node.next;
+		}
+		if (node.next == null) {
+			tail = node.prev;
+		} else {
+			node.next.prev = node.prev;
+		}
+		node.prev = null;
+		node.next = null;
+		node.alive = false;
+	}
+
+	private void moveToTail(Node node) {
+		if (node == tail) {
+			return;
+		}
+		if (node.prev == null) {
+			head = node.next;
+		} else {
+			node.prev.next = node.next;
+		}
+		node.next.prev = node.prev;
+		linkLast(node);
+	}
+	// [end]
+
+	private static int ceilingPowerOfTwo(int x) {
+		return x <= 1 ? 1 : Integer.highestOneBit(x - 1) << 1;
+	}
+
+	// 缓存项，prev和next只在持有evictionLock时读写
+	static final class Node {
+		final Object key;
+		volatile Object value;
+		volatile boolean alive;   // 已从缓存中删除的节点为false
+		Node prev;
+		Node next;
+
+		Node(Object key, Object value) {
+			this.key = key;
+			this.value = value;
+			this.alive = true;
+		}
+	}
+
+	/**
+	 * 记录访问过的节点的环形缓冲区，多个线程写入，持有evictionLock的线程读取
+	 * 缓冲区满或者写入时发生竞争，直接丢弃该次访问记录，LRU顺序是近似的
+	 */
+	static final class ReadBuffer {
+		private final AtomicReferenceArray<Node> slots = new AtomicReferenceArray<Node>(READ_BUFFER_SIZE);
+		private final AtomicLong writeCounter = new AtomicLong();
+		private volatile long readCounter;
+
+		// 返回写入之后缓冲区中待回放的记录数
+		int offer(Node node) {
+			long read = readCounter;
+			long write = writeCounter.get();
+			long pending = write - read;
+			if (pending >= READ_BUFFER_SIZE) {
+				return READ_BUFFER_SIZE;
+			}
+			if (writeCounter.compareAndSet(write, write + 1)) {
+				slots.lazySet((int) (write & READ_BUFFER_MASK), node);
+				return (int) pending + 1;
+			}
+			return (int) pending;
+		}
+
+		void drain(ConcurrentLruCache cache) {
+			long read = readCounter;
+			long write = writeCounter.get();
+			for (; read < write; read++) {
+				int index = (int) (read & READ_BUFFER_MASK);
+				Node node = slots.get(index);
+				if (node == null) {
+					// 写入线程已经占用了位置但还没有写入节点，下次回放时再处理
+					break;
+				}
+				slots.lazySet(index, null);
+				cache.onAccess(node);
+			}
+			readCounter = read;
+		}
+
+		void clear() {
+			long read = readCounter;
+			long write = writeCounter.get();
+			for (; read < write; read++) {
+				int index = (int) (read & READ_BUFFER_MASK);
+				if (slots.get(index) == null) {
+					break;
+				}
+				slots.lazySet(index, null);
+			}
+			readCounter = read;
+		}
+	}
+}
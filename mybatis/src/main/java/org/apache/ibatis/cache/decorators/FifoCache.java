@@ -1,10 +1,12 @@
 package org.apache.ibatis.cache.decorators;
 
 import java.util.Deque;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.EvictionListener;
 
 /**
  * 先入先出版本缓存装饰器
@@ -12,7 +14,7 @@ import org.apache.ibatis.cache.Cache;
  *      系统需要按照一定的规则清理缓存
  * 数据结构: 基于队列
  */
-public class FifoCache implements Cache {
+public class FifoCache implements Cache, EvictionListener {
 
 	private final Cache delegate;
 	private Deque<Object> keyList;  	// 用于记录进入缓存的先后顺序，使用的是LinkedList<Object>类型的集合对象
@@ -56,6 +58,17 @@ public class FifoCache implements Cache {
 	public int getSize() {
 		return delegate.getSize();
 	}
+
+	// 被装饰的Cache对象已经删除了该缓存项(例如超出字节数预算)，从队列中删除该key(同一个key可能被添加过多次)
+	@Override
+	public void onEviction(Object key) {
+		Iterator<Object> iterator = keyList.iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().equals(key)) {
+				iterator.remove();
+			}
+		}
+	}
 	
 	public void setSize(int size) {
 		this.size = size;
@@ -70,7 +83,7 @@ public class FifoCache implements Cache {
 	private void cycleKeyList(Object key) {
 		keyList.addLast(key);
 		if (keyList.size() > size) {
-			Object oldestKey = keyList.getLast();
+			Object oldestKey = keyList.removeFirst();
 			delegate.removeObject(oldestKey);
 		}
 	}
@@ -1,5 +1,6 @@
 package org.apache.ibatis.cache.decorators;
 
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
@@ -16,8 +17,9 @@ public class LoggingCache implements Cache {
 
 	private Log log;
 	private Cache delegate;
-	protected int requests = 0;
-	protected int hits = 0;	
+	// 底层缓存可以并发访问时不会添加SynchronizedCache，计数器需要是线程安全的
+	protected final AtomicLong requests = new AtomicLong();
+	protected final AtomicLong hits = new AtomicLong();
 	
 	public LoggingCache(Cache delegate) {
 		this.delegate = delegate;
@@ -36,10 +38,10 @@ public class LoggingCache implements Cache {
 
 	@Override
 	public Object getObject(Object key) {
-		requests++;
+		requests.incrementAndGet();
 		final Object value = delegate.getObject(key);
 		if (value != null) {
-			hits++;
+			hits.incrementAndGet();
 		}
 		if (log.isDebugEnabled()) {
 			log.debug("Cache Hit Ratio [" + getId() + "]: " + getHitRatio());
@@ -78,6 +80,6 @@ public class LoggingCache implements Cache {
 	}
 
 	private double getHitRatio() {
-		return (double) hits / (double) requests;
+		return (double) hits.get() / (double) requests.get();
 	}
 }
@@ -5,12 +5,13 @@ import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.EvictionListener;
 
 /**
  * LruCache: 根据最少使用算法 (Least Recently Used, LRU) 进行缓存清理的装饰器
  * 数据结构: 基于LinkedHashMap的removeEldestEntry()方法，LRU 算法实际上是 LinkedHashMap 中实现的
  */
-public class LruCache implements Cache {
+public class LruCache implements Cache, EvictionListener {
 
 	private final Cache delegate;
 	private Map<Object, Object> keyMap;
@@ -51,8 +52,9 @@ public class LruCache implements Cache {
 
 	@Override
 	public void putObject(Object key, Object value) {
-		delegate.putObject(key, value);
+		// 先记录key再添加缓存项，被装饰的WeightedCache不缓存该结果时可以通过onEviction()删除刚记录的key
 		cycleKeyList(key);
+		delegate.putObject(key, value);
 	}
 
 	@Override
@@ -75,6 +77,12 @@ public class LruCache implements Cache {
 		keyMap.clear();
 	}
 
+	// 被装饰的Cache对象已经删除了该缓存项(例如超出字节数预算)，不再占用LRU的名额
+	@Override
+	public void onEviction(Object key) {
+		keyMap.remove(key);
+	}
+
 	@Override
 	public ReadWriteLock getReadWriteLock() {
 		return null;
@@ -0,0 +1,188 @@
+package org.apache.ibatis.cache.decorators;
+
+import java.lang.ref.Reference;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+
+/**
+ * 估算缓存值在堆中占用的字节数，用于WeightedCache按字节数清理缓存
+ * 只需要数量级正确，按64位JVM估算，对象头16字节、引用8字节、按8字节对齐:
+ * 1) byte[](SerializedCache序列化后的结果)直接使用数组长度
+ * 2) 字符串、包装类型、日期等常见类型使用固定的估算值
+ * 3) 集合、Map和对象数组最多估算SAMPLE_SIZE个元素，再按元素个数推算总大小，
+ *    避免每次缓存一个几万行的List时都遍历全部结果对象
+ * 4) 其他对象通过Reflector找到所有可读属性，累加各个属性值的大小
+ * 同一个对象只计算一次，超过MAX_DEPTH层的对象不再展开
+ */
+final class RetainedSizeEstimator {
+
+	private static final int OBJECT_HEADER = 16;
+	private static final int REFERENCE = 8;
+	private static final int SAMPLE_SIZE = 32;
+	private static final int MAX_DEPTH = 16;
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+	private static final ReflectorFactory REFLECTOR_FACTORY = new DefaultReflectorFactory();
+
+	private final IdentityHashMap<Object, Object> visited = new IdentityHashMap<Object, Object>();
+
+	private RetainedSizeEstimator() {
+	}
+
+	static long estimate(Object value) {
+		return new RetainedSizeEstimator().sizeOf(value, 0);
+	}
+
+	private long sizeOf(Object value, int depth) {
+		if (value == null || value instanceof Class || value instanceof Enum) {
+			return 0;
+		}
+		if (visited.put(value, Boolean.TRUE) != null) {
+			return 0;
+		}
+		Class<?> type = value.getClass();
+		if (value instanceof byte[]) {
+			return align(OBJECT_HEADER + ((byte[]) value).length);
+		} else if (value instanceof String) {
+			// String对象本身加上char[]
+			return align(OBJECT_HEADER + REFERENCE + 8) + align(OBJECT_HEADER + 2L * ((String) value).length());
+		} else if (value instanceof Long || value instanceof Double) {
+			return align(OBJECT_HEADER + 8);
+		} else if (value instanceof Number && !(value instanceof BigDecimal) && !(value instanceof BigInteger)
+				|| value instanceof Boolean || value instanceof Character) {
+			return OBJECT_HEADER;
+		} else if (value instanceof BigInteger) {
+			return align(OBJECT_HEADER + 24) + align(OBJECT_HEADER + ((BigInteger) value).bitLength() / 8 + 4);
+		} else if (value instanceof BigDecimal) {
+			return align(OBJECT_HEADER + 32) + align(OBJECT_HEADER + ((BigDecimal) value).precision() / 2 + 4);
+		} else if (value instanceof java.util.Date) {
+			return align(OBJECT_HEADER + REFERENCE + 8);
+		} else if (type.isArray()) {
+			return arraySize(value, type.getComponentType(), depth);
+		} else if (value instanceof Reference) {
+			return align(OBJECT_HEADER + 4 * REFERENCE) + sizeOf(((Reference<?>) value).get(), depth + 1);
+		} else if (value instanceof Collection) {
+			return collectionSize((Collection<?>) value, depth);
+		} else if (value instanceof Map) {
+			return mapSize((Map<?, ?>) value, depth);
+		} else if (type.getName().startsWith("java.") || type.getName().startsWith("javax.")) {
+			// 其他JDK类型不展开
+			return align(OBJECT_HEADER + 2 * REFERENCE);
+		} else {
+			return beanSize(value, type, depth);
+		}
+	}
+
+	private long arraySize(Object array, Class<?> componentType, int depth) {
+		int length = Array.getLength(array);
+		if (componentType.isPrimitive()) {
+			return align(OBJECT_HEADER + (long) length * primitiveSize(componentType));
+		}
+		long size = align(OBJECT_HEADER + (long) length * REFERENCE);
+		if (length == 0 || depth >= MAX_DEPTH) {
+			return size;
+		}
+		int samples = Math.min(length, SAMPLE_SIZE);
+		long sampled = 0;
+		for (int i = 0; i < samples; i++) {
+			sampled += sizeOf(Array.get(array, i * (length / samples)), depth + 1);
+		}
+		return size + extrapolate(sampled, samples, length);
+	}
+
+	private long collectionSize(Collection<?> collection, int depth) {
+		int length = collection.size();
+		// ArrayList等只需要一个引用，LinkedList、HashSet等每个元素还有一个节点对象
+		long perElement = collection instanceof RandomAccess ? REFERENCE : align(OBJECT_HEADER + 3 * REFERENCE);
+		long size = align(OBJECT_HEADER + 4 * REFERENCE) + length * perElement;
+		if (length == 0 || depth >= MAX_DEPTH) {
+			return size;
+		}
+		int samples = Math.min(length, SAMPLE_SIZE);
+		long sampled = 0;
+		if (collection instanceof List && collection instanceof RandomAccess) {
+			List<?> list = (List<?>) collection;
+			for (int i = 0; i < samples; i++) {
+				sampled += sizeOf(list.get(i * (length / samples)), depth + 1);
+			}
+		} else {
+			Iterator<?> iterator = collection.iterator();
+			for (int i = 0; i < samples && iterator.hasNext(); i++) {
+				sampled += sizeOf(iterator.next(), depth + 1);
+			}
+		}
+		return size + extrapolate(sampled, samples, length);
+	}
+
+	private long mapSize(Map<?, ?> map, int depth) {
+		int length = map.size();
+		long size = align(OBJECT_HEADER + 6 * REFERENCE) + align((long) length * 4 / 3 * REFERENCE)
+				+ length * align(OBJECT_HEADER + 3 * REFERENCE + 4);
+		if (length == 0 || depth >= MAX_DEPTH) {
+			return size;
+		}
+		int samples = Math.min(length, SAMPLE_SIZE);
+		long sampled = 0;
+		Iterator<? extends Map.Entry<?, ?>> iterator = map.entrySet().iterator();
+		for (int i = 0; i < samples && iterator.hasNext(); i++) {
+			Map.Entry<?, ?> entry = iterator.next();
+			sampled += sizeOf(entry.getKey(), depth + 1) + sizeOf(entry.getValue(), depth + 1);
+		}
+		return size + extrapolate(sampled, samples, length);
+	}
+
+	// 通过Reflector记录的可读属性估算JavaBean的大小，每个属性按一个字段计算
+	private long beanSize(Object bean, Class<?> type, int depth) {
+		Reflector reflector = REFLECTOR_FACTORY.findForClass(type);
+		String[] properties = reflector.getGetablePropertyNames();
+		long size = align(OBJECT_HEADER + (long) properties.length * REFERENCE);
+		if (depth >= MAX_DEPTH) {
+			return size;
+		}
+		for (String property : properties) {
+			Class<?> propertyType = reflector.getGetterType(property);
+			if (propertyType.isPrimitive()) {
+				continue;
+			}
+			try {
+				Invoker invoker = reflector.getGetInvoker(property);
+				size += sizeOf(invoker.invoke(bean, NO_ARGUMENTS), depth + 1);
+			} catch (Exception e) {
+				// 属性不可读时只计算引用本身
+			}
+		}
+		return size;
+	}
+
+	// 元素个数超过SAMPLE_SIZE时按样本的平均值推算，样本中重复出现的对象不计算大小，推算结果偏小但数量级正确
+	private static long extrapolate(long sampled, int samples, int length) {
+		return samples == length ? sampled : sampled / samples * length;
+	}
+
+	private static int primitiveSize(Class<?> type) {
+		if (type == long.class || type == double.class) {
+			return 8;
+		} else if (type == int.class || type == float.class) {
+			return 4;
+		} else if (type == short.class || type == char.class) {
+			return 2;
+		} else {
+			return 1;
+		}
+	}
+
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+}
@@ -12,7 +12,7 @@ public class ScheduledCache implements Cache {
 
 	private Cache delegate;        // 底层被装饰的Cache对象
 	protected long clearInterval;  // 两次缓存清理之间的时间间隔
-	protected long lastClear;      // 最近一次清理的时间戳	
+	protected volatile long lastClear; // 最近一次清理的时间戳	
 	
 	public ScheduledCache(Cache delegate) {
 		this.delegate = delegate;
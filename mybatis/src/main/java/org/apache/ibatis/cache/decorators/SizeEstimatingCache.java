@@ -0,0 +1,87 @@
+package org.apache.ibatis.cache.decorators;
+
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+
+/**
+ * 在获取命名空间的锁之前估算缓存项字节数的装饰器
+ * 作用: RetainedSizeEstimator需要遍历缓存值的对象图，如果在WeightedCache中估算，就会在持有SynchronizedCache
+ *      的锁期间遍历，阻塞同一命名空间的其他读写操作；CacheBuilder将该装饰器添加在最外层，
+ *      先估算字节数，再通过线程本地变量交给同一个线程随后调用的WeightedCache.putObject()
+ * readWrite为true时缓存值在锁内被SerializedCache序列化为byte[]，WeightedCache直接使用其长度，不需要该装饰器
+ */
+public class SizeEstimatingCache implements Cache {
+
+	private static final ThreadLocal<Estimate> ESTIMATE = new ThreadLocal<Estimate>();
+
+	private final Cache delegate;
+
+	public SizeEstimatingCache(Cache delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public String getId() {
+		return delegate.getId();
+	}
+
+	@Override
+	public int getSize() {
+		return delegate.getSize();
+	}
+
+	@Override
+	public void putObject(Object key, Object value) {
+		ESTIMATE.set(new Estimate(key, value, RetainedSizeEstimator.estimate(key) + RetainedSizeEstimator.estimate(value)));
+		try {
+			delegate.putObject(key, value);
+		} finally {
+			ESTIMATE.remove();
+		}
+	}
+
+	@Override
+	public Object getObject(Object key) {
+		return delegate.getObject(key);
+	}
+
+	@Override
+	public Object removeObject(Object key) {
+		return delegate.removeObject(key);
+	}
+
+	@Override
+	public void clear() {
+		delegate.clear();
+	}
+
+	@Override
+	public ReadWriteLock getReadWriteLock() {
+		return null;
+	}
+
+	/**
+	 * 返回当前线程为该缓存项预先估算的字节数，没有预先估算(或者缓存值已被中间的装饰器替换)时返回-1
+	 */
+	static long takeEstimate(Object key, Object value) {
+		Estimate estimate = ESTIMATE.get();
+		if (estimate == null || estimate.key != key || estimate.value != value) {
+			return -1;
+		}
+		ESTIMATE.remove();
+		return estimate.weight;
+	}
+
+	private static final class Estimate {
+		private final Object key;
+		private final Object value;
+		private final long weight;
+
+		Estimate(Object key, Object value, long weight) {
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+}
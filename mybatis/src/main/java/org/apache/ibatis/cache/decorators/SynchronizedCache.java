@@ -1,6 +1,7 @@
 package org.apache.ibatis.cache.decorators;
 
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.ibatis.cache.Cache;
 
@@ -8,11 +9,14 @@ import org.apache.ibatis.cache.Cache;
 /**
  * 同步版本的缓存装饰器
  * 作用: 为Cache提供了同步功能
- * 数据结构: 使用 synchronized
+ * 数据结构: 使用 ReentrantLock
+ * 不使用synchronized: 被装饰的Cache可能在持有锁期间阻塞(例如BlockingCache、序列化)，在JDK 21的虚拟线程中，
+ * synchronized内的阻塞会把虚拟线程固定(pin)在载体线程上，ReentrantLock则会让出载体线程
  */
 public class SynchronizedCache implements Cache {
 
 	private Cache delegate;
+	private final ReentrantLock lock = new ReentrantLock();
 	
 	public SynchronizedCache(Cache delegate) {
 		this.delegate = delegate;
@@ -24,28 +28,53 @@ public class SynchronizedCache implements Cache {
 	}
 
 	@Override
-	public synchronized void putObject(Object key, Object value) {
-		delegate.putObject(key, value);
+	public void putObject(Object key, Object value) {
+		lock.lock();
+		try {
+			delegate.putObject(key, value);
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	@Override
-	public synchronized Object getObject(Object key) {
-		return delegate.getObject(key);
+	public Object getObject(Object key) {
+		lock.lock();
+		try {
+			return delegate.getObject(key);
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	@Override
-	public synchronized Object removeObject(Object key) {
-		return delegate.removeObject(key);
+	public Object removeObject(Object key) {
+		lock.lock();
+		try {
+			return delegate.removeObject(key);
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	@Override
-	public synchronized void clear() {
-		delegate.clear();
+	public void clear() {
+		lock.lock();
+		try {
+			delegate.clear();
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	@Override
-	public synchronized int getSize() {
-		return delegate.getSize();
+	public int getSize() {
+		lock.lock();
+		try {
+			return delegate.getSize();
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	@Override
@@ -0,0 +1,241 @@
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.EvictionListener;
+
+/**
+ * TinyLfuCache: 根据W-TinyLFU算法进行缓存清理的装饰器
+ * 作用: 扫描大量数据的查询会把LruCache、FifoCache中经常被访问的缓存项挤出去，
+ *      W-TinyLFU只有在新缓存项的访问频率高于将要淘汰的缓存项时才允许它进入主缓存区
+ * 数据结构:
+ * 1) 窗口区(window): 容量约为总容量的1%的LRU，新缓存项先进入窗口区，用于容纳突发的新数据
+ * 2) 主缓存区(main): 分段LRU，分为试用区(probation)和保护区(protected)，保护区约占主缓存区的80%，
+ *    试用区中的缓存项再次被访问时晋升到保护区
+ * 3) 频率统计(sketch): 4位计数器的Count-Min Sketch，记录每个key近期的访问频率，
+ *    累计记录次数达到容量的10倍时所有计数器减半(衰减)，使旧的访问频率逐渐失效
+ * 窗口区满时，窗口区中最久未被访问的缓存项(候选者)与试用区中最久未被访问的缓存项(淘汰者)比较访问频率，
+ * 频率较低的一个被清理
+ */
+public class TinyLfuCache implements Cache, EvictionListener {
+
+	private final Cache delegate;
+	private Map<Object, Object> window;      // 以下三个都是access-order的LinkedHashMap，只记录key
+	private Map<Object, Object> probation;
+	private Map<Object, Object> protectedKeys;
+	private FrequencySketch sketch;
+	private int maxWindow;
+	private int maxProtected;
+	private int maxMain;
+
+	public TinyLfuCache(Cache delegate) {
+		this.delegate = delegate;
+		setSize(1024);   // 默认缓存上限为1024，与LruCache相同
+	}
+
+	@Override
+	public String getId() {
+		return delegate.getId();
+	}
+
+	@Override
+	public int getSize() {
+		return delegate.getSize();
+	}
+
+	public void setSize(final int size) {
+		int maximum = Math.max(size, 2);
+		this.maxWindow = Math.max(1, maximum / 100);
+		this.maxMain = maximum - maxWindow;
+		this.maxProtected = Math.max(1, maxMain * 4 / 5);
+		this.window = new LinkedHashMap<Object, Object>(16, .75F, true);
+		this.probation = new LinkedHashMap<Object, Object>(16, .75F, true);
+		this.protectedKeys = new LinkedHashMap<Object, Object>(16, .75F, true);
+		this.sketch = new FrequencySketch(maximum);
+	}
+
+	@Override
+	public void putObject(Object key, Object value) {
+		// 先记录key再添加缓存项，被装饰的WeightedCache不缓存该结果时可以通过onEviction()删除刚记录的key
+		sketch.increment(key);
+		if (!onHit(key)) {
+			window.put(key, key);
+			evictFromWindow();
+		}
+		delegate.putObject(key, value);
+	}
+
+	@Override
+	public Object getObject(Object key) {
+		sketch.increment(key);
+		Object value = delegate.getObject(key);
+		if (value != null) {
+			onHit(key);
+		}
+		return value;
+	}
+
+	@Override
+	public Object removeObject(Object key) {
+		onEviction(key);
+		return delegate.removeObject(key);
+	}
+
+	// 被装饰的Cache对象已经删除了该缓存项(例如超出字节数预算)，从各个区域中删除该key，访问频率保留
+	@Override
+	public void onEviction(Object key) {
+		if (window.remove(key) == null && probation.remove(key) == null) {
+			protectedKeys.remove(key);
+		}
+	}
+
+	@Override
+	public void clear() {
+		delegate.clear();
+		window.clear();
+		probation.clear();
+		protectedKeys.clear();
+		sketch.clear();
+	}
+
+	@Override
+	public ReadWriteLock getReadWriteLock() {
+		return null;
+	}
+
+	// 调整已有缓存项在各个区域中的位置，key不在任何区域中时返回false
+	private boolean onHit(Object key) {
+		if (window.get(key) != null || protectedKeys.get(key) != null) {
+			// LinkedHashMap.get()已经将key移动到了末尾
+			return true;
+		}
+		if (probation.remove(key) != null) {
+			// 试用区的缓存项再次被访问，晋升到保护区，保护区超出上限时将最久未被访问的缓存项降级到试用区
+			protectedKeys.put(key, key);
+			if (protectedKeys.size() > maxProtected) {
+				Object demoted = removeEldest(protectedKeys);
+				probation.put(demoted, demoted);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private void evictFromWindow() {
+		if (window.size() <= maxWindow) {
+			return;
+		}
+		Object candidate = removeEldest(window);
+		if (probation.size() + protectedKeys.size() < maxMain) {
+			probation.put(candidate, candidate);
+			return;
+		}
+		Map<Object, Object> victims = probation.isEmpty() ? protectedKeys : probation;
+		Object victim = victims.keySet().iterator().next();
+		// 候选者的访问频率高于淘汰者时才允许进入主缓存区，频率相同时保留原有的缓存项，避免扫描数据替换热点数据
+		if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+			victims.remove(victim);
+			delegate.removeObject(victim);
+			probation.put(candidate, candidate);
+		} else {
+			delegate.removeObject(candidate);
+		}
+	}
+
+	private static Object removeEldest(Map<Object, Object> keys) {
+		Iterator<Object> iterator = keys.keySet().iterator();
+		Object eldest = iterator.next();
+		iterator.remove();
+		return eldest;
+	}
+
+	/**
+	 * 4位计数器的Count-Min Sketch，每个long中保存16个计数器，每个key对应4个计数器，取其中的最小值作为访问频率
+	 */
+	static final class FrequencySketch {
+
+		private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+		private static final long RESET_MASK = 0x7777777777777777L;
+
+		private final long[] table;
+		private final int tableMask;
+		private final int sampleSize;    // 累计记录次数达到该值时衰减
+		private int additions;
+
+		FrequencySketch(int maximumSize) {
+			int length = ceilingPowerOfTwo(Math.min(Math.max(maximumSize, 16), 1 << 30));
+			this.table = new long[length];
+			this.tableMask = length - 1;
+			this.sampleSize = maximumSize <= Integer.MAX_VALUE / 10 ? 10 * maximumSize : Integer.MAX_VALUE;
+		}
+
+		int frequency(Object key) {
+			int hash = spread(key.hashCode());
+			int start = (hash & 3) << 2;
+			int frequency = Integer.MAX_VALUE;
+			for (int i = 0; i < 4; i++) {
+				int index = indexOf(hash, i);
+				int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+				frequency = Math.min(frequency, count);
+			}
+			return frequency;
+		}
+
+		void increment(Object key) {
+			int hash = spread(key.hashCode());
+			int start = (hash & 3) << 2;
+			boolean added = false;
+			for (int i = 0; i < 4; i++) {
+				added |= incrementAt(indexOf(hash, i), start + i);
+			}
+			if (added && ++additions >= sampleSize) {
+				reset();
+			}
+		}
+
+		void clear() {
+			Arrays.fill(table, 0L);
+			additions = 0;
+		}
+
+		// 计数器未达到上限15时加1
+		private boolean incrementAt(int index, int counter) {
+			int offset = counter << 2;
+			long mask = 0xfL << offset;
+			if ((table[index] & mask) != mask) {
+				table[index] += 1L << offset;
+				return true;
+			}
+			return false;
+		}
+
+		// 所有计数器减半
+		private void reset() {
+			for (int i = 0; i < table.length; i++) {
+				table[i] = (table[i] >>> 1) & RESET_MASK;
+			}
+			additions >>>= 1;
+		}
+
+		private int indexOf(int hash, int depth) {
+			long h = (hash + SEEDS[depth]) * SEEDS[depth];
+			h += h >>> 32;
+			return ((int) h) & tableMask;
+		}
+
+		private static int spread(int x) {
+			x = ((x >>> 16) ^ x) * 0x45d9f3b;
+			x = ((x >>> 16) ^ x) * 0x45d9f3b;
+			return (x >>> 16) ^ x;
+		}
+
+		private static int ceilingPowerOfTwo(int x) {
+			return x <= 1 ? 1 : Integer.highestOneBit(x - 1) << 1;
+		}
+	}
+}
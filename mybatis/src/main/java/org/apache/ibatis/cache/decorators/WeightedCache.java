@@ -0,0 +1,183 @@
+package org.apache.ibatis.cache.decorators;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMemoryBudget;
+import org.apache.ibatis.cache.EvictionListener;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * WeightedCache: 按缓存项估算的字节数进行缓存清理的装饰器
+ * 作用: <cache size="1024">只限制缓存项的个数，一个缓存项可能是几万行结果组成的List，
+ *      该装饰器按字节数限制每个命名空间的缓存(maxBytes)，同时可以受所有命名空间共享的预算(CacheMemoryBudget)限制
+ * 数据结构: access-order的LinkedHashMap记录每个key的字节数，超出预算时清理最久未被访问的缓存项
+ *
+ * 1) CacheBuilder将该装饰器直接添加在PerpetualCache外层，LruCache等淘汰策略清理缓存项时也会经过该装饰器，
+ *    字节数的统计始终准确；readOnly为false时缓存值是SerializedCache序列化后的byte[]，直接使用其长度，
+ *    否则使用SizeEstimatingCache在获取命名空间的锁之前估算的字节数
+ * 2) 按字节数清理缓存项时通知外层的淘汰策略(EvictionListener)，淘汰策略同步删除自己记录的key
+ * 3) 超出共享预算时只清理当前命名空间的缓存项，不会为了其他命名空间获取它们的锁；
+ *    当前命名空间已经清空仍然超出预算时，本次不缓存，并请求其他命名空间回收字节数，
+ *    其他命名空间下一次被访问时(已持有自己的锁)清理最久未被访问的缓存项
+ * 4) 单个缓存项超过预算时不缓存
+ */
+public class WeightedCache implements Cache {
+
+	private static final Log log = LogFactory.getLog(WeightedCache.class);
+
+	private final Cache delegate;
+	private final Map<Object, Long> weights;   // key -> 估算的字节数
+	private long usedBytes;                     // 当前命名空间缓存项的字节数之和
+	private long maxBytes;                      // 当前命名空间的字节数上限，小于等于0时不限制
+	private CacheMemoryBudget memoryBudget;     // 所有命名空间共享的预算，为空时不限制
+	private final List<EvictionListener> evictionListeners = new ArrayList<EvictionListener>();
+
+	public WeightedCache(Cache delegate) {
+		this.delegate = delegate;
+		this.weights = new LinkedHashMap<Object, Long>(16, .75F, true);
+	}
+
+	public void addEvictionListener(EvictionListener listener) {
+		evictionListeners.add(listener);
+	}
+
+	@Override
+	public String getId() {
+		return delegate.getId();
+	}
+
+	@Override
+	public int getSize() {
+		return delegate.getSize();
+	}
+
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public void setMemoryBudget(CacheMemoryBudget memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	public long getUsedBytes() {
+		return usedBytes;
+	}
+
+	@Override
+	public void putObject(Object key, Object value) {
+		reclaimIfRequested();
+		Long previous = weights.remove(key);
+		if (previous != null) {
+			release(previous);
+		}
+		long weight = SizeEstimatingCache.takeEstimate(key, value);
+		if (weight < 0) {
+			weight = RetainedSizeEstimator.estimate(key) + RetainedSizeEstimator.estimate(value);
+		}
+		if (maxBytes > 0 && weight > maxBytes || memoryBudget != null && weight > memoryBudget.getMaxBytes()) {
+			skip(key, weight);
+			return;
+		}
+		// 先按当前命名空间的上限清理
+		while (maxBytes > 0 && usedBytes + weight > maxBytes) {
+			evictEldest();
+		}
+		// 再向共享预算申请，申请不到时继续清理当前命名空间的缓存项
+		if (memoryBudget != null) {
+			while (!memoryBudget.tryReserve(weight)) {
+				if (weights.isEmpty()) {
+					memoryBudget.requestReclaim(weight);
+					skip(key, weight);
+					return;
+				}
+				evictEldest();
+			}
+		}
+		delegate.putObject(key, value);
+		weights.put(key, weight);
+		usedBytes += weight;
+	}
+
+	@Override
+	public Object getObject(Object key) {
+		reclaimIfRequested();
+		weights.get(key);   // 调整LinkedHashMap中记录的访问顺序
+		return delegate.getObject(key);
+	}
+
+	@Override
+	public Object removeObject(Object key) {
+		Long weight = weights.remove(key);
+		if (weight != null) {
+			release(weight);
+		}
+		return delegate.removeObject(key);
+	}
+
+	@Override
+	public void clear() {
+		delegate.clear();
+		weights.clear();
+		release(usedBytes);
+	}
+
+	@Override
+	public ReadWriteLock getReadWriteLock() {
+		return null;
+	}
+
+	// 其他命名空间申请不到预算时，由当前命名空间清理缓存项归还
+	private void reclaimIfRequested() {
+		if (memoryBudget == null || usedBytes == 0 || !memoryBudget.hasPendingReclaim()) {
+			return;
+		}
+		long target = usedBytes - memoryBudget.claimReclaim(usedBytes);
+		while (usedBytes > target && !weights.isEmpty()) {
+			evictEldest();
+		}
+	}
+
+	private void evictEldest() {
+		Iterator<Map.Entry<Object, Long>> iterator = weights.entrySet().iterator();
+		Map.Entry<Object, Long> eldest = iterator.next();
+		iterator.remove();
+		delegate.removeObject(eldest.getKey());
+		release(eldest.getValue());
+		notifyEviction(eldest.getKey());
+	}
+
+	private void notifyEviction(Object key) {
+		for (EvictionListener listener : evictionListeners) {
+			listener.onEviction(key);
+		}
+	}
+
+	private void release(long weight) {
+		usedBytes -= weight;
+		if (memoryBudget != null) {
+			memoryBudget.release(weight);
+		}
+	}
+
+	// 不缓存该结果，同时删除之前缓存的旧值，淘汰策略也不再记录该key
+	private void skip(Object key, long weight) {
+		delegate.removeObject(key);
+		notifyEviction(key);
+		if (log.isDebugEnabled()) {
+			log.debug("Cache [" + getId() + "] skipped an entry of about " + weight + " bytes, used " + usedBytes
+					+ " of " + (maxBytes > 0 ? maxBytes + " bytes" : "unlimited")
+					+ (memoryBudget != null ? ", global " + memoryBudget.getUsedBytes() + " of " + memoryBudget.getMaxBytes() + " bytes" : ""));
+		}
+	}
+}
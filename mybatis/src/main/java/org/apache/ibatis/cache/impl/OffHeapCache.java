@@ -0,0 +1,487 @@
+package org.apache.ibatis.cache.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+
+/**
+ * 将缓存值序列化后保存在堆外内存中的基础Cache实现
+ * 作用: SerializedCache的byte[]保存在堆中，缓存几百MB数据时会进入老年代，增加GC停顿时间
+ * 数据结构:
+ * 1) 直接内存按slab(默认1MB的direct ByteBuffer)分配，总量不超过capacity，slab在第一次需要时才分配；
+ *    slabSize大于capacity时slab的大小取capacity，保证至少能分配一个slab且不超过capacity
+ * 2) 每个slab属于一个大小级别，被切分为相同大小的块(chunk)，块大小从64字节开始按1.25倍增长，直到slabSize，
+ *    序列化结果保存在能容纳它的最小的块中，每个缓存项浪费的空间不超过约20%，超过slabSize的值不缓存
+ * 3) 堆中只保留索引: key(CacheKey，按其哈希值查找) -> slab、块的位置和序列化结果的长度
+ * 4) 淘汰: 没有空闲块且直接内存已达上限时，先回收其他级别中完全空闲的slab；
+ *    仍然没有时查看全局最久未被访问的缓存项，如果它属于当前级别则直接淘汰；
+ *    否则按它所属级别的LRU链表淘汰缓存项，直到空出一个完整的slab，重新分配给当前级别，
+ *    这样各个级别占用的slab数量会随访问情况调整，不会固定在最初的分配上。
+ *    配置了size时，缓存项个数超出上限后淘汰全局最久未被访问的缓存项；
+ *    <cache>节点的size属性同样作为缓存项个数的上限，同时配置了<property name="size">时以<property>为准
+ * 5) 与SerializedCache相同，putObject()时序列化，getObject()时反序列化，每次读取都得到一个新的副本
+ *
+ * 该类不是PerpetualCache，CacheBuilder不会为其添加SynchronizedCache等装饰器，并发访问由内部的锁保护，
+ * 序列化和反序列化在锁外进行
+ * 配置示例:
+ *  <cache type="OFF_HEAP">
+ *  	<property name="capacity" value="268435456"/>
+ *  	<property name="slabSize" value="1048576"/>
+ *  	<property name="size" value="100000"/>
+ *  </cache>
+ */
+public class OffHeapCache implements Cache {
+
+	private static final int MIN_CHUNK_SIZE = 64;
+	private static final double GROWTH_FACTOR = 1.25;
+
+	private final String id;
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private long capacity = 64L * 1024 * 1024;   // 直接内存的上限
+	private int slabSize = 1024 * 1024;          // 配置的每个slab的字节数
+	private int slabBytes;                       // 实际使用的slab字节数，slabSize与capacity中较小的值，也是单个缓存值的上限
+	private int size;                            // 缓存项个数的上限，小于等于0时不限制
+
+	private SizeClass[] sizeClasses;
+	private int maxSlabs;
+	private int allocatedSlabs;
+	private final ArrayDeque<Slab> freeSlabs = new ArrayDeque<Slab>();        // 已分配但没有属于任何级别的slab
+	private final Map<Object, Entry> index = new LinkedHashMap<Object, Entry>(16, .75F, true);  // access-order，用于按个数淘汰
+	private long usedBytes;                      // 所有缓存项序列化结果的字节数之和
+
+	public OffHeapCache(String id) {
+		this.id = id;
+		initSizeClasses();
+	}
+
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	// 以下三个属性可以通过<cache>节点下的<property>配置，修改时会清空缓存
+	// [start]
+	public void setCapacity(long capacity) {
+		if (capacity < MIN_CHUNK_SIZE) {
+			throw new CacheException("Off-heap cache capacity must be at least " + MIN_CHUNK_SIZE + " but was " + capacity);
+		}
+		lock.lock();
+		try {
+			this.capacity = capacity;
+			releaseSlabs();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void setSlabSize(int slabSize) {
+		if (slabSize < MIN_CHUNK_SIZE) {
+			throw new CacheException("Off-heap cache slab size must be at least " + MIN_CHUNK_SIZE + " but was " + slabSize);
+		}
+		lock.lock();
+		try {
+			this.slabSize = slabSize;
+			releaseSlabs();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void setSize(int size) {
+		lock.lock();
+		try {
+			this.size = size;
+			while (size > 0 && index.size() > size) {
+				evict(index.values().iterator().next());
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+	// [end]
+
+	public long getCapacity() {
+		return capacity;
+	}
+
+	public long getUsedBytes() {
+		lock.lock();
+		try {
+			return usedBytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getAllocatedBytes() {
+		lock.lock();
+		try {
+			return (long) allocatedSlabs * slabBytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void putObject(Object key, Object value) {
+		if (value != null && !(value instanceof Serializable)) {
+			throw new CacheException("OffHeapCache failed to make a copy of a non-serializable object: " + value);
+		}
+		byte[] bytes = serialize((Serializable) value);
+		lock.lock();
+		try {
+			Entry previous = index.get(key);
+			if (previous != null) {
+				evict(previous);
+			}
+			if (bytes.length > slabBytes) {
+				return;
+			}
+			while (size > 0 && index.size() >= size) {
+				evict(index.values().iterator().next());
+			}
+			SizeClass sizeClass = sizeClasses[sizeClassOf(bytes.length)];
+			Entry entry = allocate(sizeClass, key, bytes.length);
+			if (entry == null) {
+				return;
+			}
+			ByteBuffer buffer = entry.slab.buffer.duplicate();
+			buffer.position(entry.offset());
+			buffer.put(bytes);
+			index.put(key, entry);
+			sizeClass.lru.put(key, entry);
+			usedBytes += bytes.length;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Object getObject(Object key) {
+		byte[] bytes;
+		lock.lock();
+		try {
+			Entry entry = index.get(key);
+			if (entry == null) {
+				return null;
+			}
+			entry.slab.sizeClass.lru.get(key);   // 调整同级别LRU链表中的顺序
+			bytes = read(entry);
+		} finally {
+			lock.unlock();
+		}
+		return deserialize(bytes);
+	}
+
+	@Override
+	public Object removeObject(Object key) {
+		byte[] bytes;
+		lock.lock();
+		try {
+			Entry entry = index.get(key);
+			if (entry == null) {
+				return null;
+			}
+			bytes = read(entry);
+			evict(entry);
+		} finally {
+			lock.unlock();
+		}
+		return deserialize(bytes);
+	}
+
+	@Override
+	public void clear() {
+		lock.lock();
+		try {
+			// 保留已经分配的直接内存，放回空闲slab中继续使用
+			for (SizeClass sizeClass : sizeClasses) {
+				for (Slab slab : sizeClass.slabs) {
+					slab.sizeClass = null;
+					freeSlabs.add(slab);
+				}
+				sizeClass.slabs.clear();
+				sizeClass.available.clear();
+				sizeClass.lru.clear();
+			}
+			index.clear();
+			usedBytes = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int getSize() {
+		lock.lock();
+		try {
+			return index.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public ReadWriteLock getReadWriteLock() {
+		return null;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (getId() == null) {
+			throw new CacheException("Cache instances require an ID.");
+		}
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof Cache)) {
+			return false;
+		}
+		Cache otherCache = (Cache) o;
+		return getId().equals(otherCache.getId());
+	}
+
+	@Override
+	public int hashCode() {
+		if (getId() == null) {
+			throw new CacheException("Cache instances require an ID.");
+		}
+		return getId().hashCode();
+	}
+
+	// slab的分配与回收，调用方必须持有lock
+	// [start]
+	private void initSizeClasses() {
+		List<SizeClass> classes = new ArrayList<SizeClass>();
+		slabBytes = (int) Math.min(slabSize, capacity);
+		int chunkSize = MIN_CHUNK_SIZE;
+		while (chunkSize < slabBytes / 2) {
+			classes.add(new SizeClass(chunkSize, slabBytes / chunkSize));
+			// 按GROWTH_FACTOR增长并按8字节对齐
+			chunkSize = Math.max(chunkSize + 8, ((int) (chunkSize * GROWTH_FACTOR) + 7) & ~7);
+		}
+		// 最大的级别每个slab只有一个块
+		classes.add(new SizeClass(slabBytes, 1));
+		sizeClasses = classes.toArray(new SizeClass[classes.size()]);
+		maxSlabs = (int) Math.min(Integer.MAX_VALUE, capacity / slabBytes);
+	}
+
+	// 修改容量或slab大小时丢弃所有缓存项和已分配的直接内存，直接内存由GC回收ByteBuffer时释放
+	private void releaseSlabs() {
+		index.clear();
+		freeSlabs.clear();
+		allocatedSlabs = 0;
+		usedBytes = 0;
+		initSizeClasses();
+	}
+
+	private int sizeClassOf(int length) {
+		int sizeClass = 0;
+		while (sizeClasses[sizeClass].chunkSize < length) {
+			sizeClass++;
+		}
+		return sizeClass;
+	}
+
+	// 为缓存项分配一个块，无法分配时返回null
+	private Entry allocate(SizeClass sizeClass, Object key, int length) {
+		for (;;) {
+			Slab slab = sizeClass.available.peek();
+			if (slab != null) {
+				int chunk = slab.freeChunks[--slab.freeCount];
+				slab.used++;
+				if (slab.freeCount == 0) {
+					sizeClass.available.poll();
+				}
+				return new Entry(key, slab, chunk, length);
+			}
+			slab = obtainSlab();
+			if (slab != null) {
+				assign(slab, sizeClass);
+				continue;
+			}
+			// 没有空闲的直接内存，先回收其他级别中已经完全空闲的slab
+			if (reclaimEmptySlab(sizeClass)) {
+				continue;
+			}
+			// 全局最久未被访问的缓存项属于当前级别时直接淘汰，否则从它所属的级别回收一个slab
+			if (index.isEmpty()) {
+				return null;
+			}
+			Entry eldest = index.values().iterator().next();
+			SizeClass owner = eldest.slab.sizeClass;
+			if (owner == sizeClass) {
+				evict(eldest);
+			} else if (!reclaimSlab(owner)) {
+				return null;
+			}
+		}
+	}
+
+	private Slab obtainSlab() {
+		Slab slab = freeSlabs.poll();
+		if (slab == null && allocatedSlabs < maxSlabs) {
+			slab = new Slab(ByteBuffer.allocateDirect(slabBytes));
+			allocatedSlabs++;
+		}
+		return slab;
+	}
+
+	private void assign(Slab slab, SizeClass sizeClass) {
+		slab.sizeClass = sizeClass;
+		slab.freeChunks = new int[sizeClass.chunksPerSlab];
+		for (int i = 0; i < sizeClass.chunksPerSlab; i++) {
+			slab.freeChunks[i] = sizeClass.chunksPerSlab - 1 - i;
+		}
+		slab.freeCount = sizeClass.chunksPerSlab;
+		slab.used = 0;
+		sizeClass.slabs.add(slab);
+		sizeClass.available.add(slab);
+	}
+
+	private boolean reclaimEmptySlab(SizeClass requester) {
+		for (SizeClass sizeClass : sizeClasses) {
+			if (sizeClass != requester && sizeClass.slabs.size() > 0 && releaseEmptySlab(sizeClass)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// 按LRU顺序淘汰指定级别的缓存项，直到有一个slab完全空闲，将其放回空闲slab中
+	private boolean reclaimSlab(SizeClass victim) {
+		while (!releaseEmptySlab(victim)) {
+			if (victim.lru.isEmpty()) {
+				return false;
+			}
+			evict(victim.lru.values().iterator().next());
+		}
+		return true;
+	}
+
+	// 将指定级别中一个完全空闲的slab放回空闲slab中
+	private boolean releaseEmptySlab(SizeClass sizeClass) {
+		for (Iterator<Slab> iterator = sizeClass.slabs.iterator(); iterator.hasNext();) {
+			Slab slab = iterator.next();
+			if (slab.used == 0) {
+				iterator.remove();
+				sizeClass.available.remove(slab);
+				slab.sizeClass = null;
+				freeSlabs.add(slab);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// 删除缓存项并归还它占用的块
+	private void evict(Entry entry) {
+		index.remove(entry.key);
+		Slab slab = entry.slab;
+		SizeClass sizeClass = slab.sizeClass;
+		sizeClass.lru.remove(entry.key);
+		slab.freeChunks[slab.freeCount++] = entry.chunk;
+		slab.used--;
+		if (slab.freeCount == 1) {
+			sizeClass.available.add(slab);
+		}
+		usedBytes -= entry.length;
+	}
+
+	private byte[] read(Entry entry) {
+		byte[] bytes = new byte[entry.length];
+		ByteBuffer buffer = entry.slab.buffer.duplicate();
+		buffer.position(entry.offset());
+		buffer.get(bytes);
+		return bytes;
+	}
+	// [end]
+
+	// 将java对象序列化为byte数组
+	private byte[] serialize(Serializable value) {
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			ObjectOutputStream oos = new ObjectOutputStream(bos);
+			oos.writeObject(value);
+			oos.flush();
+			oos.close();
+			return bos.toByteArray();
+		} catch (Exception e) {
+			throw new CacheException("Error serializing object.  Cause: " + e, e);
+		}
+	}
+
+	// 将byte数组转换为java对象
+	private Serializable deserialize(byte[] value) {
+		Serializable result;
+		try {
+			ByteArrayInputStream bis = new ByteArrayInputStream(value);
+			ObjectInputStream ois = new ObjectInputStream(bis);
+			result = (Serializable) ois.readObject();
+			ois.close();
+		} catch (Exception e) {
+			throw new CacheException("Error deserializing object.  Cause: " + e, e);
+		}
+		return result;
+	}
+
+	// 同一个大小级别的slab和LRU链表
+	private static final class SizeClass {
+		final int chunkSize;
+		final int chunksPerSlab;
+		final List<Slab> slabs = new ArrayList<Slab>();
+		final ArrayDeque<Slab> available = new ArrayDeque<Slab>();    // 还有空闲块的slab
+		final Map<Object, Entry> lru = new LinkedHashMap<Object, Entry>(16, .75F, true);
+
+		SizeClass(int chunkSize, int chunksPerSlab) {
+			this.chunkSize = chunkSize;
+			this.chunksPerSlab = chunksPerSlab;
+		}
+	}
+
+	private static final class Slab {
+		final ByteBuffer buffer;
+		SizeClass sizeClass;
+		int[] freeChunks;      // 空闲块的编号，前freeCount个有效
+		int freeCount;
+		int used;
+
+		Slab(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+	}
+
+	// 堆中的索引项，记录序列化结果在直接内存中的位置
+	private static final class Entry {
+		final Object key;
+		final Slab slab;
+		final int chunk;
+		final int length;
+
+		Entry(Object key, Slab slab, int chunk, int length) {
+			this.key = key;
+			this.slab = slab;
+			this.chunk = chunk;
+			this.length = length;
+		}
+
+		int offset() {
+			return chunk * slab.sizeClass.chunkSize;
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package org.apache.ibatis.cursor;
+
+/**
+ * 响应式流的接口，与JDK 9的java.util.concurrent.Flow中的接口定义相同，
+ * 在Java 8上提供同样的Publisher/Subscriber/Subscription协议，也便于适配Reactive Streams的实现
+ */
+public final class Flow {
+
+	private Flow() {
+	}
+	
+	/**
+	 * 数据的发布者，每个Subscriber通过subscribe()订阅
+	 */
+	public interface Publisher<T> {
+		
+		void subscribe(Subscriber<? super T> subscriber);
+	}
+	
+	/**
+	 * 数据的订阅者，onSubscribe()之后只有通过Subscription.request()请求了数据才会收到onNext()，
+	 * 最后以onComplete()或onError()结束
+	 */
+	public interface Subscriber<T> {
+		
+		void onSubscribe(Subscription subscription);
+		
+		void onNext(T item);
+		
+		void onError(Throwable throwable);
+		
+		void onComplete();
+	}
+	
+	/**
+	 * 发布者与订阅者之间的订阅关系，订阅者通过它请求数据或取消订阅
+	 */
+	public interface Subscription {
+		
+		void request(long n);
+		
+		void cancel();
+	}
+}
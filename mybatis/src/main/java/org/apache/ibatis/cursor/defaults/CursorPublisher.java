@@ -0,0 +1,226 @@
+package org.apache.ibatis.cursor.defaults;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.cursor.Flow;
+
+/**
+ * 以Flow.Publisher的形式发布Cursor中的结果对象，订阅者请求的数量决定读取多少行(背压)
+ * 1) 第一次request()时才打开Cursor，读取和映射都在调用request()的线程中进行，request()可以在onNext()中重入调用
+ * 2) 只读取订阅者已经请求的行数；打开的是DefaultCursor时，还会根据未满足的请求数调整ResultSet的fetchSize，
+ *    最大不超过maxFetchSize(语句配置的fetchSize或默认值)
+ * 3) 结果读取完毕、出现异常或订阅者取消订阅时关闭Cursor，同时关闭ResultSet和Statement
+ * Cursor只能迭代一次，所以只允许订阅一次。和Cursor一样，在SqlSession关闭之前必须完成或取消订阅
+ */
+public class CursorPublisher<T> implements Flow.Publisher<T> {
+
+	public static final int DEFAULT_MAX_FETCH_SIZE = 1000;
+	
+	/**
+	 * 打开Cursor的回调，在第一次request()时调用
+	 */
+	public interface CursorOpener<T> {
+		
+		Cursor<T> open();
+	}
+	
+	private final CursorOpener<T> opener;
+	private final int maxFetchSize;
+	private final AtomicBoolean subscribed = new AtomicBoolean();
+	
+	public CursorPublisher(CursorOpener<T> opener) {
+		this(opener, DEFAULT_MAX_FETCH_SIZE);
+	}
+	
+	public CursorPublisher(CursorOpener<T> opener, int maxFetchSize) {
+		if (opener == null) {
+			throw new IllegalArgumentException("Parameter 'opener' must not be null");
+		}
+		this.opener = opener;
+		this.maxFetchSize = maxFetchSize > 0 ? maxFetchSize : DEFAULT_MAX_FETCH_SIZE;
+	}
+	
+	@Override
+	public void subscribe(Flow.Subscriber<? super T> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("Subscriber must not be null");
+		}
+		if (!subscribed.compareAndSet(false, true)) {
+			// 订阅者仍然需要先收到onSubscribe()
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+				}
+				
+				@Override
+				public void cancel() {
+				}
+			});
+			subscriber.onError(new IllegalStateException("A CursorPublisher can only be subscribed once"));
+			return;
+		}
+		subscriber.onSubscribe(new CursorSubscription(subscriber));
+	}
+	
+	public int getMaxFetchSize() {
+		return maxFetchSize;
+	}
+	
+	/**
+	 * 一个订阅，通过wip计数保证同一时刻只有一个线程在读取Cursor，其他线程的request()和cancel()
+	 * 只记录请求数或取消标志，由正在读取的线程处理
+	 */
+	private class CursorSubscription implements Flow.Subscription {
+		
+		private final Flow.Subscriber<? super T> subscriber;
+		private final AtomicLong requested = new AtomicLong();   // 尚未满足的请求数
+		private final AtomicInteger wip = new AtomicInteger();   // 大于0时表示有线程正在读取
+		private volatile boolean cancelled;    // 订阅者取消了订阅，或者已经发送了结束信号
+		private volatile Throwable invalidRequest;
+		
+		// 以下字段只在持有wip的线程中访问
+		private Cursor<T> cursor;
+		private Iterator<T> iterator;
+		private int appliedFetchSize;
+		
+		CursorSubscription(Flow.Subscriber<? super T> subscriber) {
+			this.subscriber = subscriber;
+		}
+		
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				// Reactive Streams规范3.9: 请求数必须为正数
+				invalidRequest = new IllegalArgumentException("Non-positive request: " + n);
+			} else {
+				addRequested(n);
+			}
+			drain();
+		}
+		
+		@Override
+		public void cancel() {
+			cancelled = true;
+			drain();
+		}
+		
+		private void addRequested(long n) {
+			for (;;) {
+				long current = requested.get();
+				if (current == Long.MAX_VALUE) {
+					return;
+				}
+				long next = current + n;
+				if (next < 0) {
+					next = Long.MAX_VALUE;
+				}
+				if (requested.compareAndSet(current, next)) {
+					return;
+				}
+			}
+		}
+		
+		private void drain() {
+			if (wip.getAndIncrement() != 0) {
+				return;
+			}
+			int missed = 1;
+			for (;;) {
+				if (cancelled) {
+					closeCursor();
+					return;
+				}
+				if (invalidRequest != null) {
+					terminateWithError(invalidRequest);
+					return;
+				}
+				long r = requested.get();
+				long emitted = 0;
+				if (r > 0) {
+					if (cursor == null && !openCursor()) {
+						return;
+					}
+					adjustFetchSize(r);
+				}
+				while (emitted != r) {
+					if (cancelled) {
+						closeCursor();
+						return;
+					}
+					T item;
+					try {
+						if (!iterator.hasNext()) {
+							cancelled = true;
+							closeCursor();
+							subscriber.onComplete();
+							return;
+						}
+						item = iterator.next();
+					} catch (RuntimeException e) {
+						terminateWithError(e);
+						return;
+					}
+					try {
+						subscriber.onNext(item);
+					} catch (RuntimeException e) {
+						// 订阅者不应该在onNext()中抛出异常，出现时取消订阅并释放资源
+						cancelled = true;
+						closeCursor();
+						throw e;
+					}
+					emitted++;
+				}
+				if (emitted != 0 && r != Long.MAX_VALUE) {
+					requested.addAndGet(-emitted);
+				}
+				missed = wip.addAndGet(-missed);
+				if (missed == 0) {
+					return;
+				}
+			}
+		}
+		
+		private boolean openCursor() {
+			try {
+				cursor = opener.open();
+				iterator = cursor.iterator();
+				return true;
+			} catch (RuntimeException e) {
+				terminateWithError(e);
+				return false;
+			}
+		}
+		
+		// 一次读取的行数不超过未满足的请求数，避免预读订阅者不需要的行
+		private void adjustFetchSize(long r) {
+			if (!(cursor instanceof DefaultCursor)) {
+				return;
+			}
+			int fetchSize = (int) Math.min(r, (long) maxFetchSize);
+			if (fetchSize != appliedFetchSize) {
+				appliedFetchSize = fetchSize;
+				((DefaultCursor<T>) cursor).setFetchSize(fetchSize);
+			}
+		}
+		
+		private void terminateWithError(Throwable t) {
+			cancelled = true;
+			closeCursor();
+			subscriber.onError(t);
+		}
+		
+		private void closeCursor() {
+			if (cursor != null) {
+				try {
+					cursor.close();
+				} catch (Exception e) {
+					// 忽略
+				}
+			}
+		}
+	}
+}
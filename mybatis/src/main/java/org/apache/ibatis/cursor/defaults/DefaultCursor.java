@@ -0,0 +1,236 @@
+package org.apache.ibatis.cursor.defaults;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
+import org.apache.ibatis.executor.resultset.ResultSetWrapper;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * Cursor的默认实现，每次调用迭代器的hasNext()时才从ResultSet中读取并映射下一行，不会把整个结果集加载到内存中
+ * 1) 每次从数据库读取的行数由Statement的fetchSize决定(MappedStatement的fetchSize或全局的defaultFetchSize)
+ * 2) RowBounds的offset在读取第一行之前直接跳过，跳过的行不做映射；读取的行数达到limit时结束
+ * 3) 结果集读取完毕、达到limit或调用close()时，关闭ResultSet和创建它的Statement
+ * 该类不是线程安全的，只能获取一次迭代器
+ */
+public class DefaultCursor<T> implements Cursor<T> {
+
+	private final DefaultResultSetHandler resultSetHandler;
+	private final ResultMap resultMap;
+	private final ResultSetWrapper rsw;
+	private final RowBounds rowBounds;
+	private final ObjectWrapperResultHandler<T> objectWrapperResultHandler = new ObjectWrapperResultHandler<T>();
+	
+	private final CursorIterator cursorIterator = new CursorIterator();
+	private boolean iteratorRetrieved;
+	
+	private CursorStatus status = CursorStatus.CREATED;
+	private int fetchedCount;     // 已经读取并映射的行数(不包括offset跳过的行)
+	
+	private enum CursorStatus {
+		CREATED,    // 还没有开始读取
+		OPEN,       // 正在读取
+		CLOSED,     // 被调用者关闭，结果集可能没有读取完
+		CONSUMED    // 结果集已经读取完毕或者达到了limit
+	}
+	
+	public DefaultCursor(DefaultResultSetHandler resultSetHandler, ResultMap resultMap, ResultSetWrapper rsw, RowBounds rowBounds) {
+		this.resultSetHandler = resultSetHandler;
+		this.resultMap = resultMap;
+		this.rsw = rsw;
+		this.rowBounds = rowBounds;
+	}
+	
+	@Override
+	public boolean isOpen() {
+		return status == CursorStatus.OPEN;
+	}
+
+	@Override
+	public boolean isConsumed() {
+		return status == CursorStatus.CONSUMED;
+	}
+
+	// 最近一次返回的对象在整个结果集中的位置(包括offset跳过的行)，还没有返回对象时为offset - 1
+	@Override
+	public int getCurrentIndex() {
+		return rowBounds.getOffset() + cursorIterator.iteratorIndex;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		if (iteratorRetrieved) {
+			throw new IllegalStateException("Cannot open more than one iterator on a Cursor");
+		}
+		iteratorRetrieved = true;
+		return cursorIterator;
+	}
+
+	/**
+	 * 修改之后每次从数据库读取的行数，只是给驱动的提示，驱动不支持时忽略
+	 */
+	public void setFetchSize(int rows) {
+		if (isClosed()) {
+			return;
+		}
+		try {
+			rsw.getResultSet().setFetchSize(rows);
+		} catch (SQLException e) {
+			// 忽略
+		}
+	}
+
+	@Override
+	public void close() {
+		if (isClosed()) {
+			return;
+		}
+		try {
+			closeResultSetAndStatement();
+		} finally {
+			status = CursorStatus.CLOSED;
+		}
+	}
+	
+	private boolean isClosed() {
+		return status == CursorStatus.CLOSED || status == CursorStatus.CONSUMED;
+	}
+	
+	// 读取并映射下一行，结果保存在objectWrapperResultHandler中，没有更多的行时返回false
+	protected boolean fetchNextObjectFromDatabase() {
+		if (isClosed()) {
+			return false;
+		}
+		if (fetchedCount >= rowBounds.getLimit()) {
+			consumed();
+			return false;
+		}
+		try {
+			if (status == CursorStatus.CREATED) {
+				status = CursorStatus.OPEN;
+				skipRows(rsw.getResultSet(), rowBounds);
+			}
+			objectWrapperResultHandler.fetched = false;
+			resultSetHandler.handleRowValues(rsw, resultMap, objectWrapperResultHandler, RowBounds.DEFAULT, null);
+		} catch (SQLException e) {
+			close();
+			throw new ExecutorException("Error fetching the next row from the cursor. Cause: " + e, e);
+		} catch (RuntimeException e) {
+			close();
+			throw e;
+		}
+		if (!objectWrapperResultHandler.fetched) {
+			consumed();
+			return false;
+		}
+		fetchedCount++;
+		if (fetchedCount >= rowBounds.getLimit()) {
+			// 达到limit之后不再需要结果集，尽早释放
+			consumed();
+		}
+		return true;
+	}
+	
+	// 结果集读取完毕，释放ResultSet和Statement
+	private void consumed() {
+		try {
+			closeResultSetAndStatement();
+		} finally {
+			status = CursorStatus.CONSUMED;
+		}
+	}
+	
+	private void closeResultSetAndStatement() {
+		ResultSet rs = rsw.getResultSet();
+		if (rs == null) {
+			return;
+		}
+		Statement statement = null;
+		try {
+			statement = rs.getStatement();
+			rs.close();
+		} catch (SQLException e) {
+			// ignore
+		} finally {
+			if (statement != null) {
+				try {
+					statement.close();
+				} catch (SQLException e) {
+					// ignore
+				}
+			}
+		}
+	}
+	
+	// 直接移动ResultSet跳过offset行，跳过的行不需要映射
+	private void skipRows(ResultSet rs, RowBounds rowBounds) throws SQLException {
+		if (rowBounds.getOffset() == RowBounds.NO_ROW_OFFSET) {
+			return;
+		}
+		if (rs.getType() != ResultSet.TYPE_FORWARD_ONLY) {
+			rs.absolute(rowBounds.getOffset());
+		} else {
+			for (int i = 0; i < rowBounds.getOffset(); i++) {
+				if (!rs.next()) {
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * 每次只接收一个结果对象，接收后立即停止DefaultResultSetHandler继续读取
+	 */
+	private static class ObjectWrapperResultHandler<T> implements ResultHandler<T> {
+		
+		private T result;
+		private boolean fetched;    // 映射结果可能为null，需要单独记录是否读取到了一行
+		
+		@Override
+		public void handleResult(ResultContext<? extends T> context) {
+			this.result = context.getResultObject();
+			this.fetched = true;
+			context.stop();
+		}
+	}
+	
+	private class CursorIterator implements Iterator<T> {
+		
+		private boolean objectFetched;    // 是否已经读取了下一个对象但还没有通过next()返回
+		private int iteratorIndex = -1;   // 已经通过next()返回的对象个数减一
+		
+		@Override
+		public boolean hasNext() {
+			if (!objectFetched) {
+				objectFetched = fetchNextObjectFromDatabase();
+			}
+			return objectFetched;
+		}
+		
+		@Override
+		public T next() {
+			if (hasNext()) {
+				T next = objectWrapperResultHandler.result;
+				objectWrapperResultHandler.result = null;
+				objectFetched = false;
+				iteratorIndex++;
+				return next;
+			}
+			throw new NoSuchElementException();
+		}
+		
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Cannot remove element from Cursor");
+		}
+	}
+}
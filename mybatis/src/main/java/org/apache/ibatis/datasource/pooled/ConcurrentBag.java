@@ -0,0 +1,240 @@
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 并发连接容器，是PooledDataSource并发引擎(poolConcurrentBagEnabled=true)的核心数据结构，作用:
+ * 1) sharedList记录连接池中的所有连接，连接的借出和归还只通过CAS修改PooledConnection的状态来完成，不需要加锁
+ * 2) threadList记录当前线程最近归还的连接，同一线程再次借用时优先从这里取，减少对sharedList的扫描和CAS竞争
+ * 3) 有线程阻塞等待时，归还的连接通过handoffQueue直接交给等待的线程
+ * 4) 只有新增、关闭连接这类低频操作才会修改sharedList，由modifyLock保证按对象身份定位元素
+ */
+class ConcurrentBag {
+
+	private static final int MAX_THREAD_LOCAL_SIZE = 16;   // 每个线程最多记录的最近归还连接数
+
+	// 连接池中的所有连接，读多写少，使用CopyOnWriteArrayList保证遍历时无锁
+	private final CopyOnWriteArrayList<PooledConnection> sharedList = new CopyOnWriteArrayList<PooledConnection>();
+
+	// 线程本地的最近归还连接列表
+	private final ThreadLocal<List<PooledConnection>> threadList = new ThreadLocal<List<PooledConnection>>() {
+		@Override
+		protected List<PooledConnection> initialValue() {
+			return new ArrayList<PooledConnection>(MAX_THREAD_LOCAL_SIZE);
+		}
+	};
+
+	// 修改sharedList时使用的锁，注意: PooledConnection.equals()是按真实连接判断的，所以不能直接使用List.remove(Object)
+	private final ReentrantLock modifyLock = new ReentrantLock();
+
+	private final AtomicInteger waiters = new AtomicInteger();   // 正在阻塞等待连接的线程数
+	private final AtomicInteger slots = new AtomicInteger();     // 已创建和正在创建的连接数，用于限制连接总数
+
+	// 公平模式的SynchronousQueue，归还连接时直接交给等待最久的线程
+	private final SynchronousQueue<PooledConnection> handoffQueue = new SynchronousQueue<PooledConnection>(true);
+
+	/**
+	 * 借出一个空闲连接，借出成功时连接状态为STATE_IN_USE
+	 * 1) 先从当前线程最近归还的连接中查找
+	 * 2) 再扫描sharedList
+	 * 3) timeout大于0时，阻塞等待其他线程归还连接，超时返回null
+	 */
+	PooledConnection borrow(long timeout) throws InterruptedException {
+		List<PooledConnection> list = threadList.get();
+		for (int i = list.size() - 1; i >= 0; i--) {
+			PooledConnection conn = list.remove(i);
+			if (tryBorrow(conn)) {
+				return conn;
+			}
+		}
+
+		if (timeout <= 0) {
+			return scanSharedList();
+		}
+
+		// 注意: 必须先登记为等待者再扫描sharedList，否则requite()看不到等待者，可能错过刚刚归还的连接
+		waiters.incrementAndGet();
+		try {
+			PooledConnection conn = scanSharedList();
+			if (conn != null) {
+				return conn;
+			}
+			long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+			final long deadline = System.nanoTime() + remaining;
+			do {
+				conn = handoffQueue.poll(remaining, TimeUnit.NANOSECONDS);
+				if (conn == null) {
+					return null;
+				}
+				if (tryBorrow(conn)) {
+					return conn;
+				}
+				remaining = deadline - System.nanoTime();
+			} while (remaining > 0);
+			return null;
+		} finally {
+			waiters.decrementAndGet();
+		}
+	}
+
+	/**
+	 * 归还连接，将状态为STATE_RESERVED的连接置为空闲状态
+	 * 如果有线程在等待，则通过handoffQueue直接交给等待者，否则记录到当前线程的threadList中
+	 * 返回false表示连接已经不在连接池中(例如已被forceCloseAll移除)
+	 */
+	boolean requite(PooledConnection conn) {
+		// 通过CAS置为空闲，避免把已被remove()置为STATE_REMOVED的连接重新变为空闲
+		if (!conn.compareAndSetState(PooledConnection.STATE_RESERVED, PooledConnection.STATE_NOT_IN_USE)) {
+			return false;
+		}
+		if (handoffToWaiters(conn)) {
+			return true;
+		}
+		List<PooledConnection> list = threadList.get();
+		if (list.size() < MAX_THREAD_LOCAL_SIZE) {
+			list.add(conn);
+		}
+		return true;
+	}
+	
+	// 将状态为STATE_RESERVED的连接(例如后台维护线程检测完毕的连接)置为空闲，有线程在等待时直接交给等待者
+	void release(PooledConnection conn) {
+		conn.setState(PooledConnection.STATE_NOT_IN_USE);
+		handoffToWaiters(conn);
+	}
+
+	// 尝试占用一个连接名额，连接总数达到limit时返回false
+	boolean reserveSlot(int limit) {
+		for (;;) {
+			int current = slots.get();
+			if (current >= limit) {
+				return false;
+			}
+			if (slots.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	// 释放reserveSlot()占用的连接名额
+	void releaseSlot() {
+		slots.decrementAndGet();
+	}
+
+	// 已创建和正在创建的连接数
+	int getSlotCount() {
+		return slots.get();
+	}
+
+	// 将新创建的连接加入连接池，调用前需要先通过reserveSlot()占用名额
+	void add(PooledConnection conn) {
+		modifyLock.lock();
+		try {
+			sharedList.add(conn);
+		} finally {
+			modifyLock.unlock();
+		}
+	}
+
+	// 将连接从连接池中移除并释放其名额，重复移除是安全的
+	boolean remove(PooledConnection conn) {
+		conn.setState(PooledConnection.STATE_REMOVED);
+		modifyLock.lock();
+		try {
+			int index = indexOf(conn);
+			if (index < 0) {
+				return false;
+			}
+			sharedList.remove(index);
+			releaseSlot();
+			return true;
+		} finally {
+			modifyLock.unlock();
+		}
+	}
+
+	// 查找checkout时间最早的活跃连接，用于回收超时连接
+	PooledConnection findOldestInUse() {
+		PooledConnection oldest = null;
+		for (PooledConnection conn : sharedList) {
+			if (conn.getState() == PooledConnection.STATE_IN_USE
+					&& (oldest == null || conn.getCheckoutTimestamp() < oldest.getCheckoutTimestamp())) {
+				oldest = conn;
+			}
+		}
+		return oldest;
+	}
+
+	// 获取连接池中所有连接的快照
+	List<PooledConnection> values() {
+		return new ArrayList<PooledConnection>(sharedList);
+	}
+
+	// 统计处于指定状态的连接数
+	int getCount(int state) {
+		int count = 0;
+		for (PooledConnection conn : sharedList) {
+			if (conn.getState() == state) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	int getWaitingThreadCount() {
+		return waiters.get();
+	}
+
+	// 有线程在等待时，将空闲连接通过handoffQueue交给等待者，返回false表示没有等待者
+	private boolean handoffToWaiters(PooledConnection conn) {
+		for (int i = 0; waiters.get() > 0; i++) {
+			// 连接已被其他线程借走，或者成功交给了等待者
+			if (conn.getState() != PooledConnection.STATE_NOT_IN_USE || handoffQueue.offer(conn)) {
+				return true;
+			}
+			if ((i & 0xff) == 0xff) {
+				LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+			} else {
+				Thread.yield();
+			}
+		}
+		return false;
+	}
+
+	// 借出连接时先将状态置为STATE_RESERVED，记录checkout时间戳之后再置为STATE_IN_USE，
+	// 避免回收超时连接时读到上一次checkout的时间戳，误将刚借出的连接当作超时连接回收
+	private boolean tryBorrow(PooledConnection conn) {
+		if (conn.compareAndSetState(PooledConnection.STATE_NOT_IN_USE, PooledConnection.STATE_RESERVED)) {
+			conn.setCheckoutTimestamp(System.currentTimeMillis());
+			conn.setState(PooledConnection.STATE_IN_USE);
+			return true;
+		}
+		return false;
+	}
+	
+	private PooledConnection scanSharedList() {
+		for (PooledConnection conn : sharedList) {
+			if (tryBorrow(conn)) {
+				return conn;
+			}
+		}
+		return null;
+	}
+
+	// 按对象身份查找连接在sharedList中的下标，调用方需持有modifyLock
+	private int indexOf(PooledConnection conn) {
+		for (int i = 0; i < sharedList.size(); i++) {
+			if (sharedList.get(i) == conn) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,106 @@
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 连接泄漏检测，poolLeakDetectionThreshold大于0时由PooledDataSource创建
+ * 1) 取出连接时在PooledConnection上记录持有线程的名称，并按poolLeakDetectionStackSampling抽样记录取出连接时的调用栈，
+ *    未抽中时不创建任何对象，调用栈和日志消息只在抽中或者报告泄漏时才生成
+ * 2) 连接取出超过阈值仍未归还时，打印一次警告日志，包含持有线程和取出时的调用栈，并累加PoolState.suspectedLeakCount
+ * 3) 超时连接被连接池回收时，同样打印持有线程和调用栈；已报告过的连接归还时再打印一条日志，说明并非真正泄漏
+ * 检测时机: 后台维护线程每次执行时扫描所有活跃连接；连接池耗尽需要等待时检测最早取出的连接；回收超时连接时
+ */
+class ConnectionLeakDetector {
+
+	private static final Log log = LogFactory.getLog(ConnectionLeakDetector.class);
+	private static final String POOL_PACKAGE = ConnectionLeakDetector.class.getPackage().getName() + ".";
+
+	private final PoolState state;
+	private final long threshold;       // 取出连接超过多少毫秒未归还时认为可能泄漏
+	private final int stackSampling;    // 每多少次取出连接采集一次调用栈，1表示每次都采集，0表示不采集
+
+	ConnectionLeakDetector(PoolState state, long threshold, int stackSampling) {
+		this.state = state;
+		this.threshold = threshold;
+		this.stackSampling = stackSampling;
+	}
+
+	// 取出连接时调用，连接由当前线程持有
+	void onCheckout(PooledConnection conn) {
+		boolean sampled = stackSampling == 1 || (stackSampling > 1 && ThreadLocalRandom.current().nextInt(stackSampling) == 0);
+		conn.recordCheckout(Thread.currentThread().getName(), sampled ? new CheckoutStack() : null);
+	}
+
+	// 归还连接时调用
+	void onReturn(PooledConnection conn) {
+		String threadName = conn.getCheckoutThreadName();
+		boolean reported = conn.isLeakReported();
+		conn.clearCheckout();
+		if (threadName != null && reported) {
+			log.warn("Previously reported connection " + conn.getRealHashCode() + " was returned by thread ["
+					+ threadName + "] after " + conn.getCheckoutTime() + " ms.");
+		}
+	}
+
+	// 检测一个活跃连接，超过阈值且尚未报告时打印警告，返回是否新报告了泄漏
+	boolean check(PooledConnection conn) {
+		String threadName = conn.getCheckoutThreadName();
+		long checkoutTime = conn.getCheckoutTime();
+		if (threadName == null || checkoutTime <= threshold || !conn.markLeakReported()) {
+			return false;
+		}
+		state.suspectedLeakCount.increment();
+		log.warn(describe("Connection leak detection triggered for connection ", conn, threadName, conn.getCheckoutStack(), checkoutTime));
+		return true;
+	}
+
+	// 超时连接被回收时调用，此时原持有线程可能仍在使用该连接
+	void onReclaim(PooledConnection conn, long checkoutTime) {
+		String threadName = conn.getCheckoutThreadName();
+		CheckoutStack stack = conn.getCheckoutStack();
+		if (threadName == null) {
+			return;
+		}
+		if (conn.markLeakReported()) {
+			state.suspectedLeakCount.increment();
+		}
+		conn.clearCheckout();
+		log.warn(describe("Reclaimed overdue connection ", conn, threadName, stack, checkoutTime));
+	}
+
+	private static String describe(String prefix, PooledConnection conn, String threadName, CheckoutStack checkoutStack, long checkoutTime) {
+		StringBuilder builder = new StringBuilder(prefix);
+		builder.append(conn.getRealHashCode()).append(", checked out for ").append(checkoutTime)
+				.append(" ms by thread [").append(threadName).append("]");
+		if (checkoutStack == null) {
+			builder.append(" (checkout stack was not sampled).");
+		} else {
+			builder.append(", checkout stack:");
+			StackTraceElement[] stack = checkoutStack.getStackTrace();
+			// 跳过连接池内部的调用，从调用getConnection()的代码开始打印
+			int start = 0;
+			while (start < stack.length - 1 && stack[start].getClassName().startsWith(POOL_PACKAGE)) {
+				start++;
+			}
+			for (int i = start; i < stack.length; i++) {
+				builder.append("\n\tat ").append(stack[i]);
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * 抽中采样时创建，只用于保存取出连接时的调用栈，不需要消息和cause
+	 */
+	static final class CheckoutStack extends Exception {
+
+		private static final long serialVersionUID = 6081367264187318530L;
+
+		CheckoutStack() {
+			super(null, null, false, true);
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 等待获取连接的线程在等待队列(PoolState.waiters)中的节点
+ * pushConncetion()归还连接时，直接将连接移交给队列头部等待最久的线程，并只唤醒该线程，
+ * 避免notifyAll()唤醒所有等待线程、但只有一个线程能拿到连接的"惊群"问题
+ * 连接被关闭而不是移交时(超过最大存活时间、失效、创建失败等)，通过wakeup()唤醒等待线程但不移交连接，
+ * 等待线程回到popConnection()的循环中重新检查是否可以新建连接，不必等到poolTimeToWait超时
+ */
+class ConnectionWaiter {
+
+	private final Thread thread;                      // 等待的线程
+	private volatile PooledConnection connection;     // 移交给该线程的连接，移交前为null
+	private volatile boolean woken;                   // 是否被唤醒重新检查连接池的容量
+
+	ConnectionWaiter() {
+		this.thread = Thread.currentThread();
+	}
+
+	/**
+	 * 阻塞当前线程，直到被移交了连接、被唤醒重新检查或等待超时
+	 * 返回值表示等待期间线程是否被中断(中断标志会被清除，与Object.wait()抛出InterruptedException的效果一致)
+	 */
+	boolean await(long timeout) {
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		while (connection == null && !woken) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return false;
+			}
+			LockSupport.parkNanos(this, remaining);
+			if (Thread.interrupted()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// 将连接移交给等待的线程并唤醒它，调用方需持有state的锁
+	void handoff(PooledConnection connection) {
+		this.connection = connection;
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * 唤醒等待的线程但不移交连接，调用方需持有state的锁
+	 * 该线程已经被移交了连接或已经被唤醒、还没有重新检查时返回false，由调用方唤醒下一个线程
+	 */
+	boolean wakeup() {
+		if (connection != null || woken) {
+			return false;
+		}
+		woken = true;
+		LockSupport.unpark(thread);
+		return true;
+	}
+
+	// 重新检查容量之前调用，调用方需持有state的锁；之后的wakeup()会让下一次await()立即返回
+	void resetWakeup() {
+		woken = false;
+	}
+
+	PooledConnection getConnection() {
+		return connection;
+	}
+}
@@ -0,0 +1,106 @@
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定分桶的耗时分布统计，用于观察连接池中各类耗时的分布情况(而不只是平均值)
+ * 每个桶记录耗时不超过对应上限(毫秒)的次数，最后一个桶记录超过最大上限的次数
+ * 使用AtomicLongArray计数，记录和读取都不需要加锁
+ */
+public class LatencyHistogram {
+
+	// 默认的各个桶的耗时上限，单位毫秒，适用于等待时间、checkout时间这类较短的耗时
+	private static final long[] DEFAULT_BUCKET_BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+	private final long[] bucketBounds;
+	private final AtomicLongArray counts;
+
+	public LatencyHistogram() {
+		this(DEFAULT_BUCKET_BOUNDS);
+	}
+
+	// bucketBounds为各个桶的耗时上限(毫秒)，必须递增
+	public LatencyHistogram(long[] bucketBounds) {
+		this.bucketBounds = bucketBounds.clone();
+		this.counts = new AtomicLongArray(bucketBounds.length + 1);
+	}
+
+	// 记录一次耗时
+	public void record(long millis) {
+		counts.incrementAndGet(bucketOf(millis));
+	}
+
+	// 获取记录的总次数
+	public long getCount() {
+		long total = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			total += counts.get(i);
+		}
+		return total;
+	}
+
+	// 获取各个桶的耗时上限，返回数组的长度比getCounts()少1，多出的最后一个桶表示超过最大上限
+	public long[] getBucketBounds() {
+		return bucketBounds.clone();
+	}
+
+	// 获取各个桶的计数快照
+	public long[] getCounts() {
+		long[] snapshot = new long[counts.length()];
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = counts.get(i);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * 估算百分位耗时，返回百分位所在桶的上限，例如 getPercentile(0.99) 返回p99耗时不超过的毫秒数
+	 * 落在最后一个桶时返回 Long.MAX_VALUE，没有任何记录时返回0
+	 */
+	public long getPercentile(double percentile) {
+		long[] snapshot = getCounts();
+		long total = 0;
+		for (long count : snapshot) {
+			total += count;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long threshold = (long) Math.ceil(total * percentile);
+		long accumulated = 0;
+		for (int i = 0; i < bucketBounds.length; i++) {
+			accumulated += snapshot[i];
+			if (accumulated >= threshold) {
+				return bucketBounds[i];
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+	}
+
+	private int bucketOf(long millis) {
+		for (int i = 0; i < bucketBounds.length; i++) {
+			if (millis <= bucketBounds[i]) {
+				return i;
+			}
+		}
+		return bucketBounds.length;
+	}
+
+	// 形如 "<=1ms:10 <=2ms:3 ... >10000ms:0"
+	@Override
+	public String toString() {
+		long[] snapshot = getCounts();
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < bucketBounds.length; i++) {
+			builder.append("<=").append(bucketBounds[i]).append("ms:").append(snapshot[i]).append(' ');
+		}
+		builder.append('>').append(bucketBounds[bucketBounds.length - 1]).append("ms:").append(snapshot[bucketBounds.length]);
+		return builder.toString();
+	}
+}
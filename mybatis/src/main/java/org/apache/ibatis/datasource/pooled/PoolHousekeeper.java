@@ -0,0 +1,59 @@
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 连接池的后台维护线程，poolHousekeepingInterval大于0时由PooledDataSource启动，每隔固定时间执行一次:
+ * 1) 检测空闲连接是否可用(心跳检测)，关闭失效的连接
+ * 2) 关闭超过最大存活时间的空闲连接，以及超过poolMinimumIdle部分中空闲时间过长的连接
+ * 3) 预先创建连接，使空闲连接数不低于poolMinimumIdle
+ * 开启后获取和归还连接时不再发送心跳检测，连接的有效性全部由维护线程检测
+ * 维护线程随PooledDataSource.close()停止；只保持连接池的弱引用，连接池未关闭就被回收时维护线程也会自动退出
+ */
+class PoolHousekeeper implements Runnable {
+
+	private static final Log log = LogFactory.getLog(PoolHousekeeper.class);
+
+	private final WeakReference<PooledDataSource> dataSource;
+	private final ScheduledExecutorService executor;
+
+	PoolHousekeeper(PooledDataSource dataSource, long interval) {
+		this.dataSource = new WeakReference<PooledDataSource>(dataSource);
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "PooledDataSource-housekeeper");
+				thread.setDaemon(true);   // 守护线程，不阻止JVM退出
+				return thread;
+			}
+		});
+		// 启动后立即执行一次，完成连接的预创建
+		this.executor.scheduleWithFixedDelay(this, 0, interval, TimeUnit.MILLISECONDS);
+	}
+
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Override
+	public void run() {
+		PooledDataSource current = dataSource.get();
+		if (current == null) {
+			shutdown();
+			return;
+		}
+		try {
+			current.housekeep();
+		} catch (Throwable t) {
+			// 异常不能抛出，否则后续的定时任务不会再执行
+			log.warn("PooledDataSource housekeeping failed: " + t.getMessage());
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 连接池大小的自适应控制器，poolAdaptiveSizingInterval大于0时由PooledDataSource启动
+ * 在[poolMinimumActiveConnections, poolMaximumActiveConnections]之间调整实际生效的最大活跃连接数，
+ * 每隔固定时间根据PoolState中统计项的增量做一次决策:
+ * 1) 扩容: 连续GROW_TICKS次出现明显的阻塞等待，并且checkout时长和创建连接的耗时没有明显变长(数据库还有余力)，上限增加1/4
+ * 2) 过载: 连接基本用满，但checkout时长已经超过低负载时基准值的OVERLOAD_FACTOR倍，说明数据库已经成为瓶颈，
+ *    继续增加连接只会让数据库更慢，上限减少1/4，并在COOLDOWN_TICKS次内不再扩容
+ * 3) 缩容: 连续SHRINK_TICKS次没有等待，且平均使用的连接数不到上限的一半，上限减1
+ * 4) 其余情况保持不变，扩容和缩容需要连续多次满足条件，并且条件之间留有空档，避免上限来回抖动
+ * 决策逻辑只依赖adjust(Sample)的输入，可以脱离真实数据库单独验证
+ */
+public class PoolSizingController implements Runnable {
+
+	private static final Log log = LogFactory.getLog(PoolSizingController.class);
+
+	static final int GROW_TICKS = 2;              // 连续多少次需要扩容才扩容
+	static final int SHRINK_TICKS = 5;            // 连续多少次需要缩容才缩容
+	static final int COOLDOWN_TICKS = 3;          // 过载后多少次内不再扩容
+	static final double WAIT_RATIO_THRESHOLD = 0.05;   // 需要等待的请求比例超过该值时认为需要扩容
+	static final double OVERLOAD_FACTOR = 2.0;    // checkout时长超过基准值的倍数，超过时认为数据库过载
+	static final double HEALTHY_FACTOR = 1.5;     // checkout时长不超过基准值的倍数时才允许扩容
+	static final double CREATE_SLOW_FACTOR = 3.0; // 创建连接的耗时超过基准值的倍数时不扩容
+	static final double BASELINE_WEIGHT = 0.2;    // 基准值的指数移动平均权重
+
+	// 只保持PoolState的弱引用，定时任务不会阻止连接池被回收，回收后控制器自动停止
+	private final WeakReference<PoolState> state;
+	private final int minimum;
+	private final int maximum;
+	private volatile int limit;                   // 当前生效的最大活跃连接数
+
+	private ScheduledExecutorService executor;
+
+	// 上一次采样的累计值
+	private long lastTimestamp;
+	private long lastRequestCount;
+	private long lastWaitCount;
+	private long lastWaitTime;
+	private long lastCheckoutCount;
+	private long lastCheckoutTime;
+	private long lastCreatedCount;
+	private long lastCreateTime;
+
+	private int growTicks;
+	private int shrinkTicks;
+	private int cooldownTicks;
+	private double baselineCheckoutTime;          // 低负载时的平均checkout时长，0表示还没有样本
+	private double baselineCreateTime;            // 平均创建连接的耗时，0表示还没有样本
+
+	public PoolSizingController(PoolState state, int minimum, int maximum) {
+		this.state = new WeakReference<PoolState>(state);
+		this.minimum = Math.max(1, Math.min(minimum, maximum));
+		this.maximum = maximum;
+		this.limit = maximum;   // 从配置的最大值开始，行为与关闭自适应时一致，再根据负载调整
+		this.lastTimestamp = System.currentTimeMillis();
+		this.lastRequestCount = state.requestCount.sum();
+		this.lastWaitCount = state.hadToWaitCount.sum();
+		this.lastWaitTime = state.accumulatedWaitTime.sum();
+		this.lastCheckoutCount = state.checkoutTimeHistogram.getCount();
+		this.lastCheckoutTime = state.accumulatedCheckoutTime.sum();
+		this.lastCreatedCount = state.createdConnectionCount.sum();
+		this.lastCreateTime = state.accumulatedCreateTime.sum();
+	}
+
+	void start(long interval) {
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "PooledDataSource-sizing");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.scheduleWithFixedDelay(this, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	@Override
+	public void run() {
+		PoolState current = state.get();
+		if (current == null) {
+			shutdown();
+			return;
+		}
+		try {
+			int oldLimit = limit;
+			int newLimit = adjust(sample(current));
+			if (newLimit != oldLimit && log.isDebugEnabled()) {
+				log.debug("PooledDataSource active connection limit adjusted from " + oldLimit + " to " + newLimit + ".");
+			}
+		} catch (Throwable t) {
+			log.warn("PooledDataSource sizing failed: " + t.getMessage());
+		}
+	}
+
+	// 读取PoolState的累计值，计算与上一次采样之间的增量
+	Sample sample(PoolState state) {
+		long now = System.currentTimeMillis();
+		long requestCount = state.requestCount.sum();
+		long waitCount = state.hadToWaitCount.sum();
+		long waitTime = state.accumulatedWaitTime.sum();
+		long checkoutCount = state.checkoutTimeHistogram.getCount();
+		long checkoutTime = state.accumulatedCheckoutTime.sum();
+		long createdCount = state.createdConnectionCount.sum();
+		long createTime = state.accumulatedCreateTime.sum();
+		Sample sample = new Sample(now - lastTimestamp, requestCount - lastRequestCount, waitCount - lastWaitCount,
+				waitTime - lastWaitTime, checkoutCount - lastCheckoutCount, checkoutTime - lastCheckoutTime,
+				createdCount - lastCreatedCount, createTime - lastCreateTime);
+		lastTimestamp = now;
+		lastRequestCount = requestCount;
+		lastWaitCount = waitCount;
+		lastWaitTime = waitTime;
+		lastCheckoutCount = checkoutCount;
+		lastCheckoutTime = checkoutTime;
+		lastCreatedCount = createdCount;
+		lastCreateTime = createTime;
+		return sample;
+	}
+
+	// 根据一次采样调整上限，返回调整后的上限
+	int adjust(Sample sample) {
+		int current = limit;
+		double avgCheckout = sample.getAverageCheckoutTime();
+		double avgCreate = sample.getAverageCreateTime();
+		double inUse = sample.getAverageConnectionsInUse();
+		if (cooldownTicks > 0) {
+			cooldownTicks--;
+		}
+		if (avgCreate > 0) {
+			baselineCreateTime = baselineCreateTime == 0 ? avgCreate : ewma(baselineCreateTime, avgCreate);
+		}
+		// 只用低负载时的checkout时长更新基准值，高负载时的checkout时长包含了数据库排队的时间
+		if (avgCheckout > 0 && (baselineCheckoutTime == 0 || inUse < current * 0.5)) {
+			baselineCheckoutTime = baselineCheckoutTime == 0 ? avgCheckout : ewma(baselineCheckoutTime, avgCheckout);
+		}
+
+		boolean saturated = inUse >= current * 0.8;
+		if (saturated && baselineCheckoutTime > 0 && avgCheckout > baselineCheckoutTime * OVERLOAD_FACTOR) {
+			// 数据库过载，乘性减少
+			growTicks = 0;
+			shrinkTicks = 0;
+			cooldownTicks = COOLDOWN_TICKS;
+			return setLimit(current - Math.max(1, current / 4));
+		}
+
+		boolean waiting = sample.waitCount > 0 && sample.waitCount > sample.requestCount * WAIT_RATIO_THRESHOLD;
+		if (waiting) {
+			shrinkTicks = 0;
+			boolean healthy = baselineCheckoutTime == 0 || avgCheckout <= baselineCheckoutTime * HEALTHY_FACTOR;
+			boolean fastCreate = baselineCreateTime == 0 || avgCreate <= baselineCreateTime * CREATE_SLOW_FACTOR;
+			if (healthy && fastCreate && cooldownTicks == 0 && ++growTicks >= GROW_TICKS) {
+				growTicks = 0;
+				return setLimit(current + Math.max(1, current / 4));
+			}
+			return current;
+		}
+
+		growTicks = 0;
+		if (sample.waitCount == 0 && inUse < current * 0.5) {
+			if (++shrinkTicks >= SHRINK_TICKS) {
+				shrinkTicks = 0;
+				return setLimit(current - 1);
+			}
+		} else {
+			shrinkTicks = 0;
+		}
+		return current;
+	}
+
+	private int setLimit(int newLimit) {
+		limit = Math.max(minimum, Math.min(maximum, newLimit));
+		return limit;
+	}
+
+	private static double ewma(double average, double value) {
+		return average * (1 - BASELINE_WEIGHT) + value * BASELINE_WEIGHT;
+	}
+
+	/**
+	 * 两次采样之间各统计项的增量
+	 */
+	static class Sample {
+
+		final long elapsed;          // 采样间隔(毫秒)
+		final long requestCount;     // 获取连接的次数
+		final long waitCount;        // 需要阻塞等待的次数
+		final long waitTime;         // 阻塞等待的总时长
+		final long checkoutCount;    // 归还连接的次数
+		final long checkoutTime;     // 归还的连接的checkout总时长
+		final long createdCount;     // 创建连接的次数
+		final long createTime;       // 创建连接的总耗时
+
+		Sample(long elapsed, long requestCount, long waitCount, long waitTime, long checkoutCount, long checkoutTime,
+				long createdCount, long createTime) {
+			this.elapsed = elapsed;
+			this.requestCount = requestCount;
+			this.waitCount = waitCount;
+			this.waitTime = waitTime;
+			this.checkoutCount = checkoutCount;
+			this.checkoutTime = checkoutTime;
+			this.createdCount = createdCount;
+			this.createTime = createTime;
+		}
+
+		double getAverageCheckoutTime() {
+			return checkoutCount == 0 ? 0 : (double) checkoutTime / checkoutCount;
+		}
+
+		double getAverageCreateTime() {
+			return createdCount == 0 ? 0 : (double) createTime / createdCount;
+		}
+
+		// 根据Little定律估算采样期间平均使用中的连接数: checkout总时长 / 采样间隔
+		double getAverageConnectionsInUse() {
+			return elapsed <= 0 ? 0 : (double) checkoutTime / elapsed;
+		}
+	}
+}
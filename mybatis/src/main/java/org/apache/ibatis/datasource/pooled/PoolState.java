@@ -1,97 +1,227 @@
 package org.apache.ibatis.datasource.pooled;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 数据库连接池状态管理类
+ * 统计项使用LongAdder和LatencyHistogram记录，读取统计信息时不需要持有连接池的锁，不会与获取和归还连接的线程竞争
  */
-public class PoolState {
+public class PoolState implements PoolStateMXBean {
 	// 连接池关联的数据源
 	protected PooledDataSource dataSource;
 	
+	// 原有引擎修改下面的连接集合和等待队列时持有的锁
+	// 使用ReentrantLock而不是synchronized: 持有锁期间会创建、回滚、关闭真实连接，在JDK 21的虚拟线程中，
+	// synchronized内的阻塞IO会把虚拟线程固定(pin)在载体线程上，ReentrantLock则会让出载体线程
+	protected final ReentrantLock lock = new ReentrantLock();
+	
 	// 空闲的PooledConnection集合
 	protected final List<PooledConnection> idleConnections = new ArrayList<PooledConnection>();
 	// 活跃的PooledConnection集合
 	protected final List<PooledConnection> activeConnections = new ArrayList<PooledConnection>();
+	// 已占用名额、正在锁外创建的连接数，创建完成后计入活跃或空闲连接
+	protected int pendingConnectionCount;
+	
+	// 等待获取连接的线程队列，先进先出，归还的连接直接移交给队列头部等待最久的线程
+	protected final Deque<ConnectionWaiter> waiters = new ArrayDeque<ConnectionWaiter>();
+	
+	// 连接池的并发引擎(poolConcurrentBagEnabled=true)使用的连接容器，开启后idleConnections和activeConnections不再使用
+	protected final ConcurrentBag connectionBag = new ConcurrentBag();
 	
-	protected long requestCount = 0;            // 请求数据库连接的次数
+	// 下面的统计项使用LongAdder累加，并发引擎更新统计信息时不需要持有state.lock
+	protected final LongAdder requestCount = new LongAdder();            // 请求数据库连接的次数
 	
-	protected long accumulatedRequestTime = 0;  // 获取连接的累积时间
+	protected final LongAdder accumulatedRequestTime = new LongAdder();  // 获取连接的累积时间
 	
 	// checkoutTime表示应用从连接池中取出连接，到归还连接这段时长，
 	// accumulatedRequestTime记录了所有连接累积的checkoutTime时长
-	protected long accumulatedCheckoutTime = 0;
+	protected final LongAdder accumulatedCheckoutTime = new LongAdder();
 	
 	// 当连接长时间未归还给连接池时，会被认为该连接超时，
 	// claimedOverdueConnectionCount记录了超时的连接个数
-	protected long claimedOverdueConnectionCount = 0;
+	protected final LongAdder claimedOverdueConnectionCount = new LongAdder();
+	
+	protected final LongAdder accumulatedCheckoutTimeOfOverdueConnections = new LongAdder();  // 累计超时时间
+	
+	protected final LongAdder accumulatedWaitTime = new LongAdder();     // 累积阻塞等待时间
+	
+	protected final LongAdder hadToWaitCount = new LongAdder();          // 阻塞等待的连接数
+	
+	protected final LatencyHistogram waitTimeHistogram = new LatencyHistogram();  // 每次阻塞等待的耗时分布
+	
+	protected final LatencyHistogram checkoutTimeHistogram = new LatencyHistogram();  // 每次checkout时长的分布
+	
+	// 连接从创建到真正关闭的存活时间分布，桶的上限从1秒到1天
+	protected final LatencyHistogram connectionLifetimeHistogram = new LatencyHistogram(new long[] {
+			1000L, 10000L, 60000L, 300000L, 600000L, 1800000L, 3600000L, 7200000L, 21600000L, 86400000L });
+	
+	protected final LongAdder badConnectionCount = new LongAdder();      // 无效的连接数	
+	
+	protected final LongAdder retiredConnectionCount = new LongAdder();  // 因超过最大存活时间或最长空闲时间而关闭的连接数
 	
-	protected long accumulatedCheckoutTimeOfOverdueConnections = 0;  // 累计超时时间
+	protected final LongAdder statementCacheHitCount = new LongAdder();   // PreparedStatement缓存命中次数
 	
-	protected long accumulatedWaitTime = 0;     // 累积阻塞等待时间
+	protected final LongAdder statementCacheMissCount = new LongAdder();  // PreparedStatement缓存未命中次数
 	
-	protected long hadToWaitCount = 0;          // 阻塞等待的连接数
+	protected final LongAdder suspectedLeakCount = new LongAdder();      // 泄漏检测报告的疑似泄漏的连接数
 	
-	protected long badConnectionCount = 0;      // 无效的连接数	
+	protected final LongAdder createdConnectionCount = new LongAdder();  // 创建的真实连接数
+	
+	protected final LongAdder accumulatedCreateTime = new LongAdder();   // 创建真实连接的累积耗时
+	
+	protected final LatencyHistogram connectionCreateTimeHistogram = new LatencyHistogram();  // 每次创建真实连接的耗时分布
 	
 	public PoolState(PooledDataSource dataSource) {
 		this.dataSource = dataSource;
 	}
 	
 	// 获取当前数据源的累计连接请求次数
-	public synchronized long getRequestCount() {
-		return requestCount;
+	public long getRequestCount() {
+		return requestCount.sum();
 	}
 	
 	// 获取数据库连接的平均请求时间
-	public synchronized long getAverageRequestTime() {
-		return requestCount == 0 ? 0 : accumulatedRequestTime / requestCount;
+	public long getAverageRequestTime() {
+		long requests = requestCount.sum();
+		return requests == 0 ? 0 : accumulatedRequestTime.sum() / requests;
 	}
 	
 	// 获取当前数据源的累计连接等待次数
-	public synchronized long getHadToWaitCount() {
-		return hadToWaitCount;
+	public long getHadToWaitCount() {
+		return hadToWaitCount.sum();
 	}
 	
 	// 获取数据库连接的平均等待时间
-	public synchronized long getAverageWaitTime() {
-		return hadToWaitCount == 0 ? 0 : accumulatedWaitTime / hadToWaitCount;
+	public long getAverageWaitTime() {
+		long waits = hadToWaitCount.sum();
+		return waits == 0 ? 0 : accumulatedWaitTime.sum() / waits;
 	}	
 	
+	// 获取阻塞等待耗时的分布
+	public LatencyHistogram getWaitTimeHistogram() {
+		return waitTimeHistogram;
+	}
+	
+	// 获取checkout时长的分布
+	public LatencyHistogram getCheckoutTimeHistogram() {
+		return checkoutTimeHistogram;
+	}
+	
+	// 获取连接存活时间的分布
+	public LatencyHistogram getConnectionLifetimeHistogram() {
+		return connectionLifetimeHistogram;
+	}
+	
+	public long getWaitTimeP99() {
+		return waitTimeHistogram.getPercentile(0.99);
+	}
+	
+	public long getCheckoutTimeP50() {
+		return checkoutTimeHistogram.getPercentile(0.5);
+	}
+	
+	public long getCheckoutTimeP99() {
+		return checkoutTimeHistogram.getPercentile(0.99);
+	}
+	
+	// 获取创建真实连接的次数
+	public long getCreatedConnectionCount() {
+		return createdConnectionCount.sum();
+	}
+	
+	// 获取创建真实连接的平均耗时
+	public long getAverageCreateTime() {
+		long created = createdConnectionCount.sum();
+		return created == 0 ? 0 : accumulatedCreateTime.sum() / created;
+	}
+	
+	// 获取创建真实连接耗时的分布
+	public LatencyHistogram getConnectionCreateTimeHistogram() {
+		return connectionCreateTimeHistogram;
+	}
+	
+	// 获取当前生效的最大活跃连接数，开启自适应调整时在poolMinimumActiveConnections和poolMaximumActiveConnections之间变化
+	public int getEffectiveMaximumActiveConnections() {
+		return dataSource.getEffectiveMaximumActiveConnections();
+	}
+	
+	// 下面三个连接数在原有引擎中不加锁读取集合大小，是一个近似值，用于监控
+	// [start]
+	// 获取当前正在排队等待连接的线程数
+	public int getWaitingThreadCount() {
+		if (dataSource.poolConcurrentBagEnabled) {
+			return connectionBag.getWaitingThreadCount();
+		}
+		return waiters.size();
+	}
+	
 	// 获取当前数据源的累计无效连接数
-	public synchronized long getBadConnectionCount() {
-		return badConnectionCount;
+	public long getBadConnectionCount() {
+		return badConnectionCount.sum();
+	}
+	
+	// 获取因超过最大存活时间或最长空闲时间而关闭的连接数
+	public long getRetiredConnectionCount() {
+		return retiredConnectionCount.sum();
+	}
+	
+	// 获取PreparedStatement缓存的命中次数
+	public long getStatementCacheHitCount() {
+		return statementCacheHitCount.sum();
+	}
+	
+	// 获取PreparedStatement缓存的未命中次数
+	public long getStatementCacheMissCount() {
+		return statementCacheMissCount.sum();
+	}
+	
+	// 获取泄漏检测报告的疑似泄漏的连接数
+	public long getSuspectedLeakCount() {
+		return suspectedLeakCount.sum();
 	}
 	
 	// 获取当前数据源的累计连接使用超时数
-	public synchronized long getClaimedOverdueConnectionCount() {
-		return claimedOverdueConnectionCount;
+	public long getClaimedOverdueConnectionCount() {
+		return claimedOverdueConnectionCount.sum();
 	}
 	
 	// 获取数据库连接超时的平均超时时间
-	public synchronized long getAverageOverdueCheckoutTime() {
-		return claimedOverdueConnectionCount == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections / claimedOverdueConnectionCount;
+	public long getAverageOverdueCheckoutTime() {
+		long overdues = claimedOverdueConnectionCount.sum();
+		return overdues == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections.sum() / overdues;
 	}
 	
 	// 获取数据库连接的平均使用时间
-	public synchronized long getAverageCheckoutTime() {
-		return requestCount == 0 ? 0 : accumulatedCheckoutTime / requestCount;
+	public long getAverageCheckoutTime() {
+		long requests = requestCount.sum();
+		return requests == 0 ? 0 : accumulatedCheckoutTime.sum() / requests;
 	}
 	
 	// 获取当前数据库连接池中空闲的连接数
-	public synchronized int getIdleConnectionCount() {
+	public int getIdleConnectionCount() {
+		if (dataSource.poolConcurrentBagEnabled) {
+			return connectionBag.getCount(PooledConnection.STATE_NOT_IN_USE);
+		}
 		return idleConnections.size();
 	}
 	
 	// 获取当前数据库连接池中活跃的连接数
-	public synchronized int getActiveConnectionCount() {
+	public int getActiveConnectionCount() {
+		if (dataSource.poolConcurrentBagEnabled) {
+			return connectionBag.getCount(PooledConnection.STATE_IN_USE);
+		}
 		return activeConnections.size();
 	}
+	// [end]
 	
 	// 打印数据库连接池的状态信息
 	@Override
-	public synchronized String toString() {
+	public String toString() {
 	    StringBuilder builder = new StringBuilder();
 	    builder.append("\n===CONFINGURATION==============================================");
 	    builder.append("\n jdbcDriver                     ").append(dataSource.getDriver());
@@ -105,7 +235,24 @@ public class PoolState {
 	    builder.append("\n poolPingEnabled                ").append(dataSource.poolPingEnabled);
 	    builder.append("\n poolPingQuery                  ").append(dataSource.poolPingQuery);
 	    builder.append("\n poolPingConnectionsNotUsedFor  ").append(dataSource.poolPingConnectionsNotUsedFor);
+	    builder.append("\n poolConcurrentBagEnabled       ").append(dataSource.poolConcurrentBagEnabled);
+	    builder.append("\n poolMinimumIdle                ").append(dataSource.poolMinimumIdle);
+	    builder.append("\n poolMaximumLifetime            ").append(dataSource.poolMaximumLifetime);
+	    builder.append("\n poolMaximumIdleTime            ").append(dataSource.poolMaximumIdleTime);
+	    builder.append("\n poolHousekeepingInterval       ").append(dataSource.poolHousekeepingInterval);
+	    builder.append("\n poolPreparedStatementCacheSize ").append(dataSource.poolPreparedStatementCacheSize);
+	    builder.append("\n poolJmxEnabled                 ").append(dataSource.poolJmxEnabled);
+	    builder.append("\n poolMinimumActiveConnections   ").append(dataSource.poolMinimumActiveConnections);
+	    builder.append("\n poolAdaptiveSizingInterval     ").append(dataSource.poolAdaptiveSizingInterval);
+	    builder.append("\n poolLeakDetectionThreshold     ").append(dataSource.poolLeakDetectionThreshold);
+	    builder.append("\n poolLeakDetectionStackSampling ").append(dataSource.poolLeakDetectionStackSampling);
+	    builder.append("\n poolReclaimOverdueConnections  ").append(dataSource.poolReclaimOverdueConnections);
+	    builder.append("\n poolPartitionMaximumActiveConnections ").append(dataSource.poolPartitionMaximumActiveConnections);
+	    builder.append("\n poolPartitionMaximumIdleConnections ").append(dataSource.poolPartitionMaximumIdleConnections);
+	    builder.append("\n poolMaximumTotalConnections    ").append(dataSource.poolMaximumTotalConnections);
+	    builder.append("\n poolConnectionCreationParallelism ").append(dataSource.poolConnectionCreationParallelism);
 	    builder.append("\n ---STATUS-----------------------------------------------------");
+	    builder.append("\n effectiveMaxActiveConnections  ").append(getEffectiveMaximumActiveConnections());
 	    builder.append("\n activeConnections              ").append(getActiveConnectionCount());
 	    builder.append("\n idleConnections                ").append(getIdleConnectionCount());
 	    builder.append("\n requestCount                   ").append(getRequestCount());
@@ -113,9 +260,20 @@ public class PoolState {
 	    builder.append("\n averageCheckoutTime            ").append(getAverageCheckoutTime());
 	    builder.append("\n claimedOverdue                 ").append(getClaimedOverdueConnectionCount());
 	    builder.append("\n averageOverdueCheckoutTime     ").append(getAverageOverdueCheckoutTime());
+	    builder.append("\n suspectedLeaks                 ").append(getSuspectedLeakCount());
 	    builder.append("\n hadToWait                      ").append(getHadToWaitCount());
 	    builder.append("\n averageWaitTime                ").append(getAverageWaitTime());
+	    builder.append("\n waitingThreads                 ").append(getWaitingThreadCount());
+	    builder.append("\n waitTimeDistribution           ").append(getWaitTimeHistogram());
+	    builder.append("\n checkoutTimeDistribution       ").append(getCheckoutTimeHistogram());
+	    builder.append("\n connectionLifetimeDistribution ").append(getConnectionLifetimeHistogram());
+	    builder.append("\n createdConnections             ").append(getCreatedConnectionCount());
+	    builder.append("\n averageCreateTime              ").append(getAverageCreateTime());
+	    builder.append("\n connectionCreateDistribution   ").append(getConnectionCreateTimeHistogram());
 	    builder.append("\n badConnectionCount             ").append(getBadConnectionCount());
+	    builder.append("\n retiredConnectionCount         ").append(getRetiredConnectionCount());
+	    builder.append("\n statementCacheHits             ").append(getStatementCacheHitCount());
+	    builder.append("\n statementCacheMisses           ").append(getStatementCacheMissCount());
 	    builder.append("\n===============================================================");
 	    return builder.toString();
 	}		
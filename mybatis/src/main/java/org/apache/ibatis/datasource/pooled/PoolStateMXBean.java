@@ -0,0 +1,62 @@
+package org.apache.ibatis.datasource.pooled;
+
+/**
+ * 连接池状态的JMX管理接口，由PoolState实现，poolJmxEnabled为true时由PooledDataSource注册到平台MBeanServer
+ * 所有属性的读取都不需要持有连接池的锁
+ * 耗时分布(LatencyHistogram)在JMX中映射为包含bucketBounds、counts、count的CompositeData
+ */
+public interface PoolStateMXBean {
+
+	long getRequestCount();
+
+	long getAverageRequestTime();
+
+	long getHadToWaitCount();
+
+	long getAverageWaitTime();
+
+	long getBadConnectionCount();
+
+	long getClaimedOverdueConnectionCount();
+
+	long getAverageOverdueCheckoutTime();
+
+	long getSuspectedLeakCount();
+
+	long getAverageCheckoutTime();
+
+	long getRetiredConnectionCount();
+
+	long getStatementCacheHitCount();
+
+	long getStatementCacheMissCount();
+
+	long getCreatedConnectionCount();
+
+	long getAverageCreateTime();
+
+	// 当前生效的最大活跃连接数
+	int getEffectiveMaximumActiveConnections();
+
+	int getIdleConnectionCount();
+
+	int getActiveConnectionCount();
+
+	int getWaitingThreadCount();
+
+	LatencyHistogram getWaitTimeHistogram();
+
+	LatencyHistogram getCheckoutTimeHistogram();
+
+	LatencyHistogram getConnectionLifetimeHistogram();
+
+	LatencyHistogram getConnectionCreateTimeHistogram();
+
+	// 阻塞等待耗时的p99(毫秒)
+	long getWaitTimeP99();
+
+	// checkout时长的p50和p99(毫秒)
+	long getCheckoutTimeP50();
+
+	long getCheckoutTimeP99();
+}
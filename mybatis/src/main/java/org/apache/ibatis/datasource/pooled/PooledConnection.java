@@ -1,12 +1,17 @@
 package org.apache.ibatis.datasource.pooled;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.ReflectionException;
 
 
 /**
@@ -15,37 +20,101 @@ import org.apache.ibatis.reflection.ExceptionUtil;
  * 2) 计算数据库连接的创建时间、使用时间、取用时间
  * 3) 判断两个连接对象是否为同一个
  * 4) 拦截数据库连接的关闭方法，将连接返回给连接池处理
+ * 
+ * 同一个真实连接在整个生命周期内只对应一个PooledConnection对象，归还连接时不再重新创建PooledConnection，
+ * 而是在每次取出连接时生成一个新的代理对象(相当于新的一代)，只有当前这一代的代理对象可以操作和归还连接，
+ * 已经归还或被回收的旧代理对象调用方法时会被检测为无效
  */
 public class PooledConnection implements InvocationHandler {
 
 	private static final String CLOSE = "close";   // 执行关闭connect时的方法名
+	private static final String PREPARE_STATEMENT = "prepareStatement";   // 开启PreparedStatement缓存时拦截的方法名
+	// 下面的方法被拦截，用于跟踪连接状态
+	private static final String GET_AUTO_COMMIT = "getAutoCommit";
+	private static final String SET_AUTO_COMMIT = "setAutoCommit";
+	private static final String GET_TRANSACTION_ISOLATION = "getTransactionIsolation";
+	private static final String SET_TRANSACTION_ISOLATION = "setTransactionIsolation";
+	private static final String SET_READ_ONLY = "setReadOnly";
+	private static final String SET_CATALOG = "setCatalog";
+	private static final String COMMIT = "commit";
+	private static final String ROLLBACK = "rollback";
+	
+	// 调用方在本次checkout期间修改过的连接属性，归还连接时只重置这些属性
+	private static final int DIRTY_AUTO_COMMIT = 1;
+	private static final int DIRTY_ISOLATION = 1 << 1;
+	private static final int DIRTY_READ_ONLY = 1 << 2;
+	private static final int DIRTY_CATALOG = 1 << 3;
+	private static final int UNKNOWN_ISOLATION = -1;   // 还未获取过真实连接的事务隔离级别
 	private static final Class<?>[] IFACES = new Class<?>[] { Connection.class };	
 	
+	// 连接在ConcurrentBag中的状态，只在并发引擎(poolConcurrentBagEnabled=true)中使用，通过CAS完成状态迁移
+	static final int STATE_NOT_IN_USE = 0;   // 空闲
+	static final int STATE_IN_USE = 1;       // 已借出
+	static final int STATE_REMOVED = -1;     // 已移出连接池
+	static final int STATE_RESERVED = -2;    // 正在归还或被回收，其他线程不能再操作
+	private static final AtomicIntegerFieldUpdater<PooledConnection> STATE_UPDATER =
+			AtomicIntegerFieldUpdater.newUpdater(PooledConnection.class, "state");
+	private static final AtomicReferenceFieldUpdater<PooledConnection, Connection> PROXY_UPDATER =
+			AtomicReferenceFieldUpdater.newUpdater(PooledConnection.class, Connection.class, "proxyConnection");
+	private static final AtomicIntegerFieldUpdater<PooledConnection> LEAK_REPORTED_UPDATER =
+			AtomicIntegerFieldUpdater.newUpdater(PooledConnection.class, "leakReported");
+	
+	// 缓存代理类的构造方法，生成代理对象时不再需要Proxy.newProxyInstance()查找代理类
+	private static final Constructor<?> PROXY_CONSTRUCTOR;
+	
+	static {
+		try {
+			PROXY_CONSTRUCTOR = Proxy.getProxyClass(Connection.class.getClassLoader(), IFACES).getConstructor(InvocationHandler.class);
+		} catch (NoSuchMethodException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+	
 	private int hashCode = 0;            // 在对比两个数据库连接是否属于同一个时用到
 	// 记录当前PooledConnection对象所在的PooledDataSource对象。该PooledConnection是从
 	// 该PooledDataSource中获取的；当调用close()方法时会将PooledConnection放回该PooledConnection中，并不会实际关闭连接	
 	private PooledDataSource dataSource;
 	private Connection realConnection;   // 真正的数据库连接
-	private Connection proxyConnection;  // 数据库连接的代理对象，在代理对象方法内拦截"close"方法
+	// 当前这一代的代理对象，在代理对象方法内拦截"close"方法；连接空闲或被回收时为null
+	private volatile Connection proxyConnection;
 	// 下面三个时间戳主要用于判断数据库连接是否超时以及数据统计
-	private long checkoutTimestamp;      // 从连接池中取出该连接的时间戳
+	private volatile long checkoutTimestamp;  // 从连接池中取出该连接的时间戳
 	private long createdTimestamp;       // 该连接创建的时间戳
 	private long lastUsedTimestamp;      // 最后一次被使用的时间戳
 	// 由数据库URL、用户名和密码计算出来的hash值，可用于标识该连接所在的连接池
 	private int connectionTypeCode;	     
 	// 检测当前PooledConnection是否有效，主要是为了防止程序通过close方法将连接归还给连接池之后，依然通过该连接操作数据库导致出错
-	private boolean valid;	
+	private volatile boolean valid;
+	private volatile int state = STATE_NOT_IN_USE;  // 连接在ConcurrentBag中的状态
+	private PreparedStatementCache statementCache;  // 该连接的PreparedStatement缓存，第一次预编译时创建
+	// 连接状态跟踪，回收超时连接和后台维护时会在其他线程读取，所以使用volatile
+	private volatile Boolean autoCommit;            // 真实连接当前的自动提交模式，null表示还未获取过
+	private volatile int transactionIsolation = UNKNOWN_ISOLATION;  // 最后一次设置到真实连接上的事务隔离级别
+	private volatile boolean transactionDirty;      // 上一次提交或回滚之后是否执行过语句
+	private volatile int dirtyBits;                 // 被修改过的连接属性
+	// 连接属性被第一次修改之前的值，用于归还时恢复
+	private volatile boolean originalAutoCommit;
+	private volatile int originalTransactionIsolation;
+	private volatile boolean originalReadOnly;
+	private volatile String originalCatalog;
+	// 本次取出的持有线程、抽样采集的调用栈以及是否已经报告过泄漏，开启泄漏检测时记录，归还或被回收时清空
+	private volatile String checkoutThreadName;
+	private volatile ConnectionLeakDetector.CheckoutStack checkoutStack;
+	private volatile int leakReported;
 	
 	public PooledConnection(Connection connection, PooledDataSource dataSource) {
 		this.hashCode = connection.hashCode();
 		this.dataSource = dataSource;
 		this.realConnection = connection;
-		this.proxyConnection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), IFACES, this);
 		this.createdTimestamp = System.currentTimeMillis();
 		this.lastUsedTimestamp = System.currentTimeMillis();
 		this.valid = true;		
 	}
 	
+	PooledDataSource getDataSource() {
+		return dataSource;
+	}
+	
 	public void invalidate() {
 		valid = false;
 	}
@@ -58,6 +127,23 @@ public class PooledConnection implements InvocationHandler {
 		return valid && realConnection != null && dataSource.pingConnection(this);
 	}
 	
+	// 只检测有效状态位和真正的数据库连接，不发送心跳检测，开启后台维护时在获取和归还连接时使用
+	public boolean isValidWithoutPing() {
+		return valid && realConnection != null;
+	}
+	
+	int getState() {
+		return state;
+	}
+	
+	void setState(int state) {
+		this.state = state;
+	}
+	
+	boolean compareAndSetState(int expect, int update) {
+		return STATE_UPDATER.compareAndSet(this, expect, update);
+	}
+	
 	public Connection getRealConnection() {
 		return realConnection;
 	}
@@ -66,6 +152,23 @@ public class PooledConnection implements InvocationHandler {
 		return proxyConnection;
 	}
 	
+	// 取出连接时调用，生成新一代的代理对象，之前的代理对象全部失效
+	Connection renewProxyConnection() {
+		try {
+			Connection proxy = (Connection) PROXY_CONSTRUCTOR.newInstance(this);
+			proxyConnection = proxy;
+			return proxy;
+		} catch (Exception e) {
+			throw new ReflectionException("Error creating proxy for connection " + getRealHashCode() + ". Cause: " + e, e);
+		}
+	}
+	
+	// 回收超时连接时调用，使当前持有连接的代理对象失效
+	// 返回false表示expected已经不是当前这一代的代理对象(持有者已经调用了close()，或者连接已经被取出了新的一代)
+	boolean revokeProxyConnection(Connection expected) {
+		return expected != null && PROXY_UPDATER.compareAndSet(this, expected, null);
+	}
+	
 	public int getRealHashCode() {
 	    return realConnection == null ? 0 : realConnection.hashCode();
 	}
@@ -94,6 +197,182 @@ public class PooledConnection implements InvocationHandler {
 		this.lastUsedTimestamp = lastUsedTimestamp;
 	}
 	
+	// 获取该连接的PreparedStatement缓存，未开启缓存时返回null
+	synchronized PreparedStatementCache getStatementCache() {
+		if (statementCache == null && dataSource.poolPreparedStatementCacheSize > 0) {
+			statementCache = new PreparedStatementCache(this, dataSource.getPoolState(), dataSource.poolPreparedStatementCacheSize);
+		}
+		return statementCache;
+	}
+	
+	// 关闭并清空缓存的PreparedStatement，真正关闭连接之前调用
+	// 只在同步块内取出缓存，关闭语句的IO在同步块外进行，避免虚拟线程被固定在载体线程上
+	void clearStatementCache() {
+		PreparedStatementCache cache;
+		synchronized (this) {
+			cache = statementCache;
+			statementCache = null;
+		}
+		if (cache != null) {
+			cache.clear();
+		}
+	}
+	
+	// 连接状态跟踪
+	// [start]
+	// 获取真实连接的自动提交模式，只在第一次调用时访问数据库，之后通过拦截setAutoCommit()跟踪
+	boolean isAutoCommit() throws SQLException {
+		Boolean current = autoCommit;
+		if (current == null) {
+			current = realConnection.getAutoCommit();
+			autoCommit = current;
+		}
+		return current;
+	}
+	
+	// 语句执行时由PooledStatement和PooledPreparedStatement调用
+	void markStatementExecuted() {
+		if (!transactionDirty) {
+			transactionDirty = true;
+		}
+	}
+	
+	// 非自动提交模式下，上一次提交或回滚之后执行过语句才需要回滚
+	void rollbackIfNecessary() throws SQLException {
+		if (transactionDirty) {
+			if (!isAutoCommit()) {
+				realConnection.rollback();
+			}
+			transactionDirty = false;
+		}
+	}
+	
+	// 归还连接时调用，回滚未提交的事务，并恢复调用方修改过的连接属性
+	void reset() throws SQLException {
+		rollbackIfNecessary();
+		int bits = dirtyBits;
+		if (bits == 0) {
+			return;
+		}
+		if ((bits & DIRTY_AUTO_COMMIT) != 0) {
+			realConnection.setAutoCommit(originalAutoCommit);
+			autoCommit = originalAutoCommit;
+		}
+		if ((bits & DIRTY_ISOLATION) != 0) {
+			realConnection.setTransactionIsolation(originalTransactionIsolation);
+			transactionIsolation = originalTransactionIsolation;
+		}
+		if ((bits & DIRTY_READ_ONLY) != 0) {
+			realConnection.setReadOnly(originalReadOnly);
+		}
+		if ((bits & DIRTY_CATALOG) != 0) {
+			realConnection.setCatalog(originalCatalog);
+		}
+		dirtyBits = 0;
+	}
+	
+	// 自动提交模式没有变化时不访问数据库，这与JDBC规范中"模式不变时setAutoCommit()不做任何事"的约定一致
+	private void setAutoCommit(boolean value) throws SQLException {
+		boolean current = isAutoCommit();
+		if (value == current) {
+			return;
+		}
+		if ((dirtyBits & DIRTY_AUTO_COMMIT) == 0) {
+			originalAutoCommit = current;
+		}
+		realConnection.setAutoCommit(value);
+		autoCommit = value;
+		if (value) {
+			transactionDirty = false;   // 切换为自动提交时会提交当前事务
+		}
+		markDirty(DIRTY_AUTO_COMMIT, value == originalAutoCommit);
+	}
+	
+	// 记录最后一次设置的隔离级别，只在连接第一次设置时调用getTransactionIsolation()，之后每次取出都与记录的值比较
+	private void setTransactionIsolation(int level) throws SQLException {
+		int current = transactionIsolation;
+		if (current == UNKNOWN_ISOLATION) {
+			current = realConnection.getTransactionIsolation();
+			transactionIsolation = current;
+		}
+		if (level == current) {
+			return;
+		}
+		if ((dirtyBits & DIRTY_ISOLATION) == 0) {
+			originalTransactionIsolation = current;
+		}
+		realConnection.setTransactionIsolation(level);
+		transactionIsolation = level;
+		markDirty(DIRTY_ISOLATION, level == originalTransactionIsolation);
+	}
+	
+	private void setReadOnly(boolean readOnly) throws SQLException {
+		if ((dirtyBits & DIRTY_READ_ONLY) == 0) {
+			originalReadOnly = realConnection.isReadOnly();
+			if (readOnly == originalReadOnly) {
+				return;
+			}
+		}
+		realConnection.setReadOnly(readOnly);
+		markDirty(DIRTY_READ_ONLY, readOnly == originalReadOnly);
+	}
+	
+	private void setCatalog(String catalog) throws SQLException {
+		if ((dirtyBits & DIRTY_CATALOG) == 0) {
+			originalCatalog = realConnection.getCatalog();
+			if (catalog == null ? originalCatalog == null : catalog.equals(originalCatalog)) {
+				return;
+			}
+		}
+		realConnection.setCatalog(catalog);
+		markDirty(DIRTY_CATALOG, catalog == null ? originalCatalog == null : catalog.equals(originalCatalog));
+	}
+	
+	// 修改后的值与原始值相同时清除标志位，归还时不需要重置
+	private void markDirty(int bit, boolean restored) {
+		dirtyBits = restored ? (dirtyBits & ~bit) : (dirtyBits | bit);
+	}
+	
+	/**
+	 * 调用真实连接的方法，拦截会修改连接状态的方法:
+	 * 1) getAutoCommit()和getTransactionIsolation()直接返回跟踪的值，setAutoCommit()等方法记录修改过的属性
+	 * 2) commit()和rollback()之后清除事务标志
+	 * 3) 创建的语句包装为PooledStatement，执行语句时标记事务
+	 */
+	private Object invokeRealConnection(Method method, String methodName, Object[] args) throws Throwable {
+		if (args != null && args.length == 1) {
+			if (SET_AUTO_COMMIT.equals(methodName)) {
+				setAutoCommit((Boolean) args[0]);
+				return null;
+			} else if (SET_TRANSACTION_ISOLATION.equals(methodName)) {
+				setTransactionIsolation((Integer) args[0]);
+				return null;
+			} else if (SET_READ_ONLY.equals(methodName)) {
+				setReadOnly((Boolean) args[0]);
+				return null;
+			} else if (SET_CATALOG.equals(methodName)) {
+				setCatalog((String) args[0]);
+				return null;
+			}
+		} else if (args == null) {
+			if (GET_AUTO_COMMIT.equals(methodName)) {
+				return isAutoCommit();
+			} else if (GET_TRANSACTION_ISOLATION.equals(methodName) && transactionIsolation != UNKNOWN_ISOLATION) {
+				return transactionIsolation;
+			} else if (COMMIT.equals(methodName) || ROLLBACK.equals(methodName)) {
+				Object result = method.invoke(realConnection, args);
+				transactionDirty = false;
+				return result;
+			}
+		}
+		Object result = method.invoke(realConnection, args);
+		if (result instanceof Statement) {
+			return PooledStatement.newInstance(this, (Statement) result);
+		}
+		return result;
+	}
+	// [end]
+	
 	public long getCheckoutTimestamp() {
 		return checkoutTimestamp;
 	}
@@ -102,6 +381,35 @@ public class PooledConnection implements InvocationHandler {
 		this.checkoutTimestamp = checkoutTimestamp;
 	}
 	
+	// 最后写入checkoutThreadName，读取方看到持有线程时，调用栈和报告标志已经属于本次取出
+	void recordCheckout(String threadName, ConnectionLeakDetector.CheckoutStack stack) {
+		checkoutStack = stack;
+		leakReported = 0;
+		checkoutThreadName = threadName;
+	}
+	
+	void clearCheckout() {
+		checkoutThreadName = null;
+		checkoutStack = null;
+	}
+	
+	String getCheckoutThreadName() {
+		return checkoutThreadName;
+	}
+	
+	ConnectionLeakDetector.CheckoutStack getCheckoutStack() {
+		return checkoutStack;
+	}
+	
+	boolean isLeakReported() {
+		return leakReported != 0;
+	}
+	
+	// 只有第一次调用返回true，避免同一次取出被重复报告
+	boolean markLeakReported() {
+		return LEAK_REPORTED_UPDATER.compareAndSet(this, 0, 1);
+	}
+	
 	// 获取数据库连接的最后一次使用的已使用时间
 	public long getTimeElapsedSinceLastUse() {
 		return System.currentTimeMillis() - lastUsedTimestamp;
@@ -146,14 +454,30 @@ public class PooledConnection implements InvocationHandler {
 		String methodName = method.getName();
 		// 当调用Connection的close()方法关闭数据库连接时，代理对象在此处拦截，将连接交给连接池处理
 		// 如果连接池活跃数据库连接已满，则真正关闭连接，否则将连接放入空闲的连接池中
-		if (CLOSE.hashCode() == method.hashCode() && CLOSE.equals(methodName)) {
-			dataSource.pushConncetion(this);
+		if (CLOSE.hashCode() == methodName.hashCode() && CLOSE.equals(methodName)) {
+			// 只有当前这一代的代理对象能归还连接，重复调用close()或旧代理对象调用close()时直接忽略
+			if (proxy == proxyConnection && PROXY_UPDATER.compareAndSet(this, (Connection) proxy, null)) {
+				PreparedStatementCache cache = statementCache;
+				if (cache != null) {
+					cache.releaseAll();   // 调用方没有关闭的语句放回缓存
+				}
+				dataSource.pushConncetion(this);
+			}
 			return null;
+		} else if (PREPARE_STATEMENT.hashCode() == methodName.hashCode() && PREPARE_STATEMENT.equals(methodName) && isCacheable(args)) {
+			// 开启缓存时，prepareStatement(sql)和prepareStatement(sql, resultSetType, resultSetConcurrency)从缓存中获取
+			checkConnection(proxy);
+			PreparedStatementCache cache = getStatementCache();
+			if (args.length == 1) {
+				return cache.prepareStatement((String) args[0]);
+			}
+			return cache.prepareStatement((String) args[0], (Integer) args[1], (Integer) args[2]);
 		} else {
 			try {
 				// 如果调用的是Connection里的方法，则先检测数据库连接是否已放回连接池
 				if (!Object.class.equals(method.getDeclaringClass())) {
-					checkConnection();
+					checkConnection(proxy);
+					return invokeRealConnection(method, methodName, args);
 				}
 				return method.invoke(realConnection, args);
 			} catch (Throwable t) {
@@ -162,9 +486,28 @@ public class PooledConnection implements InvocationHandler {
 		}
 	}
 
+	// 只缓存prepareStatement(String)和prepareStatement(String, int, int)两种重载
+	private boolean isCacheable(Object[] args) {
+		if (dataSource.poolPreparedStatementCacheSize <= 0) {
+			return false;
+		}
+		if (args.length == 1) {
+			return true;
+		}
+		return args.length == 3 && args[1] instanceof Integer && args[2] instanceof Integer;
+	}
+	
 	protected void checkConnection() throws SQLException {
 		if (!valid) {
 			throw new SQLException("Error accessing PooledConnection. Connection is invalid.");
 		}
+	}
+	
+	// 除了检测连接本身是否有效，还要检测调用方持有的代理对象是否是当前这一代
+	protected void checkConnection(Object proxy) throws SQLException {
+		checkConnection();
+		if (proxy != proxyConnection) {
+			throw new SQLException("Error accessing PooledConnection. Connection has been returned to the pool.");
+		}
 	}	
 }
@@ -1,6 +1,7 @@
 package org.apache.ibatis.datasource.pooled;
 
 import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
@@ -9,9 +10,25 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.sql.DataSource;
 
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
@@ -38,8 +55,43 @@ public class PooledDataSource implements DataSource {
 	protected String poolPingQuery = "NO PING QUERY SET";  	// 在检测一个数据库连接是否可用时，会给数据库发送一个测试SQL语句
 	protected boolean poolPingEnabled = false;              // 是否允许发送测试SQL语句
 	protected int poolPingConnectionsNotUsedFor = 0;        // 当连接池超过多少毫秒未使用时，会发送一次测试SQL语句，检测连接是否正常
+	protected boolean poolConcurrentBagEnabled = false;     // 是否使用基于ConcurrentBag的并发引擎，开启后获取和归还连接都不再持有state.lock
+	protected int poolMinimumIdle = 0;                      // 最小空闲连接数，开启后台维护时由维护线程预先创建，不超过poolMaximumIdleConnections
+	protected int poolMaximumLifetime = 0;                  // 连接的最大存活时间，超过后在归还连接或后台维护时关闭，0表示不限制
+	protected int poolMaximumIdleTime = 0;                  // 超出poolMinimumIdle部分的空闲连接的最长空闲时间，由后台维护线程关闭，0表示不限制
+	protected int poolHousekeepingInterval = 0;             // 后台维护线程的执行间隔，大于0时开启后台维护，获取和归还连接时不再发送心跳检测
+	protected int poolPreparedStatementCacheSize = 0;       // 每个连接缓存的PreparedStatement个数，大于0时开启缓存
+	protected boolean poolJmxEnabled = false;               // 是否将连接池状态(PoolState)注册为JMX MBean
+	protected String poolName;                              // 连接池名称，用于JMX的ObjectName，未设置时根据对象标识生成
+	protected int poolMinimumActiveConnections = 1;         // 自适应调整时最大活跃连接数的下限，上限为poolMaximumActiveConnections
+	protected int poolAdaptiveSizingInterval = 0;           // 自适应调整最大活跃连接数的间隔，大于0时开启
+	protected int poolLeakDetectionThreshold = 0;           // 取出连接超过多少毫秒未归还时报告可能的泄漏，大于0时开启泄漏检测
+	protected int poolLeakDetectionStackSampling = 10;      // 开启泄漏检测时每多少次取出连接采集一次调用栈，1表示每次都采集，0表示不采集
+	protected boolean poolReclaimOverdueConnections = true; // 是否回收超过poolMaximumCheckoutTime的连接，false时只报告不回收
+	protected int poolPartitionMaximumActiveConnections = 0;  // 按用户名和密码划分的子连接池的最大活跃连接数，0表示与poolMaximumActiveConnections相同
+	protected int poolPartitionMaximumIdleConnections = 0;    // 子连接池的最大空闲连接数，0表示与poolMaximumIdleConnections相同
+	protected int poolMaximumTotalConnections = 0;            // 当前连接池与所有子连接池的连接总数上限，0表示不限制
+	protected int poolConnectionCreationParallelism = 1;      // 后台维护线程补充连接时同时创建的连接数
 	
-	private int expectedConnectionTypeCode;                 // 根据数据库的URL、用户名、密码生成的一个hash值，该哈希值用于标志着当前的数据库连接池，在构造函数中初始化	
+	private PoolHousekeeper housekeeper;                    // 后台维护线程，poolHousekeepingInterval大于0时创建
+	private volatile PoolSizingController sizingController; // 最大活跃连接数的自适应控制器，poolAdaptiveSizingInterval大于0时创建
+	private volatile ConnectionLeakDetector leakDetector;   // 连接泄漏检测，poolLeakDetectionThreshold大于0时创建
+	private ExecutorService connectionCreator;              // 同时创建连接的线程池，第一次需要时创建
+	
+	// 使用非默认用户名和密码获取连接时，按用户名和密码创建的子连接池，用户名和密码只保存在PartitionKey中，不对外暴露
+	private final ConcurrentHashMap<PartitionKey, PooledDataSource> partitions = new ConcurrentHashMap<PartitionKey, PooledDataSource>();
+	private final AtomicInteger partitionSequence = new AtomicInteger();   // 为子连接池分配编号
+	private PooledDataSource parent;                        // 子连接池所属的连接池，非子连接池为null
+	private PartitionKey partitionKey;                      // 子连接池在parent.partitions中的key，非子连接池为null
+	private String partitionName;                           // 子连接池的名称: 用户名#编号，用于getPartitionStates()和日志
+	// 正在通过该子连接池获取连接的线程数，为-1时表示子连接池已经被后台维护线程移除
+	private final AtomicInteger partitionBorrowers = new AtomicInteger();
+	// 连接池已关闭(调用了close()，或子连接池被forceCloseAll()移除)，之后归还的连接直接关闭，不再放回连接池
+	private volatile boolean closed;
+	
+	private ObjectName registeredObjectName;                // 已注册的JMX ObjectName，未注册时为null
+	
+	private volatile int expectedConnectionTypeCode;        // 根据数据库的URL、用户名、密码生成的一个hash值，该哈希值用于标志着当前的数据库连接池，在构造函数中初始化	
 	
 	// 构造方法
 	// [start]
@@ -76,14 +128,43 @@ public class PooledDataSource implements DataSource {
 	// [start]
 	@Override
 	public Connection getConnection() throws SQLException {
-		return popConnection(dataSource.getUsername(), dataSource.getPassword()).getProxyConnection();
+		checkNotClosed();
+		return getPooledConnection(dataSource.getUsername(), dataSource.getPassword()).getProxyConnection();
 	}
 
+	// 用户名和密码与默认值不同时，从对应的子连接池中获取连接
 	@Override
 	public Connection getConnection(String username, String password) throws SQLException {
-		return popConnection(username, password).getProxyConnection();
+		checkNotClosed();
+		while (true) {
+			PooledDataSource partition = getPartition(username, password);
+			if (partition == this) {
+				return getPooledConnection(username, password).getProxyConnection();
+			}
+			// 子连接池恰好被后台维护线程移除时，重新获取(创建)子连接池
+			if (partition.enterPartition()) {
+				try {
+					return partition.getPooledConnection(username, password).getProxyConnection();
+				} finally {
+					partition.partitionBorrowers.decrementAndGet();
+				}
+			}
+		}
 	}	
 	
+	private void checkNotClosed() throws SQLException {
+		if (closed) {
+			throw new SQLException("PooledDataSource " + getPoolName() + " is closed.");
+		}
+	}
+	
+	private PooledConnection getPooledConnection(String username, String password) throws SQLException {
+		if (poolConcurrentBagEnabled) {
+			return borrowConnection(username, password);
+		}
+		return popConnection(username, password);
+	}
+	
 	@Override
 	public void setLoginTimeout(int seconds) throws SQLException {
 		DriverManager.setLoginTimeout(seconds);
@@ -164,6 +245,7 @@ public class PooledDataSource implements DataSource {
 	public void setPoolMaximumActiveConnections(int poolMaximumActiveConnections) {
 		this.poolMaximumActiveConnections = poolMaximumActiveConnections;
 		forceCloseAll();
+		restartSizingController();
 	}
 	
 	public void setPoolMaximumIdleConnections(int poolMaximumIdleConnections) {
@@ -195,6 +277,111 @@ public class PooledDataSource implements DataSource {
 		this.poolPingConnectionsNotUsedFor = poolPingConnectionsNotUsedFor;
 		forceCloseAll();
 	}	
+	
+	public void setPoolConcurrentBagEnabled(boolean poolConcurrentBagEnabled) {
+		forceCloseAll();   // 先按旧引擎关闭所有连接，再切换引擎
+		this.poolConcurrentBagEnabled = poolConcurrentBagEnabled;
+	}
+	
+	public void setPoolMinimumIdle(int poolMinimumIdle) {
+		this.poolMinimumIdle = poolMinimumIdle;
+		forceCloseAll();
+	}
+	
+	public void setPoolMaximumLifetime(int poolMaximumLifetime) {
+		this.poolMaximumLifetime = poolMaximumLifetime;
+		forceCloseAll();
+	}
+	
+	public void setPoolMaximumIdleTime(int poolMaximumIdleTime) {
+		this.poolMaximumIdleTime = poolMaximumIdleTime;
+		forceCloseAll();
+	}
+	
+	public void setPoolPreparedStatementCacheSize(int poolPreparedStatementCacheSize) {
+		this.poolPreparedStatementCacheSize = poolPreparedStatementCacheSize;
+		forceCloseAll();
+	}
+	
+	// 开启时注册MBean，关闭时注销，不需要关闭连接
+	public synchronized void setPoolJmxEnabled(boolean poolJmxEnabled) {
+		this.poolJmxEnabled = poolJmxEnabled;
+		unregisterMBean();
+		if (poolJmxEnabled && !closed) {
+			registerMBean();
+		}
+	}
+	
+	// 调整的上下限不需要关闭连接，重新启动控制器即可
+	public void setPoolMinimumActiveConnections(int poolMinimumActiveConnections) {
+		this.poolMinimumActiveConnections = poolMinimumActiveConnections;
+		restartSizingController();
+	}
+	
+	// 设置为0时停止自适应调整，最大活跃连接数恢复为poolMaximumActiveConnections
+	public void setPoolAdaptiveSizingInterval(int poolAdaptiveSizingInterval) {
+		this.poolAdaptiveSizingInterval = poolAdaptiveSizingInterval;
+		restartSizingController();
+	}
+	
+	public void setPoolLeakDetectionThreshold(int poolLeakDetectionThreshold) {
+		this.poolLeakDetectionThreshold = poolLeakDetectionThreshold;
+		resetLeakDetector();
+	}
+	
+	public void setPoolLeakDetectionStackSampling(int poolLeakDetectionStackSampling) {
+		this.poolLeakDetectionStackSampling = poolLeakDetectionStackSampling;
+		resetLeakDetector();
+	}
+	
+	// 关闭回收时超时连接一直由原持有者占用，只由泄漏检测报告
+	public void setPoolReclaimOverdueConnections(boolean poolReclaimOverdueConnections) {
+		this.poolReclaimOverdueConnections = poolReclaimOverdueConnections;
+	}
+	
+	public void setPoolPartitionMaximumActiveConnections(int poolPartitionMaximumActiveConnections) {
+		this.poolPartitionMaximumActiveConnections = poolPartitionMaximumActiveConnections;
+		forceCloseAll();
+	}
+	
+	public void setPoolPartitionMaximumIdleConnections(int poolPartitionMaximumIdleConnections) {
+		this.poolPartitionMaximumIdleConnections = poolPartitionMaximumIdleConnections;
+		forceCloseAll();
+	}
+	
+	// 只限制新建连接，已有的连接不受影响
+	public void setPoolMaximumTotalConnections(int poolMaximumTotalConnections) {
+		this.poolMaximumTotalConnections = poolMaximumTotalConnections;
+	}
+	
+	public synchronized void setPoolConnectionCreationParallelism(int poolConnectionCreationParallelism) {
+		this.poolConnectionCreationParallelism = poolConnectionCreationParallelism;
+		if (connectionCreator != null) {
+			connectionCreator.shutdown();
+			connectionCreator = null;
+		}
+	}
+	
+	// 已注册时使用新的名称重新注册
+	public synchronized void setPoolName(String poolName) {
+		this.poolName = poolName;
+		if (poolJmxEnabled && !closed) {
+			unregisterMBean();
+			registerMBean();
+		}
+	}
+	
+	// 修改执行间隔时重新启动后台维护线程，设置为0时停止
+	public synchronized void setPoolHousekeepingInterval(int poolHousekeepingInterval) {
+		this.poolHousekeepingInterval = poolHousekeepingInterval;
+		if (housekeeper != null) {
+			housekeeper.shutdown();
+			housekeeper = null;
+		}
+		if (poolHousekeepingInterval > 0 && !closed) {
+			housekeeper = new PoolHousekeeper(this, poolHousekeepingInterval);
+		}
+	}
 	// [end]
 	
 	// 上述属性值获取
@@ -254,6 +441,83 @@ public class PooledDataSource implements DataSource {
 	public int getPoolPingConnectionsNotUsedFor() {
 		return poolPingConnectionsNotUsedFor;
 	}	
+	
+	public boolean isPoolConcurrentBagEnabled() {
+		return poolConcurrentBagEnabled;
+	}
+	
+	public int getPoolMinimumIdle() {
+		return poolMinimumIdle;
+	}
+	
+	public int getPoolMaximumLifetime() {
+		return poolMaximumLifetime;
+	}
+	
+	public int getPoolMaximumIdleTime() {
+		return poolMaximumIdleTime;
+	}
+	
+	public int getPoolHousekeepingInterval() {
+		return poolHousekeepingInterval;
+	}
+	
+	public int getPoolPreparedStatementCacheSize() {
+		return poolPreparedStatementCacheSize;
+	}
+	
+	public boolean isPoolJmxEnabled() {
+		return poolJmxEnabled;
+	}
+	
+	public int getPoolMinimumActiveConnections() {
+		return poolMinimumActiveConnections;
+	}
+	
+	public int getPoolAdaptiveSizingInterval() {
+		return poolAdaptiveSizingInterval;
+	}
+	
+	public int getPoolLeakDetectionThreshold() {
+		return poolLeakDetectionThreshold;
+	}
+	
+	public int getPoolLeakDetectionStackSampling() {
+		return poolLeakDetectionStackSampling;
+	}
+	
+	public boolean isPoolReclaimOverdueConnections() {
+		return poolReclaimOverdueConnections;
+	}
+	
+	public int getPoolPartitionMaximumActiveConnections() {
+		return poolPartitionMaximumActiveConnections;
+	}
+	
+	public int getPoolPartitionMaximumIdleConnections() {
+		return poolPartitionMaximumIdleConnections;
+	}
+	
+	public int getPoolMaximumTotalConnections() {
+		return poolMaximumTotalConnections;
+	}
+	
+	public int getPoolConnectionCreationParallelism() {
+		return poolConnectionCreationParallelism;
+	}
+	
+	// 当前生效的最大活跃连接数，未开启自适应调整时即poolMaximumActiveConnections
+	public int getEffectiveMaximumActiveConnections() {
+		PoolSizingController controller = sizingController;
+		return controller == null ? poolMaximumActiveConnections : controller.getLimit();
+	}
+	
+	public synchronized String getPoolName() {
+		if (poolName == null) {
+			return "PooledDataSource@" + Integer.toHexString(System.identityHashCode(this));
+		}
+		return poolName;
+	}
 	// [end]
 
 	public PoolState getPoolState() {
@@ -262,42 +526,109 @@ public class PooledDataSource implements DataSource {
 	
 	// 当修改时PooledDataSource的字段时，会调用本方法将连接池中的连接置为无效
 	public void forceCloseAll() {
-		synchronized (state) {
+		state.lock.lock();
+		try {
 			expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
 			// 对活跃连接逐个处理清空
-			for (int i = 0; i < state.activeConnections.size(); i++) {
+			for (int i = state.activeConnections.size(); i > 0; i--) {
 				try {
-					PooledConnection conn = state.activeConnections.remove(i);
+					PooledConnection conn = state.activeConnections.remove(i - 1);
 					conn.invalidate();
 					
 					Connection realConn = conn.getRealConnection();
 					if (!realConn.getAutoCommit()) {
 						realConn.rollback();
 					}
+					conn.clearStatementCache();
+					state.connectionLifetimeHistogram.record(conn.getAge());
 					realConn.close();
 				} catch (Exception e) {
 					// ignore
 				}
 			}
 			// 对失败连接逐个处理清空
-			for (int i = 0; i < state.idleConnections.size(); i++) {
+			for (int i = state.idleConnections.size(); i > 0; i--) {
 				try {
-					PooledConnection conn = state.idleConnections.remove(i);
+					PooledConnection conn = state.idleConnections.remove(i - 1);
 					conn.invalidate();
 					
 					Connection realConn = conn.getRealConnection();
 					if (!realConn.getAutoCommit()) {
 						realConn.rollback();
 					}
+					conn.clearStatementCache();
+					state.connectionLifetimeHistogram.record(conn.getAge());
 					realConn.close();
 				} catch (Exception e) {
 					// ignore
 				}
 			}			
+		} finally {
+			state.lock.unlock();
+		}
+		// 子连接池的配置从当前连接池复制，配置修改后全部关闭，下次获取连接时按新配置重新创建
+		// 移除时可能还有线程正在通过子连接池获取连接，先标记为已关闭，这些连接归还时直接关闭，不会留在已被移除的子连接池中
+		for (PooledDataSource partition : partitions.values()) {
+			partitions.remove(partition.partitionKey);
+			partition.closed = true;
+			partition.forceCloseAll();
+		}
+		// 并发引擎中的连接，不论是否正在使用都直接移除并关闭
+		for (PooledConnection conn : state.connectionBag.values()) {
+			try {
+				state.connectionBag.remove(conn);
+				conn.invalidate();
+				
+				Connection realConn = conn.getRealConnection();
+				if (!realConn.getAutoCommit()) {
+					realConn.rollback();
+				}
+				conn.clearStatementCache();
+				state.connectionLifetimeHistogram.record(conn.getAge());
+				realConn.close();
+			} catch (Exception e) {
+				// ignore
+			}
 		}
 		if (log.isDebugEnabled()) {
 			log.debug("PooledDataSource forcefully closed/removed all connections.");
-		}		
+		}
+	}
+	
+	/**
+	 * 关闭连接池，可以重复调用:
+	 * 1) 停止后台维护线程、自适应控制器和连接创建线程，注销JMX MBean
+	 * 2) 关闭所有连接和子连接池，正在使用的连接归还时直接关闭
+	 * 关闭之后获取连接会抛出SQLException
+	 */
+	public void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (housekeeper != null) {
+				housekeeper.shutdown();
+				housekeeper = null;
+			}
+			if (sizingController != null) {
+				sizingController.shutdown();
+				sizingController = null;
+			}
+			if (connectionCreator != null) {
+				connectionCreator.shutdownNow();
+				connectionCreator = null;
+			}
+			unregisterMBean();
+		}
+		forceCloseAll();
+		if (log.isDebugEnabled()) {
+			log.debug("PooledDataSource " + getPoolName() + " closed.");
+		}
+	}
+	
+	public boolean isClosed() {
+		return closed;
 	}
 
 	private int assembleConnectionTypeCode(String url, String username, String password) {
@@ -305,38 +636,51 @@ public class PooledDataSource implements DataSource {
 	}	
 	
 	// PooledConnection关闭数据库连接时，调用本方法，将活跃连接置为空闲连接
-	// 注意: 连接在活跃和空闲之间转换时，不是通过重置PooledConnection对象来实现的，而是通过拿到对象中真正原始的Connection对象，并用它来创建一个新的PooledConnection
+	// 注意: 连接在活跃和空闲之间转换时复用同一个PooledConnection对象，调用方持有的代理对象在close()时已经失效，下次取出时会生成新的代理对象
 	protected void pushConncetion(PooledConnection conn) throws SQLException {
-		synchronized(state) {
+		ConnectionLeakDetector detector = leakDetector;
+		if (detector != null) {
+			detector.onReturn(conn);
+		}
+		if (poolConcurrentBagEnabled) {
+			requiteConnection(conn);
+			return;
+		}
+		state.lock.lock();
+		try {
 			// 从activeConnections集合中移除该PooledConnection对象
 			state.activeConnections.remove(conn);
-			if (conn.isValid()) {
-				// 检测空闲连接数是否已达上线，是则真正关闭连接，否则放入空闲连接
-				if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
-					state.accumulatedCheckoutTime += conn.getCheckoutTime();
-					if (!conn.getRealConnection().getAutoCommit()) {
-						conn.getRealConnection().rollback();
-					}
-					PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this);
-					state.idleConnections.add(newConn);				
-					newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
-					newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
-					conn.invalidate();
-					if (log.isDebugEnabled()) {
-						log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
-					}
-					state.notifyAll();     // 唤醒所有阻塞的获取新连接的请求
+			if (closed) {
+				closeQuietly(conn);
+				if (log.isDebugEnabled()) {
+					log.debug("Closed connection " + conn.getRealHashCode() + " returned to a closed pool.");
+				}
+				return;
+			}
+			if (isConnectionValid(conn)) {
+				// 有线程在等待时直接移交连接；否则检测空闲连接数是否已达上线，是则真正关闭连接，否则放入空闲连接
+				// 超过最大存活时间的连接也直接关闭；自适应调整降低了上限时，超出上限的连接即使有线程在等待也直接关闭
+				if (conn.getConnectionTypeCode() == expectedConnectionTypeCode && !isExpired(conn)
+						&& state.idleConnections.size() + state.activeConnections.size() + state.pendingConnectionCount < getEffectiveMaximumActiveConnections()
+						&& (!state.waiters.isEmpty() || state.idleConnections.size() < poolMaximumIdleConnections)) {
+					recordCheckoutTime(conn.getCheckoutTime());
+					conn.reset();   // 只在必要时回滚，并恢复调用方修改过的连接属性
+					offerIdleConnection(conn);   // 复用PooledConnection对象，调用方持有的代理对象在close()时已经失效
 				} else {
-					// 空闲连接数达到上线或PooledConnection对象并不属于该连接池
-					state.accumulatedCheckoutTime += conn.getCheckoutTime();  // 累计checkout时长
-					if (!conn.getRealConnection().getAutoCommit()) {
-						conn.getRealConnection().rollback();
+					// 空闲连接数达到上线、连接已超过最大存活时间或PooledConnection对象并不属于该连接池
+					if (isExpired(conn)) {
+						state.retiredConnectionCount.increment();
 					}
+					recordCheckoutTime(conn.getCheckoutTime());  // 累计checkout时长
+					conn.rollbackIfNecessary();
+					conn.clearStatementCache();
+					state.connectionLifetimeHistogram.record(conn.getAge());
 					conn.getRealConnection().close();  // 真正关闭数据库连接
 					if (log.isDebugEnabled()) {
 						log.debug("Close connection " + conn.getRealHashCode() + ".");
 					}
 					conn.invalidate();  // 将PooledConnection对象设置为无效					
+					wakeupWaiter();     // 连接被关闭而不是移交，腾出了名额
 				}
 			} else {
 				if (log.isDebugEnabled()) {
@@ -344,7 +688,45 @@ public class PooledDataSource implements DataSource {
 				}
 				// 是否会跟popConnection中的失效连接出现同一个连接在不同方法中重复统计的情况？
 				// 不存在！因为统计失效连接时该连接已经被移出连接池
-				state.badConnectionCount++;  // 统计无效PooledConnection对象个数				
+				state.badConnectionCount.increment();  // 统计无效PooledConnection对象个数				
+				closeQuietly(conn);   // 失效的连接不一定已经关闭(例如只是有效状态位被置为false)，关闭真实连接，避免泄漏
+				wakeupWaiter();
+			}
+		} finally {
+			state.lock.unlock();
+		}
+	}
+	
+	// 累计checkout时长，并记录到checkout时长的分布中
+	private void recordCheckoutTime(long checkoutTime) {
+		state.accumulatedCheckoutTime.add(checkoutTime);
+		state.checkoutTimeHistogram.record(checkoutTime);
+	}
+	
+	// 连接被关闭而不是移交时，唤醒等待最久且还没有被唤醒的线程，使其重新检查是否可以新建连接，调用方需持有state.lock
+	private void wakeupWaiter() {
+		for (ConnectionWaiter waiter : state.waiters) {
+			if (waiter.wakeup()) {
+				return;
+			}
+		}
+	}
+	
+	// 将空闲连接移交给等待最久的线程，没有线程等待时放入空闲连接集合，调用方需持有state.lock
+	private void offerIdleConnection(PooledConnection conn) {
+		ConnectionWaiter waiter = state.waiters.pollFirst();
+		if (waiter != null) {
+			// 只唤醒这一个线程；移交途中的连接计入活跃连接，避免其他线程超额创建连接
+			conn.setCheckoutTimestamp(System.currentTimeMillis());
+			state.activeConnections.add(conn);
+			waiter.handoff(conn);
+			if (log.isDebugEnabled()) {
+				log.debug("Handed off connection " + conn.getRealHashCode() + " to waiting thread.");
+			}
+		} else {
+			state.idleConnections.add(conn);
+			if (log.isDebugEnabled()) {
+				log.debug("Returned connection " + conn.getRealHashCode() + " to pool.");
 			}
 		}
 	}
@@ -355,18 +737,42 @@ public class PooledDataSource implements DataSource {
 	 * 1. 从空闲连接池中获取，如果有则拿到一条连接，并加入活跃连接池中
 	 * 2. 如果空闲线程池为空，并且活跃连接池还没满，则直接创建一个新的连接
 	 * 3. 如果活跃连接池已满，则先尝试从活跃连接池中回收已经超时的使用最久的连接，如果可回收则回收
-	 * 4. 如果使用最久的活跃线程都还没超时，则需要阻塞等待（此时不允许创建新的连接）
+	 * 4. 如果使用最久的活跃线程都还没超时，则进入等待队列阻塞等待（此时不允许创建新的连接），
+	 *    pushConncetion会把归还的连接直接移交给队列中等待最久的线程，多次超时重试期间线程在队列中的位置保持不变
 	 */
 	private PooledConnection popConnection(String username, String password) throws SQLException {
 		boolean countedWait = false;
+		ConnectionWaiter waiter = null;    // 当前线程在等待队列中的节点
 		PooledConnection conn = null;
+		PooledConnection created = null;   // 在锁外新创建的连接
+		boolean reserved = false;          // 是否已经占用了一个新建连接的名额
+		PooledConnection evicted = null;   // 为了不超过poolMaximumTotalConnections从其他连接池移出的空闲连接，在锁外关闭
 		long t = System.currentTimeMillis();
 		int localBadConnectionCount = 0;   // 用来记录获取连接时尝试的次数，如果获取到无效连接的次数 > (最大空闲连接数 + 3)，则抛出异常
 		
 		while (conn == null) {
-			synchronized (state) {  // 同步
-				// 如果连接池有空闲连接，则从空闲连接中取一个空闲连接使用即可
-				if (!state.idleConnections.isEmpty()) {  
+			state.lock.lock();
+			try {  // 同步
+				if (waiter != null) {
+					waiter.resetWakeup();
+				}
+				if (created != null) {
+					conn = created;
+					created = null;
+					state.pendingConnectionCount--;
+					if (log.isDebugEnabled()) {
+						log.debug("Created connection " + conn.getRealHashCode() + ".");
+					}
+				} else if (waiter != null && waiter.getConnection() != null) {
+					// pushConncetion已经将连接移交给当前线程，移交时计入了活跃连接，这里先移除，校验之后再统一加入
+					conn = waiter.getConnection();
+					state.activeConnections.remove(conn);
+					waiter = null;
+					if (log.isDebugEnabled()) {
+						log.debug("Checked out connection " + conn.getRealHashCode() + " handed off by pool.");
+					}
+				} else if (!state.idleConnections.isEmpty()) {  
+					// 如果连接池有空闲连接，则从空闲连接中取一个空闲连接使用即可
 					// 如果有可用空闲连接则从空闲连接池中移除第一个连接
 					conn = state.idleConnections.remove(0);
 					if (log.isDebugEnabled()) {
@@ -378,72 +784,90 @@ public class PooledDataSource implements DataSource {
 					 * 1) 如果当前活跃连接池还没满，则创建一个新的连接并加入到活跃连接池中
 					 * 2) 如果当前活跃连接池已满，则先判断最早创建的活跃连接是否已经超时了，如果超时了则回收利用它，否则阻塞连接创建请求
 					 */
-					if (state.activeConnections.size() < poolMaximumActiveConnections) {
-						conn = new PooledConnection(dataSource.getConnection(), this);
-						if (log.isDebugEnabled()) {
-							log.debug("Created connection " + conn.getRealHashCode() + ".");
-						}
+					if (state.activeConnections.size() + state.pendingConnectionCount < getEffectiveMaximumActiveConnections()
+							&& (hasTotalCapacity() || (evicted = evictIdleConnectionForCapacity()) != null)) {
+						// 占用名额后在锁外创建，多个线程可以同时建立连接，不会阻塞其他线程获取和归还连接
+						state.pendingConnectionCount++;
+						reserved = true;
 					} else {
-						PooledConnection oldestActiveConnection = state.activeConnections.get(0);
-						long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
-						if (longestCheckoutTime > poolMaximumCheckoutTime) {
+						// 连接总数达到poolMaximumTotalConnections时，当前连接池可能还没有活跃连接
+						PooledConnection oldestActiveConnection = state.activeConnections.isEmpty() ? null : state.activeConnections.get(0);
+						// 先读取代理对象再读取checkout时长，保证两者属于同一次checkout
+						Connection oldestProxyConnection = oldestActiveConnection == null ? null : oldestActiveConnection.getProxyConnection();
+						long longestCheckoutTime = oldestActiveConnection == null ? 0 : oldestActiveConnection.getCheckoutTime();
+						// 使持有者的代理对象失效，失败说明持有者正在归还该连接，归还后会移交给等待的线程
+						ConnectionLeakDetector detector = leakDetector;
+						if (oldestActiveConnection != null && poolReclaimOverdueConnections && longestCheckoutTime > poolMaximumCheckoutTime
+								&& oldestActiveConnection.revokeProxyConnection(oldestProxyConnection)) {
 							/**
 							 * 当检测到一个活跃连接超时时
 							 * 连接池状态的连接超时数+1
 							 * 累计超时时间增加（这里我觉得累加的时间应该是longestCheckoutTime - poolMaximumCheckoutTime）
 							 * 累计使用连接时间增加
 							 */
-							state.claimedOverdueConnectionCount++;
-							state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
-							state.accumulatedCheckoutTime += longestCheckoutTime;
+							state.claimedOverdueConnectionCount.increment();
+							state.accumulatedCheckoutTimeOfOverdueConnections.add(longestCheckoutTime);
+							recordCheckoutTime(longestCheckoutTime);
 							state.activeConnections.remove(oldestActiveConnection);
-							if (!oldestActiveConnection.getRealConnection().getAutoCommit()) {
-								try {
+							if (detector != null) {
+								detector.onReclaim(oldestActiveConnection, longestCheckoutTime);
+							}
+							try {
+								// 原持有者可能仍在使用该连接，这里不依赖跟踪的状态，直接检测并回滚
+								if (!oldestActiveConnection.getRealConnection().getAutoCommit()) {
 									oldestActiveConnection.getRealConnection().rollback();
-								} catch (SQLException e) {
-									log.debug("Bad connection. Could not roll back");
 								}
+								oldestActiveConnection.reset();
+							} catch (SQLException e) {
+								log.debug("Bad connection. Could not roll back");
 							}
-							conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
-							oldestActiveConnection.invalidate();   // 标记为已失效
+							conn = oldestActiveConnection;   // 复用PooledConnection对象，原持有者的代理对象已经失效
 							if (log.isDebugEnabled()) {
 								log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
 							}
 						} else {
-							try {
-								if (!countedWait) {
-									state.hadToWaitCount++;
-									countedWait = true;
-								}
-								if (log.isDebugEnabled()) {
-									log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
-								}
-								long wt = System.currentTimeMillis();
-								state.wait(poolTimeToWait);   // 阻塞创建新的连接的请求，等待pushConnection唤醒所有等待的线程，唤醒之后进入新的循环
-								state.accumulatedWaitTime += System.currentTimeMillis() - wt;
-							} catch (InterruptedException e) {
-								break;
+							// 连接池耗尽，检测最早取出的连接是否泄漏
+							if (detector != null && oldestActiveConnection != null) {
+								detector.check(oldestActiveConnection);
+							}
+							if (!countedWait) {
+								state.hadToWaitCount.increment();
+								countedWait = true;
+							}
+							if (log.isDebugEnabled()) {
+								log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
+							}
+							// 加入等待队列的尾部，在释放锁之后再阻塞
+							if (waiter == null) {
+								waiter = new ConnectionWaiter();
+								state.waiters.addLast(waiter);
 							}
 						}
 					}
 				}
+				// 通过其他途径拿到了连接，退出等待队列
+				if ((conn != null || reserved) && waiter != null) {
+					state.waiters.remove(waiter);
+					waiter = null;
+				}
 				// 将新创建或移除的空闲连接加入活跃连接集合中
 				if (conn != null) {
-					if (conn.isValid()) {
-						if (!conn.getRealConnection().getAutoCommit()) {
-							conn.getRealConnection().rollback();   // 不是自动提交的，则把还没提交的先回滚一下
-						}
+					if (isConnectionValid(conn)) {
+						conn.rollbackIfNecessary();   // 不是自动提交且执行过语句的，则把还没提交的先回滚一下
 						conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
 						conn.setCheckoutTimestamp(System.currentTimeMillis());
 						conn.setLastUsedTimestamp(System.currentTimeMillis());
+						conn.renewProxyConnection();   // 生成新一代的代理对象
+						onCheckout(conn);
 						state.activeConnections.add(conn);
-						state.requestCount++;
-						state.accumulatedRequestTime += System.currentTimeMillis() - t;  // 计算从空闲连接池中拿到或创建一个新的连接消耗的时间				
+						state.requestCount.increment();
+						state.accumulatedRequestTime.add(System.currentTimeMillis() - t);  // 计算从空闲连接池中拿到或创建一个新的连接消耗的时间				
 					} else {
 						if (log.isDebugEnabled()) {
 							log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
 						}
-						state.badConnectionCount++;
+						state.badConnectionCount.increment();
+						closeQuietly(conn);
 						localBadConnectionCount++;
 						conn = null;   // 重置为null，一边进入下一个循环接着尝试获取或创建连接
 						if (localBadConnectionCount > (poolMaximumIdleConnections + 3)) {
@@ -454,6 +878,204 @@ public class PooledDataSource implements DataSource {
 						}
 					}
 				}
+			} finally {
+				state.lock.unlock();
+			}
+			if (evicted != null) {
+				closeEvictedConnection(evicted);
+				evicted = null;
+			}
+			// 创建新的连接，完成后回到循环中加入活跃连接集合
+			if (reserved) {
+				reserved = false;
+				try {
+					created = createConnection();
+				} catch (SQLException e) {
+					releasePendingConnection();
+					throw e;
+				} catch (RuntimeException e) {
+					releasePendingConnection();
+					throw e;
+				}
+				continue;
+			}
+			// 阻塞等待pushConncetion移交连接，最多等待poolTimeToWait毫秒，超时或被唤醒后重新进入循环
+			if (conn == null && waiter != null) {
+				long wt = System.currentTimeMillis();
+				boolean interrupted = waiter.await(poolTimeToWait);
+				long waitTime = System.currentTimeMillis() - wt;
+				state.accumulatedWaitTime.add(waitTime);
+				state.waitTimeHistogram.record(waitTime);
+				if (interrupted) {
+					state.lock.lock();
+					try {
+						if (waiter.getConnection() == null) {
+							state.waiters.remove(waiter);
+							break;
+						}
+					} finally {
+						state.lock.unlock();
+					}
+					// 中断前已经移交了连接，则继续使用该连接，并恢复中断标志
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		
+		if (conn == null) {
+			if (log.isDebugEnabled()) {
+				log.debug("PooledDataSource: Unknow server error condition. The connection pool returned a null connection.");
+			}
+			throw new SQLException("PooledDataSource: Unknow server error condition. The connection pool returned a null connection.");
+		}
+		
+		return conn;
+	}
+	
+	// 并发引擎
+	// 与pushConncetion()/popConnection()的处理流程一致，但连接状态的迁移全部通过ConcurrentBag中的CAS完成，不持有state.lock
+	// [start]
+	/**
+	 * 归还连接
+	 * 1) 先将连接状态由STATE_IN_USE改为STATE_RESERVED，失败说明该连接已被回收或已被forceCloseAll()移除
+	 * 2) 有线程在等待或空闲连接数未达上限时，用真实连接创建新的PooledConnection放回连接池
+	 * 3) 否则真正关闭连接，释放连接名额
+	 */
+	private void requiteConnection(PooledConnection conn) throws SQLException {
+		ConcurrentBag bag = state.connectionBag;
+		if (closed) {
+			bag.remove(conn);
+			closeQuietly(conn);
+			return;
+		}
+		boolean reserved = conn.compareAndSetState(PooledConnection.STATE_IN_USE, PooledConnection.STATE_RESERVED);
+		if (reserved && isConnectionValid(conn)) {
+			recordCheckoutTime(conn.getCheckoutTime());
+			conn.rollbackIfNecessary();
+			// 空闲连接数是扫描得到的，并发归还时可能略微超过poolMaximumIdleConnections
+			// 自适应调整降低了上限时，超出上限的连接即使有线程在等待也直接关闭
+			if (conn.getConnectionTypeCode() == expectedConnectionTypeCode && !isExpired(conn)
+					&& bag.getSlotCount() <= getEffectiveMaximumActiveConnections()
+					&& (bag.getWaitingThreadCount() > 0 || bag.getCount(PooledConnection.STATE_NOT_IN_USE) < poolMaximumIdleConnections)) {
+				conn.reset();
+				if (bag.requite(conn)) {
+					if (log.isDebugEnabled()) {
+						log.debug("Returned connection " + conn.getRealHashCode() + " to pool.");
+					}
+				}
+				// 归还的同时连接池被关闭，forceCloseAll()可能已经遍历过ConcurrentBag，由当前线程关闭
+				if (closed && conn.compareAndSetState(PooledConnection.STATE_NOT_IN_USE, PooledConnection.STATE_RESERVED)) {
+					bag.remove(conn);
+					closeQuietly(conn);
+				}
+			} else {
+				if (isExpired(conn)) {
+					state.retiredConnectionCount.increment();
+				}
+				bag.remove(conn);
+				conn.clearStatementCache();
+				state.connectionLifetimeHistogram.record(conn.getAge());
+				conn.getRealConnection().close();
+				if (log.isDebugEnabled()) {
+					log.debug("Close connection " + conn.getRealHashCode() + ".");
+				}
+				conn.invalidate();
+			}
+		} else {
+			if (log.isDebugEnabled()) {
+				log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+			}
+			bag.remove(conn);
+			state.badConnectionCount.increment();
+			// 状态修改失败说明连接已被forceCloseAll()移除，由移除它的线程关闭；否则由当前线程关闭失效连接的真实连接
+			if (reserved) {
+				closeQuietly(conn);
+			}
+		}
+	}
+	
+	/**
+	 * 借出连接
+	 * 1) 从ConcurrentBag中借出空闲连接，当前线程最近归还的连接优先
+	 * 2) 连接总数未达到当前生效的最大活跃连接数时创建新的连接
+	 * 3) 回收checkout时间超过poolMaximumCheckoutTime的连接
+	 * 4) 以上都失败则最多阻塞poolTimeToWait毫秒，等待其他线程归还连接，超时后重新进入循环
+	 */
+	private PooledConnection borrowConnection(String username, String password) throws SQLException {
+		ConcurrentBag bag = state.connectionBag;
+		boolean countedWait = false;
+		PooledConnection conn = null;
+		long t = System.currentTimeMillis();
+		int localBadConnectionCount = 0;
+		
+		while (conn == null) {
+			try {
+				conn = bag.borrow(0);
+				if (conn != null) {
+					if (log.isDebugEnabled()) {
+						log.debug("Checked out connection " + conn.getRealHashCode() + " from pool.");
+					}
+				} else if ((hasTotalCapacity() || closeEvictedConnection(evictIdleConnectionForCapacity()))
+						&& bag.reserveSlot(getEffectiveMaximumActiveConnections())) {
+					try {
+						conn = createConnection();
+					} catch (SQLException e) {
+						bag.releaseSlot();
+						throw e;
+					}
+					conn.setCheckoutTimestamp(System.currentTimeMillis());
+					conn.setState(PooledConnection.STATE_IN_USE);
+					bag.add(conn);
+					if (log.isDebugEnabled()) {
+						log.debug("Created connection " + conn.getRealHashCode() + ".");
+					}
+				}
+				if (conn == null) {
+					conn = claimOverdueConnection(bag);
+				}
+				if (conn == null) {
+					if (!countedWait) {
+						state.hadToWaitCount.increment();
+						countedWait = true;
+					}
+					if (log.isDebugEnabled()) {
+						log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
+					}
+					long wt = System.currentTimeMillis();
+					conn = bag.borrow(poolTimeToWait);
+					long waitTime = System.currentTimeMillis() - wt;
+					state.accumulatedWaitTime.add(waitTime);
+					state.waitTimeHistogram.record(waitTime);
+				}
+			} catch (InterruptedException e) {
+				break;
+			}
+			if (conn != null) {
+				if (isConnectionValid(conn)) {
+					conn.rollbackIfNecessary();
+					conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+					conn.setCheckoutTimestamp(System.currentTimeMillis());
+					conn.setLastUsedTimestamp(System.currentTimeMillis());
+					conn.renewProxyConnection();
+					onCheckout(conn);
+					state.requestCount.increment();
+					state.accumulatedRequestTime.add(System.currentTimeMillis() - t);
+				} else {
+					if (log.isDebugEnabled()) {
+						log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+					}
+					bag.remove(conn);
+					state.badConnectionCount.increment();
+					closeQuietly(conn);
+					localBadConnectionCount++;
+					conn = null;
+					if (localBadConnectionCount > (poolMaximumIdleConnections + 3)) {
+						if (log.isDebugEnabled()) {
+							log.debug("PooledDataSource: Could not get a good connection to the database.");
+						}
+						throw new SQLException("PooledDataSource: Could not a good connection to the database.");
+					}
+				}
 			}
 		}
 		
@@ -467,6 +1089,719 @@ public class PooledDataSource implements DataSource {
 		return conn;
 	}
 	
+	// 回收checkout时间最长且已超时的活跃连接，通过CAS使持有者的代理对象失效，保证与该连接的归还操作互斥
+	// 不回收时检测该连接是否泄漏
+	private PooledConnection claimOverdueConnection(ConcurrentBag bag) {
+		PooledConnection conn = bag.findOldestInUse();
+		if (conn == null) {
+			return null;
+		}
+		// 先读取代理对象再读取checkout时长，保证两者属于同一次checkout
+		Connection proxyConnection = conn.getProxyConnection();
+		long longestCheckoutTime = conn.getCheckoutTime();
+		ConnectionLeakDetector detector = leakDetector;
+		if (!poolReclaimOverdueConnections || longestCheckoutTime <= poolMaximumCheckoutTime || !conn.revokeProxyConnection(proxyConnection)) {
+			if (detector != null) {
+				detector.check(conn);
+			}
+			return null;
+		}
+		if (detector != null) {
+			detector.onReclaim(conn, longestCheckoutTime);
+		}
+		state.claimedOverdueConnectionCount.increment();
+		state.accumulatedCheckoutTimeOfOverdueConnections.add(longestCheckoutTime);
+		recordCheckoutTime(longestCheckoutTime);
+		try {
+			// 原持有者可能仍在使用该连接，这里不依赖跟踪的状态，直接检测并回滚
+			if (!conn.getRealConnection().getAutoCommit()) {
+				conn.getRealConnection().rollback();
+			}
+			conn.reset();
+		} catch (SQLException e) {
+			log.debug("Bad connection. Could not roll back");
+		}
+		// 复用PooledConnection对象，连接状态保持STATE_IN_USE
+		conn.setCheckoutTimestamp(System.currentTimeMillis());
+		if (log.isDebugEnabled()) {
+			log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
+		}
+		return conn;
+	}
+	// [end]
+	
+	// 泄漏检测
+	// [start]
+	// 使用当前的阈值和采样设置重新创建泄漏检测，已取出的连接在下次取出时才开始记录
+	private synchronized void resetLeakDetector() {
+		leakDetector = poolLeakDetectionThreshold > 0
+				? new ConnectionLeakDetector(state, poolLeakDetectionThreshold, poolLeakDetectionStackSampling) : null;
+	}
+	
+	private void onCheckout(PooledConnection conn) {
+		ConnectionLeakDetector detector = leakDetector;
+		if (detector != null) {
+			detector.onCheckout(conn);
+		}
+	}
+	
+	// 由后台维护线程调用，检测所有活跃连接
+	private void detectLeaks() {
+		ConnectionLeakDetector detector = leakDetector;
+		if (detector == null) {
+			return;
+		}
+		if (poolConcurrentBagEnabled) {
+			for (PooledConnection conn : state.connectionBag.values()) {
+				if (conn.getState() == PooledConnection.STATE_IN_USE) {
+					detector.check(conn);
+				}
+			}
+		} else {
+			List<PooledConnection> snapshot;
+			state.lock.lock();
+			try {
+				snapshot = new ArrayList<PooledConnection>(state.activeConnections);
+			} finally {
+				state.lock.unlock();
+			}
+			for (PooledConnection conn : snapshot) {
+				detector.check(conn);
+			}
+		}
+	}
+	// [end]
+	
+	// 自适应调整
+	// [start]
+	// 使用当前的上下限重新创建控制器，新的控制器从poolMaximumActiveConnections开始调整
+	private synchronized void restartSizingController() {
+		if (sizingController != null) {
+			sizingController.shutdown();
+			sizingController = null;
+		}
+		if (poolAdaptiveSizingInterval > 0 && !closed) {
+			PoolSizingController controller = new PoolSizingController(state, poolMinimumActiveConnections, poolMaximumActiveConnections);
+			controller.start(poolAdaptiveSizingInterval);
+			sizingController = controller;
+		}
+	}
+	// [end]
+	
+	// 子连接池
+	// [start]
+	// 按用户名和密码选择连接池，与默认用户名和密码相同时就是当前连接池
+	private PooledDataSource getPartition(String username, String password) {
+		if (parent != null || (equals(username, dataSource.getUsername()) && equals(password, dataSource.getPassword()))) {
+			return this;
+		}
+		PartitionKey key = new PartitionKey(username, password);
+		PooledDataSource partition = partitions.get(key);
+		if (partition == null) {
+			PooledDataSource created = createPartition(key);
+			partition = partitions.putIfAbsent(key, created);
+			if (partition == null) {
+				partition = created;
+				if (log.isDebugEnabled()) {
+					log.debug("Created pool partition " + partition.partitionName + ".");
+				}
+			}
+		}
+		return partition;
+	}
+	
+	// 创建子连接池，驱动和连接池配置都从当前连接池复制，只替换用户名和密码
+	// 子连接池没有自己的后台维护线程和自适应控制器，由当前连接池的维护线程一并维护
+	private PooledDataSource createPartition(PartitionKey key) {
+		String username = key.username;
+		String password = key.password;
+		UnpooledDataSource unpooled = new UnpooledDataSource(dataSource.getDriverClassLoader(), dataSource.getDriver(),
+				dataSource.getUrl(), username, password);
+		unpooled.setDriverProperties(dataSource.getDriverProperties());
+		unpooled.setAutoCommit(dataSource.isAutoCommit());
+		unpooled.setDefaultTransactionIsolationLevel(dataSource.getDefaultTransactionIsolationLevel());
+		
+		PooledDataSource partition = new PooledDataSource(unpooled);
+		partition.parent = this;
+		partition.partitionKey = key;
+		partition.partitionName = username + "#" + partitionSequence.incrementAndGet();
+		partition.expectedConnectionTypeCode = assembleConnectionTypeCode(unpooled.getUrl(), username, password);
+		partition.poolMaximumActiveConnections = poolPartitionMaximumActiveConnections > 0
+				? poolPartitionMaximumActiveConnections : poolMaximumActiveConnections;
+		partition.poolMaximumIdleConnections = poolPartitionMaximumIdleConnections > 0
+				? poolPartitionMaximumIdleConnections : poolMaximumIdleConnections;
+		partition.poolMaximumCheckoutTime = poolMaximumCheckoutTime;
+		partition.poolTimeToWait = poolTimeToWait;
+		partition.poolPingQuery = poolPingQuery;
+		partition.poolPingEnabled = poolPingEnabled;
+		partition.poolPingConnectionsNotUsedFor = poolPingConnectionsNotUsedFor;
+		partition.poolConcurrentBagEnabled = poolConcurrentBagEnabled;
+		partition.poolMinimumIdle = poolMinimumIdle;
+		partition.poolMaximumLifetime = poolMaximumLifetime;
+		partition.poolMaximumIdleTime = poolMaximumIdleTime;
+		partition.poolHousekeepingInterval = poolHousekeepingInterval;
+		partition.poolPreparedStatementCacheSize = poolPreparedStatementCacheSize;
+		partition.poolLeakDetectionThreshold = poolLeakDetectionThreshold;
+		partition.poolLeakDetectionStackSampling = poolLeakDetectionStackSampling;
+		partition.poolReclaimOverdueConnections = poolReclaimOverdueConnections;
+		partition.poolConnectionCreationParallelism = poolConnectionCreationParallelism;
+		partition.resetLeakDetector();
+		return partition;
+	}
+	
+	private static boolean equals(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+	
+	/**
+	 * 是否还可以新建连接，poolMaximumTotalConnections限制的是当前连接池与所有子连接池的连接总数
+	 * 总数按各连接池的连接数无锁累加，是近似值，并发创建时可能短暂超出上限
+	 */
+	private boolean hasTotalCapacity() {
+		PooledDataSource root = parent == null ? this : parent;
+		if (root.poolMaximumTotalConnections <= 0) {
+			return true;
+		}
+		int total = root.getPooledConnectionCount();
+		for (PooledDataSource partition : root.partitions.values()) {
+			total += partition.getPooledConnectionCount();
+		}
+		return total < root.poolMaximumTotalConnections;
+	}
+	
+	/**
+	 * 连接总数达到poolMaximumTotalConnections时，移出其他连接池中的一个空闲连接腾出名额，避免空闲的租户长期占用连接
+	 * 返回移出的连接，由调用方调用closeEvictedConnection()关闭；popConnection()中调用时持有当前连接池的锁，所以要在释放锁之后再关闭
+	 */
+	private PooledConnection evictIdleConnectionForCapacity() {
+		PooledDataSource root = parent == null ? this : parent;
+		return root.poolMaximumTotalConnections > 0 ? root.evictIdleConnection(this) : null;
+	}
+	
+	// 关闭移出的空闲连接，conn为null时返回false
+	private boolean closeEvictedConnection(PooledConnection conn) {
+		if (conn == null) {
+			return false;
+		}
+		conn.getDataSource().closeQuietly(conn);
+		if (log.isDebugEnabled()) {
+			log.debug("Evicted idle connection " + conn.getRealHashCode() + " to stay within poolMaximumTotalConnections.");
+		}
+		return true;
+	}
+	
+	// 移出空闲连接最多的其他连接池中的一个空闲连接，返回移出的连接，没有可移出的连接时返回null
+	private PooledConnection evictIdleConnection(PooledDataSource requester) {
+		PooledDataSource victim = null;
+		int victimIdle = 0;
+		if (this != requester) {
+			victim = this;
+			victimIdle = state.getIdleConnectionCount();
+		}
+		for (PooledDataSource partition : partitions.values()) {
+			int idle = partition.state.getIdleConnectionCount();
+			if (partition != requester && idle > victimIdle) {
+				victim = partition;
+				victimIdle = idle;
+			}
+		}
+		if (victim == null || victimIdle == 0) {
+			return null;
+		}
+		return victim.removeIdleConnection();
+	}
+	
+	// 移出一个空闲连接，由调用方关闭；获取锁失败时放弃，避免两个连接池互相等待对方的锁
+	private PooledConnection removeIdleConnection() {
+		if (poolConcurrentBagEnabled) {
+			for (PooledConnection conn : state.connectionBag.values()) {
+				if (conn.compareAndSetState(PooledConnection.STATE_NOT_IN_USE, PooledConnection.STATE_RESERVED)) {
+					state.connectionBag.remove(conn);
+					return conn;
+				}
+			}
+			return null;
+		}
+		if (!state.lock.tryLock()) {
+			return null;
+		}
+		try {
+			return state.idleConnections.isEmpty() ? null : state.idleConnections.remove(0);
+		} finally {
+			state.lock.unlock();
+		}
+	}
+	
+	// 当前连接池的连接数，包括活跃连接和空闲连接
+	private int getPooledConnectionCount() {
+		if (poolConcurrentBagEnabled) {
+			return state.connectionBag.getSlotCount();
+		}
+		return state.idleConnections.size() + state.activeConnections.size() + state.pendingConnectionCount;
+	}
+	
+	/**
+	 * 按用户名和密码划分的子连接池的状态，key是子连接池的名称: 用户名#编号，不包含密码
+	 * 同一个用户名使用不同的密码时是不同的子连接池，编号不同；子连接池被移除后重新创建时使用新的编号
+	 */
+	public Map<String, PoolState> getPartitionStates() {
+		Map<String, PoolState> states = new HashMap<String, PoolState>();
+		for (PooledDataSource partition : partitions.values()) {
+			states.put(partition.partitionName, partition.getPoolState());
+		}
+		return states;
+	}
+	
+	// 指定用户名和密码的子连接池的状态，子连接池还没有创建或已经被移除时返回null
+	public PoolState getPartitionState(String username, String password) {
+		PooledDataSource partition = partitions.get(new PartitionKey(username, password));
+		return partition == null ? null : partition.getPoolState();
+	}
+	
+	// 开始通过子连接池获取连接，子连接池已经被移除时返回false
+	private boolean enterPartition() {
+		while (true) {
+			int borrowers = partitionBorrowers.get();
+			if (borrowers < 0 || closed) {
+				return false;
+			}
+			if (partitionBorrowers.compareAndSet(borrowers, borrowers + 1)) {
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * 子连接池没有任何连接(包括正在创建的连接)、也没有线程正在获取连接时，标记为已移除，由后台维护线程从partitions中删除
+	 * 先标记再检测连接数，标记之后不会再有线程进入该子连接池，所以检测到的连接数不会再增加
+	 */
+	private boolean retireIfEmpty() {
+		if (!partitionBorrowers.compareAndSet(0, -1)) {
+			return false;
+		}
+		int count;
+		if (poolConcurrentBagEnabled) {
+			count = getPooledConnectionCount();
+		} else {
+			state.lock.lock();
+			try {
+				count = getPooledConnectionCount();
+			} finally {
+				state.lock.unlock();
+			}
+		}
+		if (count > 0) {
+			partitionBorrowers.set(0);
+			return false;
+		}
+		return true;
+	}
+	
+	// 子连接池的key，toString()不包含密码
+	private static final class PartitionKey {
+		private final String username;
+		private final String password;
+		
+		PartitionKey(String username, String password) {
+			this.username = username;
+			this.password = password;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof PartitionKey)) {
+				return false;
+			}
+			PartitionKey other = (PartitionKey) o;
+			return PooledDataSource.equals(username, other.username) && PooledDataSource.equals(password, other.password);
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * (username == null ? 0 : username.hashCode()) + (password == null ? 0 : password.hashCode());
+		}
+		
+		@Override
+		public String toString() {
+			return "PartitionKey[" + username + "]";
+		}
+	}
+	// [end]
+	
+	// JMX
+	// [start]
+	// 将PoolState注册到平台MBeanServer，ObjectName为 org.apache.ibatis.datasource.pooled:type=PooledDataSource,name=连接池名称
+	private void registerMBean() {
+		try {
+			ObjectName objectName = new ObjectName("org.apache.ibatis.datasource.pooled:type=PooledDataSource,name=" + ObjectName.quote(getPoolName()));
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(objectName)) {
+				log.warn("JMX name " + objectName + " is already registered, PooledDataSource MBean is not registered.");
+				return;
+			}
+			server.registerMBean(state, objectName);
+			registeredObjectName = objectName;
+		} catch (Exception e) {
+			log.warn("Could not register PooledDataSource MBean: " + e.getMessage());
+		}
+	}
+	
+	private void unregisterMBean() {
+		if (registeredObjectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredObjectName);
+		} catch (Exception e) {
+			log.warn("Could not unregister PooledDataSource MBean: " + e.getMessage());
+		}
+		registeredObjectName = null;
+	}
+	// [end]
+	
+	// 后台维护
+	// 由PoolHousekeeper定时调用，心跳检测和创建连接都在锁外进行，不阻塞获取和归还连接的线程
+	// [start]
+	void housekeep() {
+		if (closed) {
+			return;
+		}
+		if (poolConcurrentBagEnabled) {
+			housekeepConcurrentBag();
+		} else {
+			housekeepIdleConnections();
+		}
+		detectLeaks();
+		for (PooledDataSource partition : partitions.values()) {
+			partition.housekeep();
+			// 移除连接已经全部关闭的子连接池，避免用过一次的用户名和密码一直留在partitions中
+			if (partition.retireIfEmpty()) {
+				partitions.remove(partition.partitionKey, partition);
+				if (log.isDebugEnabled()) {
+					log.debug("Removed empty pool partition " + partition.partitionName + ".");
+				}
+			}
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("PooledDataSource housekeeping finished, idle connections: " + state.getIdleConnectionCount() + ".");
+		}
+	}
+	
+	// 开启后台维护时，心跳检测全部由维护线程完成，获取和归还连接时只检测有效状态位
+	private boolean isConnectionValid(PooledConnection conn) {
+		return poolHousekeepingInterval > 0 ? conn.isValidWithoutPing() : conn.isValid();
+	}
+	
+	// 连接是否已超过最大存活时间
+	private boolean isExpired(PooledConnection conn) {
+		return poolMaximumLifetime > 0 && conn.getAge() > poolMaximumLifetime;
+	}
+	
+	// 空闲连接是否需要关闭: 超过最大存活时间，或者在空闲连接数超过poolMinimumIdle时空闲时间过长
+	private boolean shouldRetire(PooledConnection conn, int remainingIdleCount) {
+		return isExpired(conn)
+				|| (poolMaximumIdleTime > 0 && remainingIdleCount >= poolMinimumIdle && conn.getTimeElapsedSinceLastUse() > poolMaximumIdleTime);
+	}
+	
+	// 预创建的空闲连接数上限
+	private int getPrefillTarget() {
+		return Math.min(poolMinimumIdle, poolMaximumIdleConnections);
+	}
+	
+	/**
+	 * 维护原有引擎的空闲连接
+	 * 1) 逐个将空闲连接移出idleConnections，在锁外完成心跳检测，检测期间其他线程不会拿到该连接，
+	 *    检测期间该连接计入pendingConnectionCount占用名额，避免其他线程趁机新建连接使连接数超过上限
+	 * 2) 检测通过的连接重新放回(有线程等待时直接移交)，失效或需要关闭的连接真正关闭，并唤醒等待的线程
+	 * 3) 空闲连接数不足poolMinimumIdle时在锁外创建新的连接，再放入连接池
+	 */
+	private void housekeepIdleConnections() {
+		List<PooledConnection> snapshot;
+		state.lock.lock();
+		try {
+			snapshot = new ArrayList<PooledConnection>(state.idleConnections);
+		} finally {
+			state.lock.unlock();
+		}
+		for (PooledConnection conn : snapshot) {
+			boolean retire;
+			state.lock.lock();
+			try {
+				// 按对象身份移除，连接可能已被其他线程取走
+				if (!removeIdentical(state.idleConnections, conn)) {
+					continue;
+				}
+				retire = shouldRetire(conn, state.idleConnections.size());
+				if (retire) {
+					wakeupWaiter();
+				} else {
+					state.pendingConnectionCount++;   // 心跳检测期间占用名额
+				}
+			} finally {
+				state.lock.unlock();
+			}
+			if (retire) {
+				state.retiredConnectionCount.increment();
+				closeQuietly(conn);
+				continue;
+			}
+			boolean good = conn.isValid();
+			state.lock.lock();
+			try {
+				state.pendingConnectionCount--;
+				if (good && conn.getConnectionTypeCode() == expectedConnectionTypeCode
+						&& (!state.waiters.isEmpty() || state.idleConnections.size() < poolMaximumIdleConnections)) {
+					offerIdleConnection(conn);
+					continue;
+				}
+				wakeupWaiter();
+			} finally {
+				state.lock.unlock();
+			}
+			if (!good) {
+				if (log.isDebugEnabled()) {
+					log.debug("A bad idle connection (" + conn.getRealHashCode() + ") was found by housekeeper, discarding connection.");
+				}
+				state.badConnectionCount.increment();
+			}
+			closeQuietly(conn);
+		}
+		
+		int target = getPrefillTarget();
+		while (true) {
+			int count;
+			state.lock.lock();
+			try {
+				int total = state.idleConnections.size() + state.activeConnections.size() + state.pendingConnectionCount;
+				count = Math.min(target - state.idleConnections.size(), getEffectiveMaximumActiveConnections() - total);
+				if (count <= 0 || !hasTotalCapacity() || closed) {
+					return;
+				}
+				// 每批最多同时创建poolConnectionCreationParallelism个连接，占用名额后在锁外创建
+				count = Math.min(count, Math.max(1, poolConnectionCreationParallelism));
+				state.pendingConnectionCount += count;
+			} finally {
+				state.lock.unlock();
+			}
+			List<PooledConnection> created = createIdleConnections(count);
+			List<PooledConnection> surplus = new ArrayList<PooledConnection>();
+			state.lock.lock();
+			try {
+				state.pendingConnectionCount -= count;
+				// 创建期间其他线程可能已经补足了连接或者关闭了连接池，再次检测
+				for (PooledConnection conn : created) {
+					if (!closed && state.idleConnections.size() < target
+							&& state.idleConnections.size() + state.activeConnections.size() + state.pendingConnectionCount < getEffectiveMaximumActiveConnections()) {
+						offerIdleConnection(conn);
+					} else {
+						surplus.add(conn);
+					}
+				}
+			} finally {
+				state.lock.unlock();
+			}
+			for (PooledConnection conn : surplus) {
+				closeQuietly(conn);
+			}
+			if (created.size() < count || !surplus.isEmpty()) {
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * 维护并发引擎的空闲连接，通过CAS将空闲连接置为STATE_RESERVED之后再检测，检测期间其他线程不会借出该连接
+	 */
+	private void housekeepConcurrentBag() {
+		ConcurrentBag bag = state.connectionBag;
+		for (PooledConnection conn : bag.values()) {
+			if (!conn.compareAndSetState(PooledConnection.STATE_NOT_IN_USE, PooledConnection.STATE_RESERVED)) {
+				continue;
+			}
+			if (shouldRetire(conn, bag.getCount(PooledConnection.STATE_NOT_IN_USE))) {
+				state.retiredConnectionCount.increment();
+				bag.remove(conn);
+				closeQuietly(conn);
+			} else if (conn.isValid() && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
+				bag.release(conn);
+			} else {
+				if (log.isDebugEnabled()) {
+					log.debug("A bad idle connection (" + conn.getRealHashCode() + ") was found by housekeeper, discarding connection.");
+				}
+				state.badConnectionCount.increment();
+				bag.remove(conn);
+				closeQuietly(conn);
+			}
+		}
+		
+		int target = getPrefillTarget();
+		int parallelism = Math.max(1, poolConnectionCreationParallelism);
+		while (true) {
+			// 每批最多占用poolConnectionCreationParallelism个名额，同时创建
+			int missing = Math.min(target - bag.getCount(PooledConnection.STATE_NOT_IN_USE), parallelism);
+			int count = 0;
+			while (count < missing && !closed && hasTotalCapacity() && bag.reserveSlot(getEffectiveMaximumActiveConnections())) {
+				count++;
+			}
+			if (count == 0) {
+				return;
+			}
+			List<PooledConnection> created = createIdleConnections(count);
+			for (int i = created.size(); i < count; i++) {
+				bag.releaseSlot();
+			}
+			for (PooledConnection conn : created) {
+				conn.setState(PooledConnection.STATE_RESERVED);
+				bag.add(conn);
+				bag.release(conn);
+				// 创建期间连接池被关闭，forceCloseAll()可能已经遍历过bag，由这里关闭
+				if (closed && conn.compareAndSetState(PooledConnection.STATE_NOT_IN_USE, PooledConnection.STATE_RESERVED)) {
+					bag.remove(conn);
+					closeQuietly(conn);
+				}
+			}
+			if (created.size() < count) {
+				return;
+			}
+		}
+	}
+	
+	// 创建一个空闲连接，创建失败时返回null，等待下一次维护再重试
+	private PooledConnection createIdleConnection() {
+		try {
+			PooledConnection conn = createConnection();
+			conn.setConnectionTypeCode(expectedConnectionTypeCode);
+			if (log.isDebugEnabled()) {
+				log.debug("Housekeeper created connection " + conn.getRealHashCode() + ".");
+			}
+			return conn;
+		} catch (SQLException e) {
+			log.warn("Housekeeper could not create connection: " + e.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	 * 创建count个空闲连接，返回创建成功的连接
+	 * poolConnectionCreationParallelism大于1时，除当前线程外其余连接交给连接创建线程同时创建，
+	 * 故障恢复后补充N个连接的耗时接近一次建立连接的耗时，而不是N倍
+	 */
+	private List<PooledConnection> createIdleConnections(int count) {
+		List<PooledConnection> created = new ArrayList<PooledConnection>(count);
+		List<Future<PooledConnection>> futures = new ArrayList<Future<PooledConnection>>();
+		if (count > 1) {
+			ExecutorService executor = getConnectionCreator();
+			for (int i = 1; i < count; i++) {
+				futures.add(executor.submit(new Callable<PooledConnection>() {
+					@Override
+					public PooledConnection call() {
+						return createIdleConnection();
+					}
+				}));
+			}
+		}
+		PooledConnection conn = createIdleConnection();
+		if (conn != null) {
+			created.add(conn);
+		}
+		// 即使被中断也要等待所有任务完成，否则创建出的连接无人关闭
+		boolean interrupted = false;
+		for (Future<PooledConnection> future : futures) {
+			while (true) {
+				try {
+					conn = future.get();
+					if (conn != null) {
+						created.add(conn);
+					}
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					log.warn("Housekeeper could not create connection: " + e.getCause());
+					break;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		return created;
+	}
+	
+	// 静态的线程工厂，不持有连接池的引用，空闲的连接创建线程不会阻止连接池被回收
+	private static final ThreadFactory CONNECTOR_THREAD_FACTORY = new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "PooledDataSource-connector");
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+	
+	// 连接创建线程，空闲一段时间后自动退出
+	private synchronized ExecutorService getConnectionCreator() {
+		if (connectionCreator == null) {
+			int parallelism = Math.max(1, poolConnectionCreationParallelism);
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 30, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), CONNECTOR_THREAD_FACTORY);
+			executor.allowCoreThreadTimeOut(true);
+			connectionCreator = executor;
+		}
+		return connectionCreator;
+	}
+	
+	// 锁外创建连接失败时，归还占用的名额，并唤醒一个等待的线程重新尝试创建
+	private void releasePendingConnection() {
+		state.lock.lock();
+		try {
+			state.pendingConnectionCount--;
+			wakeupWaiter();
+		} finally {
+			state.lock.unlock();
+		}
+	}
+	
+	// 创建真实连接并记录创建耗时，自适应调整时用于判断数据库是否已经过载
+	private PooledConnection createConnection() throws SQLException {
+		long t = System.currentTimeMillis();
+		Connection realConn = dataSource.getConnection();
+		long createTime = System.currentTimeMillis() - t;
+		state.createdConnectionCount.increment();
+		state.accumulatedCreateTime.add(createTime);
+		state.connectionCreateTimeHistogram.record(createTime);
+		return new PooledConnection(realConn, this);
+	}
+	
+	// 注意: PooledConnection.equals()是按真实连接判断的，这里按对象身份移除
+	private static boolean removeIdentical(List<PooledConnection> connections, PooledConnection conn) {
+		for (int i = 0; i < connections.size(); i++) {
+			if (connections.get(i) == conn) {
+				connections.remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private void closeQuietly(PooledConnection conn) {
+		conn.invalidate();
+		try {
+			Connection realConn = conn.getRealConnection();
+			if (!realConn.getAutoCommit()) {
+				realConn.rollback();
+			}
+			conn.clearStatementCache();
+			state.connectionLifetimeHistogram.record(conn.getAge());
+			realConn.close();
+		} catch (Exception e) {
+			// ignore
+		}
+	}
+	// [end]
+	
 	// 检测真正的数据库对象是否可以正常使用
 	protected boolean pingConnection(PooledConnection conn) {
 		boolean result = true;
@@ -522,9 +1857,9 @@ public class PooledDataSource implements DataSource {
 	}	
 
 	// 垃圾回收器准备释放内存的时候，会先调用finalize()
-	// 这个是为了对象内存被回收时顺便清理线程池
+	// 这个是为了对象内存被回收时顺便清理线程池，后台线程只保持弱引用，不会阻止回收；注册了MBean时需要显式调用close()
 	protected void finalize() throws Throwable {
-		forceCloseAll();
+		close();
 		super.finalize();
 	}
 	
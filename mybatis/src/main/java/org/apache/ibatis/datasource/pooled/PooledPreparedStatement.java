@@ -0,0 +1,214 @@
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.ReflectionException;
+
+/**
+ * PreparedStatementCache中缓存的PreparedStatement，拦截代理对象的close()方法，将语句放回缓存而不是真正关闭
+ * 与PooledConnection一样，每次从缓存中取出时生成新的代理对象，已经close()的旧代理对象调用方法时会被检测为无效
+ * 放回缓存时清空参数、未执行的批处理和警告，并将调用方修改过的fetchSize、fetchDirection、maxRows、queryTimeout、maxFieldSize恢复为驱动的默认值，
+ * 避免上一次使用的设置(例如DefaultCursor设置的Integer.MIN_VALUE)带到下一次取出
+ */
+class PooledPreparedStatement implements InvocationHandler {
+
+	private static final String CLOSE = "close";
+	private static final String IS_CLOSED = "isClosed";
+	private static final String EXECUTE_PREFIX = "execute";
+	private static final String GET_CONNECTION = "getConnection";
+	private static final String SET_FETCH_SIZE = "setFetchSize";
+	private static final String SET_FETCH_DIRECTION = "setFetchDirection";
+	private static final String SET_MAX_ROWS = "setMaxRows";
+	private static final String SET_LARGE_MAX_ROWS = "setLargeMaxRows";
+	private static final String SET_QUERY_TIMEOUT = "setQueryTimeout";
+	private static final String SET_MAX_FIELD_SIZE = "setMaxFieldSize";
+	private static final Class<?>[] IFACES = new Class<?>[] { PreparedStatement.class };
+
+	// 与PooledConnection相同，缓存代理类的构造方法，每次取出语句时不再需要Proxy.newProxyInstance()查找代理类
+	private static final Constructor<?> PROXY_CONSTRUCTOR;
+
+	static {
+		try {
+			PROXY_CONSTRUCTOR = Proxy.getProxyClass(PreparedStatement.class.getClassLoader(), IFACES).getConstructor(InvocationHandler.class);
+		} catch (NoSuchMethodException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	// 本次取出期间被修改过的语句属性，放回缓存时只恢复这些属性
+	private static final int DIRTY_FETCH_SIZE = 1;
+	private static final int DIRTY_FETCH_DIRECTION = 1 << 1;
+	private static final int DIRTY_MAX_ROWS = 1 << 2;
+	private static final int DIRTY_QUERY_TIMEOUT = 1 << 3;
+	private static final int DIRTY_MAX_FIELD_SIZE = 1 << 4;
+
+	private final PreparedStatementCache cache;
+	private final PooledConnection connection;       // 语句所属的连接
+	private final PreparedStatement realStatement;   // 真正的PreparedStatement
+	private volatile PreparedStatement proxyStatement;  // 当前正在使用的代理对象，放回缓存后为null
+	private boolean evicted;                          // 使用期间被LRU淘汰，close()时需要真正关闭
+	private int dirtyBits;                            // 被修改过的语句属性
+	private int recordedBits;                         // 已经记录了默认值的语句属性，第一次修改之前从驱动读取
+	// 驱动的默认值，放回缓存时恢复
+	private int defaultFetchSize;
+	private int defaultFetchDirection;
+	private int defaultMaxRows;
+	private int defaultQueryTimeout;
+	private int defaultMaxFieldSize;
+
+	PooledPreparedStatement(PreparedStatementCache cache, PooledConnection connection, PreparedStatement realStatement) {
+		this.cache = cache;
+		this.connection = connection;
+		this.realStatement = realStatement;
+	}
+
+	// 从缓存中取出时调用，生成新的代理对象
+	PreparedStatement checkout() {
+		try {
+			proxyStatement = (PreparedStatement) PROXY_CONSTRUCTOR.newInstance(this);
+			return proxyStatement;
+		} catch (Exception e) {
+			throw new ReflectionException("Error creating proxy for prepared statement. Cause: " + e, e);
+		}
+	}
+
+	boolean isInUse() {
+		return proxyStatement != null;
+	}
+
+	PreparedStatement checkedOutProxy() {
+		return proxyStatement;
+	}
+
+	/**
+	 * 放回缓存，清空上一次设置的参数、未执行的批处理和警告，并恢复被修改过的语句属性
+	 * 返回false表示无法恢复，调用方应该真正关闭该语句而不是继续缓存
+	 */
+	boolean checkin() {
+		proxyStatement = null;
+		try {
+			realStatement.clearParameters();
+			realStatement.clearBatch();      // 调用方addBatch()之后没有executeBatch()时，避免下一次取出时一起执行
+			realStatement.clearWarnings();
+			if (dirtyBits != 0) {
+				restoreDefaults();
+			}
+			return true;
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private void restoreDefaults() throws SQLException {
+		int bits = dirtyBits;
+		if ((bits & DIRTY_FETCH_SIZE) != 0) {
+			realStatement.setFetchSize(defaultFetchSize);
+		}
+		if ((bits & DIRTY_FETCH_DIRECTION) != 0) {
+			realStatement.setFetchDirection(defaultFetchDirection);
+		}
+		if ((bits & DIRTY_MAX_ROWS) != 0) {
+			realStatement.setMaxRows(defaultMaxRows);
+		}
+		if ((bits & DIRTY_QUERY_TIMEOUT) != 0) {
+			realStatement.setQueryTimeout(defaultQueryTimeout);
+		}
+		if ((bits & DIRTY_MAX_FIELD_SIZE) != 0) {
+			realStatement.setMaxFieldSize(defaultMaxFieldSize);
+		}
+		dirtyBits = 0;
+	}
+
+	// 第一次修改某个属性之前记录驱动的默认值，之后每次放回缓存都恢复为该值，所以只需要读取一次
+	private void recordDefault(int bit) throws SQLException {
+		if ((recordedBits & bit) != 0) {
+			return;
+		}
+		if (bit == DIRTY_FETCH_SIZE) {
+			defaultFetchSize = realStatement.getFetchSize();
+		} else if (bit == DIRTY_FETCH_DIRECTION) {
+			defaultFetchDirection = realStatement.getFetchDirection();
+		} else if (bit == DIRTY_MAX_ROWS) {
+			defaultMaxRows = realStatement.getMaxRows();
+		} else if (bit == DIRTY_QUERY_TIMEOUT) {
+			defaultQueryTimeout = realStatement.getQueryTimeout();
+		} else {
+			defaultMaxFieldSize = realStatement.getMaxFieldSize();
+		}
+		recordedBits |= bit;
+	}
+
+	// 会修改语句属性的方法对应的标志位，其他方法返回0
+	private static int dirtyBitOf(String methodName) {
+		if (SET_FETCH_SIZE.equals(methodName)) {
+			return DIRTY_FETCH_SIZE;
+		} else if (SET_FETCH_DIRECTION.equals(methodName)) {
+			return DIRTY_FETCH_DIRECTION;
+		} else if (SET_MAX_ROWS.equals(methodName) || SET_LARGE_MAX_ROWS.equals(methodName)) {
+			return DIRTY_MAX_ROWS;
+		} else if (SET_QUERY_TIMEOUT.equals(methodName)) {
+			return DIRTY_QUERY_TIMEOUT;
+		} else if (SET_MAX_FIELD_SIZE.equals(methodName)) {
+			return DIRTY_MAX_FIELD_SIZE;
+		}
+		return 0;
+	}
+
+	void evict() {
+		evicted = true;
+	}
+
+	boolean isEvicted() {
+		return evicted;
+	}
+
+	// 真正关闭语句
+	void closeQuietly() {
+		proxyStatement = null;
+		try {
+			realStatement.close();
+		} catch (SQLException e) {
+			// ignore
+		}
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		String methodName = method.getName();
+		if (Object.class.equals(method.getDeclaringClass())) {
+			return method.invoke(this, args);
+		}
+		if (CLOSE.equals(methodName)) {
+			// 重复调用close()或旧代理对象调用close()时直接忽略
+			cache.release(this, proxy);
+			return null;
+		}
+		if (IS_CLOSED.equals(methodName)) {
+			return proxy != proxyStatement;
+		}
+		if (proxy != proxyStatement) {
+			throw new SQLException("Error accessing PooledPreparedStatement. Statement is closed.");
+		}
+		int dirtyBit = 0;
+		if (methodName.startsWith(EXECUTE_PREFIX)) {
+			connection.markStatementExecuted();
+		} else if (GET_CONNECTION.equals(methodName)) {
+			return connection.getProxyConnection();
+		} else if (args != null && args.length == 1 && (dirtyBit = dirtyBitOf(methodName)) != 0) {
+			recordDefault(dirtyBit);
+		}
+		try {
+			Object result = method.invoke(realStatement, args);
+			dirtyBits |= dirtyBit;
+			return result;
+		} catch (Throwable t) {
+			throw ExceptionUtil.unwrapThrowable(t);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.ReflectionException;
+
+/**
+ * 通过PooledConnection创建的(未缓存的)Statement的代理，作用:
+ * 1) 执行语句时通知PooledConnection，用于判断归还连接时是否需要回滚
+ * 2) getConnection()返回连接池的代理连接，而不是真正的数据库连接，避免调用方绕过连接池关闭连接
+ */
+class PooledStatement implements InvocationHandler {
+
+	private static final String EXECUTE_PREFIX = "execute";
+	private static final String GET_CONNECTION = "getConnection";
+
+	// 缓存代理类的构造方法，创建语句时不再需要Proxy.newProxyInstance()查找代理类
+	private static final Constructor<?> STATEMENT_CONSTRUCTOR = proxyConstructor(Statement.class);
+	private static final Constructor<?> PREPARED_STATEMENT_CONSTRUCTOR = proxyConstructor(PreparedStatement.class);
+	private static final Constructor<?> CALLABLE_STATEMENT_CONSTRUCTOR = proxyConstructor(CallableStatement.class);
+
+	private final PooledConnection connection;
+	private final Statement realStatement;
+
+	private PooledStatement(PooledConnection connection, Statement realStatement) {
+		this.connection = connection;
+		this.realStatement = realStatement;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		try {
+			if (Object.class.equals(method.getDeclaringClass())) {
+				return method.invoke(this, args);
+			}
+			String methodName = method.getName();
+			if (methodName.startsWith(EXECUTE_PREFIX)) {
+				connection.markStatementExecuted();
+			} else if (GET_CONNECTION.equals(methodName)) {
+				return connection.getProxyConnection();
+			}
+			return method.invoke(realStatement, args);
+		} catch (Throwable t) {
+			throw ExceptionUtil.unwrapThrowable(t);
+		}
+	}
+
+	// 根据真正的语句类型创建对应接口的代理对象
+	static Statement newInstance(PooledConnection connection, Statement realStatement) {
+		Constructor<?> constructor;
+		if (realStatement instanceof CallableStatement) {
+			constructor = CALLABLE_STATEMENT_CONSTRUCTOR;
+		} else if (realStatement instanceof PreparedStatement) {
+			constructor = PREPARED_STATEMENT_CONSTRUCTOR;
+		} else {
+			constructor = STATEMENT_CONSTRUCTOR;
+		}
+		try {
+			return (Statement) constructor.newInstance(new PooledStatement(connection, realStatement));
+		} catch (Exception e) {
+			throw new ReflectionException("Error creating proxy for statement. Cause: " + e, e);
+		}
+	}
+
+	private static Constructor<?> proxyConstructor(Class<?> iface) {
+		try {
+			return Proxy.getProxyClass(iface.getClassLoader(), iface).getConstructor(InvocationHandler.class);
+		} catch (NoSuchMethodException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+}
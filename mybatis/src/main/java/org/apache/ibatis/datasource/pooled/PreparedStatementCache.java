@@ -0,0 +1,179 @@
+package org.apache.ibatis.datasource.pooled;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 每个真实连接对应的PreparedStatement缓存(poolPreparedStatementCacheSize大于0时开启)，作用:
+ * 1) 以SQL语句、结果集类型、结果集并发模式作为key缓存PreparedStatement，同一个连接再次预编译相同的SQL时直接复用
+ * 2) 按LRU淘汰超出容量的语句并真正关闭，正在使用中的语句在close()时再关闭
+ * 3) 同一条SQL的语句正在使用时(例如嵌套查询)，再次预编译的语句不进入缓存，close()时直接关闭
+ * 连接通常只被持有它的线程使用，但forceCloseAll()和后台维护线程会从其他线程清空缓存，所以方法都需要加锁
+ * 预编译和关闭语句都会访问数据库，使用ReentrantLock而不是synchronized，避免虚拟线程在IO期间被固定在载体线程上
+ */
+class PreparedStatementCache {
+
+	private final PooledConnection connection;
+	private final PoolState state;
+	private final Map<StatementKey, PooledPreparedStatement> statements;
+	private final ReentrantLock lock = new ReentrantLock();
+
+	PreparedStatementCache(PooledConnection connection, PoolState state, final int capacity) {
+		this.connection = connection;
+		this.state = state;
+		// accessOrder为true，按访问顺序排序，超出容量时淘汰最久未使用的语句
+		this.statements = new LinkedHashMap<StatementKey, PooledPreparedStatement>(capacity, .75F, true) {
+			private static final long serialVersionUID = 4267176411845948333L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<StatementKey, PooledPreparedStatement> eldest) {
+				if (size() > capacity) {
+					PooledPreparedStatement statement = eldest.getValue();
+					if (statement.isInUse()) {
+						statement.evict();
+					} else {
+						statement.closeQuietly();
+					}
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	// 对应Connection.prepareStatement(sql)
+	PreparedStatement prepareStatement(String sql) throws SQLException {
+		return prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+	}
+
+	// 对应Connection.prepareStatement(sql, resultSetType, resultSetConcurrency)
+	PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		lock.lock();
+		try {
+			StatementKey key = new StatementKey(sql, resultSetType, resultSetConcurrency);
+			PooledPreparedStatement statement = statements.get(key);
+			if (statement != null && !statement.isInUse()) {
+				state.statementCacheHitCount.increment();
+				return statement.checkout();
+			}
+			state.statementCacheMissCount.increment();
+			PreparedStatement realStatement = connection.getRealConnection().prepareStatement(sql, resultSetType, resultSetConcurrency);
+			PooledPreparedStatement newStatement = new PooledPreparedStatement(this, connection, realStatement);
+			if (statement == null) {
+				statements.put(key, newStatement);
+			} else {
+				// 缓存中的语句正在使用，新语句不进入缓存
+				newStatement.evict();
+			}
+			return newStatement.checkout();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// 代理对象调用close()时，放回缓存；已被淘汰的语句真正关闭
+	void release(PooledPreparedStatement statement, Object proxy) {
+		lock.lock();
+		try {
+			if (!statement.isInUse() || proxy != statement.checkedOutProxy()) {
+				return;
+			}
+			if (statement.isEvicted()) {
+				statement.closeQuietly();
+			} else if (!statement.checkin()) {
+				// 无法恢复语句属性，不再缓存
+				statements.values().remove(statement);
+				statement.closeQuietly();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// 连接归还给连接池时调用，调用方没有关闭的语句全部放回缓存
+	void releaseAll() {
+		lock.lock();
+		try {
+			Iterator<PooledPreparedStatement> iterator = statements.values().iterator();
+			while (iterator.hasNext()) {
+				PooledPreparedStatement statement = iterator.next();
+				if (statement.isInUse() && !statement.checkin()) {
+					iterator.remove();
+					statement.closeQuietly();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// 关闭并清空所有缓存的语句
+	void clear() {
+		lock.lock();
+		try {
+			List<PooledPreparedStatement> values = new ArrayList<PooledPreparedStatement>(statements.values());
+			statements.clear();
+			for (PooledPreparedStatement statement : values) {
+				statement.closeQuietly();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int size() {
+		lock.lock();
+		try {
+			return statements.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// 缓存的key，由SQL语句、结果集类型、结果集并发模式组成
+	static final class StatementKey {
+
+		private final String sql;
+		private final int resultSetType;
+		private final int resultSetConcurrency;
+		private final int hashCode;
+
+		StatementKey(String sql, int resultSetType, int resultSetConcurrency) {
+			this.sql = sql;
+			this.resultSetType = resultSetType;
+			this.resultSetConcurrency = resultSetConcurrency;
+			this.hashCode = 31 * (31 * sql.hashCode() + resultSetType) + resultSetConcurrency;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof StatementKey)) {
+				return false;
+			}
+			StatementKey other = (StatementKey) obj;
+			return resultSetType == other.resultSetType
+					&& resultSetConcurrency == other.resultSetConcurrency
+					&& sql.equals(other.sql);
+		}
+
+		@Override
+		public String toString() {
+			return sql + " [" + resultSetType + ", " + resultSetConcurrency + "]";
+		}
+	}
+}
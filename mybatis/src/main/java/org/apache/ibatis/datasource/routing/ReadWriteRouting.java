@@ -0,0 +1,67 @@
+package org.apache.ibatis.datasource.routing;
+
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+
+/**
+ * 读写分离的路由提示，绑定在当前线程上，由ReadWriteRoutingDataSource和ReadWriteRoutingTransaction读取
+ * 1) 执行语句之前通过route(MappedStatement)设置语句类型，SELECT语句路由到从库，INSERT/UPDATE/DELETE路由到主库
+ * 2) 只读事务通过setReadOnly(true)标记，没有设置语句类型时也路由到从库
+ * 3) 没有任何提示时路由到主库
+ * 会话结束时应调用clear()，避免提示残留到线程之后执行的其他操作中
+ */
+public final class ReadWriteRouting {
+
+	private static final ThreadLocal<SqlCommandType> COMMAND_TYPE = new ThreadLocal<SqlCommandType>();
+	private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<Boolean>();
+
+	private ReadWriteRouting() {
+	}
+
+	// 根据将要执行的语句设置路由
+	public static void route(MappedStatement ms) {
+		setCommandType(ms == null ? null : ms.getSqlCommandType());
+	}
+
+	public static void setCommandType(SqlCommandType commandType) {
+		if (commandType == null) {
+			COMMAND_TYPE.remove();
+		} else {
+			COMMAND_TYPE.set(commandType);
+		}
+	}
+
+	public static SqlCommandType getCommandType() {
+		return COMMAND_TYPE.get();
+	}
+
+	// 标记当前线程的事务是否为只读事务
+	public static void setReadOnly(boolean readOnly) {
+		if (readOnly) {
+			READ_ONLY.set(Boolean.TRUE);
+		} else {
+			READ_ONLY.remove();
+		}
+	}
+
+	public static boolean isReadOnly() {
+		return READ_ONLY.get() != null;
+	}
+
+	// 当前线程要执行的是否为写操作，写操作总是路由到主库
+	public static boolean isWrite() {
+		SqlCommandType commandType = COMMAND_TYPE.get();
+		return commandType == SqlCommandType.INSERT || commandType == SqlCommandType.UPDATE || commandType == SqlCommandType.DELETE;
+	}
+
+	// 当前线程要执行的操作是否可以路由到从库
+	public static boolean isReadRoute() {
+		return COMMAND_TYPE.get() == SqlCommandType.SELECT || (isReadOnly() && !isWrite());
+	}
+
+	// 清除当前线程的所有路由提示
+	public static void clear() {
+		COMMAND_TYPE.remove();
+		READ_ONLY.remove();
+	}
+}
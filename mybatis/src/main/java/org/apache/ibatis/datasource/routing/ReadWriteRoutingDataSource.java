@@ -0,0 +1,287 @@
+package org.apache.ibatis.datasource.routing;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * 读写分离的数据源，由一个主库和若干个从库的PooledDataSource组成
+ * 1) getConnection()根据当前线程的ReadWriteRouting提示选择主库或从库，没有提示时使用主库
+ * 2) 从库按最少未完成请求(least outstanding requests)选择: 每个从库记录已取出且未关闭的连接数，选择最少的一个，
+ *    数量相同时轮流选择，避免总是落到第一个从库上
+ * 3) 从库获取连接失败时，在replicaRetryInterval毫秒内不再选择该从库；所有从库都不可用时回退到主库
+ * 同一个会话内写操作之后的读操作需要继续使用主库(读到自己刚写入的数据)，这由ReadWriteRoutingTransaction保证
+ */
+public class ReadWriteRoutingDataSource implements DataSource {
+
+	private static final Log log = LogFactory.getLog(ReadWriteRoutingDataSource.class);
+	private static final Class<?>[] IFACES = new Class<?>[] { Connection.class };
+
+	private final PooledDataSource primary;       // 主库
+	private final List<Replica> replicas;         // 从库
+	private final DataSource replicaDataSource;   // 只从从库获取连接的数据源视图
+	private final AtomicInteger nextReplica = new AtomicInteger();  // 选择从库时的起始位置，用于打破平局
+	private volatile long replicaRetryInterval = 30000;             // 从库获取连接失败后暂停使用的时长
+
+	public ReadWriteRoutingDataSource(PooledDataSource primary, List<PooledDataSource> replicas) {
+		if (primary == null) {
+			throw new IllegalArgumentException("Parameter 'primary' must not be null");
+		}
+		this.primary = primary;
+		this.replicas = new ArrayList<Replica>();
+		if (replicas != null) {
+			for (PooledDataSource replica : replicas) {
+				this.replicas.add(new Replica(replica));
+			}
+		}
+		this.replicaDataSource = new ReplicaDataSource();
+	}
+
+	// 重写方法
+	// [start]
+	@Override
+	public Connection getConnection() throws SQLException {
+		return ReadWriteRouting.isReadRoute() ? getReplicaConnection() : getPrimaryConnection();
+	}
+
+	// 指定用户名和密码时无法确定从库的账号，总是使用主库
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return primary.getConnection(username, password);
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return primary.getLogWriter();
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		primary.setLogWriter(out);
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+		primary.setLoginTimeout(seconds);
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return primary.getLoginTimeout();
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		return primary.getParentLogger();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		throw new SQLException(getClass().getName() + " is not a wrapper");
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return false;
+	}
+	// [end]
+
+	// 从主库获取连接
+	public Connection getPrimaryConnection() throws SQLException {
+		return primary.getConnection();
+	}
+
+	// 从未完成请求最少的从库获取连接，所有从库都不可用时从主库获取
+	public Connection getReplicaConnection() throws SQLException {
+		int size = replicas.size();
+		if (size > 0) {
+			int start = (nextReplica.getAndIncrement() & Integer.MAX_VALUE) % size;
+			long now = System.currentTimeMillis();
+			// 最多尝试每个从库一次
+			boolean[] tried = new boolean[size];
+			for (int attempt = 0; attempt < size; attempt++) {
+				Replica selected = null;
+				int selectedIndex = -1;
+				for (int i = 0; i < size; i++) {
+					int index = (start + i) % size;
+					Replica replica = replicas.get(index);
+					if (tried[index] || replica.unavailableUntil > now) {
+						continue;
+					}
+					if (selected == null || replica.outstanding.get() < selected.outstanding.get()) {
+						selected = replica;
+						selectedIndex = index;
+					}
+				}
+				if (selected == null) {
+					break;
+				}
+				tried[selectedIndex] = true;
+				Connection connection = selected.getConnection();
+				if (connection != null) {
+					return connection;
+				}
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("No replica is available, routing read to the primary.");
+			}
+		}
+		return primary.getConnection();
+	}
+
+	// 只从从库获取连接的数据源视图，供ReadWriteRoutingTransaction使用
+	public DataSource getReplicaDataSource() {
+		return replicaDataSource;
+	}
+
+	public PooledDataSource getPrimary() {
+		return primary;
+	}
+
+	public int getReplicaCount() {
+		return replicas.size();
+	}
+
+	public PooledDataSource getReplica(int index) {
+		return replicas.get(index).dataSource;
+	}
+
+	// 指定从库当前已取出且未关闭的连接数
+	public int getOutstandingRequests(int index) {
+		return replicas.get(index).outstanding.get();
+	}
+
+	public long getReplicaRetryInterval() {
+		return replicaRetryInterval;
+	}
+
+	public void setReplicaRetryInterval(long replicaRetryInterval) {
+		this.replicaRetryInterval = replicaRetryInterval;
+	}
+
+	/**
+	 * 一个从库及其未完成请求数
+	 */
+	private class Replica {
+
+		private final PooledDataSource dataSource;
+		private final AtomicInteger outstanding = new AtomicInteger();
+		private volatile long unavailableUntil;    // 获取连接失败后，在该时间之前不再选择
+
+		Replica(PooledDataSource dataSource) {
+			this.dataSource = dataSource;
+		}
+
+		// 获取连接并包装为统计未完成请求数的代理对象，失败时返回null并暂停使用该从库
+		Connection getConnection() {
+			outstanding.incrementAndGet();
+			try {
+				Connection connection = dataSource.getConnection();
+				return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), IFACES,
+						new ReplicaConnection(this, connection));
+			} catch (SQLException e) {
+				outstanding.decrementAndGet();
+				unavailableUntil = System.currentTimeMillis() + replicaRetryInterval;
+				log.warn("Could not get a connection from replica " + dataSource.getUrl() + ", skipping it for "
+						+ replicaRetryInterval + " ms. Cause: " + e.getMessage());
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * 从库连接的代理，第一次close()时减少所属从库的未完成请求数
+	 */
+	private static class ReplicaConnection implements InvocationHandler {
+
+		private static final String CLOSE = "close";
+
+		private final Replica replica;
+		private final Connection connection;
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		ReplicaConnection(Replica replica, Connection connection) {
+			this.replica = replica;
+			this.connection = connection;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (CLOSE.equals(method.getName()) && closed.compareAndSet(false, true)) {
+				replica.outstanding.decrementAndGet();
+			}
+			try {
+				return method.invoke(connection, args);
+			} catch (Throwable t) {
+				throw ExceptionUtil.unwrapThrowable(t);
+			}
+		}
+	}
+
+	/**
+	 * 只从从库获取连接的数据源视图
+	 */
+	private class ReplicaDataSource implements DataSource {
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			return getReplicaConnection();
+		}
+
+		@Override
+		public Connection getConnection(String username, String password) throws SQLException {
+			return getReplicaConnection();
+		}
+
+		@Override
+		public PrintWriter getLogWriter() throws SQLException {
+			return ReadWriteRoutingDataSource.this.getLogWriter();
+		}
+
+		@Override
+		public void setLogWriter(PrintWriter out) throws SQLException {
+			ReadWriteRoutingDataSource.this.setLogWriter(out);
+		}
+
+		@Override
+		public void setLoginTimeout(int seconds) throws SQLException {
+			ReadWriteRoutingDataSource.this.setLoginTimeout(seconds);
+		}
+
+		@Override
+		public int getLoginTimeout() throws SQLException {
+			return ReadWriteRoutingDataSource.this.getLoginTimeout();
+		}
+
+		@Override
+		public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+			return ReadWriteRoutingDataSource.this.getParentLogger();
+		}
+
+		@Override
+		public <T> T unwrap(Class<T> iface) throws SQLException {
+			throw new SQLException(getClass().getName() + " is not a wrapper");
+		}
+
+		@Override
+		public boolean isWrapperFor(Class<?> iface) throws SQLException {
+			return false;
+		}
+	}
+}
@@ -26,6 +26,8 @@ public class UnpooledDataSource implements DataSource {
 	private Properties driverProperties;    // 数据库连接驱动的相关配置
 	// 缓存所有已注册(DriverManager)的数据库连接驱动
 	private static Map<String, Driver> registeredDrivers = new ConcurrentHashMap<String, Driver>();
+	// 缓存每个驱动名称和URL对应的Driver对象，创建连接时直接调用，不再经过DriverManager
+	private static Map<String, Driver> resolvedDrivers = new ConcurrentHashMap<String, Driver>();
 	
 	// 驱动属性配置
 	private String driver;    // 数据库连接的驱动名称
@@ -201,15 +203,35 @@ public class UnpooledDataSource implements DataSource {
 		return doGetConnection(props);
 	}
 	
+	// DriverManager.getConnection()每次都要在锁内遍历所有已注册的驱动，连接池集中创建连接时会互相阻塞，这里直接调用缓存的Driver
 	private Connection doGetConnection(Properties properties) throws SQLException {
-		initializeDriver();
+		Driver resolvedDriver = resolveDriver();
 		long st = System.currentTimeMillis();
-		Connection connection = DriverManager.getConnection(url, properties);
+		Connection connection = resolvedDriver.connect(url, properties);
+		if (connection == null) {
+			throw new SQLException("No suitable driver found for " + url, "08001");
+		}
 		System.out.println("创建一个数据库连接花费了:" + (System.currentTimeMillis() - st) + "ms!");
 		configureConncetion(connection);
 		return connection;
 	}	
 	
+	// 获取能处理当前URL的驱动，只有第一次需要注册驱动并查找，之后直接从缓存中获取
+	private Driver resolveDriver() throws SQLException {
+		String key = driver + "|" + url;
+		Driver resolved = resolvedDrivers.get(key);
+		if (resolved == null) {
+			initializeDriver();
+			resolved = driver == null ? null : registeredDrivers.get(driver);
+			if (resolved == null || !resolved.acceptsURL(url)) {
+				// 驱动名称与URL不匹配时，与原来一样由DriverManager按URL查找
+				resolved = DriverManager.getDriver(url);
+			}
+			resolvedDrivers.put(key, resolved);
+		}
+		return resolved;
+	}
+	
 	// 初始化驱动，如果尚未注册则注册驱动并对其初始化，枷锁保证线程安全
 	private synchronized void initializeDriver() throws SQLException {
 		if (!registeredDrivers.containsKey(driver)) { // 检测驱动是否已注册
@@ -231,13 +253,13 @@ public class UnpooledDataSource implements DataSource {
 		}
 	}	
 	
-	// 配置数据库连接参数
+	// 配置数据库连接参数，只处理配置了的参数
 	private void configureConncetion(Connection conn) throws SQLException {
-		// 设置事务是否自动提交
+		// 设置事务是否自动提交，驱动的默认值不一定是自动提交，所以需要与当前值比较(大部分驱动在本地返回该值)
 		if (autoCommit != null && autoCommit != conn.getAutoCommit()) {
 			conn.setAutoCommit(autoCommit);
 		}
-		// 设置事务隔离级别
+		// 设置事务隔离级别，直接设置，先读取当前值再比较反而多一次与数据库的交互
 		if (defaultTransactionIsolationLevel != null) {
 			conn.setTransactionIsolation(defaultTransactionIsolationLevel);
 		}
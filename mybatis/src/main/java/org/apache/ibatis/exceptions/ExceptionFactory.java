@@ -0,0 +1,15 @@
+package org.apache.ibatis.exceptions;
+
+/**
+ * 将执行SQL过程中出现的异常统一包装为PersistenceException
+ */
+public class ExceptionFactory {
+
+	private ExceptionFactory() {
+		// Prevent Instantiation
+	}
+	
+	public static RuntimeException wrapException(String message, Exception e) {
+		return new PersistenceException(message + " Cause: " + e, e);
+	}
+}
@@ -0,0 +1,23 @@
+package org.apache.ibatis.exceptions;
+
+// selectOne()查询到多条记录时抛出
+public class TooManyResultsException extends PersistenceException {
+
+	private static final long serialVersionUID = 8935197089745865786L;
+
+	public TooManyResultsException() {
+		super();
+	}
+
+	public TooManyResultsException(String message) {
+		super(message);
+	}
+	
+	public TooManyResultsException(Throwable cause) {
+		super(cause);
+	}
+	
+	public TooManyResultsException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
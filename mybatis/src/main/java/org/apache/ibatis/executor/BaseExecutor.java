@@ -0,0 +1,304 @@
+package org.apache.ibatis.executor;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.datasource.routing.ReadWriteRouting;
+import org.apache.ibatis.executor.statement.StatementUtil;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.logging.jdbc.ConnectionLogger;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.LocalCacheScope;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+
+/**
+ * 执行器的抽象基类，使用模板方法模式实现了Executor接口中与具体执行方式无关的部分:
+ * 一级缓存(localCache)、事务的提交和回滚、关闭执行器
+ * 真正访问数据库的doUpdate()、doQuery()、doQueryCursor()、doFlushStatements()由子类实现
+ */
+public abstract class BaseExecutor implements Executor {
+
+	private static final Log log = LogFactory.getLog(BaseExecutor.class);
+	
+	// 查询数据库期间放入一级缓存的占位符
+	private static final Object EXECUTION_PLACEHOLDER = new Object();
+	
+	protected Transaction transaction;          // 事务对象
+	protected Executor wrapper;                 // 封装的Executor对象
+	protected PerpetualCache localCache;        // 一级缓存，缓存查询结果
+	protected Configuration configuration;
+	
+	protected int queryStack;                   // 记录嵌套查询的层数
+	private boolean closed;
+	
+	protected BaseExecutor(Configuration configuration, Transaction transaction) {
+		this.transaction = transaction;
+		this.localCache = new PerpetualCache("LocalCache");
+		this.closed = false;
+		this.configuration = configuration;
+		this.wrapper = this;
+	}
+	
+	@Override
+	public Transaction getTransaction() {
+		if (closed) {
+			throw new ExecutorException("Executor was closed.");
+		}
+		return transaction;
+	}
+	
+	@Override
+	public void close(boolean forceRollback) {
+		try {
+			try {
+				rollback(forceRollback);
+			} finally {
+				if (transaction != null) {
+					transaction.close();
+				}
+			}
+		} catch (SQLException e) {
+			// Ignore.  There's nothing that can be done at this point.
+			log.warn("Unexpected exception on closing transaction.  Cause: " + e);
+		} finally {
+			transaction = null;
+			localCache = null;
+			closed = true;
+			// 不论使用哪种Transaction，会话结束时都清除读写分离的路由提示(包括只读标记)
+			ReadWriteRouting.clear();
+		}
+	}
+	
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+	
+	// 执行更新语句之前先清空一级缓存
+	@Override
+	public int update(MappedStatement ms, Object parameter) throws SQLException {
+		if (closed) {
+			throw new ExecutorException("Executor was closed.");
+		}
+		clearLocalCache();
+		ReadWriteRouting.route(ms);   // 获取连接之前设置读写分离的路由提示
+		try {
+			return doUpdate(ms, parameter);
+		} finally {
+			ReadWriteRouting.setCommandType(null);   // 连接已经获取，清除路由提示，避免残留到线程之后的其他操作中
+		}
+	}
+	
+	@Override
+	public List<BatchResult> flushStatements() throws SQLException {
+		return flushStatements(false);
+	}
+	
+	// isRollBack为true时不执行缓存的语句，只关闭它们
+	public List<BatchResult> flushStatements(boolean isRollBack) throws SQLException {
+		if (closed) {
+			throw new ExecutorException("Executor was closed.");
+		}
+		return doFlushStatements(isRollBack);
+	}
+	
+	@Override
+	public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler<?> resultHandler) throws SQLException {
+		BoundSql boundSql = ms.getBoundSql(parameter);
+		CacheKey key = createCacheKey(ms, parameter, rowBounds, boundSql);
+		return query(ms, parameter, rowBounds, resultHandler, key, boundSql);
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler<?> resultHandler,
+			CacheKey key, BoundSql boundSql) throws SQLException {
+		if (closed) {
+			throw new ExecutorException("Executor was closed.");
+		}
+		ReadWriteRouting.route(ms);   // 获取连接之前设置读写分离的路由提示
+		// 非嵌套查询并且配置了flushCache时，清空一级缓存
+		if (queryStack == 0 && ms.isFlushCacheRequired()) {
+			clearLocalCache();
+		}
+		List<E> list;
+		try {
+			queryStack++;
+			// 指定了ResultHandler时结果交给ResultHandler处理，不使用一级缓存
+			Object cached = resultHandler == null ? localCache.getObject(key) : null;
+			if (cached != null && cached != EXECUTION_PLACEHOLDER) {
+				list = (List<E>) cached;
+			} else {
+				list = queryFromDatabase(ms, parameter, rowBounds, resultHandler, key, boundSql);
+			}
+		} finally {
+			queryStack--;
+			ReadWriteRouting.setCommandType(null);
+		}
+		// 一级缓存的作用域为STATEMENT时，每次查询完成都清空
+		if (queryStack == 0 && configuration.getLocalCacheScope() == LocalCacheScope.STATEMENT) {
+			clearLocalCache();
+		}
+		return list;
+	}
+	
+	@Override
+	public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException {
+		if (closed) {
+			throw new ExecutorException("Executor was closed.");
+		}
+		BoundSql boundSql = ms.getBoundSql(parameter);
+		ReadWriteRouting.route(ms);
+		try {
+			return doQueryCursor(ms, parameter, rowBounds, boundSql);
+		} finally {
+			ReadWriteRouting.setCommandType(null);
+		}
+	}
+	
+	/**
+	 * 由MappedStatement的id、RowBounds的offset和limit、SQL语句、所有实参值以及Environment的id共同组成CacheKey
+	 */
+	@Override
+	public CacheKey createCacheKey(MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql) {
+		if (closed) {
+			throw new ExecutorException("Executor was closed.");
+		}
+		List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+		// 4个固定的组成部分、每个参数一个以及Environment的id，一次分配到位
+		CacheKey cacheKey = new CacheKey(5 + parameterMappings.size());
+		cacheKey.update(ms.getId());
+		cacheKey.update(rowBounds.getOffset());
+		cacheKey.update(rowBounds.getLimit());
+		cacheKey.update(boundSql.getSql());
+		TypeHandlerRegistry typeHandlerRegistry = ms.getConfiguration().getTypeHandlerRegistry();
+		// 与DefaultParameterHandler获取实参值的方式相同
+		for (ParameterMapping parameterMapping : parameterMappings) {
+			if (parameterMapping.getMode() != ParameterMode.OUT) {
+				Object value;
+				String propertyName = parameterMapping.getProperty();
+				if (boundSql.hasAdditionalParameter(propertyName)) {
+					value = boundSql.getAdditionalParameter(propertyName);
+				} else if (parameterObject == null) {
+					value = null;
+				} else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
+					value = parameterObject;
+				} else {
+					MetaObject metaObject = configuration.newMetaObject(parameterObject);
+					value = metaObject.getValue(propertyName);
+				}
+				cacheKey.update(value);
+			}
+		}
+		if (configuration.getEnvironment() != null) {
+			cacheKey.update(configuration.getEnvironment().id());
+		}
+		// 冻结之后作为一级缓存和二级缓存的key
+		return cacheKey.freeze();
+	}
+	
+	@Override
+	public boolean isCached(MappedStatement ms, CacheKey key) {
+		return localCache.getObject(key) != null;
+	}
+	
+	@Override
+	public void commit(boolean required) throws SQLException {
+		if (closed) {
+			throw new ExecutorException("Cannot commit, transaction is already closed");
+		}
+		clearLocalCache();
+		flushStatements();
+		if (required) {
+			transaction.commit();
+		}
+	}
+	
+	@Override
+	public void rollback(boolean required) throws SQLException {
+		if (!closed) {
+			try {
+				clearLocalCache();
+				flushStatements(true);
+			} finally {
+				if (required) {
+					transaction.rollback();
+				}
+			}
+		}
+	}
+	
+	@Override
+	public void clearLocalCache() {
+		if (!closed) {
+			localCache.clear();
+		}
+	}
+	
+	protected abstract int doUpdate(MappedStatement ms, Object parameter) throws SQLException;
+	
+	protected abstract List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException;
+	
+	protected abstract <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler<?> resultHandler, BoundSql boundSql)
+			throws SQLException;
+	
+	protected abstract <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql)
+			throws SQLException;
+	
+	protected void closeStatement(Statement statement) {
+		if (statement != null) {
+			try {
+				statement.close();
+			} catch (SQLException e) {
+				// ignore
+			}
+		}
+	}
+	
+	// 重复使用Statement时，重新按事务的剩余时间设置查询超时
+	protected void applyTransactionTimeout(Statement statement) throws SQLException {
+		StatementUtil.applyTransactionTimeout(statement, statement.getQueryTimeout(), transaction.getTimeout());
+	}
+	
+	// 查询数据库，并将结果放入一级缓存
+	private <E> List<E> queryFromDatabase(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler<?> resultHandler,
+			CacheKey key, BoundSql boundSql) throws SQLException {
+		List<E> list;
+		localCache.putObject(key, EXECUTION_PLACEHOLDER);
+		try {
+			list = doQuery(ms, parameter, rowBounds, resultHandler, boundSql);
+		} finally {
+			localCache.removeObject(key);
+		}
+		localCache.putObject(key, list);
+		return list;
+	}
+	
+	// 获取数据库连接，开启了该语句的DEBUG日志时返回打印日志的代理连接
+	protected Connection getConnection(Log statementLog) throws SQLException {
+		Connection connection = transaction.getConnection();
+		if (statementLog.isDebugEnabled()) {
+			return ConnectionLogger.newInstance(connection, statementLog, queryStack);
+		}
+		return connection;
+	}
+	
+	@Override
+	public void setExecutorWrapper(Executor wrapper) {
+		this.wrapper = wrapper;
+	}
+}
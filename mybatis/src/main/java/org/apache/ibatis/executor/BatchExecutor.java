@@ -0,0 +1,289 @@
+package org.apache.ibatis.executor;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BatchStatistics.FlushReason;
+import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
+import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.executor.keygen.NoKeyGenerator;
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+
+/**
+ * 批处理执行器，将连续执行的相同SQL(相同的MappedStatement)的更新语句合并到同一个Statement的JDBC批处理中
+ * 1) 更新语句只加入批处理，返回BATCH_UPDATE_RETURN_VALUE，真正的影响行数在flushStatements()返回的BatchResult中
+ * 2) SQL与上一条语句不同时创建新的Statement，同一个会话中可能有多个Statement，按加入的顺序依次执行
+ * 3) 执行查询、提交、回滚和关闭会话之前会先执行或丢弃缓存的批处理
+ * 4) 缓存的语句条数、估算的参数字节数或第一条语句等待的时间达到Configuration中的batchFlush*阈值时，自动执行批处理，
+ *    避免大批量导入时驱动缓存的批处理无限增长。自动执行的结果释放实参后保存下来，在下一次flushStatements()时一起返回；
+ *    等待时间只在加入语句时检查(JDBC连接不是线程安全的，不能由后台线程执行批处理)
+ */
+public class BatchExecutor extends BaseExecutor {
+
+	public static final int BATCH_UPDATE_RETURN_VALUE = Integer.MIN_VALUE + 1002;
+	
+	private final List<Statement> statementList = new ArrayList<Statement>();       // 缓存多个Statement对象，每个对应一个批处理
+	private final List<BatchResult> batchResultList = new ArrayList<BatchResult>(); // 记录批处理的结果，与statementList一一对应
+	private final List<BatchResult> flushedResults = new ArrayList<BatchResult>();  // 自动执行的批处理结果，还没有通过flushStatements()返回
+	private String currentSql;                   // 当前执行的SQL语句
+	private MappedStatement currentStatement;    // 当前执行的MappedStatement
+	
+	private int pendingStatements;               // 还没有执行的语句条数
+	private long pendingBytes;                   // 还没有执行的语句估算的字节数
+	private long firstPendingTime;               // 第一条还没有执行的语句加入的时间(System.nanoTime())
+	
+	public BatchExecutor(Configuration configuration, Transaction transaction) {
+		super(configuration, transaction);
+	}
+	
+	@Override
+	public int doUpdate(MappedStatement ms, Object parameterObject) throws SQLException {
+		final Configuration configuration = ms.getConfiguration();
+		final StatementHandler handler = configuration.newStatementHandler(this, ms, parameterObject, RowBounds.DEFAULT, null, null);
+		final BoundSql boundSql = handler.getBoundSql();
+		final String sql = boundSql.getSql();
+		final Statement stmt;
+		long bytes = 0;
+		// 与上一条语句的SQL和MappedStatement都相同时，加入同一个批处理
+		if (sql.equals(currentSql) && ms.equals(currentStatement)) {
+			int last = statementList.size() - 1;
+			stmt = statementList.get(last);
+			applyTransactionTimeout(stmt);
+			handler.parameterize(stmt);
+			BatchResult batchResult = batchResultList.get(last);
+			batchResult.addParameterObject(parameterObject);
+		} else {
+			Connection connection = getConnection(ms.getStatementLog());
+			stmt = handler.prepare(connection, transaction.getTimeout());
+			handler.parameterize(stmt);
+			currentSql = sql;
+			currentStatement = ms;
+			statementList.add(stmt);
+			batchResultList.add(new BatchResult(ms, sql, parameterObject));
+			bytes += 2L * sql.length();
+		}
+		handler.batch(stmt);
+		bytes += estimateSize(ms, handler, sql);
+		if (pendingStatements++ == 0) {
+			firstPendingTime = System.nanoTime();
+		}
+		pendingBytes += bytes;
+		FlushReason reason = getFlushReason();
+		if (reason != null) {
+			// 自动执行的结果只保留影响行数和回填的主键，释放实参，否则所有实参仍然会保留到flushStatements()
+			for (BatchResult batchResult : executeBatches(reason, true)) {
+				batchResult.releaseParameterObjects();
+				flushedResults.add(batchResult);
+			}
+		}
+		return BATCH_UPDATE_RETURN_VALUE;
+	}
+	
+	// 估算加入批处理的一条语句的字节数: 预编译语句只计算实参，非预编译语句的每条SQL都需要发送到数据库
+	private long estimateSize(MappedStatement ms, StatementHandler handler, String sql) {
+		long size = 0;
+		if (StatementType.STATEMENT == ms.getStatementType()) {
+			size += 2L * sql.length();
+		}
+		ParameterHandler parameterHandler = handler.getParameterHandler();
+		if (parameterHandler instanceof DefaultParameterHandler) {
+			size += ((DefaultParameterHandler) parameterHandler).getEstimatedParameterSize();
+		} else {
+			List<ParameterMapping> parameterMappings = handler.getBoundSql().getParameterMappings();
+			size += parameterMappings == null ? 0 : 16L * parameterMappings.size();
+		}
+		return size;
+	}
+	
+	// 检查是否达到了自动执行批处理的阈值，未达到时返回null
+	private FlushReason getFlushReason() {
+		Integer maxStatements = configuration.getBatchFlushStatements();
+		if (maxStatements != null && maxStatements > 0 && pendingStatements >= maxStatements) {
+			return FlushReason.STATEMENTS;
+		}
+		Long maxBytes = configuration.getBatchFlushBytes();
+		if (maxBytes != null && maxBytes > 0 && pendingBytes >= maxBytes) {
+			return FlushReason.BYTES;
+		}
+		Long lingerTime = configuration.getBatchFlushLingerTime();
+		if (lingerTime != null && lingerTime > 0
+				&& System.nanoTime() - firstPendingTime >= TimeUnit.MILLISECONDS.toNanos(lingerTime)) {
+			return FlushReason.LINGER;
+		}
+		return null;
+	}
+	
+	@Override
+	public <E> List<E> doQuery(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler<?> resultHandler, BoundSql boundSql)
+			throws SQLException {
+		Statement stmt = null;
+		try {
+			// 查询之前先执行缓存的批处理，保证能查到之前的更新
+			flushStatements();
+			Configuration configuration = ms.getConfiguration();
+			StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameterObject, rowBounds, resultHandler, boundSql);
+			Connection connection = getConnection(ms.getStatementLog());
+			stmt = handler.prepare(connection, transaction.getTimeout());
+			handler.parameterize(stmt);
+			return handler.<E>query(stmt, resultHandler);
+		} finally {
+			closeStatement(stmt);
+		}
+	}
+	
+	@Override
+	protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
+		flushStatements();
+		Configuration configuration = ms.getConfiguration();
+		StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
+		Connection connection = getConnection(ms.getStatementLog());
+		Statement stmt = handler.prepare(connection, transaction.getTimeout());
+		handler.parameterize(stmt);
+		return handler.<E>queryCursor(stmt);
+	}
+	
+	/**
+	 * 依次执行缓存的批处理，返回自动执行的和本次执行的所有批处理结果
+	 * 某个批处理失败时抛出BatchExecutorException，其中包含之前已经成功执行的批处理结果
+	 */
+	@Override
+	public List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException {
+		try {
+			if (isRollback) {
+				return Collections.emptyList();
+			}
+			List<BatchResult> results = new ArrayList<BatchResult>(flushedResults);
+			results.addAll(executeBatches(FlushReason.EXPLICIT, false));
+			return results;
+		} finally {
+			flushedResults.clear();
+			closeStatements();
+		}
+	}
+	
+	/**
+	 * 执行所有Statement中缓存的批处理，并回填自增主键
+	 * keepCurrent为true时(自动执行)保留当前的Statement，之后相同的SQL可以继续加入，不需要重新预编译
+	 */
+	private List<BatchResult> executeBatches(FlushReason reason, boolean keepCurrent) throws SQLException {
+		List<BatchResult> results = new ArrayList<BatchResult>();
+		if (pendingStatements == 0) {
+			return results;
+		}
+		final int statements = pendingStatements;
+		final long bytes = pendingBytes;
+		final long start = System.nanoTime();
+		boolean success = false;
+		try {
+			for (int i = 0, n = statementList.size(); i < n; i++) {
+				BatchResult batchResult = batchResultList.get(i);
+				// 自动执行后保留的Statement中还没有加入新的语句
+				if (batchResult.getParameterObjects().isEmpty()) {
+					continue;
+				}
+				Statement stmt = statementList.get(i);
+				applyTransactionTimeout(stmt);
+				try {
+					batchResult.setUpdateCounts(stmt.executeBatch());
+					MappedStatement ms = batchResult.getMappedStatement();
+					List<Object> parameterObjects = batchResult.getParameterObjects();
+					KeyGenerator keyGenerator = ms.getKeyGenerator();
+					if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
+						Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
+						batchResult.setGeneratedKeys(jdbc3KeyGenerator.processBatch(ms, stmt, parameterObjects));
+					} else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) {
+						for (Object parameter : parameterObjects) {
+							keyGenerator.processAfter(this, ms, stmt, parameter);
+						}
+					}
+				} catch (BatchUpdateException e) {
+					List<BatchResult> successfulResults = new ArrayList<BatchResult>(flushedResults);
+					successfulResults.addAll(results);
+					StringBuilder message = new StringBuilder();
+					message.append(batchResult.getMappedStatement().getId())
+						.append(" (batch index #")
+						.append(successfulResults.size() + 1)
+						.append(")")
+						.append(" failed.");
+					if (!successfulResults.isEmpty()) {
+						message.append(" ")
+							.append(successfulResults.size())
+							.append(" prior sub executor(s) completed successfully, but will be rolled back.");
+					}
+					throw new BatchExecutorException(message.toString(), e, successfulResults, batchResult);
+				}
+				results.add(batchResult);
+			}
+			success = true;
+			return results;
+		} finally {
+			configuration.getBatchStatistics().recordFlush(reason, statements, bytes, System.nanoTime() - start);
+			pendingStatements = 0;
+			pendingBytes = 0;
+			firstPendingTime = 0;
+			if (success && keepCurrent) {
+				retainCurrentStatement();
+			} else {
+				flushedResults.clear();
+				closeStatements();
+			}
+		}
+	}
+	
+	// 关闭除当前Statement以外的所有Statement，并为当前Statement创建新的BatchResult
+	private void retainCurrentStatement() {
+		int last = statementList.size() - 1;
+		Statement current = statementList.get(last);
+		for (int i = 0; i < last; i++) {
+			closeStatement(statementList.get(i));
+		}
+		statementList.clear();
+		batchResultList.clear();
+		statementList.add(current);
+		batchResultList.add(new BatchResult(currentStatement, currentSql));
+	}
+	
+	private void closeStatements() {
+		for (Statement stmt : statementList) {
+			closeStatement(stmt);
+		}
+		currentSql = null;
+		currentStatement = null;
+		statementList.clear();
+		batchResultList.clear();
+		pendingStatements = 0;
+		pendingBytes = 0;
+		firstPendingTime = 0;
+	}
+	
+	/**
+	 * 本次会话中还没有执行的语句条数
+	 */
+	public int getPendingStatements() {
+		return pendingStatements;
+	}
+	
+	/**
+	 * 本次会话中还没有执行的语句估算的字节数
+	 */
+	public long getPendingBytes() {
+		return pendingBytes;
+	}
+}
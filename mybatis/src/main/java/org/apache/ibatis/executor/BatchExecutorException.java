@@ -0,0 +1,40 @@
+package org.apache.ibatis.executor;
+
+import java.sql.BatchUpdateException;
+import java.util.List;
+
+/**
+ * 批处理中某个Statement执行失败时抛出，包含失败之前已经成功执行的批处理结果
+ */
+public class BatchExecutorException extends ExecutorException {
+
+	private static final long serialVersionUID = 154049229650533990L;
+	
+	private final List<BatchResult> successfulBatchResults;   // 失败之前已经成功执行的批处理
+	private final BatchUpdateException batchUpdateException;  // JDBC驱动抛出的原始异常
+	private final BatchResult batchResult;                    // 执行失败的批处理
+	
+	public BatchExecutorException(String message, BatchUpdateException cause, List<BatchResult> successfulBatchResults,
+			BatchResult batchResult) {
+		super(message + " Cause: " + cause, cause);
+		this.batchUpdateException = cause;
+		this.successfulBatchResults = successfulBatchResults;
+		this.batchResult = batchResult;
+	}
+	
+	public BatchUpdateException getBatchUpdateException() {
+		return batchUpdateException;
+	}
+
+	public List<BatchResult> getSuccessfulBatchResults() {
+		return successfulBatchResults;
+	}
+
+	public String getFailingSqlStatement() {
+		return batchResult.getSql();
+	}
+
+	public String getFailingStatementId() {
+		return batchResult.getMappedStatement().getId();
+	}
+}
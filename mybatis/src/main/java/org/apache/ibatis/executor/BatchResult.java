@@ -0,0 +1,75 @@
+package org.apache.ibatis.executor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.mapping.MappedStatement;
+
+/**
+ * 一个JDBC批处理的执行结果，对应BatchExecutor中的一个Statement
+ * parameterObjects记录了批处理中每条语句的实参，updateCounts是Statement.executeBatch()返回的每条语句影响的行数
+ * 使用Jdbc3KeyGenerator时，generatedKeys依次记录每条语句回填到实参中的主键值(按keyProperty的顺序)
+ * BatchExecutor自动执行的批处理结果会释放parameterObjects，只保留updateCounts和generatedKeys，
+ * 避免大批量导入时所有实参一直保留到flushStatements()
+ */
+public class BatchResult {
+
+	private final MappedStatement mappedStatement;
+	private final String sql;
+	private List<Object> parameterObjects;
+	
+	private int[] updateCounts;
+	private List<Object[]> generatedKeys = Collections.emptyList();
+	
+	public BatchResult(MappedStatement mappedStatement, String sql) {
+		super();
+		this.mappedStatement = mappedStatement;
+		this.sql = sql;
+		this.parameterObjects = new ArrayList<Object>();
+	}
+	
+	public BatchResult(MappedStatement mappedStatement, String sql, Object parameterObject) {
+		this(mappedStatement, sql);
+		addParameterObject(parameterObject);
+	}
+
+	public MappedStatement getMappedStatement() {
+		return mappedStatement;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	public List<Object> getParameterObjects() {
+		return parameterObjects;
+	}
+
+	public int[] getUpdateCounts() {
+		return updateCounts;
+	}
+
+	public void setUpdateCounts(int[] updateCounts) {
+		this.updateCounts = updateCounts;
+	}
+	
+	public List<Object[]> getGeneratedKeys() {
+		return generatedKeys;
+	}
+
+	public void setGeneratedKeys(List<Object[]> generatedKeys) {
+		this.generatedKeys = generatedKeys;
+	}
+	
+	public void addParameterObject(Object parameterObject) {
+		this.parameterObjects.add(parameterObject);
+	}
+
+	/**
+	 * 释放批处理中每条语句的实参，之后getParameterObjects()返回空列表，语句条数可以通过updateCounts获得
+	 */
+	public void releaseParameterObjects() {
+		this.parameterObjects = Collections.emptyList();
+	}
+}
@@ -0,0 +1,148 @@
+package org.apache.ibatis.executor;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批处理的统计信息，由同一个Configuration创建的所有BatchExecutor共享，可以在多个线程中同时更新
+ * 每次执行批处理(一次flush可能包含多个Statement)记录一次: 触发原因、语句条数、估算的参数字节数和耗时
+ */
+public class BatchStatistics {
+
+	/**
+	 * 触发批处理执行的原因
+	 */
+	public enum FlushReason {
+		STATEMENTS,   // 缓存的语句条数达到batchFlushStatements
+		BYTES,        // 估算的参数字节数达到batchFlushBytes
+		LINGER,       // 第一条语句加入后等待的时间达到batchFlushLingerTime
+		EXPLICIT      // 调用flushStatements()、提交、查询或关闭会话
+	}
+	
+	// 批处理大小的分布: <=1, <=10, <=100, <=1000, <=10000, >10000
+	private static final int[] SIZE_BUCKETS = { 1, 10, 100, 1000, 10000 };
+	
+	private final AtomicLong flushCount = new AtomicLong();          // 执行批处理的次数
+	private final AtomicLong statementCount = new AtomicLong();      // 执行的语句总条数
+	private final AtomicLong estimatedBytes = new AtomicLong();      // 估算的参数总字节数
+	private final AtomicLong flushTime = new AtomicLong();           // 执行批处理的总耗时(纳秒)
+	private final AtomicLong maxFlushTime = new AtomicLong();        // 单次执行批处理的最长耗时(纳秒)
+	private final AtomicLong maxBatchSize = new AtomicLong();        // 单次执行的最多语句条数
+	private final AtomicLong[] reasonCounts = newCounters(FlushReason.values().length);
+	private final AtomicLong[] sizeCounts = newCounters(SIZE_BUCKETS.length + 1);
+	
+	private static AtomicLong[] newCounters(int size) {
+		AtomicLong[] counters = new AtomicLong[size];
+		for (int i = 0; i < size; i++) {
+			counters[i] = new AtomicLong();
+		}
+		return counters;
+	}
+	
+	// 记录一次批处理的执行
+	public void recordFlush(FlushReason reason, int statements, long bytes, long elapsedNanos) {
+		flushCount.incrementAndGet();
+		statementCount.addAndGet(statements);
+		estimatedBytes.addAndGet(bytes);
+		flushTime.addAndGet(elapsedNanos);
+		updateMax(maxFlushTime, elapsedNanos);
+		updateMax(maxBatchSize, statements);
+		reasonCounts[reason.ordinal()].incrementAndGet();
+		int bucket = 0;
+		while (bucket < SIZE_BUCKETS.length && statements > SIZE_BUCKETS[bucket]) {
+			bucket++;
+		}
+		sizeCounts[bucket].incrementAndGet();
+	}
+	
+	private static void updateMax(AtomicLong max, long value) {
+		long current;
+		while (value > (current = max.get())) {
+			if (max.compareAndSet(current, value)) {
+				return;
+			}
+		}
+	}
+	
+	public void reset() {
+		flushCount.set(0);
+		statementCount.set(0);
+		estimatedBytes.set(0);
+		flushTime.set(0);
+		maxFlushTime.set(0);
+		maxBatchSize.set(0);
+		for (AtomicLong counter : reasonCounts) {
+			counter.set(0);
+		}
+		for (AtomicLong counter : sizeCounts) {
+			counter.set(0);
+		}
+	}
+	
+	public long getFlushCount() {
+		return flushCount.get();
+	}
+	
+	public long getFlushCount(FlushReason reason) {
+		return reasonCounts[reason.ordinal()].get();
+	}
+	
+	public long getStatementCount() {
+		return statementCount.get();
+	}
+	
+	public long getEstimatedBytes() {
+		return estimatedBytes.get();
+	}
+	
+	public long getAverageBatchSize() {
+		long count = flushCount.get();
+		return count == 0 ? 0 : statementCount.get() / count;
+	}
+	
+	public long getMaxBatchSize() {
+		return maxBatchSize.get();
+	}
+	
+	// 批处理大小的分布，依次为 <=1, <=10, <=100, <=1000, <=10000, >10000 的次数
+	public long[] getBatchSizeHistogram() {
+		long[] histogram = new long[sizeCounts.length];
+		for (int i = 0; i < histogram.length; i++) {
+			histogram[i] = sizeCounts[i].get();
+		}
+		return histogram;
+	}
+	
+	public long getTotalFlushTime() {
+		return TimeUnit.NANOSECONDS.toMillis(flushTime.get());
+	}
+	
+	public long getAverageFlushTime() {
+		long count = flushCount.get();
+		return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(flushTime.get() / count);
+	}
+	
+	public long getMaxFlushTime() {
+		return TimeUnit.NANOSECONDS.toMillis(maxFlushTime.get());
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("\n===STATUS=====================================================");
+		builder.append("\n flushCount                     ").append(getFlushCount());
+		for (FlushReason reason : FlushReason.values()) {
+			builder.append("\n   ").append(String.format("%-29s", reason)).append(getFlushCount(reason));
+		}
+		builder.append("\n statementCount                 ").append(getStatementCount());
+		builder.append("\n estimatedBytes                 ").append(getEstimatedBytes());
+		builder.append("\n averageBatchSize               ").append(getAverageBatchSize());
+		builder.append("\n maxBatchSize                   ").append(getMaxBatchSize());
+		builder.append("\n batchSizeHistogram             ").append(Arrays.toString(getBatchSizeHistogram()));
+		builder.append("\n averageFlushTime               ").append(getAverageFlushTime());
+		builder.append("\n maxFlushTime                   ").append(getMaxFlushTime());
+		builder.append("\n===============================================================");
+		return builder.toString();
+	}
+}
@@ -1,5 +1,62 @@
 package org.apache.ibatis.executor;
 
-public interface Executor {
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
 
+/**
+ * SQL执行器，SqlSession的数据库操作都委托给Executor完成
+ * 由Configuration.newExecutor()根据ExecutorType创建:
+ * 1) SIMPLE: SimpleExecutor，每次执行都创建新的Statement，执行完立即关闭
+ * 2) REUSE:  ReuseExecutor，在会话内按SQL缓存Statement并重复使用
+ * 3) BATCH:  BatchExecutor，把连续的相同SQL的更新语句合并为JDBC批处理，在flushStatements()时统一执行
+ */
+public interface Executor {
+	
+	ResultHandler<?> NO_RESULT_HANDLER = null;
+	
+	// 执行insert、update、delete语句
+	int update(MappedStatement ms, Object parameter) throws SQLException;
+	
+	// 执行select语句，先查询一级缓存，未命中时再查询数据库
+	<E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler<?> resultHandler, CacheKey cacheKey, BoundSql boundSql) throws SQLException;
+	
+	<E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler<?> resultHandler) throws SQLException;
+	
+	// 执行select语句，返回游标对象
+	<E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException;
+	
+	// 批量执行缓存的SQL语句
+	List<BatchResult> flushStatements() throws SQLException;
+	
+	// 提交事务
+	void commit(boolean required) throws SQLException;
+	
+	// 回滚事务
+	void rollback(boolean required) throws SQLException;
+	
+	// 创建一级缓存中使用的CacheKey对象
+	CacheKey createCacheKey(MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql);
+	
+	// 根据CacheKey对象查找缓存
+	boolean isCached(MappedStatement ms, CacheKey key);
+	
+	// 清空一级缓存
+	void clearLocalCache();
+	
+	// 获取事务对象
+	Transaction getTransaction();
+	
+	void close(boolean forceRollback);
+	
+	boolean isClosed();
+	
+	void setExecutorWrapper(Executor executor);
 }
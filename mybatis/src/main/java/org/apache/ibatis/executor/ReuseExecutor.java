@@ -0,0 +1,104 @@
+package org.apache.ibatis.executor;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+
+/**
+ * 重用Statement的执行器，在会话内按SQL语句缓存Statement对象，相同的SQL再次执行时直接重新绑定实参
+ * 缓存的Statement在提交、回滚或关闭会话(flushStatements)时统一关闭
+ */
+public class ReuseExecutor extends BaseExecutor {
+
+	// key是SQL语句，value是对应的Statement对象
+	private final Map<String, Statement> statementMap = new HashMap<String, Statement>();
+	
+	public ReuseExecutor(Configuration configuration, Transaction transaction) {
+		super(configuration, transaction);
+	}
+	
+	@Override
+	public int doUpdate(MappedStatement ms, Object parameter) throws SQLException {
+		Configuration configuration = ms.getConfiguration();
+		StatementHandler handler = configuration.newStatementHandler(this, ms, parameter, RowBounds.DEFAULT, null, null);
+		Statement stmt = prepareStatement(handler, ms.getStatementLog());
+		return handler.update(stmt);
+	}
+	
+	@Override
+	public <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler<?> resultHandler, BoundSql boundSql)
+			throws SQLException {
+		Configuration configuration = ms.getConfiguration();
+		StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, resultHandler, boundSql);
+		Statement stmt = prepareStatement(handler, ms.getStatementLog());
+		return handler.<E>query(stmt, resultHandler);
+	}
+	
+	@Override
+	protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
+		Configuration configuration = ms.getConfiguration();
+		StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
+		Statement stmt = prepareStatement(handler, ms.getStatementLog());
+		return handler.<E>queryCursor(stmt);
+	}
+	
+	// 关闭所有缓存的Statement
+	@Override
+	public List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException {
+		for (Statement stmt : statementMap.values()) {
+			closeStatement(stmt);
+		}
+		statementMap.clear();
+		return Collections.emptyList();
+	}
+	
+	private Statement prepareStatement(StatementHandler handler, Log statementLog) throws SQLException {
+		Statement stmt;
+		BoundSql boundSql = handler.getBoundSql();
+		String sql = boundSql.getSql();
+		if (hasStatementFor(sql)) {
+			// 重用缓存的Statement，只需要重新设置事务超时时间
+			stmt = getStatement(sql);
+			applyTransactionTimeout(stmt);
+		} else {
+			Connection connection = getConnection(statementLog);
+			stmt = handler.prepare(connection, transaction.getTimeout());
+			putStatement(sql, stmt);
+		}
+		handler.parameterize(stmt);
+		return stmt;
+	}
+	
+	// 缓存的Statement所在的连接已经关闭时不能重用
+	// 游标读取完毕或关闭时会关闭Statement，此时不能再重用
+	private boolean hasStatementFor(String sql) {
+		try {
+			Statement stmt = statementMap.get(sql);
+			return stmt != null && !stmt.isClosed() && !stmt.getConnection().isClosed();
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+	
+	private Statement getStatement(String s) {
+		return statementMap.get(s);
+	}
+	
+	private void putStatement(String sql, Statement stmt) {
+		statementMap.put(sql, stmt);
+	}
+}
@@ -0,0 +1,76 @@
+package org.apache.ibatis.executor;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+
+/**
+ * 最简单的执行器，每次执行SQL都创建新的Statement，执行完成后立即关闭
+ */
+public class SimpleExecutor extends BaseExecutor {
+
+	public SimpleExecutor(Configuration configuration, Transaction transaction) {
+		super(configuration, transaction);
+	}
+	
+	@Override
+	public int doUpdate(MappedStatement ms, Object parameter) throws SQLException {
+		Statement stmt = null;
+		try {
+			Configuration configuration = ms.getConfiguration();
+			StatementHandler handler = configuration.newStatementHandler(this, ms, parameter, RowBounds.DEFAULT, null, null);
+			stmt = prepareStatement(handler, ms.getStatementLog());
+			return handler.update(stmt);
+		} finally {
+			closeStatement(stmt);
+		}
+	}
+	
+	@Override
+	public <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler<?> resultHandler, BoundSql boundSql)
+			throws SQLException {
+		Statement stmt = null;
+		try {
+			Configuration configuration = ms.getConfiguration();
+			StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, resultHandler, boundSql);
+			stmt = prepareStatement(handler, ms.getStatementLog());
+			return handler.<E>query(stmt, resultHandler);
+		} finally {
+			closeStatement(stmt);
+		}
+	}
+	
+	@Override
+	protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
+		Configuration configuration = ms.getConfiguration();
+		StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
+		Statement stmt = prepareStatement(handler, ms.getStatementLog());
+		return handler.<E>queryCursor(stmt);
+	}
+	
+	// 不缓存任何Statement，没有需要执行的语句
+	@Override
+	public List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException {
+		return Collections.emptyList();
+	}
+	
+	private Statement prepareStatement(StatementHandler handler, Log statementLog) throws SQLException {
+		Statement stmt;
+		Connection connection = getConnection(statementLog);
+		stmt = handler.prepare(connection, transaction.getTimeout());
+		handler.parameterize(stmt);
+		return stmt;
+	}
+}
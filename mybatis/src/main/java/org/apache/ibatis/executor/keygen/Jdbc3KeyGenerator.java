@@ -0,0 +1,137 @@
+package org.apache.ibatis.executor.keygen;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.binding.BindingException;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.TypeHandler;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+
+/**
+ * 通过JDBC3的Statement.getGeneratedKeys()获取数据库自增生成的主键，在insert之后按keyProperty回填到实参对象中
+ * 批量插入时，getGeneratedKeys()返回的每一行依次对应一个实参对象
+ */
+public class Jdbc3KeyGenerator implements KeyGenerator {
+
+	public static final Jdbc3KeyGenerator INSTANCE = new Jdbc3KeyGenerator();
+	
+	@Override
+	public void processBefore(Executor executor, MappedStatement ms, Statement stmt, Object parameter) {
+		// do nothing
+	}
+
+	@Override
+	public void processAfter(Executor executor, MappedStatement ms, Statement stmt, Object parameter) {
+		processBatch(ms, stmt, getParameters(parameter));
+	}
+	
+	// 将getGeneratedKeys()得到的主键依次回填到parameters中的每个对象，返回每个对象回填的主键值(按keyProperties的顺序)
+	public List<Object[]> processBatch(MappedStatement ms, Statement stmt, Collection<Object> parameters) {
+		List<Object[]> keys = new ArrayList<Object[]>();
+		ResultSet rs = null;
+		try {
+			rs = stmt.getGeneratedKeys();
+			final Configuration configuration = ms.getConfiguration();
+			final TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+			final String[] keyProperties = ms.getKeyProperties();
+			final ResultSetMetaData rsmd = rs.getMetaData();
+			TypeHandler<?>[] typeHandlers = null;
+			if (keyProperties != null && rsmd.getColumnCount() >= keyProperties.length) {
+				for (Object parameter : parameters) {
+					// 主键的行数比实参少时，后面的实参不回填
+					if (!rs.next()) {
+						break;
+					}
+					final MetaObject metaParam = configuration.newMetaObject(parameter);
+					if (typeHandlers == null) {
+						typeHandlers = getTypeHandlers(typeHandlerRegistry, metaParam, keyProperties, rsmd);
+					}
+					keys.add(populateKeys(rs, metaParam, keyProperties, typeHandlers));
+				}
+			}
+			return keys;
+		} catch (Exception e) {
+			throw new ExecutorException("Error getting generated key or setting result to parameter object. Cause: " + e, e);
+		} finally {
+			if (rs != null) {
+				try {
+					rs.close();
+				} catch (Exception e) {
+					// ignore
+				}
+			}
+		}
+	}
+	
+	// 实参为集合、数组或包含它们的Map时，展开为实参对象列表
+	@SuppressWarnings("unchecked")
+	private Collection<Object> getParameters(Object parameter) {
+		Collection<Object> parameters = null;
+		if (parameter instanceof Collection) {
+			parameters = (Collection<Object>) parameter;
+		} else if (parameter instanceof Map) {
+			Map<?, ?> parameterMap = (Map<?, ?>) parameter;
+			if (parameterMap.containsKey("collection")) {
+				parameters = (Collection<Object>) parameterMap.get("collection");
+			} else if (parameterMap.containsKey("list")) {
+				parameters = (List<Object>) parameterMap.get("list");
+			} else if (parameterMap.containsKey("array")) {
+				parameters = Arrays.asList((Object[]) parameterMap.get("array"));
+			}
+		}
+		if (parameters == null) {
+			parameters = new ArrayList<Object>();
+			parameters.add(parameter);
+		}
+		return parameters;
+	}
+	
+	private TypeHandler<?>[] getTypeHandlers(TypeHandlerRegistry typeHandlerRegistry, MetaObject metaParam, String[] keyProperties,
+			ResultSetMetaData rsmd) throws SQLException {
+		TypeHandler<?>[] typeHandlers = new TypeHandler<?>[keyProperties.length];
+		for (int i = 0; i < keyProperties.length; i++) {
+			if (metaParam.hasSetter(keyProperties[i])) {
+				TypeHandler<?> th;
+				try {
+					Class<?> keyPropertyType = metaParam.getSetterType(keyProperties[i]);
+					th = typeHandlerRegistry.getTypeHandler(keyPropertyType, JdbcType.forCode(rsmd.getColumnType(i + 1)));
+				} catch (BindingException e) {
+					th = null;
+				}
+				typeHandlers[i] = th;
+			}
+		}
+		return typeHandlers;
+	}
+	
+	private Object[] populateKeys(ResultSet rs, MetaObject metaParam, String[] keyProperties, TypeHandler<?>[] typeHandlers) throws SQLException {
+		Object[] values = new Object[keyProperties.length];
+		for (int i = 0; i < keyProperties.length; i++) {
+			String property = keyProperties[i];
+			if (!metaParam.hasSetter(property)) {
+				throw new ExecutorException("No setter found for the keyProperty '" + property + "' in "
+						+ metaParam.getOriginalObject().getClass().getName() + ".");
+			}
+			TypeHandler<?> th = typeHandlers[i];
+			if (th != null) {
+				Object value = th.getResult(rs, i + 1);
+				metaParam.setValue(property, value);
+				values[i] = value;
+			}
+		}
+		return values;
+	}
+}
@@ -1,5 +1,18 @@
 package org.apache.ibatis.executor.keygen;
 
-public interface KeyGenerator {
+import java.sql.Statement;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
 
+/**
+ * 主键生成器，insert语句执行前后获取主键并回填到实参对象中
+ */
+public interface KeyGenerator {
+	
+	// 在执行insert之前执行，设置属性order="BEFORE"
+	void processBefore(Executor executor, MappedStatement ms, Statement stmt, Object parameter);
+	
+	// 在执行insert之后执行，设置属性order="AFTER"
+	void processAfter(Executor executor, MappedStatement ms, Statement stmt, Object parameter);
 }
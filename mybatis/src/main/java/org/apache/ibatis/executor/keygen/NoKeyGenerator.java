@@ -0,0 +1,24 @@
+package org.apache.ibatis.executor.keygen;
+
+import java.sql.Statement;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+
+/**
+ * 不需要获取主键时使用的空实现
+ */
+public class NoKeyGenerator implements KeyGenerator {
+
+	public static final NoKeyGenerator INSTANCE = new NoKeyGenerator();
+	
+	@Override
+	public void processBefore(Executor executor, MappedStatement ms, Statement stmt, Object parameter) {
+		// Do Nothing
+	}
+
+	@Override
+	public void processAfter(Executor executor, MappedStatement ms, Statement stmt, Object parameter) {
+		// Do Nothing
+	}
+}
@@ -0,0 +1,44 @@
+package org.apache.ibatis.executor.result;
+
+import java.util.Map;
+
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.wrapper.ObjectWrapperFactory;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+
+/**
+ * SqlSession.selectMap()使用的ResultHandler，以结果对象中mapKey属性的值作为key，将结果对象保存到Map中
+ */
+public class DefaultMapResultHandler<K, V> implements ResultHandler<V> {
+
+	private final Map<K, V> mappedResults;
+	private final String mapKey;
+	private final ObjectFactory objectFactory;
+	private final ObjectWrapperFactory objectWrapperFactory;
+	private final ReflectorFactory reflectorFactory;
+	
+	@SuppressWarnings("unchecked")
+	public DefaultMapResultHandler(String mapKey, ObjectFactory objectFactory, ObjectWrapperFactory objectWrapperFactory, ReflectorFactory reflectorFactory) {
+		this.objectFactory = objectFactory;
+		this.objectWrapperFactory = objectWrapperFactory;
+		this.reflectorFactory = reflectorFactory;
+		this.mappedResults = objectFactory.create(Map.class);
+		this.mapKey = mapKey;
+	}
+	
+	@Override
+	public void handleResult(ResultContext<? extends V> context) {
+		final V value = context.getResultObject();
+		final MetaObject mo = MetaObject.forObject(value, objectFactory, objectWrapperFactory, reflectorFactory);
+		@SuppressWarnings("unchecked")
+		final K key = (K) mo.getValue(mapKey);
+		mappedResults.put(key, value);
+	}
+	
+	public Map<K, V> getMappedResults() {
+		return mappedResults;
+	}
+}
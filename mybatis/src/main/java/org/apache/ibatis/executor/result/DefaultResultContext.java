@@ -0,0 +1,44 @@
+package org.apache.ibatis.executor.result;
+
+import org.apache.ibatis.session.ResultContext;
+
+/**
+ * ResultContext的默认实现，记录当前映射得到的结果对象和已经处理的结果数量
+ */
+public class DefaultResultContext<T> implements ResultContext<T> {
+
+	private T resultObject;     // 当前映射得到的结果对象
+	private int resultCount;    // 已经映射的结果对象个数
+	private boolean stopped;    // 是否停止映射
+	
+	public DefaultResultContext() {
+		resultObject = null;
+		resultCount = 0;
+		stopped = false;
+	}
+	
+	@Override
+	public T getResultObject() {
+		return resultObject;
+	}
+
+	@Override
+	public int getResultCount() {
+		return resultCount;
+	}
+
+	@Override
+	public boolean isStopped() {
+		return stopped;
+	}
+	
+	public void nextResultObject(T resultObject) {
+		resultCount++;
+		this.resultObject = resultObject;
+	}
+
+	@Override
+	public void stop() {
+		this.stopped = true;
+	}
+}
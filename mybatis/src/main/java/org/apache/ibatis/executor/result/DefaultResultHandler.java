@@ -0,0 +1,34 @@
+package org.apache.ibatis.executor.result;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+
+/**
+ * 默认的ResultHandler，将映射得到的结果对象依次保存到列表中
+ */
+public class DefaultResultHandler implements ResultHandler<Object> {
+
+	private final List<Object> list;
+	
+	public DefaultResultHandler() {
+		list = new ArrayList<Object>();
+	}
+	
+	@SuppressWarnings("unchecked")
+	public DefaultResultHandler(ObjectFactory objectFactory) {
+		list = objectFactory.create(List.class);
+	}
+	
+	@Override
+	public void handleResult(ResultContext<? extends Object> context) {
+		list.add(context.getResultObject());
+	}
+	
+	public List<Object> getResultList() {
+		return list;
+	}
+}
@@ -0,0 +1,96 @@
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 结果集中一行的缓存，流水线映射时由执行查询的线程读取，再交给工作线程映射
+ * 1) 读取时对每一列调用一次getObject()，Clob和Blob立即读出内容，因为移动到下一行之后它们可能失效
+ * 2) 工作线程通过BufferedRowResultSet读取，TypeHandler可以像读取原始结果集一样按列名或列索引读取
+ */
+final class BufferedRow {
+	
+	private final Columns columns;
+	private final Object[] values;
+	
+	private BufferedRow(Columns columns, Object[] values) {
+		this.columns = columns;
+		this.values = values;
+	}
+	
+	/**
+	 * 读取结果集当前行的所有列
+	 */
+	static BufferedRow read(ResultSet rs, Columns columns) throws SQLException {
+		final Object[] values = new Object[columns.count];
+		for (int i = 0; i < values.length; i++) {
+			Object value = rs.getObject(i + 1);
+			if (value instanceof Clob) {
+				Clob clob = (Clob) value;
+				value = clob.getSubString(1, (int) clob.length());
+			} else if (value instanceof Blob) {
+				Blob blob = (Blob) value;
+				value = blob.getBytes(1, (int) blob.length());
+			}
+			values[i] = value;
+		}
+		return new BufferedRow(columns, values);
+	}
+	
+	ResultSetMetaData getMetaData() {
+		return columns.metaData;
+	}
+	
+	// 按列索引(从1开始)读取缓存的值
+	Object getValue(int columnIndex) {
+		return values[columnIndex - 1];
+	}
+	
+	int findColumn(String columnLabel) throws SQLException {
+		Integer index = columns.indexes.get(columnLabel.toUpperCase(Locale.ENGLISH));
+		if (index == null) {
+			throw new SQLException("Column '" + columnLabel + "' not found");
+		}
+		return index;
+	}
+	
+	int checkColumn(int columnIndex) throws SQLException {
+		if (columnIndex < 1 || columnIndex > values.length) {
+			throw new SQLException("Invalid column index: " + columnIndex);
+		}
+		return columnIndex;
+	}
+	
+	@Override
+	public String toString() {
+		return "BufferedRow" + java.util.Arrays.toString(values);
+	}
+	
+	/**
+	 * 结果集的列信息，同一个结果集的所有行共享。列名和列标签都可以用来读取，不区分大小写
+	 */
+	static final class Columns {
+		
+		private final ResultSetMetaData metaData;
+		private final int count;
+		private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+		
+		Columns(ResultSet rs) throws SQLException {
+			this.metaData = rs.getMetaData();
+			this.count = metaData.getColumnCount();
+			// 同名的列按第一次出现的位置读取，与ResultSet的约定相同
+			for (int i = count; i >= 1; i--) {
+				indexes.put(metaData.getColumnName(i).toUpperCase(Locale.ENGLISH), i);
+			}
+			for (int i = count; i >= 1; i--) {
+				indexes.put(metaData.getColumnLabel(i).toUpperCase(Locale.ENGLISH), i);
+			}
+		}
+	}
+}
@@ -0,0 +1,1146 @@
+package org.apache.ibatis.executor.resultset;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Map;
+
+import javax.sql.rowset.serial.SerialBlob;
+import javax.sql.rowset.serial.SerialClob;
+
+/**
+ * BufferedRow的只读ResultSet视图，流水线映射时每个工作线程持有一个，映射下一行之前通过reset()切换到该行，
+ * 避免为每一行创建动态代理
+ * 1) getInt()、getString()、getTimestamp()等方法在缓存的值上做类型转换，getTimestamp(column, Calendar)等方法忽略Calendar参数
+ * 2) 只支持按列读取值和getMetaData()、wasNull()、findColumn()，不支持移动游标和更新
+ */
+final class BufferedRowResultSet implements ResultSet {
+
+	// byte[]类型的值按UTF-8解码为字符串，不依赖平台默认编码
+	private static final Charset BYTES_CHARSET = Charset.forName("UTF-8");
+	private static final ThreadLocal<BufferedRowResultSet> CURRENT = new ThreadLocal<BufferedRowResultSet>() {
+		@Override
+		protected BufferedRowResultSet initialValue() {
+			return new BufferedRowResultSet();
+		}
+	};
+
+	private BufferedRow row;
+	private boolean wasNull;
+
+	private BufferedRowResultSet() {
+	}
+
+	/**
+	 * 获取当前线程的视图并切换到指定的行
+	 */
+	static BufferedRowResultSet forRow(BufferedRow row) {
+		BufferedRowResultSet resultSet = CURRENT.get();
+		resultSet.row = row;
+		resultSet.wasNull = false;
+		return resultSet;
+	}
+
+	// 按列读取
+	// [start]
+	@Override
+	public String getString(int columnIndex) throws SQLException {
+		Object value = value(columnIndex);
+		if (value == null) {
+			return null;
+		}
+		return value instanceof byte[] ? new String((byte[]) value, BYTES_CHARSET) : value.toString();
+	}
+
+	@Override
+	public String getString(String columnLabel) throws SQLException {
+		return getString(findColumn(columnLabel));
+	}
+
+	@Override
+	public String getNString(int columnIndex) throws SQLException {
+		return getString(columnIndex);
+	}
+
+	@Override
+	public String getNString(String columnLabel) throws SQLException {
+		return getString(findColumn(columnLabel));
+	}
+
+	@Override
+	public boolean getBoolean(int columnIndex) throws SQLException {
+		Object value = value(columnIndex);
+		return value != null && toBoolean(value);
+	}
+
+	@Override
+	public boolean getBoolean(String columnLabel) throws SQLException {
+		return getBoolean(findColumn(columnLabel));
+	}
+
+	@Override
+	public byte getByte(int columnIndex) throws SQLException {
+		Object value = value(columnIndex);
+		return value == null ? 0 : toNumber(value).byteValue();
+	}
+
+	@Override
+	public byte getByte(String columnLabel) throws SQLException {
+		return getByte(findColumn(columnLabel));
+	}
+
+	@Override
+	public short getShort(int columnIndex) throws SQLException {
+		Object value = value(columnIndex);
+		return value == null ? 0 : toNumber(value).shortValue();
+	}
+
+	@Override
+	public short getShort(String columnLabel) throws SQLException {
+		return getShort(findColumn(columnLabel));
+	}
+
+	@Override
+	public int getInt(int columnIndex) throws SQLException {
+		Object value = value(columnIndex);
+		return value == null ? 0 : toNumber(value).intValue();
+	}
+
+	@Override
+	public int getInt(String columnLabel) throws SQLException {
+		return getInt(findColumn(columnLabel));
+	}
+
+	@Override
+	public long getLong(int columnIndex) throws SQLException {
+		Object value = value(columnIndex);
+		return value == null ? 0L : toNumber(value).longValue();
+	}
+
+	@Override
+	public long getLong(String columnLabel) throws SQLException {
+		return getLong(findColumn(columnLabel));
+	}
+
+	@Override
+	public float getFloat(int columnIndex) throws SQLException {
+		Object value = value(columnIndex);
+		return value == null ? 0F : toNumber(value).floatValue();
+	}
+
+	@Override
+	public float getFloat(String columnLabel) throws SQLException {
+		return getFloat(findColumn(columnLabel));
+	}
+
+	@Override
+	public double getDouble(int columnIndex) throws SQLException {
+		Object value = value(columnIndex);
+		return value == null ? 0D : toNumber(value).doubleValue();
+	}
+
+	@Override
+	public double getDouble(String columnLabel) throws SQLException {
+		return getDouble(findColumn(columnLabel));
+	}
+
+	@Override
+	public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+		Object value = value(columnIndex);
+		return value == null ? null : toBigDecimal(value);
+	}
+
+	@Override
+	public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+		return getBigDecimal(findColumn(columnLabel));
+	}
+
+	@Override
+	@Deprecated
+	public BigDecimal getBigDecimal(int columnIndex, int scale) throws SQLException {
+		BigDecimal value = getBigDecimal(columnIndex);
+		return value == null ? null : value.setScale(scale, BigDecimal.ROUND_HALF_UP);
+	}
+
+	@Override
+	@Deprecated
+	public BigDecimal getBigDecimal(String columnLabel, int scale) throws SQLException {
+		return getBigDecimal(findColumn(columnLabel), scale);
+	}
+
+	@Override
+	public byte[] getBytes(int columnIndex) throws SQLException {
+		Object value = value(columnIndex);
+		return value == null ? null : toBytes(value);
+	}
+
+	@Override
+	public byte[] getBytes(String columnLabel) throws SQLException {
+		return getBytes(findColumn(columnLabel));
+	}
+
+	@Override
+	public Date getDate(int columnIndex) throws SQLException {
+		return getObject(columnIndex, Date.class);
+	}
+
+	@Override
+	public Date getDate(String columnLabel) throws SQLException {
+		return getObject(findColumn(columnLabel), Date.class);
+	}
+
+	@Override
+	public Date getDate(int columnIndex, Calendar cal) throws SQLException {
+		return getObject(columnIndex, Date.class);
+	}
+
+	@Override
+	public Date getDate(String columnLabel, Calendar cal) throws SQLException {
+		return getObject(findColumn(columnLabel), Date.class);
+	}
+
+	@Override
+	public Time getTime(int columnIndex) throws SQLException {
+		return getObject(columnIndex, Time.class);
+	}
+
+	@Override
+	public Time getTime(String columnLabel) throws SQLException {
+		return getObject(findColumn(columnLabel), Time.class);
+	}
+
+	@Override
+	public Time getTime(int columnIndex, Calendar cal) throws SQLException {
+		return getObject(columnIndex, Time.class);
+	}
+
+	@Override
+	public Time getTime(String columnLabel, Calendar cal) throws SQLException {
+		return getObject(findColumn(columnLabel), Time.class);
+	}
+
+	@Override
+	public Timestamp getTimestamp(int columnIndex) throws SQLException {
+		return getObject(columnIndex, Timestamp.class);
+	}
+
+	@Override
+	public Timestamp getTimestamp(String columnLabel) throws SQLException {
+		return getObject(findColumn(columnLabel), Timestamp.class);
+	}
+
+	@Override
+	public Timestamp getTimestamp(int columnIndex, Calendar cal) throws SQLException {
+		return getObject(columnIndex, Timestamp.class);
+	}
+
+	@Override
+	public Timestamp getTimestamp(String columnLabel, Calendar cal) throws SQLException {
+		return getObject(findColumn(columnLabel), Timestamp.class);
+	}
+
+	@Override
+	public Object getObject(int columnIndex) throws SQLException {
+		return value(columnIndex);
+	}
+
+	@Override
+	public Object getObject(String columnLabel) throws SQLException {
+		return value(findColumn(columnLabel));
+	}
+
+	@Override
+	public Object getObject(int columnIndex, Map<String, Class<?>> map) throws SQLException {
+		return value(columnIndex);
+	}
+
+	@Override
+	public Object getObject(String columnLabel, Map<String, Class<?>> map) throws SQLException {
+		return value(findColumn(columnLabel));
+	}
+
+	@Override
+	public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+		Object value = value(columnIndex);
+		return value == null ? null : type.cast(convertTo(type, value));
+	}
+
+	@Override
+	public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
+		return getObject(findColumn(columnLabel), type);
+	}
+
+	@Override
+	public Clob getClob(int columnIndex) throws SQLException {
+		Object value = value(columnIndex);
+		return value == null ? null : new SerialClob(value.toString().toCharArray());
+	}
+
+	@Override
+	public Clob getClob(String columnLabel) throws SQLException {
+		return getClob(findColumn(columnLabel));
+	}
+
+	@Override
+	public Blob getBlob(int columnIndex) throws SQLException {
+		Object value = value(columnIndex);
+		return value == null ? null : new SerialBlob(toBytes(value));
+	}
+
+	@Override
+	public Blob getBlob(String columnLabel) throws SQLException {
+		return getBlob(findColumn(columnLabel));
+	}
+
+	@Override
+	public Reader getCharacterStream(int columnIndex) throws SQLException {
+		String value = getString(columnIndex);
+		return value == null ? null : new StringReader(value);
+	}
+
+	@Override
+	public Reader getCharacterStream(String columnLabel) throws SQLException {
+		return getCharacterStream(findColumn(columnLabel));
+	}
+
+	@Override
+	public Reader getNCharacterStream(int columnIndex) throws SQLException {
+		return getCharacterStream(columnIndex);
+	}
+
+	@Override
+	public Reader getNCharacterStream(String columnLabel) throws SQLException {
+		return getCharacterStream(findColumn(columnLabel));
+	}
+
+	@Override
+	public InputStream getBinaryStream(int columnIndex) throws SQLException {
+		byte[] value = getBytes(columnIndex);
+		return value == null ? null : new ByteArrayInputStream(value);
+	}
+
+	@Override
+	public InputStream getBinaryStream(String columnLabel) throws SQLException {
+		return getBinaryStream(findColumn(columnLabel));
+	}
+
+	@Override
+	public InputStream getAsciiStream(int columnIndex) throws SQLException {
+		return getBinaryStream(columnIndex);
+	}
+
+	@Override
+	public InputStream getAsciiStream(String columnLabel) throws SQLException {
+		return getBinaryStream(findColumn(columnLabel));
+	}
+
+	@Override
+	public Array getArray(int columnIndex) throws SQLException {
+		return getObject(columnIndex, Array.class);
+	}
+
+	@Override
+	public Array getArray(String columnLabel) throws SQLException {
+		return getObject(findColumn(columnLabel), Array.class);
+	}
+
+	@Override
+	public Ref getRef(int columnIndex) throws SQLException {
+		return getObject(columnIndex, Ref.class);
+	}
+
+	@Override
+	public Ref getRef(String columnLabel) throws SQLException {
+		return getObject(findColumn(columnLabel), Ref.class);
+	}
+
+	@Override
+	public URL getURL(int columnIndex) throws SQLException {
+		return getObject(columnIndex, URL.class);
+	}
+
+	@Override
+	public URL getURL(String columnLabel) throws SQLException {
+		return getObject(findColumn(columnLabel), URL.class);
+	}
+
+	@Override
+	public RowId getRowId(int columnIndex) throws SQLException {
+		return getObject(columnIndex, RowId.class);
+	}
+
+	@Override
+	public RowId getRowId(String columnLabel) throws SQLException {
+		return getObject(findColumn(columnLabel), RowId.class);
+	}
+
+	@Override
+	public SQLXML getSQLXML(int columnIndex) throws SQLException {
+		return getObject(columnIndex, SQLXML.class);
+	}
+
+	@Override
+	public SQLXML getSQLXML(String columnLabel) throws SQLException {
+		return getObject(findColumn(columnLabel), SQLXML.class);
+	}
+
+	@Override
+	public boolean wasNull() throws SQLException {
+		return wasNull;
+	}
+
+	@Override
+	public ResultSetMetaData getMetaData() throws SQLException {
+		return row.getMetaData();
+	}
+
+	@Override
+	public int findColumn(String columnLabel) throws SQLException {
+		return row.findColumn(columnLabel);
+	}
+
+	@Override
+	public int getType() throws SQLException {
+		return ResultSet.TYPE_FORWARD_ONLY;
+	}
+
+	@Override
+	public int getConcurrency() throws SQLException {
+		return ResultSet.CONCUR_READ_ONLY;
+	}
+
+	@Override
+	public boolean isClosed() throws SQLException {
+		return false;
+	}
+
+	@Override
+	public void close() throws SQLException {
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) {
+			return iface.cast(this);
+		}
+		throw new SQLException("BufferedRowResultSet is not a wrapper for " + iface.getName());
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this);
+	}
+
+	@Override
+	public String toString() {
+		return String.valueOf(row);
+	}
+	// [end]
+
+	// 读取缓存的值并记录是否为null
+	private Object value(int columnIndex) throws SQLException {
+		Object value = row.getValue(row.checkColumn(columnIndex));
+		wasNull = value == null;
+		return value;
+	}
+
+	// 类型转换
+	// [start]
+	private static Object convertTo(Class<?> type, Object value) throws SQLException {
+		if (type.isInstance(value)) {
+			return value;
+		} else if (type == String.class) {
+			return value instanceof byte[] ? new String((byte[]) value, BYTES_CHARSET) : value.toString();
+		} else if (type == Boolean.class) {
+			return toBoolean(value);
+		} else if (type == Integer.class) {
+			return toNumber(value).intValue();
+		} else if (type == Long.class) {
+			return toNumber(value).longValue();
+		} else if (type == Short.class) {
+			return toNumber(value).shortValue();
+		} else if (type == Byte.class) {
+			return toNumber(value).byteValue();
+		} else if (type == Double.class) {
+			return toNumber(value).doubleValue();
+		} else if (type == Float.class) {
+			return toNumber(value).floatValue();
+		} else if (type == BigDecimal.class) {
+			return toBigDecimal(value);
+		} else if (type == byte[].class) {
+			return toBytes(value);
+		} else if (value instanceof java.util.Date) {
+			long time = ((java.util.Date) value).getTime();
+			if (type == Timestamp.class) {
+				return new Timestamp(time);
+			} else if (type == Date.class) {
+				return new Date(time);
+			} else if (type == Time.class) {
+				return new Time(time);
+			}
+		}
+		throw new SQLException("Cannot convert " + value.getClass().getName() + " to " + type.getName());
+	}
+
+	private static boolean toBoolean(Object value) {
+		if (value instanceof Boolean) {
+			return (Boolean) value;
+		} else if (value instanceof Number) {
+			return ((Number) value).intValue() != 0;
+		}
+		String s = value.toString().trim();
+		return "1".equals(s) || "true".equalsIgnoreCase(s);
+	}
+
+	private static Number toNumber(Object value) throws SQLException {
+		if (value instanceof Number) {
+			return (Number) value;
+		} else if (value instanceof Boolean) {
+			return ((Boolean) value) ? 1 : 0;
+		}
+		try {
+			return new BigDecimal(value.toString().trim());
+		} catch (NumberFormatException e) {
+			throw new SQLException("Cannot convert '" + value + "' to a number", e);
+		}
+	}
+
+	private static BigDecimal toBigDecimal(Object value) throws SQLException {
+		if (value instanceof BigDecimal) {
+			return (BigDecimal) value;
+		} else if (value instanceof BigInteger) {
+			return new BigDecimal((BigInteger) value);
+		}
+		Number number = toNumber(value);
+		return number instanceof BigDecimal ? (BigDecimal) number : new BigDecimal(number.toString());
+	}
+
+	private static byte[] toBytes(Object value) throws SQLException {
+		if (value instanceof byte[]) {
+			return (byte[]) value;
+		}
+		throw new SQLException("Cannot convert " + value.getClass().getName() + " to byte[]");
+	}
+
+	private static SQLException unsupported() {
+		return new SQLFeatureNotSupportedException("Method is not supported on a buffered row");
+	}
+	// [end]
+
+	// 不支持的操作: 移动游标、更新等
+	// [start]
+	@Override
+	public void updateArray(int columnIndex, Array array) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateArray(String columnLabel, Array array) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateAsciiStream(int columnIndex, InputStream inputStream, int length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateAsciiStream(String columnLabel, InputStream inputStream, int length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateAsciiStream(int columnIndex, InputStream inputStream, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateAsciiStream(String columnLabel, InputStream inputStream, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateAsciiStream(int columnIndex, InputStream inputStream) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateAsciiStream(String columnLabel, InputStream inputStream) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateBigDecimal(int columnIndex, BigDecimal bigDecimal) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateBigDecimal(String columnLabel, BigDecimal bigDecimal) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateBinaryStream(int columnIndex, InputStream inputStream, int length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateBinaryStream(String columnLabel, InputStream inputStream, int length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateBinaryStream(int columnIndex, InputStream inputStream, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateBinaryStream(String columnLabel, InputStream inputStream, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateBinaryStream(int columnIndex, InputStream inputStream) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateBinaryStream(String columnLabel, InputStream inputStream) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateBlob(int columnIndex, Blob blob) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateBlob(String columnLabel, Blob blob) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateBlob(int columnIndex, InputStream inputStream, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateBlob(String columnLabel, InputStream inputStream, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateBlob(int columnIndex, InputStream inputStream) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateBlob(String columnLabel, InputStream inputStream) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateBoolean(int columnIndex, boolean x) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateBoolean(String columnLabel, boolean x) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateByte(int columnIndex, byte x) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateByte(String columnLabel, byte x) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateBytes(int columnIndex, byte[] x) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateBytes(String columnLabel, byte[] x) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateCharacterStream(int columnIndex, Reader reader, int length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateCharacterStream(String columnLabel, Reader reader, int length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateCharacterStream(int columnIndex, Reader reader, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateCharacterStream(String columnLabel, Reader reader, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateCharacterStream(int columnIndex, Reader reader) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateCharacterStream(String columnLabel, Reader reader) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateClob(int columnIndex, Clob clob) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateClob(String columnLabel, Clob clob) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateClob(int columnIndex, Reader reader, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateClob(String columnLabel, Reader reader, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateClob(int columnIndex, Reader reader) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateClob(String columnLabel, Reader reader) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateDate(int columnIndex, Date date) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateDate(String columnLabel, Date date) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateDouble(int columnIndex, double x) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateDouble(String columnLabel, double x) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateFloat(int columnIndex, float x) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateFloat(String columnLabel, float x) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateInt(int columnIndex, int length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateInt(String columnLabel, int length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateLong(int columnIndex, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateLong(String columnLabel, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateNCharacterStream(int columnIndex, Reader reader, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateNCharacterStream(String columnLabel, Reader reader, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateNCharacterStream(int columnIndex, Reader reader) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateNCharacterStream(String columnLabel, Reader reader) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateNClob(int columnIndex, NClob nClob) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateNClob(String columnLabel, NClob nClob) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateNClob(int columnIndex, Reader reader, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateNClob(String columnLabel, Reader reader, long length) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateNClob(int columnIndex, Reader reader) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateNClob(String columnLabel, Reader reader) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateNString(int columnIndex, String x) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateNString(String columnLabel, String x) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateNull(int columnIndex) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateNull(String columnLabel) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateObject(int columnIndex, Object x, int scaleOrLength) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateObject(int columnIndex, Object x) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateObject(String columnLabel, Object x, int scaleOrLength) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateObject(String columnLabel, Object x) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateRef(int columnIndex, Ref ref) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateRef(String columnLabel, Ref ref) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateRow() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateRowId(int columnIndex, RowId rowId) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateRowId(String columnLabel, RowId rowId) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateSQLXML(int columnIndex, SQLXML sQLXML) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateSQLXML(String columnLabel, SQLXML sQLXML) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateShort(int columnIndex, short x) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateShort(String columnLabel, short x) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateString(int columnIndex, String x) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateString(String columnLabel, String x) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateTime(int columnIndex, Time time) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateTime(String columnLabel, Time time) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateTimestamp(int columnIndex, Timestamp timestamp) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void updateTimestamp(String columnLabel, Timestamp timestamp) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean absolute(int row) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void afterLast() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void beforeFirst() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void cancelRowUpdates() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void clearWarnings() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void deleteRow() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean first() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public String getCursorName() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public int getFetchDirection() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public int getFetchSize() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public int getHoldability() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public NClob getNClob(int columnIndex) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public NClob getNClob(String columnLabel) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public int getRow() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public Statement getStatement() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	@SuppressWarnings("deprecation")
+	public InputStream getUnicodeStream(int columnIndex) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	@SuppressWarnings("deprecation")
+	public InputStream getUnicodeStream(String columnLabel) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public SQLWarning getWarnings() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void insertRow() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isAfterLast() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isBeforeFirst() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isFirst() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isLast() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean last() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void moveToCurrentRow() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void moveToInsertRow() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean next() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean previous() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void refreshRow() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean relative(int rows) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean rowDeleted() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean rowInserted() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean rowUpdated() throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void setFetchDirection(int direction) throws SQLException {
+		throw unsupported();
+	}
+
+	@Override
+	public void setFetchSize(int rows) throws SQLException {
+		throw unsupported();
+	}
+	// [end]
+}
@@ -1,24 +1,49 @@
 package org.apache.ibatis.executor.resultset;
 
+import java.lang.reflect.Constructor;
 import java.sql.CallableStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.cursor.defaults.DefaultCursor;
 import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.executor.result.DefaultResultHandler;
+import org.apache.ibatis.executor.result.ResultMapException;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Discriminator;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
 import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.MetaClass;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.session.AutoMappingBehavior;
 import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.type.TypeHandler;
@@ -28,7 +53,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
 	private static final Object DEFERED = new Object();
 	
-	private final Executor executor;;                       // SQL执行器
+	private final Executor executor;                        // SQL执行器
 	private final Configuration configuration;              // mybatis全局配置
 	private final MappedStatement mappedStatement;          // 根据映射XML文件创建的Statement对象
 	private final RowBounds rowBounds;                      // 分页插件
@@ -43,6 +68,10 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 	private final Map<CacheKey, Object> nestedResultObjects = new HashMap<CacheKey, Object>();
 	private final Map<String, Object> ancestorObjects = new HashMap<String, Object>();
 	private Object previousRowValue;
+	
+	// 自动映射的缓存，key为ResultMap的id加列前缀
+	// 流水线映射时由多个工作线程共享
+	private final Map<String, List<UnMappedColumnAutoMapping>> autoMappingsCache = new ConcurrentHashMap<String, List<UnMappedColumnAutoMapping>>();
 
 	// 多结果集
 	private final Map<String, ResultMapping> nextResultMaps = new HashMap<String, ResultMapping>();
@@ -82,23 +111,610 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 		this.resultHandler = resultHandler;
 	}
 	
+	// 处理结果集
+	// [start]
+	/**
+	 * 处理Statement返回的所有结果集，每个结果集使用MappedStatement中对应位置的ResultMap映射
+	 * 只有一个结果集时返回该结果集的结果列表，否则返回由各个结果列表组成的列表
+	 */
 	@Override
 	public <E> List<E> handleResultSets(Statement stmt) throws SQLException {
-		// TODO Auto-generated method stub
-		return null;
+		// 该集合用于保存映射结果集得到的结果对象
+		final List<Object> multipleResults = new ArrayList<Object>();
+		int resultSetCount = 0;
+		ResultSetWrapper rsw = getFirstResultSet(stmt);
+		List<ResultMap> resultMaps = mappedStatement.getResultMaps();
+		int resultMapCount = resultMaps.size();
+		validateResultMapsCount(rsw, resultMapCount);
+		while (rsw != null && resultMapCount > resultSetCount) {
+			ResultMap resultMap = resultMaps.get(resultSetCount);
+			handleResultSet(rsw, resultMap, multipleResults, null);
+			rsw = getNextResultSet(stmt);
+			resultSetCount++;
+		}
+		if (mappedStatement.getResultSets() != null) {
+			throw new ExecutorException("The resultSets attribute of statement '" + mappedStatement.getId() + "' is not supported.");
+		}
+		return this.<E>collapseSingleResultList(multipleResults);
 	}
 
+	/**
+	 * 只处理第一个结果集，返回的DefaultCursor在迭代时才逐行读取和映射
+	 */
 	@Override
 	public <E> Cursor<E> handleCursorResuleSets(Statement stmt) throws SQLException {
-		// 该集合用于保存映射结果集得到的结果对象
+		ResultSetWrapper rsw = getFirstResultSet(stmt);
 		List<ResultMap> resultMaps = mappedStatement.getResultMaps();
+		int resultMapCount = resultMaps.size();
+		validateResultMapsCount(rsw, resultMapCount);
+		if (resultMapCount != 1) {
+			throw new ExecutorException("Cursor results cannot be mapped to multiple resultMaps");
+		}
+		ResultMap resultMap = resultMaps.get(0);
+		return new DefaultCursor<E>(this, resultMap, rsw, rowBounds);
+	}
+	
+	// 获取第一个结果集，有些驱动在第一个结果集之前会返回更新计数
+	private ResultSetWrapper getFirstResultSet(Statement stmt) throws SQLException {
+		ResultSet rs = stmt.getResultSet();
+		while (rs == null) {
+			if (stmt.getMoreResults()) {
+				rs = stmt.getResultSet();
+			} else {
+				if (stmt.getUpdateCount() == -1) {
+					// 没有更多的结果集
+					break;
+				}
+			}
+		}
+		return rs != null ? new ResultSetWrapper(rs, configuration) : null;
+	}
+	
+	private ResultSetWrapper getNextResultSet(Statement stmt) throws SQLException {
+		// 部分驱动不支持多结果集，此时直接忽略
+		try {
+			if (stmt.getConnection().getMetaData().supportsMultipleResultSets()) {
+				if (!((!stmt.getMoreResults()) && (stmt.getUpdateCount() == -1))) {
+					ResultSet rs = stmt.getResultSet();
+					return rs != null ? new ResultSetWrapper(rs, configuration) : null;
+				}
+			}
+		} catch (Exception e) {
+			// 忽略
+		}
 		return null;
 	}
+	
+	private void closeResultSet(ResultSet rs) {
+		try {
+			if (rs != null) {
+				rs.close();
+			}
+		} catch (SQLException e) {
+			// 忽略
+		}
+	}
+	
+	private void validateResultMapsCount(ResultSetWrapper rsw, int resultMapCount) {
+		if (rsw != null && resultMapCount < 1) {
+			throw new ExecutorException("A query was run and no Result Maps were found for the Mapped Statement '" + mappedStatement.getId()
+					+ "'.  It's likely that neither a Result Type nor a Result Map was specified.");
+		}
+	}
+	
+	private void handleResultSet(ResultSetWrapper rsw, ResultMap resultMap, List<Object> multipleResults, ResultMapping parentMapping) throws SQLException {
+		try {
+			if (resultHandler == null) {
+				// 用户没有指定ResultHandler时，使用DefaultResultHandler收集结果对象
+				DefaultResultHandler defaultResultHandler = new DefaultResultHandler(objectFactory);
+				handleRowValuesForResultList(rsw, resultMap, defaultResultHandler);
+				multipleResults.add(defaultResultHandler.getResultList());
+			} else {
+				handleRowValuesForResultList(rsw, resultMap, resultHandler);
+			}
+		} finally {
+			closeResultSet(rsw.getResultSet());
+		}
+	}
+	
+	// 开启pipelinedResultMapping时，简单的ResultMap使用流水线映射
+	private void handleRowValuesForResultList(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler<?> resultHandler) throws SQLException {
+		if (configuration.isPipelinedResultMapping() && !resultMap.hasNestedResultMaps() && !resultMap.hasNestedQueries()) {
+			handleRowValuesPipelined(rsw, resultMap, resultHandler, rowBounds);
+		} else {
+			handleRowValues(rsw, resultMap, resultHandler, rowBounds, null);
+		}
+	}
+	
+	// 结果对象的类型由调用方决定，与ResultSetHandler.handleResultSets()的泛型声明一致，只在这里做一次未检查的转换
+	@SuppressWarnings("unchecked")
+	private <E> List<E> collapseSingleResultList(List<Object> multipleResults) {
+		return multipleResults.size() == 1 ? (List<E>) multipleResults.get(0) : (List<E>) (List<?>) multipleResults;
+	}
+	// [end]
+	
+	// 映射结果集中的行
+	// [start]
+	/**
+	 * 映射结果集中的行，DefaultCursor每次调用都只映射一行(由ResultHandler调用ResultContext.stop()停止)
+	 * 目前只支持简单的ResultMap，嵌套的ResultMap和嵌套查询会抛出异常
+	 */
+	public void handleRowValues(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler<?> resultHandler, RowBounds rowBounds, ResultMapping parentMapping) throws SQLException {
+		if (resultMap.hasNestedResultMaps() || resultMap.hasNestedQueries()) {
+			throw new ExecutorException("Nested result maps and nested queries are not supported. ResultMap: " + resultMap.getId());
+		}
+		handleRowValuesForSimpleResultMap(rsw, resultMap, resultHandler, rowBounds, parentMapping);
+	}
+	
+	private void handleRowValuesForSimpleResultMap(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler<?> resultHandler, RowBounds rowBounds, ResultMapping parentMapping)
+			throws SQLException {
+		DefaultResultContext<Object> resultContext = new DefaultResultContext<Object>();
+		// 根据RowBounds的offset定位到指定的行
+		skipRows(rsw.getResultSet(), rowBounds);
+		while (shouldProcessMoreRows(resultContext, rowBounds) && rsw.getResultSet().next()) {
+			// 根据鉴别器确定映射该行使用的ResultMap
+			ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rsw.getResultSet(), resultMap, null);
+			Object rowValue = getRowValue(rsw, discriminatedResultMap);
+			storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
+		}
+	}
+	
+	/**
+	 * 流水线映射: 当前线程只负责移动ResultSet、确定鉴别器选择的ResultMap并把整行读入BufferedRow，
+	 * 创建结果对象、TypeHandler转换和MetaObject.setValue()都交给resultMappingExecutor中的工作线程，
+	 * 这样等待驱动读取下一批数据的同时，已经读取的行可以并行映射
+	 * 1) 已提交但还没有交付的行最多resultMappingQueueSize个，队列满时等待最早的一行映射完成，所以内存占用有上限
+	 * 2) 映射结果按读取顺序从队列头部取出，并在当前线程中交给ResultHandler，结果顺序和ResultHandler的调用线程都与普通模式相同
+	 * 3) ResultHandler调用stop()或出现异常时，取消队列中剩余的映射任务
+	 */
+	private void handleRowValuesPipelined(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler<?> resultHandler, RowBounds rowBounds) throws SQLException {
+		final ExecutorService mappingExecutor = configuration.getResultMappingExecutor();
+		final int queueSize = getResultMappingQueueSize();
+		final ArrayDeque<Future<Object>> pending = new ArrayDeque<Future<Object>>(queueSize);
+		final DefaultResultContext<Object> resultContext = new DefaultResultContext<Object>();
+		final ResultSet rs = rsw.getResultSet();
+		final BufferedRow.Columns columns = new BufferedRow.Columns(rs);
+		skipRows(rs, rowBounds);
+		int fetchedRows = 0;
+		try {
+			while (!resultContext.isStopped() && fetchedRows < rowBounds.getLimit() && rs.next()) {
+				final ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rs, resultMap, null);
+				final BufferedRow row = BufferedRow.read(rs, columns);
+				fetchedRows++;
+				if (pending.size() >= queueSize) {
+					storeObject(resultHandler, resultContext, awaitRowValue(pending.poll()), null, rs);
+				}
+				pending.add(mappingExecutor.submit(new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						// 工作线程复用自己的ResultSet视图，映射完一行之前不会切换到其他行
+						return getRowValue(new ResultSetWrapper(rsw, BufferedRowResultSet.forRow(row)), discriminatedResultMap);
+					}
+				}));
+			}
+			while (!resultContext.isStopped() && !pending.isEmpty()) {
+				storeObject(resultHandler, resultContext, awaitRowValue(pending.poll()), null, rs);
+			}
+		} finally {
+			for (Future<Object> future : pending) {
+				future.cancel(false);
+			}
+		}
+	}
+	
+	private int getResultMappingQueueSize() {
+		Integer queueSize = configuration.getResultMappingQueueSize();
+		if (queueSize != null && queueSize > 0) {
+			return queueSize;
+		}
+		Integer threads = configuration.getResultMappingThreads();
+		return (threads != null && threads > 0 ? threads : Runtime.getRuntime().availableProcessors()) * 16;
+	}
+	
+	// 等待一行映射完成，工作线程中的异常原样抛出
+	private Object awaitRowValue(Future<Object> future) throws SQLException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ExecutorException("Interrupted while waiting for a row to be mapped", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SQLException) {
+				throw (SQLException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new ExecutorException("Error mapping a row. Cause: " + cause, cause);
+		}
+	}
+	
+	private void storeObject(ResultHandler<?> resultHandler, DefaultResultContext<Object> resultContext, Object rowValue, ResultMapping parentMapping, ResultSet rs) throws SQLException {
+		callResultHandler(resultHandler, resultContext, rowValue);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void callResultHandler(ResultHandler<?> resultHandler, DefaultResultContext<Object> resultContext, Object rowValue) {
+		resultContext.nextResultObject(rowValue);
+		((ResultHandler<Object>) resultHandler).handleResult(resultContext);
+	}
+	
+	private boolean shouldProcessMoreRows(ResultContext<?> context, RowBounds rowBounds) throws SQLException {
+		return !context.isStopped() && context.getResultCount() < rowBounds.getLimit();
+	}
+	
+	private void skipRows(ResultSet rs, RowBounds rowBounds) throws SQLException {
+		if (rs.getType() != ResultSet.TYPE_FORWARD_ONLY) {
+			if (rowBounds.getOffset() != RowBounds.NO_ROW_OFFSET) {
+				rs.absolute(rowBounds.getOffset());
+			}
+		} else {
+			for (int i = 0; i < rowBounds.getOffset(); i++) {
+				if (!rs.next()) {
+					break;
+				}
+			}
+		}
+	}
+	
+	// 映射一行，先创建结果对象，再进行自动映射和<result>节点的映射
+	private Object getRowValue(ResultSetWrapper rsw, ResultMap resultMap) throws SQLException {
+		Object resultObject = createResultObject(rsw, resultMap, null);
+		if (resultObject != null && !hasTypeHandlerForResultObject(rsw, resultMap.getType())) {
+			// 通过构造方法创建并映射了至少一列时，即使后续的映射都为空也返回该对象
+			boolean foundValues = !resultMap.getConstructorResultMappings().isEmpty();
+			final RowMappingPlan plan = getRowMappingPlan(rsw, resultMap, resultObject);
+			if (plan != null) {
+				foundValues = plan.apply(rsw.getResultSet(), resultObject, configuration) || foundValues;
+				return foundValues ? resultObject : null;
+			}
+			final MetaObject metaObject = configuration.newMetaObject(resultObject);
+			if (shouldApplyAutomaticMappings(resultMap, false)) {
+				foundValues = applyAutomaticMappings(rsw, resultMap, metaObject, null) || foundValues;
+			}
+			foundValues = applyPropertyMappings(rsw, resultMap, metaObject, null) || foundValues;
+			resultObject = foundValues ? resultObject : null;
+		}
+		return resultObject;
+	}
+	
+	/**
+	 * 获取ResultMap在当前结果集上的映射计划。先在ResultSetWrapper中按ResultMap查找，
+	 * 再按ResultMap、结果对象类型和列签名在MappedStatement中查找，都没有时用第一行的结果对象编译
+	 * 无法编译时同样缓存一个不可用的计划，返回null，之后的行和该语句之后的执行都不再重复编译
+	 */
+	private RowMappingPlan getRowMappingPlan(ResultSetWrapper rsw, ResultMap resultMap, Object resultObject) throws SQLException {
+		RowMappingPlan plan = rsw.getRowMappingPlan(resultMap);
+		if (plan == null || !plan.getResultType().equals(resultObject.getClass())) {
+			final String key = resultMap.getId() + "|" + resultObject.getClass().getName() + "|" + rsw.getColumnSignature();
+			plan = mappedStatement.getRowMappingPlan(key);
+			if (plan == null) {
+				plan = compileRowMappingPlan(rsw, resultMap, resultObject);
+				if (plan == null) {
+					plan = RowMappingPlan.unavailable(resultObject.getClass(), rsw.getColumnSignature());
+				}
+				plan = mappedStatement.addRowMappingPlan(key, plan);
+			}
+			rsw.putRowMappingPlan(resultMap, plan);
+		}
+		return plan.isAvailable() ? plan : null;
+	}
+	
+	/**
+	 * 编译映射计划，确定每个映射读取的列索引、TypeHandler和setter
+	 * 有无法按列索引读取的映射(例如ResultMap中配置的列不在结果集中、复合列)时返回null，此时逐行按列名映射
+	 */
+	private RowMappingPlan compileRowMappingPlan(ResultSetWrapper rsw, ResultMap resultMap, Object resultObject) throws SQLException {
+		final MetaObject metaObject = configuration.newMetaObject(resultObject);
+		// 普通JavaBean直接调用setter，Map、集合以及自定义ObjectWrapper的结果对象仍通过MetaObject设置
+		final MetaClass metaClass = resultObject instanceof Map || resultObject instanceof Collection
+				|| configuration.getObjectWrapperFactory().hasWrapperFor(resultObject)
+				? null : MetaClass.forClass(resultObject.getClass(), reflectorFactory);
+		final List<RowMappingPlan.ColumnMapping> columnMappings = new ArrayList<RowMappingPlan.ColumnMapping>();
+		if (shouldApplyAutomaticMappings(resultMap, false)) {
+			for (UnMappedColumnAutoMapping mapping : createAutomaticMappings(rsw, resultMap, metaObject, null)) {
+				columnMappings.add(newColumnMapping(rsw, mapping.column, mapping.property, mapping.typeHandler, mapping.primitive, metaClass));
+			}
+		}
+		final List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, null);
+		for (ResultMapping propertyMapping : resultMap.getPropertyResultMappings()) {
+			final String column = propertyMapping.getColumn();
+			if (propertyMapping.isCompositeResult() || propertyMapping.getNestedQueryId() != null || propertyMapping.getResultSet() != null) {
+				return null;
+			}
+			if (column == null || !mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) {
+				continue;
+			}
+			final String property = propertyMapping.getProperty();
+			final boolean primitive = metaObject.hasSetter(property) && metaObject.getSetterType(property).isPrimitive();
+			final RowMappingPlan.ColumnMapping columnMapping = newColumnMapping(rsw, column, property, propertyMapping.getTypeHandler(), primitive, metaClass);
+			if (columnMapping == null) {
+				return null;
+			}
+			columnMappings.add(columnMapping);
+		}
+		return new RowMappingPlan(resultObject.getClass(), rsw.getColumnSignature(), columnMappings);
+	}
+	
+	private RowMappingPlan.ColumnMapping newColumnMapping(ResultSetWrapper rsw, String column, String property, TypeHandler<?> typeHandler,
+			boolean primitive, MetaClass metaClass) {
+		final int columnIndex = rsw.getColumnIndex(column);
+		if (columnIndex < 0) {
+			return null;
+		}
+		// 嵌套属性(例如"author.name")和没有setter的属性通过MetaObject设置
+		final Invoker setter = metaClass != null && property.indexOf('.') < 0 && property.indexOf('[') < 0 && metaClass.hasSetter(property)
+				? metaClass.getSetInvoker(property) : null;
+		return new RowMappingPlan.ColumnMapping(columnIndex, column, property, typeHandler, setter, primitive);
+	}
+	
+	private boolean shouldApplyAutomaticMappings(ResultMap resultMap, boolean isNested) {
+		if (resultMap.getAutoMapping() != null) {
+			return resultMap.getAutoMapping();
+		} else {
+			if (isNested) {
+				return AutoMappingBehavior.FULL == configuration.getAutoMappingBehavior();
+			} else {
+				return AutoMappingBehavior.NONE != configuration.getAutoMappingBehavior();
+			}
+		}
+	}
+	
+	// 处理ResultMap中明确配置的映射
+	private boolean applyPropertyMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix) throws SQLException {
+		final List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
+		boolean foundValues = false;
+		final List<ResultMapping> propertyMappings = resultMap.getPropertyResultMappings();
+		for (ResultMapping propertyMapping : propertyMappings) {
+			String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
+			if (propertyMapping.isCompositeResult() 
+					|| (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH)))) {
+				Object value = getPropertyMappingValue(rsw.getResultSet(), metaObject, propertyMapping, columnPrefix);
+				final String property = propertyMapping.getProperty();
+				if (value == DEFERED) {
+					foundValues = true;
+					continue;
+				}
+				if (value != null) {
+					foundValues = true;
+				}
+				if (value != null || (configuration.isCallSettersOnNulls() && !metaObject.getSetterType(property).isPrimitive())) {
+					metaObject.setValue(property, value);
+				}
+			}
+		}
+		return foundValues;
+	}
+	
+	private Object getPropertyMappingValue(ResultSet rs, MetaObject metaResultObject, ResultMapping propertyMapping, String columnPrefix) throws SQLException {
+		if (propertyMapping.getNestedQueryId() != null || propertyMapping.getResultSet() != null) {
+			throw new ExecutorException("Nested queries and the resultSet attribute are not supported. Property: " + propertyMapping.getProperty());
+		}
+		final TypeHandler<?> typeHandler = propertyMapping.getTypeHandler();
+		final String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
+		return typeHandler.getResult(rs, column);
+	}
+	
+	private List<UnMappedColumnAutoMapping> createAutomaticMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix) throws SQLException {
+		final String mapKey = resultMap.getId() + ":" + columnPrefix;
+		List<UnMappedColumnAutoMapping> autoMapping = autoMappingsCache.get(mapKey);
+		if (autoMapping == null) {
+			autoMapping = new ArrayList<UnMappedColumnAutoMapping>();
+			final List<String> unmappedColumnNames = rsw.getUnmappedColumnNames(resultMap, columnPrefix);
+			for (String columnName : unmappedColumnNames) {
+				String propertyName = columnName;
+				if (columnPrefix != null && !columnPrefix.isEmpty()) {
+					// 指定了列前缀时，只映射带有该前缀的列
+					if (columnName.toUpperCase(Locale.ENGLISH).startsWith(columnPrefix)) {
+						propertyName = columnName.substring(columnPrefix.length());
+					} else {
+						continue;
+					}
+				}
+				final String property = metaObject.findProperty(propertyName, configuration.isMapUnderscoreToCamelCase());
+				if (property != null && metaObject.hasSetter(property)) {
+					final Class<?> propertyType = metaObject.getSetterType(property);
+					if (typeHandlerRegistry.hasTypeHandler(propertyType, rsw.getJdbcType(columnName))) {
+						final TypeHandler<?> typeHandler = rsw.getTypeHandler(propertyType, columnName);
+						autoMapping.add(new UnMappedColumnAutoMapping(columnName, property, typeHandler, propertyType.isPrimitive()));
+					} else {
+						configuration.getAutoMappingUnknownColumnBehavior()
+								.doAction(mappedStatement, columnName, property, propertyType);
+					}
+				} else {
+					configuration.getAutoMappingUnknownColumnBehavior()
+							.doAction(mappedStatement, columnName, (property != null) ? property : propertyName, null);
+				}
+			}
+			autoMappingsCache.put(mapKey, autoMapping);
+		}
+		return autoMapping;
+	}
+	
+	// 自动映射ResultMap中没有明确配置的列
+	private boolean applyAutomaticMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix) throws SQLException {
+		List<UnMappedColumnAutoMapping> autoMapping = createAutomaticMappings(rsw, resultMap, metaObject, columnPrefix);
+		boolean foundValues = false;
+		if (autoMapping.size() > 0) {
+			for (UnMappedColumnAutoMapping mapping : autoMapping) {
+				final Object value = mapping.typeHandler.getResult(rsw.getResultSet(), mapping.column);
+				if (value != null) {
+					foundValues = true;
+				}
+				if (value != null || (configuration.isCallSettersOnNulls() && !mapping.primitive)) {
+					// 基本类型的属性不能设置为null
+					metaObject.setValue(mapping.property, value);
+				}
+			}
+		}
+		return foundValues;
+	}
+	// [end]
+	
+	// 创建结果对象
+	// [start]
+	private Object createResultObject(ResultSetWrapper rsw, ResultMap resultMap, String columnPrefix) throws SQLException {
+		final List<Class<?>> constructorArgTypes = new ArrayList<Class<?>>();
+		final List<Object> constructorArgs = new ArrayList<Object>();
+		return createResultObject(rsw, resultMap, constructorArgTypes, constructorArgs, columnPrefix);
+	}
+	
+	private Object createResultObject(ResultSetWrapper rsw, ResultMap resultMap, List<Class<?>> constructorArgTypes, List<Object> constructorArgs, String columnPrefix)
+			throws SQLException {
+		final Class<?> resultType = resultMap.getType();
+		final MetaClass metaType = MetaClass.forClass(resultType, reflectorFactory);
+		final List<ResultMapping> constructorMappings = resultMap.getConstructorResultMappings();
+		if (hasTypeHandlerForResultObject(rsw, resultType)) {
+			// 结果类型有对应的TypeHandler(例如String、Integer)，直接转换第一列
+			return createPrimitiveResultObject(rsw, resultMap, columnPrefix);
+		} else if (!constructorMappings.isEmpty()) {
+			// 使用<constructor>节点指定的构造方法
+			return createParameterizedResultObject(rsw, resultType, constructorMappings, constructorArgTypes, constructorArgs, columnPrefix);
+		} else if (resultType.isInterface() || metaType.hasDefaultConstructor()) {
+			// 使用默认构造方法
+			return objectFactory.create(resultType);
+		} else if (shouldApplyAutomaticMappings(resultMap, false)) {
+			// 按列的类型查找匹配的构造方法
+			return createByConstructorSignature(rsw, resultType, constructorArgTypes, constructorArgs, columnPrefix);
+		}
+		throw new ExecutorException("Do not know how to create an instance of " + resultType);
+	}
+	
+	private Object createParameterizedResultObject(ResultSetWrapper rsw, Class<?> resultType, List<ResultMapping> constructorMappings,
+			List<Class<?>> constructorArgTypes, List<Object> constructorArgs, String columnPrefix) {
+		boolean foundValues = false;
+		for (ResultMapping constructorMapping : constructorMappings) {
+			final Class<?> parameterType = constructorMapping.getJavaType();
+			final String column = constructorMapping.getColumn();
+			final Object value;
+			try {
+				if (constructorMapping.getNestedQueryId() != null || constructorMapping.getNestedResultMapId() != null) {
+					throw new ExecutorException("Nested constructor arguments are not supported. Column: " + column);
+				}
+				final TypeHandler<?> typeHandler = constructorMapping.getTypeHandler();
+				value = typeHandler.getResult(rsw.getResultSet(), prependPrefix(column, columnPrefix));
+			} catch (ResultMapException e) {
+				throw new ExecutorException("Could not process result for mapping: " + constructorMapping, e);
+			} catch (SQLException e) {
+				throw new ExecutorException("Could not process result for mapping: " + constructorMapping, e);
+			}
+			constructorArgTypes.add(parameterType);
+			constructorArgs.add(value);
+			foundValues = value != null || foundValues;
+		}
+		return foundValues ? objectFactory.create(resultType, constructorArgTypes, constructorArgs) : null;
+	}
+	
+	private Object createByConstructorSignature(ResultSetWrapper rsw, Class<?> resultType, List<Class<?>> constructorArgTypes, List<Object> constructorArgs,
+			String columnPrefix) throws SQLException {
+		for (Constructor<?> constructor : resultType.getDeclaredConstructors()) {
+			if (typeNames(constructor.getParameterTypes()).equals(rsw.getClassNames())) {
+				boolean foundValues = false;
+				for (int i = 0; i < constructor.getParameterTypes().length; i++) {
+					Class<?> parameterType = constructor.getParameterTypes()[i];
+					String columnName = rsw.getColumnNames().get(i);
+					TypeHandler<?> typeHandler = rsw.getTypeHandler(parameterType, columnName);
+					Object value = typeHandler.getResult(rsw.getResultSet(), prependPrefix(columnName, columnPrefix));
+					constructorArgTypes.add(parameterType);
+					constructorArgs.add(value);
+					foundValues = value != null || foundValues;
+				}
+				return foundValues ? objectFactory.create(resultType, constructorArgTypes, constructorArgs) : null;
+			}
+		}
+		throw new ExecutorException("No constructor found in " + resultType.getName() + " matching " + rsw.getClassNames());
+	}
+	
+	private List<String> typeNames(Class<?>[] parameterTypes) {
+		List<String> names = new ArrayList<String>();
+		for (Class<?> type : parameterTypes) {
+			names.add(type.getName());
+		}
+		return names;
+	}
+	
+	private Object createPrimitiveResultObject(ResultSetWrapper rsw, ResultMap resultMap, String columnPrefix) throws SQLException {
+		final Class<?> resultType = resultMap.getType();
+		final String columnName;
+		if (!resultMap.getResultMappings().isEmpty()) {
+			final List<ResultMapping> resultMappingList = resultMap.getResultMappings();
+			final ResultMapping mapping = resultMappingList.get(0);
+			columnName = prependPrefix(mapping.getColumn(), columnPrefix);
+		} else {
+			columnName = rsw.getColumnNames().get(0);
+		}
+		final TypeHandler<?> typeHandler = rsw.getTypeHandler(resultType, columnName);
+		return typeHandler.getResult(rsw.getResultSet(), columnName);
+	}
+	
+	private boolean hasTypeHandlerForResultObject(ResultSetWrapper rsw, Class<?> resultType) {
+		if (rsw.getColumnNames().size() == 1) {
+			return typeHandlerRegistry.hasTypeHandler(resultType, rsw.getJdbcType(rsw.getColumnNames().get(0)));
+		}
+		return typeHandlerRegistry.hasTypeHandler(resultType);
+	}
+	// [end]
+	
+	// 鉴别器
+	// [start]
+	/**
+	 * 根据<discriminator>节点配置的列值选择ResultMap，选中的ResultMap还可以有自己的鉴别器，
+	 * 出现循环引用时停止
+	 */
+	public ResultMap resolveDiscriminatedResultMap(ResultSet rs, ResultMap resultMap, String columnPrefix) throws SQLException {
+		Set<String> pastDiscriminators = new HashSet<String>();
+		Discriminator discriminator = resultMap.getDiscriminator();
+		while (discriminator != null) {
+			final Object value = getDiscriminatorValue(rs, discriminator, columnPrefix);
+			final String discriminatedMapId = discriminator.getMapIdFor(String.valueOf(value));
+			if (configuration.hasResultMap(discriminatedMapId)) {
+				resultMap = configuration.getResultMap(discriminatedMapId);
+				Discriminator lastDiscriminator = discriminator;
+				discriminator = resultMap.getDiscriminator();
+				if (discriminator == lastDiscriminator || !pastDiscriminators.add(discriminatedMapId)) {
+					break;
+				}
+			} else {
+				break;
+			}
+		}
+		return resultMap;
+	}
+	
+	private Object getDiscriminatorValue(ResultSet rs, Discriminator discriminator, String columnPrefix) throws SQLException {
+		final ResultMapping resultMapping = discriminator.getResultMapping();
+		final TypeHandler<?> typeHandler = resultMapping.getTypeHandler();
+		return typeHandler.getResult(rs, prependPrefix(resultMapping.getColumn(), columnPrefix));
+	}
+	
+	private String prependPrefix(String columnName, String prefix) {
+		if (columnName == null || columnName.length() == 0 || prefix == null || prefix.length() == 0) {
+			return columnName;
+		}
+		return prefix + columnName;
+	}
+	// [end]
 
+	// 存储过程的输出参数
+	// [start]
 	@Override
 	public void handleOutputParameters(CallableStatement cs) throws SQLException {
-		// TODO Auto-generated method stub
-		
+		final Object parameterObject = parameterHandler.setParameterObject();
+		final MetaObject metaParam = configuration.newMetaObject(parameterObject);
+		final List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+		for (int i = 0; i < parameterMappings.size(); i++) {
+			final ParameterMapping parameterMapping = parameterMappings.get(i);
+			if (parameterMapping.getMode() == ParameterMode.OUT || parameterMapping.getMode() == ParameterMode.INOUT) {
+				if (ResultSet.class.equals(parameterMapping.getJavaType())) {
+					throw new ExecutorException("ResultSet output parameters are not supported. Property: " + parameterMapping.getProperty());
+				} else {
+					final TypeHandler<?> typeHandler = parameterMapping.getTypeHandler();
+					metaParam.setValue(parameterMapping.getProperty(), typeHandler.getResult(cs, i + 1));
+				}
+			}
+		}
 	}
-
+	// [end]
 }
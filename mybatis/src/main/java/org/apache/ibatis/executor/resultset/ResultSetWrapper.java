@@ -0,0 +1,226 @@
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.ObjectTypeHandler;
+import org.apache.ibatis.type.TypeHandler;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+import org.apache.ibatis.type.UnknowTypeHandler;
+
+/**
+ * 对ResultSet的包装，记录了结果集的列名、列对应的Java类型和JdbcType，以及每个ResultMap映射和未映射的列名
+ */
+public class ResultSetWrapper {
+
+	private final ResultSet resultSet;
+	private final TypeHandlerRegistry typeHandlerRegistry;
+	private final List<String> columnNames;     // 列名(或列标签)
+	private final List<String> classNames;      // 列对应的Java类型
+	private final List<JdbcType> jdbcTypes;     // 列对应的JdbcType
+	// 以下缓存在流水线映射时由多个工作线程共享，所以使用ConcurrentHashMap
+	private final ConcurrentMap<String, ConcurrentMap<Class<?>, TypeHandler<?>>> typeHandlerMap;
+	private final ConcurrentMap<String, List<String>> mappedColumnNamesMap;    // key是ResultMap的id加列前缀，value是该ResultMap映射的列名
+	private final ConcurrentMap<String, List<String>> unMappedColumnNamesMap;  // key是ResultMap的id加列前缀，value是该ResultMap未映射的列名
+	private final ConcurrentMap<String, RowMappingPlan> rowMappingPlans;       // key是ResultMap的id，value是该结果集使用的映射计划
+	private final String columnSignature;       // 列签名，由列名、JdbcType和Java类型组成
+	
+	public ResultSetWrapper(ResultSet rs, Configuration configuration) throws SQLException {
+		super();
+		this.typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+		this.resultSet = rs;
+		this.columnNames = new ArrayList<String>();
+		this.classNames = new ArrayList<String>();
+		this.jdbcTypes = new ArrayList<JdbcType>();
+		this.typeHandlerMap = new ConcurrentHashMap<String, ConcurrentMap<Class<?>, TypeHandler<?>>>();
+		this.mappedColumnNamesMap = new ConcurrentHashMap<String, List<String>>();
+		this.unMappedColumnNamesMap = new ConcurrentHashMap<String, List<String>>();
+		this.rowMappingPlans = new ConcurrentHashMap<String, RowMappingPlan>();
+		final ResultSetMetaData metaData = rs.getMetaData();
+		final int columnCount = metaData.getColumnCount();
+		final StringBuilder signature = new StringBuilder();
+		for (int i = 1; i <= columnCount; i++) {
+			columnNames.add(configuration.isUseColumnLabel() ? metaData.getColumnLabel(i) : metaData.getColumnName(i));
+			jdbcTypes.add(JdbcType.forCode(metaData.getColumnType(i)));
+			classNames.add(metaData.getColumnClassName(i));
+			signature.append(columnNames.get(i - 1)).append(':').append(metaData.getColumnType(i))
+					.append(':').append(classNames.get(i - 1)).append(',');
+		}
+		this.columnSignature = signature.toString();
+	}
+	
+	/**
+	 * 创建读取另一个ResultSet(例如已缓存的一行)的包装，与source共享列信息和各种缓存
+	 */
+	ResultSetWrapper(ResultSetWrapper source, ResultSet rs) {
+		this.typeHandlerRegistry = source.typeHandlerRegistry;
+		this.resultSet = rs;
+		this.columnNames = source.columnNames;
+		this.classNames = source.classNames;
+		this.jdbcTypes = source.jdbcTypes;
+		this.typeHandlerMap = source.typeHandlerMap;
+		this.mappedColumnNamesMap = source.mappedColumnNamesMap;
+		this.unMappedColumnNamesMap = source.unMappedColumnNamesMap;
+		this.rowMappingPlans = source.rowMappingPlans;
+		this.columnSignature = source.columnSignature;
+	}
+	
+	public ResultSet getResultSet() {
+		return resultSet;
+	}
+	
+	public List<String> getColumnNames() {
+		return this.columnNames;
+	}
+	
+	public List<String> getClassNames() {
+		return Collections.unmodifiableList(classNames);
+	}
+	
+	public String getColumnSignature() {
+		return columnSignature;
+	}
+	
+	// 列名对应的列索引(从1开始)，列名不区分大小写，不存在时返回-1
+	public int getColumnIndex(String columnName) {
+		for (int i = 0; i < columnNames.size(); i++) {
+			if (columnNames.get(i).equalsIgnoreCase(columnName)) {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+	
+	RowMappingPlan getRowMappingPlan(ResultMap resultMap) {
+		return rowMappingPlans.get(resultMap.getId());
+	}
+	
+	void putRowMappingPlan(ResultMap resultMap, RowMappingPlan plan) {
+		rowMappingPlans.put(resultMap.getId(), plan);
+	}
+	
+	// 列名对应的JdbcType，列名不区分大小写
+	public JdbcType getJdbcType(String columnName) {
+		for (int i = 0; i < columnNames.size(); i++) {
+			if (columnNames.get(i).equalsIgnoreCase(columnName)) {
+				return jdbcTypes.get(i);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * 获取读取指定列并转换为propertyType类型时使用的TypeHandler
+	 * 先按propertyType和列的JdbcType查找，找不到时按列的Java类型查找，都找不到时使用ObjectTypeHandler
+	 */
+	public TypeHandler<?> getTypeHandler(Class<?> propertyType, String columnName) {
+		TypeHandler<?> handler = null;
+		ConcurrentMap<Class<?>, TypeHandler<?>> columnHandlers = typeHandlerMap.get(columnName);
+		if (columnHandlers == null) {
+			columnHandlers = new ConcurrentHashMap<Class<?>, TypeHandler<?>>();
+			ConcurrentMap<Class<?>, TypeHandler<?>> existing = typeHandlerMap.putIfAbsent(columnName, columnHandlers);
+			if (existing != null) {
+				columnHandlers = existing;
+				handler = columnHandlers.get(propertyType);
+			}
+		} else {
+			handler = columnHandlers.get(propertyType);
+		}
+		if (handler == null) {
+			JdbcType jdbcType = getJdbcType(columnName);
+			handler = typeHandlerRegistry.getTypeHandler(propertyType, jdbcType);
+			if (handler == null || handler instanceof UnknowTypeHandler) {
+				final int index = columnNames.indexOf(columnName);
+				final Class<?> javaType = resolveClass(classNames.get(index));
+				if (javaType != null && jdbcType != null) {
+					handler = typeHandlerRegistry.getTypeHandler(javaType, jdbcType);
+				} else if (javaType != null) {
+					handler = typeHandlerRegistry.getTypeHandler(javaType);
+				} else if (jdbcType != null) {
+					handler = typeHandlerRegistry.getTypeHandler(jdbcType);
+				}
+			}
+			if (handler == null || handler instanceof UnknowTypeHandler) {
+				handler = new ObjectTypeHandler();
+			}
+			columnHandlers.put(propertyType, handler);
+		}
+		return handler;
+	}
+	
+	private Class<?> resolveClass(String className) {
+		try {
+			if (className != null) {
+				return Resources.classForName(className);
+			}
+		} catch (ClassNotFoundException e) {
+			// ignore
+		}
+		return null;
+	}
+	
+	// 将结果集的列分为ResultMap中映射的列和未映射的列，列名统一转换为大写
+	private void loadMappedAndUnmappedColumnNames(ResultMap resultMap, String columnPrefix) throws SQLException {
+		List<String> mappedColumnNames = new ArrayList<String>();
+		List<String> unmappedColumnNames = new ArrayList<String>();
+		final String upperColumnPrefix = columnPrefix == null ? null : columnPrefix.toUpperCase(Locale.ENGLISH);
+		final Set<String> mappedColumns = prependPrefixes(resultMap.getMappedColumns(), upperColumnPrefix);
+		for (String columnName : columnNames) {
+			final String upperColumnName = columnName.toUpperCase(Locale.ENGLISH);
+			if (mappedColumns.contains(upperColumnName)) {
+				mappedColumnNames.add(upperColumnName);
+			} else {
+				unmappedColumnNames.add(columnName);
+			}
+		}
+		mappedColumnNamesMap.put(getMapKey(resultMap, columnPrefix), mappedColumnNames);
+		unMappedColumnNamesMap.put(getMapKey(resultMap, columnPrefix), unmappedColumnNames);
+	}
+	
+	public List<String> getMappedColumnNames(ResultMap resultMap, String columnPrefix) throws SQLException {
+		List<String> mappedColumnNames = mappedColumnNamesMap.get(getMapKey(resultMap, columnPrefix));
+		if (mappedColumnNames == null) {
+			loadMappedAndUnmappedColumnNames(resultMap, columnPrefix);
+			mappedColumnNames = mappedColumnNamesMap.get(getMapKey(resultMap, columnPrefix));
+		}
+		return mappedColumnNames;
+	}
+	
+	public List<String> getUnmappedColumnNames(ResultMap resultMap, String columnPrefix) throws SQLException {
+		List<String> unMappedColumnNames = unMappedColumnNamesMap.get(getMapKey(resultMap, columnPrefix));
+		if (unMappedColumnNames == null) {
+			loadMappedAndUnmappedColumnNames(resultMap, columnPrefix);
+			unMappedColumnNames = unMappedColumnNamesMap.get(getMapKey(resultMap, columnPrefix));
+		}
+		return unMappedColumnNames;
+	}
+	
+	private String getMapKey(ResultMap resultMap, String columnPrefix) {
+		return resultMap.getId() + ":" + columnPrefix;
+	}
+	
+	private Set<String> prependPrefixes(Set<String> columnNames, String prefix) {
+		if (columnNames == null || columnNames.isEmpty() || prefix == null || prefix.length() == 0) {
+			return columnNames;
+		}
+		final Set<String> prefixed = new HashSet<String>();
+		for (String columnName : columnNames) {
+			prefixed.add(prefix + columnName);
+		}
+		return prefixed;
+	}
+}
@@ -0,0 +1,153 @@
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.TypeHandler;
+
+/**
+ * 编译好的行映射计划，对应一个ResultMap和一种结果集列签名(列名、JdbcType和Java类型)
+ * 第一行映射时根据ResultSetMetaData确定每个属性读取的列索引、TypeHandler和setter，之后的行按列索引读取并直接调用setter，
+ * 不再查找列名、TypeHandler和属性。计划是不可变的，缓存在MappedStatement中，可以被多个线程同时使用
+ * 先执行自动映射，再执行ResultMap中明确配置的映射，与DefaultResultSetHandler中逐行查找的顺序相同
+ * 无法编译时缓存一个不可用的计划(unavailable())，之后不再重复编译，直接逐行按列名映射
+ */
+public final class RowMappingPlan {
+
+	private final Class<?> resultType;       // 编译时结果对象的实际类型
+	private final String signature;
+	private final List<ColumnMapping> columnMappings;
+	private final boolean needsMetaObject;   // 有无法直接调用setter的属性(例如Map类型的结果对象或嵌套属性)
+	private final boolean available;         // 为false时表示该ResultMap在这种列签名上无法编译计划
+	
+	RowMappingPlan(Class<?> resultType, String signature, List<ColumnMapping> columnMappings) {
+		this(resultType, signature, columnMappings, true);
+	}
+	
+	private RowMappingPlan(Class<?> resultType, String signature, List<ColumnMapping> columnMappings, boolean available) {
+		this.available = available;
+		this.resultType = resultType;
+		this.signature = signature;
+		this.columnMappings = Collections.unmodifiableList(new ArrayList<ColumnMapping>(columnMappings));
+		boolean needsMetaObject = false;
+		for (ColumnMapping mapping : columnMappings) {
+			needsMetaObject = needsMetaObject || mapping.setter == null;
+		}
+		this.needsMetaObject = needsMetaObject;
+	}
+	
+	// 不可用的计划，只记录编译失败的结果类型和列签名
+	static RowMappingPlan unavailable(Class<?> resultType, String signature) {
+		return new RowMappingPlan(resultType, signature, Collections.<ColumnMapping>emptyList(), false);
+	}
+	
+	/**
+	 * 按计划读取当前行并设置到结果对象中，返回是否读取到了非空的值
+	 */
+	boolean apply(ResultSet rs, Object resultObject, Configuration configuration) throws SQLException {
+		final MetaObject metaObject = needsMetaObject ? configuration.newMetaObject(resultObject) : null;
+		final boolean callSettersOnNulls = configuration.isCallSettersOnNulls();
+		boolean foundValues = false;
+		for (int i = 0, n = columnMappings.size(); i < n; i++) {
+			final ColumnMapping mapping = columnMappings.get(i);
+			final Object value = mapping.typeHandler.getResult(rs, mapping.columnIndex);
+			if (value != null) {
+				foundValues = true;
+			} else if (!callSettersOnNulls || mapping.primitive) {
+				// 基本类型的属性不能设置为null
+				continue;
+			}
+			if (mapping.setter != null) {
+				invokeSetter(mapping, resultObject, value);
+			} else {
+				metaObject.setValue(mapping.property, value);
+			}
+		}
+		return foundValues;
+	}
+	
+	private void invokeSetter(ColumnMapping mapping, Object resultObject, Object value) {
+		try {
+			try {
+				mapping.setter.invoke(resultObject, new Object[] { value });
+			} catch (Throwable t) {
+				throw ExceptionUtil.unwrapThrowable(t);
+			}
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new ReflectionException("Could not set property '" + mapping.property + "' with value '" + value + "' Cause: " + t.toString(), t);
+		}
+	}
+	
+	public Class<?> getResultType() {
+		return resultType;
+	}
+	
+	public String getSignature() {
+		return signature;
+	}
+	
+	public List<ColumnMapping> getColumnMappings() {
+		return columnMappings;
+	}
+	
+	public boolean isAvailable() {
+		return available;
+	}
+	
+	/**
+	 * 计划中的一项: 从columnIndex列读取值，设置到property属性
+	 */
+	public static final class ColumnMapping {
+		
+		private final int columnIndex;               // 从1开始的列索引
+		private final String column;
+		private final String property;
+		private final TypeHandler<?> typeHandler;
+		private final Invoker setter;                // 为null时通过MetaObject设置
+		private final boolean primitive;             // 属性是否为基本类型，基本类型的属性不能设置为null
+		
+		ColumnMapping(int columnIndex, String column, String property, TypeHandler<?> typeHandler, Invoker setter, boolean primitive) {
+			this.columnIndex = columnIndex;
+			this.column = column;
+			this.property = property;
+			this.typeHandler = typeHandler;
+			this.setter = setter;
+			this.primitive = primitive;
+		}
+		
+		public int getColumnIndex() {
+			return columnIndex;
+		}
+		
+		public String getColumn() {
+			return column;
+		}
+		
+		public String getProperty() {
+			return property;
+		}
+		
+		public TypeHandler<?> getTypeHandler() {
+			return typeHandler;
+		}
+		
+		public boolean isPrimitive() {
+			return primitive;
+		}
+		
+		@Override
+		public String toString() {
+			return column + "(" + columnIndex + ") -> " + property;
+		}
+	}
+}
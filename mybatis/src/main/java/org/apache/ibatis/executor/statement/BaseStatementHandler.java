@@ -0,0 +1,130 @@
+package org.apache.ibatis.executor.statement;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+
+/**
+ * StatementHandler的抽象基类，实现了创建Statement时的公共步骤(设置超时时间和fetchSize)，
+ * 具体的Statement由子类的instantiateStatement()创建
+ */
+public abstract class BaseStatementHandler implements StatementHandler {
+
+	protected final Configuration configuration;
+	protected final ObjectFactory objectFactory;
+	protected final TypeHandlerRegistry typeHandlerRegistry;
+	protected final ResultSetHandler resultSetHandler;    // 将结果集映射成结果对象
+	protected final ParameterHandler parameterHandler;    // 为SQL语句绑定实参
+	
+	protected final Executor executor;
+	protected final MappedStatement mappedStatement;
+	protected final RowBounds rowBounds;
+	
+	protected BoundSql boundSql;
+	
+	protected BaseStatementHandler(Executor executor, MappedStatement mappedStatement, Object parameterObject, RowBounds rowBounds,
+			ResultHandler<?> resultHandler, BoundSql boundSql) {
+		this.configuration = mappedStatement.getConfiguration();
+		this.executor = executor;
+		this.mappedStatement = mappedStatement;
+		this.rowBounds = rowBounds;
+		
+		this.typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+		this.objectFactory = configuration.getObjectFactory();
+		
+		// 执行更新语句时boundSql为null，先通过KeyGenerator获取主键(order="BEFORE")，再生成BoundSql
+		if (boundSql == null) {
+			generateKeys(parameterObject);
+			boundSql = mappedStatement.getBoundSql(parameterObject);
+		}
+		this.boundSql = boundSql;
+		
+		this.parameterHandler = configuration.newParameterHandler(mappedStatement, parameterObject, boundSql);
+		this.resultSetHandler = configuration.newResultSetHandler(executor, mappedStatement, rowBounds, parameterHandler, resultHandler, boundSql);
+	}
+	
+	@Override
+	public BoundSql getBoundSql() {
+		return boundSql;
+	}
+	
+	@Override
+	public ParameterHandler getParameterHandler() {
+		return parameterHandler;
+	}
+	
+	@Override
+	public Statement prepare(Connection connection, Integer transactionTimeout) throws SQLException {
+		Statement statement = null;
+		try {
+			// 创建Statement对象
+			statement = instantiateStatement(connection);
+			// 设置超时时间
+			setStatementTimeout(statement, transactionTimeout);
+			// 设置fetchSize
+			setFetchSize(statement);
+			return statement;
+		} catch (SQLException e) {
+			closeStatement(statement);
+			throw e;
+		} catch (Exception e) {
+			closeStatement(statement);
+			throw new ExecutorException("Error preparing statement.  Cause: " + e, e);
+		}
+	}
+	
+	protected abstract Statement instantiateStatement(Connection connection) throws SQLException;
+	
+	protected void setStatementTimeout(Statement stmt, Integer transactionTimeout) throws SQLException {
+		Integer queryTimeout = null;
+		if (mappedStatement.getTimeout() != null) {
+			queryTimeout = mappedStatement.getTimeout();
+		} else if (configuration.getDefaultStatementTimeout() != null) {
+			queryTimeout = configuration.getDefaultStatementTimeout();
+		}
+		if (queryTimeout != null) {
+			stmt.setQueryTimeout(queryTimeout);
+		}
+		StatementUtil.applyTransactionTimeout(stmt, queryTimeout, transactionTimeout);
+	}
+	
+	protected void setFetchSize(Statement stmt) throws SQLException {
+		Integer fetchSize = mappedStatement.getFetchSize();
+		if (fetchSize != null) {
+			stmt.setFetchSize(fetchSize);
+			return;
+		}
+		Integer defaultFetchSize = configuration.getDefaultFetchSize();
+		if (defaultFetchSize != null) {
+			stmt.setFetchSize(defaultFetchSize);
+		}
+	}
+	
+	protected void closeStatement(Statement statement) {
+		try {
+			if (statement != null) {
+				statement.close();
+			}
+		} catch (SQLException e) {
+			// ignore
+		}
+	}
+	
+	protected void generateKeys(Object parameter) {
+		KeyGenerator keyGenerator = mappedStatement.getKeyGenerator();
+		keyGenerator.processBefore(executor, mappedStatement, null, parameter);
+	}
+}
@@ -0,0 +1,106 @@
+package org.apache.ibatis.executor.statement;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.type.JdbcType;
+
+/**
+ * 使用java.sql.CallableStatement调用存储过程，执行前注册输出参数，执行后通过ResultSetHandler处理输出参数
+ */
+public class CallableStatementHandler extends BaseStatementHandler {
+
+	public CallableStatementHandler(Executor executor, MappedStatement mappedStatement, Object parameter, RowBounds rowBounds,
+			ResultHandler<?> resultHandler, BoundSql boundSql) {
+		super(executor, mappedStatement, parameter, rowBounds, resultHandler, boundSql);
+	}
+	
+	@Override
+	public int update(Statement statement) throws SQLException {
+		CallableStatement cs = (CallableStatement) statement;
+		cs.execute();
+		int rows = cs.getUpdateCount();
+		Object parameterObject = boundSql.getParameterObject();
+		KeyGenerator keyGenerator = mappedStatement.getKeyGenerator();
+		keyGenerator.processAfter(executor, mappedStatement, cs, parameterObject);
+		resultSetHandler.handleOutputParameters(cs);
+		return rows;
+	}
+	
+	@Override
+	public void batch(Statement statement) throws SQLException {
+		CallableStatement cs = (CallableStatement) statement;
+		cs.addBatch();
+	}
+	
+	@Override
+	public <E> List<E> query(Statement statement, ResultHandler<?> resultHandler) throws SQLException {
+		CallableStatement cs = (CallableStatement) statement;
+		cs.execute();
+		List<E> resultList = resultSetHandler.<E>handleResultSets(cs);
+		resultSetHandler.handleOutputParameters(cs);
+		return resultList;
+	}
+	
+	@Override
+	public <E> Cursor<E> queryCursor(Statement statement) throws SQLException {
+		CallableStatement cs = (CallableStatement) statement;
+		cs.execute();
+		Cursor<E> resultList = resultSetHandler.<E>handleCursorResuleSets(cs);
+		resultSetHandler.handleOutputParameters(cs);
+		return resultList;
+	}
+	
+	@Override
+	protected Statement instantiateStatement(Connection connection) throws SQLException {
+		String sql = boundSql.getSql();
+		if (mappedStatement.getResultSetType() != null) {
+			return connection.prepareCall(sql, mappedStatement.getResultSetType().getValue(), ResultSet.CONCUR_READ_ONLY);
+		} else {
+			return connection.prepareCall(sql);
+		}
+	}
+	
+	@Override
+	public void parameterize(Statement statement) throws SQLException {
+		registerOutputParameters((CallableStatement) statement);
+		parameterHandler.setParameters((CallableStatement) statement);
+	}
+	
+	// 注册OUT和INOUT类型的参数，输出参数必须指定jdbcType
+	private void registerOutputParameters(CallableStatement cs) throws SQLException {
+		List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+		for (int i = 0, n = parameterMappings.size(); i < n; i++) {
+			ParameterMapping parameterMapping = parameterMappings.get(i);
+			if (parameterMapping.getMode() == ParameterMode.OUT || parameterMapping.getMode() == ParameterMode.INOUT) {
+				if (null == parameterMapping.getJdbcType()) {
+					throw new ExecutorException("The JDBC Type must be specified for output parameter.  Parameter: " + parameterMapping.getProperty());
+				} else {
+					if (parameterMapping.getNumericScale() != null && (parameterMapping.getJdbcType() == JdbcType.NUMERIC || parameterMapping.getJdbcType() == JdbcType.DECIMAL)) {
+						cs.registerOutParameter(i + 1, parameterMapping.getJdbcType().TYPE_CODE, parameterMapping.getNumericScale());
+					} else {
+						if (parameterMapping.getJdbcTypeName() == null) {
+							cs.registerOutParameter(i + 1, parameterMapping.getJdbcType().TYPE_CODE);
+						} else {
+							cs.registerOutParameter(i + 1, parameterMapping.getJdbcType().TYPE_CODE, parameterMapping.getJdbcTypeName());
+						}
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package org.apache.ibatis.executor.statement;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
+import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * 使用java.sql.PreparedStatement执行SQL语句，通过ParameterHandler为"?"占位符绑定实参
+ */
+public class PreparedStatementHandler extends BaseStatementHandler {
+
+	public PreparedStatementHandler(Executor executor, MappedStatement mappedStatement, Object parameter, RowBounds rowBounds,
+			ResultHandler<?> resultHandler, BoundSql boundSql) {
+		super(executor, mappedStatement, parameter, rowBounds, resultHandler, boundSql);
+	}
+	
+	@Override
+	public int update(Statement statement) throws SQLException {
+		PreparedStatement ps = (PreparedStatement) statement;
+		ps.execute();
+		int rows = ps.getUpdateCount();
+		Object parameterObject = boundSql.getParameterObject();
+		KeyGenerator keyGenerator = mappedStatement.getKeyGenerator();
+		keyGenerator.processAfter(executor, mappedStatement, ps, parameterObject);
+		return rows;
+	}
+	
+	@Override
+	public void batch(Statement statement) throws SQLException {
+		PreparedStatement ps = (PreparedStatement) statement;
+		ps.addBatch();
+	}
+	
+	@Override
+	public <E> List<E> query(Statement statement, ResultHandler<?> resultHandler) throws SQLException {
+		PreparedStatement ps = (PreparedStatement) statement;
+		ps.execute();
+		return resultSetHandler.<E>handleResultSets(ps);
+	}
+	
+	@Override
+	public <E> Cursor<E> queryCursor(Statement statement) throws SQLException {
+		PreparedStatement ps = (PreparedStatement) statement;
+		ps.execute();
+		return resultSetHandler.<E>handleCursorResuleSets(ps);
+	}
+	
+	@Override
+	protected Statement instantiateStatement(Connection connection) throws SQLException {
+		String sql = boundSql.getSql();
+		if (mappedStatement.getKeyGenerator() instanceof Jdbc3KeyGenerator) {
+			String[] keyColumnNames = mappedStatement.getKeyColumns();
+			if (keyColumnNames == null) {
+				return connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
+			} else {
+				return connection.prepareStatement(sql, keyColumnNames);
+			}
+		} else if (mappedStatement.getResultSetType() != null) {
+			return connection.prepareStatement(sql, mappedStatement.getResultSetType().getValue(), ResultSet.CONCUR_READ_ONLY);
+		} else {
+			return connection.prepareStatement(sql);
+		}
+	}
+	
+	@Override
+	public void parameterize(Statement statement) throws SQLException {
+		parameterHandler.setParameters((PreparedStatement) statement);
+	}
+}
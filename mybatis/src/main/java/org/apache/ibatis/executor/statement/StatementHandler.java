@@ -0,0 +1,38 @@
+package org.apache.ibatis.executor.statement;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.session.ResultHandler;
+
+/**
+ * 负责创建Statement对象、为其绑定实参、执行SQL语句并通过ResultSetHandler映射结果集
+ */
+public interface StatementHandler {
+	
+	// 从连接中获取一个Statement
+	Statement prepare(Connection connection, Integer transactionTimeout) throws SQLException;
+	
+	// 绑定statement执行时所需的实参
+	void parameterize(Statement statement) throws SQLException;
+	
+	// 批量执行SQL语句
+	void batch(Statement statement) throws SQLException;
+	
+	// 执行update/insert/delete语句
+	int update(Statement statement) throws SQLException;
+	
+	// 执行select语句
+	<E> List<E> query(Statement statement, ResultHandler<?> resultHandler) throws SQLException;
+	
+	<E> Cursor<E> queryCursor(Statement statement) throws SQLException;
+	
+	BoundSql getBoundSql();
+	
+	ParameterHandler getParameterHandler();
+}
@@ -0,0 +1,33 @@
+package org.apache.ibatis.executor.statement;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Statement相关的工具方法
+ */
+public class StatementUtil {
+
+	private StatementUtil() {
+		// NOP
+	}
+	
+	/**
+	 * 按事务的超时时间设置语句的查询超时
+	 * 语句的超时时间大于事务的剩余时间时，使用事务的超时时间
+	 */
+	public static void applyTransactionTimeout(Statement statement, Integer queryTimeout, Integer transactionTimeout) throws SQLException {
+		if (transactionTimeout == null) {
+			return;
+		}
+		Integer timeToLiveOfQuery = null;
+		if (queryTimeout == null || queryTimeout == 0) {
+			timeToLiveOfQuery = transactionTimeout;
+		} else if (transactionTimeout < queryTimeout) {
+			timeToLiveOfQuery = transactionTimeout;
+		}
+		if (timeToLiveOfQuery != null) {
+			statement.setQueryTimeout(timeToLiveOfQuery);
+		}
+	}
+}
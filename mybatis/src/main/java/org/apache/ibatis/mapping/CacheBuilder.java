@@ -8,12 +8,18 @@ import java.util.Properties;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheMemoryBudget;
+import org.apache.ibatis.cache.ConcurrentCache;
+import org.apache.ibatis.cache.EvictionListener;
 import org.apache.ibatis.cache.decorators.BlockingCache;
 import org.apache.ibatis.cache.decorators.LoggingCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.ScheduledCache;
 import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.decorators.SizeEstimatingCache;
 import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.decorators.WeightedCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.SystemMetaObject;
@@ -30,6 +36,8 @@ public class CacheBuilder {
 	private boolean readWrite;                        // 是否可读写
 	private Properties properties;                    // 其他配置信息
 	private boolean blocking;                         // 是否阻塞
+	private Long maxBytes;                            // 当前命名空间缓存项估算的字节数上限
+	private CacheMemoryBudget memoryBudget;           // 所有命名空间共享的字节数预算
 	
 	public CacheBuilder(String id) {
 		this.id = id;
@@ -68,6 +76,16 @@ public class CacheBuilder {
 		return this;
 	}
   
+	public CacheBuilder maxBytes(Long maxBytes) {
+		this.maxBytes = maxBytes;
+		return this;
+	}
+
+	public CacheBuilder memoryBudget(CacheMemoryBudget memoryBudget) {
+		this.memoryBudget = memoryBudget;
+		return this;
+	}
+  
 	public CacheBuilder properties(Properties properties) {
 		this.properties = properties;
 		return this;
@@ -86,16 +104,29 @@ public class CacheBuilder {
 		// 检测cache对象的类型，如果是PerpetualCache类型，则为其添加decorators集合中
 		// 的装饰器；如果是自定义类型的Cache接口实现，则不添加decorators集合中的装饰器
 		if (PerpetualCache.class.equals(cache.getClass())) {
+			// 配置了字节数预算时，在淘汰策略之前添加WeightedCache，淘汰策略清理缓存项时也会经过它
+			cache = setWeightedDecorator(cache);
+			WeightedCache weightedCache = cache instanceof WeightedCache ? (WeightedCache) cache : null;
 			for (Class<? extends Cache> decorator : decorators) {
 				// 通过反射获取参数为Cache类型的构造方法，并通过该构造方法创建装饰器
 				cache = newCacheDecoratorInstance(decorator, cache);
 				setCacheProperties(cache);   // 配置Cache对象的属性						  
+				// WeightedCache按字节数清理缓存项时通知淘汰策略
+				if (weightedCache != null && cache instanceof EvictionListener) {
+					weightedCache.addEvictionListener((EvictionListener) cache);
+				}
 			}
 			// 添加MyBatis中提供的标准装饰器
-			setStandardDecorators(cache);
-		} else if (!LoggingCache.class.isAssignableFrom(cache.getClass())) {
-			// 如果不是LoggingCache的子类，则添加LoggingCache装饰器
-			cache = new LoggingCache(cache);
+			cache = setStandardDecorators(cache, weightedCache != null);
+		} else {
+			// OffHeapCache不添加淘汰策略等装饰器，<cache>节点的size属性作为它的缓存项个数上限
+			if (cache instanceof OffHeapCache) {
+				setOffHeapSize((OffHeapCache) cache);
+			}
+			if (!LoggingCache.class.isAssignableFrom(cache.getClass())) {
+				// 如果不是LoggingCache的子类，则添加LoggingCache装饰器
+				cache = new LoggingCache(cache);
+			}
 		}
 		return cache;
 	}
@@ -185,9 +216,40 @@ public class CacheBuilder {
 		}
 	}
 	
+	// 将<cache>节点的size属性设置为OffHeapCache的缓存项个数上限，同时配置了<property name="size">时以<property>为准
+	private void setOffHeapSize(OffHeapCache cache) {
+		if (size != null && (properties == null || !properties.containsKey("size"))) {
+			cache.setSize(size);
+		}
+	}
+	
+	// 添加按字节数清理缓存的装饰器
+	private Cache setWeightedDecorator(Cache cache) {
+		boolean hasMaxBytes = maxBytes != null && maxBytes > 0;
+		if (!hasMaxBytes && memoryBudget == null) {
+			return cache;
+		}
+		for (Class<? extends Cache> decorator : decorators) {
+			// ConcurrentLruCache等自己保存缓存项，不会经过被装饰的Cache对象，无法统计字节数
+			if (ConcurrentCache.class.isAssignableFrom(decorator)) {
+				throw new CacheException("Cache " + id + " cannot use a byte budget with eviction " + decorator.getName()
+						+ " because it does not store entries in the decorated cache.");
+			}
+		}
+		WeightedCache weightedCache = new WeightedCache(cache);
+		if (hasMaxBytes) {
+			weightedCache.setMaxBytes(maxBytes);
+		}
+		weightedCache.setMemoryBudget(memoryBudget);
+		return weightedCache;
+	}
+	
 	// 根据CacheBuilder构造方法传入的<Cache>节点的属性值，添加相应的装饰器
-	private Cache setStandardDecorators(Cache cache) {
+	// 淘汰策略本身可以被并发访问(例如ConcurrentLruCache)时，不再添加SynchronizedCache
+	// 按字节数清理且缓存值不序列化时，在最外层添加SizeEstimatingCache，在获取锁之前估算字节数
+	private Cache setStandardDecorators(Cache cache, boolean weighted) {
 		try {
+			boolean concurrent = cache instanceof ConcurrentCache;
 			MetaObject metaCache = SystemMetaObject.forObject(cache);
 			if (size != null && metaCache.hasSetter("size")) {
 				metaCache.setValue("size", size);
@@ -200,10 +262,15 @@ public class CacheBuilder {
 				cache = new SerializedCache(cache);
 			}
 			cache = new LoggingCache(cache);
-			cache = new SynchronizedCache(cache);   // 同步跟阻塞加在一起了，是不是没有必要？
+			if (!concurrent) {
+				cache = new SynchronizedCache(cache);   // 同步跟阻塞加在一起了，是不是没有必要？
+			}
 			if (blocking) {
 				cache = new BlockingCache(cache);
 			}
+			if (weighted && !readWrite) {
+				cache = new SizeEstimatingCache(cache);
+			}
 			return cache;
 		} catch (Exception e) {
 			throw new CacheException("Error building standard cache decorators.  Cause: " + e, e);
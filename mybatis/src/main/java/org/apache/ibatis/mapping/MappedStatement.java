@@ -1,9 +1,19 @@
 package org.apache.ibatis.mapping;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
+import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.executor.keygen.NoKeyGenerator;
+import org.apache.ibatis.executor.resultset.RowMappingPlan;
 import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.scripting.LanguageDriver;
 import org.apache.ibatis.session.Configuration;
 
 /**
@@ -11,6 +21,8 @@ import org.apache.ibatis.session.Configuration;
  */
 public final class MappedStatement {
 
+	private static final int MAX_ROW_MAPPING_PLANS = 64;
+
 	private String resource;				// 节点的id属性（包括命名空间前缀）
 	private Configuration configuration;    
 	private String id;
@@ -20,25 +32,172 @@ public final class MappedStatement {
 	private ResultSetType resultSetType;
 	private SqlSource sqlSource;            // SqlSource对象，对应一条SQL语句
 	private Cache cache;                    // Sql查询结果缓存
+	private ParameterMap parameterMap;      // 参数映射，未配置<parameterMap>时为空的ParameterMap
 	
 	private List<ResultMap> resultMaps;
 	private boolean flushCacheRequired;
 	private boolean useCache;
 	private boolean resultOrdered;
 	private SqlCommandType sqlCommandType;
+	private KeyGenerator keyGenerator;      // 主键生成器，insert语句执行前后用于获取主键
 	
 	private String[] keyProperties;
 	private String[] keyColumns;
 	private boolean hasNestedResultMaps;
 	private String databaseId;
 	private Log statementLog;
+	private LanguageDriver lang;
 	
 	private String[] resultSets;
 	
+	// 编译好的行映射计划，key是ResultMap的id、结果对象类型和结果集的列签名
+	private final ConcurrentMap<String, RowMappingPlan> rowMappingPlans = new ConcurrentHashMap<String, RowMappingPlan>();
+	
 	MappedStatement() {}
 	
 	public static class Builder {
 		private MappedStatement mappedStatement = new MappedStatement();
+		
+		public Builder(Configuration configuration, String id, SqlSource sqlSource, SqlCommandType sqlCommandType) {
+			mappedStatement.configuration = configuration;
+			mappedStatement.id = id;
+			mappedStatement.sqlSource = sqlSource;
+			mappedStatement.statementType = StatementType.PREPARED;
+			mappedStatement.parameterMap = new ParameterMap.Builder(configuration, "defaultParameterMap", null, new ArrayList<ParameterMapping>()).build();
+			mappedStatement.resultMaps = new ArrayList<ResultMap>();
+			mappedStatement.sqlCommandType = sqlCommandType;
+			// 开启useGeneratedKeys时，insert语句默认使用JDBC的getGeneratedKeys()获取主键
+			mappedStatement.keyGenerator = configuration.isUseGeneratedKeys() && SqlCommandType.INSERT.equals(sqlCommandType)
+					? Jdbc3KeyGenerator.INSTANCE : NoKeyGenerator.INSTANCE;
+			String logId = id;
+			if (configuration.getLogPrefix() != null) {
+				logId = configuration.getLogPrefix() + id;
+			}
+			mappedStatement.statementLog = LogFactory.getLog(logId);
+			mappedStatement.lang = configuration.getDefaultScriptingLanuageInstance();
+		}
+		
+		public Builder resource(String resource) {
+			mappedStatement.resource = resource;
+			return this;
+		}
+		
+		public String id() {
+			return mappedStatement.id;
+		}
+		
+		public Builder parameterMap(ParameterMap parameterMap) {
+			mappedStatement.parameterMap = parameterMap;
+			return this;
+		}
+		
+		public Builder resultMaps(List<ResultMap> resultMaps) {
+			mappedStatement.resultMaps = resultMaps;
+			for (ResultMap resultMap : resultMaps) {
+				mappedStatement.hasNestedResultMaps = mappedStatement.hasNestedResultMaps || resultMap.hasNestedResultMaps();
+			}
+			return this;
+		}
+		
+		public Builder fetchSize(Integer fetchSize) {
+			mappedStatement.fetchSize = fetchSize;
+			return this;
+		}
+		
+		public Builder timeout(Integer timeout) {
+			mappedStatement.timeout = timeout;
+			return this;
+		}
+		
+		public Builder statementType(StatementType statementType) {
+			mappedStatement.statementType = statementType;
+			return this;
+		}
+		
+		public Builder resultSetType(ResultSetType resultSetType) {
+			mappedStatement.resultSetType = resultSetType;
+			return this;
+		}
+		
+		public Builder cache(Cache cache) {
+			mappedStatement.cache = cache;
+			return this;
+		}
+		
+		public Builder flushCacheRequired(boolean flushCacheRequired) {
+			mappedStatement.flushCacheRequired = flushCacheRequired;
+			return this;
+		}
+		
+		public Builder useCache(boolean useCache) {
+			mappedStatement.useCache = useCache;
+			return this;
+		}
+		
+		public Builder resultOrdered(boolean resultOrdered) {
+			mappedStatement.resultOrdered = resultOrdered;
+			return this;
+		}
+		
+		public Builder keyGenerator(KeyGenerator keyGenerator) {
+			mappedStatement.keyGenerator = keyGenerator;
+			return this;
+		}
+		
+		public Builder keyProperty(String keyProperty) {
+			mappedStatement.keyProperties = delimitedStringToArray(keyProperty);
+			return this;
+		}
+		
+		public Builder keyColumn(String keyColumn) {
+			mappedStatement.keyColumns = delimitedStringToArray(keyColumn);
+			return this;
+		}
+		
+		public Builder databaseId(String databaseId) {
+			mappedStatement.databaseId = databaseId;
+			return this;
+		}
+		
+		public Builder lang(LanguageDriver driver) {
+			mappedStatement.lang = driver;
+			return this;
+		}
+		
+		public Builder resultSets(String resultSet) {
+			mappedStatement.resultSets = delimitedStringToArray(resultSet);
+			return this;
+		}
+		
+		public MappedStatement build() {
+			assert mappedStatement.configuration != null;
+			assert mappedStatement.id != null;
+			assert mappedStatement.sqlSource != null;
+			assert mappedStatement.lang != null;
+			mappedStatement.resultMaps = Collections.unmodifiableList(mappedStatement.resultMaps);
+			return mappedStatement;
+		}
+	}
+	
+	/**
+	 * 获取绑定了实参的BoundSql对象
+	 * 如果SqlSource没有解析出参数映射(例如使用了<parameterMap>)，则使用ParameterMap中配置的参数映射
+	 */
+	public BoundSql getBoundSql(Object parameterObject) {
+		BoundSql boundSql = sqlSource.getBoundSql(parameterObject);
+		List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+		if (parameterMappings == null || parameterMappings.isEmpty()) {
+			boundSql = new BoundSql(configuration, boundSql.getSql(), parameterMap.getParameterMappings(), parameterObject);
+		}
+		return boundSql;
+	}
+	
+	private static String[] delimitedStringToArray(String in) {
+		if (in == null || in.trim().length() == 0) {
+			return null;
+		} else {
+			return in.split(",");
+		}
 	}
 	
 	public SqlCommandType getSqlCommandType() {
@@ -61,6 +220,26 @@ public final class MappedStatement {
 	    return hasNestedResultMaps;
 	}
 
+	public SqlSource getSqlSource() {
+	    return sqlSource;
+	}
+	
+	public Cache getCache() {
+	    return cache;
+	}
+	
+	public ParameterMap getParameterMap() {
+	    return parameterMap;
+	}
+	
+	public KeyGenerator getKeyGenerator() {
+	    return keyGenerator;
+	}
+	
+	public LanguageDriver getLang() {
+	    return lang;
+	}
+
 	public Integer getFetchSize() {
 	    return fetchSize;
 	}
@@ -111,5 +290,21 @@ public final class MappedStatement {
 	
 	public String[] getResultSets() {
 	    return resultSets;
-	}	
+	}
+	
+	public RowMappingPlan getRowMappingPlan(String key) {
+		return rowMappingPlans.get(key);
+	}
+	
+	/**
+	 * 缓存映射计划，已经有其他线程缓存了同一个key时返回已缓存的计划
+	 * 同一个语句的列签名一般只有几种，超过MAX_ROW_MAPPING_PLANS时不再缓存，避免动态SQL返回的列不断变化时无限增长
+	 */
+	public RowMappingPlan addRowMappingPlan(String key, RowMappingPlan plan) {
+		if (rowMappingPlans.size() >= MAX_ROW_MAPPING_PLANS) {
+			return plan;
+		}
+		RowMappingPlan existing = rowMappingPlans.putIfAbsent(key, plan);
+		return existing != null ? existing : plan;
+	}
 }
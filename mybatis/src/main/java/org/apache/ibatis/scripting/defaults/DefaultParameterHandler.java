@@ -0,0 +1,123 @@
+package org.apache.ibatis.scripting.defaults;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.TypeException;
+import org.apache.ibatis.type.TypeHandler;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+
+/**
+ * ParameterHandler的默认实现，按BoundSql中的参数映射依次获取实参值，通过TypeHandler绑定到"?"占位符上
+ */
+public class DefaultParameterHandler implements ParameterHandler {
+
+	private final TypeHandlerRegistry typeHandlerRegistry;
+	
+	private final MappedStatement mappedStatement;
+	private final Object parameterObject;    // 传入的实参对象
+	private BoundSql boundSql;
+	private Configuration configuration;
+	private long estimatedParameterSize;     // 最近一次setParameters()绑定的实参估算的字节数
+	
+	public DefaultParameterHandler(MappedStatement mappedStatement, Object parameterObject, BoundSql boundSql) {
+		this.mappedStatement = mappedStatement;
+		this.configuration = mappedStatement.getConfiguration();
+		this.typeHandlerRegistry = mappedStatement.getConfiguration().getTypeHandlerRegistry();
+		this.parameterObject = parameterObject;
+		this.boundSql = boundSql;
+	}
+	
+	@Override
+	public Object setParameterObject() {
+		return parameterObject;
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Override
+	public void setParameters(PreparedStatement ps) throws SQLException {
+		List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+		long size = 0;
+		if (parameterMappings != null) {
+			for (int i = 0; i < parameterMappings.size(); i++) {
+				ParameterMapping parameterMapping = parameterMappings.get(i);
+				// 存储过程的输出参数不需要绑定
+				if (parameterMapping.getMode() != ParameterMode.OUT) {
+					Object value;
+					String propertyName = parameterMapping.getProperty();
+					if (boundSql.hasAdditionalParameter(propertyName)) {
+						// 动态SQL中<bind>、<foreach>等节点产生的参数
+						value = boundSql.getAdditionalParameter(propertyName);
+					} else if (parameterObject == null) {
+						value = null;
+					} else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
+						// 实参可以直接通过TypeHandler绑定，例如String、Integer
+						value = parameterObject;
+					} else {
+						// 实参是JavaBean或Map，按属性名获取
+						MetaObject metaObject = configuration.newMetaObject(parameterObject);
+						value = metaObject.getValue(propertyName);
+					}
+					size += estimateSize(value);
+					TypeHandler typeHandler = parameterMapping.getTypeHandler();
+					JdbcType jdbcType = parameterMapping.getJdbcType();
+					if (value == null && jdbcType == null) {
+						jdbcType = configuration.getJdbcTypeForNull();
+					}
+					try {
+						typeHandler.setParameter(ps, i + 1, value, jdbcType);
+					} catch (TypeException e) {
+						throw new TypeException("Could not set parameters for mapping: " + parameterMapping + ". Cause: " + e, e);
+					} catch (SQLException e) {
+						throw new TypeException("Could not set parameters for mapping: " + parameterMapping + ". Cause: " + e, e);
+					}
+				}
+			}
+		}
+		estimatedParameterSize = size;
+	}
+	
+	/**
+	 * 估算一个实参在驱动中占用的字节数，用于BATCH执行器按字节数自动执行批处理
+	 * 只需要数量级正确: 字符串按UTF-16计算，流和未知类型按固定值计算
+	 */
+	public static long estimateSize(Object value) {
+		if (value == null) {
+			return 1;
+		} else if (value instanceof CharSequence) {
+			return 2L * ((CharSequence) value).length();
+		} else if (value instanceof byte[]) {
+			return ((byte[]) value).length;
+		} else if (value instanceof char[]) {
+			return 2L * ((char[]) value).length;
+		} else if (value instanceof Boolean || value instanceof Byte) {
+			return 1;
+		} else if (value instanceof Short || value instanceof Character) {
+			return 2;
+		} else if (value instanceof Integer || value instanceof Float) {
+			return 4;
+		} else if (value instanceof Long || value instanceof Double || value instanceof Date) {
+			return 8;
+		} else {
+			return 16;
+		}
+	}
+	
+	public long getEstimatedParameterSize() {
+		return estimatedParameterSize;
+	}
+	
+	public MappedStatement getMappedStatement() {
+		return mappedStatement;
+	}
+}
@@ -6,6 +6,7 @@ import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.SqlSource;
 import org.apache.ibatis.parsing.XNode;
 import org.apache.ibatis.scripting.LanguageDriver;
+import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
 import org.apache.ibatis.session.Configuration;
 
 public class XMLLanguageDriver implements LanguageDriver {
@@ -13,8 +14,7 @@ public class XMLLanguageDriver implements LanguageDriver {
 	@Override
 	public ParameterHandler createParameterHandler(MappedStatement mappedStatement, Object parameterObject,
 			BoundSql boundSql) {
-		// TODO Auto-generated method stub
-		return null;
+		return new DefaultParameterHandler(mappedStatement, parameterObject, boundSql);
 	}
 
 	@Override
@@ -0,0 +1,54 @@
+package org.apache.ibatis.session;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步执行SQL语句的会话，所有方法立即返回CompletableFuture
+ * 与SqlSession不同，AsyncSqlSession是线程安全的，可以在整个应用中共享:
+ * 每次调用都在线程池中打开一个新的SqlSession执行，正常完成时提交，出现异常时回滚，所以每次调用是一个独立的事务
+ * 相互独立的多个查询可以同时发出，总耗时取决于最慢的一个，而不是所有查询耗时之和
+ */
+public interface AsyncSqlSession extends Closeable {
+
+	<T> CompletableFuture<T> selectOne(String statement);
+	
+	<T> CompletableFuture<T> selectOne(String statement, Object parameter);
+	
+	<E> CompletableFuture<List<E>> selectList(String statement);
+	
+	<E> CompletableFuture<List<E>> selectList(String statement, Object parameter);
+	
+	<E> CompletableFuture<List<E>> selectList(String statement, Object parameter, RowBounds rowBounds);
+	
+	<K, V> CompletableFuture<Map<K, V>> selectMap(String statement, Object parameter, String mapKey);
+	
+	CompletableFuture<Integer> insert(String statement);
+	
+	CompletableFuture<Integer> insert(String statement, Object parameter);
+	
+	CompletableFuture<Integer> update(String statement);
+	
+	CompletableFuture<Integer> update(String statement, Object parameter);
+	
+	CompletableFuture<Integer> delete(String statement);
+	
+	CompletableFuture<Integer> delete(String statement, Object parameter);
+	
+	// 在一个新的SqlSession中执行多个操作，它们属于同一个事务
+	<T> CompletableFuture<T> execute(SqlSessionCallback<T> callback);
+	
+	/**
+	 * 获取异步执行的Mapper代理对象
+	 * 返回值为CompletableFuture的方法立即返回，其他方法阻塞等待执行完成；不支持返回Cursor的方法
+	 */
+	<T> T getMapper(Class<T> type);
+	
+	Configuration getConfiguration();
+	
+	// 关闭默认创建的线程池，通过构造方法传入的线程池由调用者负责关闭
+	@Override
+	void close();
+}
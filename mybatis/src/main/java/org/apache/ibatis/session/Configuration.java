@@ -8,19 +8,39 @@ import java.util.LinkedList;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ibatis.binding.MapperRegistry;
 import org.apache.ibatis.builder.CacheRefResolver;
 import org.apache.ibatis.builder.xml.XMLStatementBuilder;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMemoryBudget;
+import org.apache.ibatis.cache.decorators.ConcurrentLruCache;
 import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.SoftCache;
+import org.apache.ibatis.cache.decorators.TinyLfuCache;
 import org.apache.ibatis.cache.decorators.WeakCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.BatchStatistics;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ReuseExecutor;
+import org.apache.ibatis.executor.SimpleExecutor;
 import org.apache.ibatis.executor.loader.ProxyFactory;
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
+import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.executor.statement.RoutingStatementHandler;
+import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.io.VFS;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
@@ -31,6 +51,7 @@ import org.apache.ibatis.logging.log4j2.Log4j2Impl;
 import org.apache.ibatis.logging.nologging.NoLoggingImpl;
 import org.apache.ibatis.logging.slf4j.Slf4jImpl;
 import org.apache.ibatis.logging.stdout.StdOutImpl;
+import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.Environment;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMap;
@@ -47,8 +68,10 @@ import org.apache.ibatis.scripting.LanguageDriver;
 import org.apache.ibatis.scripting.LanguageDriverRegistry;
 import org.apache.ibatis.scripting.defaults.RawSqlSource;
 import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
+import org.apache.ibatis.transaction.Transaction;
 import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
 import org.apache.ibatis.transaction.managed.ManagedTransactionFactory;
+import org.apache.ibatis.transaction.routing.ReadWriteRoutingTransactionFactory;
 import org.apache.ibatis.type.TypeAliasRegistry;
 import org.apache.ibatis.type.TypeHandlerRegistry;
 import org.apache.ibatis.type.JdbcType;
@@ -63,6 +86,8 @@ public class Configuration {
 	// (1) 布尔型
 	protected boolean aggressiveLazyLoading = true;	     // 对任意有延迟属性的调用会使带有延迟加载属性的对象完整加载
 	protected boolean cacheEnabled = true;               // 映射器缓存配置的全局开关
+	protected Long cacheMaxBytes;                        // 所有命名空间的二级缓存估算的字节数之和的上限，为空时不限制
+	protected CacheMemoryBudget cacheMemoryBudget;       // 根据cacheMaxBytes创建的共享预算
 	protected boolean callSettersOnNulls = false;        // 指定当结果集中值为null时，是否调用映射对象的setter方法
 	protected boolean lazyLoadingEnabled = false;	     // 关联对象延迟加载的全局开关
 	protected boolean mapUnderscoreToCamelCase = false;  // 是否开启自动驼峰命名规则映射
@@ -86,6 +111,12 @@ public class Configuration {
 	protected Class <? extends VFS> vfsImpl;             // 指定VFS的实现类
 	protected Integer defaultStatementTimeout;           // 设置超时时间，它决定驱动等待数据库响应的秒数
 	protected Integer defaultFetchSize;                  // 设置数据库驱动程序默认返回的条数限制，此参数可以重新设置
+	protected Integer batchFlushStatements;              // BATCH执行器缓存的语句达到该条数时自动执行批处理，为空时不限制
+	protected Long batchFlushBytes;                      // BATCH执行器估算的参数字节数达到该值时自动执行批处理，为空时不限制
+	protected Long batchFlushLingerTime;                 // BATCH执行器缓存第一条语句后超过该毫秒数时自动执行批处理，为空时不限制
+	protected boolean pipelinedResultMapping = false;    // 是否由工作线程映射结果对象，执行查询的线程只负责读取行
+	protected Integer resultMappingThreads;              // 映射结果对象的工作线程数，为空时为CPU核数
+	protected Integer resultMappingQueueSize;            // 每个结果集已读取但还没有交付的行数上限，为空时为工作线程数的16倍
 	protected Set<String> lazyLoadTriggerMethods =       // 指定哪个对象的方法触发一次延迟加载
 			  new HashSet<String>(Arrays.asList(new String[] { "equals", "clone", "hashCode", "toString" })); 
 	
@@ -102,6 +133,10 @@ public class Configuration {
 	protected final TypeAliasRegistry typeAliasRegistry = new TypeAliasRegistry();          // 类型别名注册中心
 	protected final LanguageDriverRegistry languageRegistry = new LanguageDriverRegistry(); // LanguageDriver注册中心
 	
+	protected final BatchStatistics batchStatistics = new BatchStatistics();              // 所有BATCH执行器共享的批处理统计信息
+	protected volatile ExecutorService resultMappingExecutor;                          // 映射结果对象的工作线程池，第一次使用时创建
+	protected boolean resultMappingExecutorCreated;                                   // resultMappingExecutor是否由Configuration创建，只关闭自己创建的线程池
+	
 	protected final Map<String, MappedStatement> mappedStatements = new StrictMap<MappedStatement>("Mapped Statements collection");
 	protected final Map<String, Cache> caches = new StrictMap<Cache>("Caches collection");  // 记录Cache id与Cache对象之间的对应关系
 	protected final Map<String, String> cacheRefMap = new HashMap<String, String>();        // key是<cache-ref> 节点所在的namespace，value是节点的namespace属性指定的namespace
@@ -116,14 +151,18 @@ public class Configuration {
 	public Configuration() {
 	    typeAliasRegistry.registerAlias("JDBC", JdbcTransactionFactory.class);
 	    typeAliasRegistry.registerAlias("MANAGED", ManagedTransactionFactory.class);
+	    typeAliasRegistry.registerAlias("READ_WRITE_ROUTING", ReadWriteRoutingTransactionFactory.class);
 
 	    //typeAliasRegistry.registerAlias("JNDI", JndiDataSourceFactory.class);
 	    typeAliasRegistry.registerAlias("POOLED", PooledDataSourceFactory.class);
 	    typeAliasRegistry.registerAlias("UNPOOLED", UnpooledDataSourceFactory.class);
 
 	    typeAliasRegistry.registerAlias("PERPETUAL", PerpetualCache.class);
+	    typeAliasRegistry.registerAlias("OFF_HEAP", OffHeapCache.class);
 	    typeAliasRegistry.registerAlias("FIFO", FifoCache.class);
 	    typeAliasRegistry.registerAlias("LRU", LruCache.class);
+	    typeAliasRegistry.registerAlias("CONCURRENT_LRU", ConcurrentLruCache.class);
+	    typeAliasRegistry.registerAlias("TINYLFU", TinyLfuCache.class);
 	    typeAliasRegistry.registerAlias("SOFT", SoftCache.class);
 	    typeAliasRegistry.registerAlias("WEAK", WeakCache.class);
 
@@ -174,6 +213,22 @@ public class Configuration {
 		this.cacheEnabled = cacheEnabled;
 	}
 
+	public Long getCacheMaxBytes() {
+		return cacheMaxBytes;
+	}
+
+	/**
+	 * 需要在解析映射文件之前设置，之后创建的二级缓存才会使用该预算
+	 */
+	public void setCacheMaxBytes(Long cacheMaxBytes) {
+		this.cacheMaxBytes = cacheMaxBytes;
+		this.cacheMemoryBudget = cacheMaxBytes != null && cacheMaxBytes > 0 ? new CacheMemoryBudget(cacheMaxBytes) : null;
+	}
+
+	public CacheMemoryBudget getCacheMemoryBudget() {
+		return cacheMemoryBudget;
+	}
+
 	public boolean isCallSettersOnNulls() {
 		return callSettersOnNulls;
 	}
@@ -298,6 +353,101 @@ public class Configuration {
 		this.defaultFetchSize = defaultFetchSize;
 	}
 	
+	public Integer getBatchFlushStatements() {
+		return batchFlushStatements;
+	}
+
+	public void setBatchFlushStatements(Integer batchFlushStatements) {
+		this.batchFlushStatements = batchFlushStatements;
+	}
+
+	public Long getBatchFlushBytes() {
+		return batchFlushBytes;
+	}
+
+	public void setBatchFlushBytes(Long batchFlushBytes) {
+		this.batchFlushBytes = batchFlushBytes;
+	}
+
+	public Long getBatchFlushLingerTime() {
+		return batchFlushLingerTime;
+	}
+
+	public void setBatchFlushLingerTime(Long batchFlushLingerTime) {
+		this.batchFlushLingerTime = batchFlushLingerTime;
+	}
+	
+	public BatchStatistics getBatchStatistics() {
+		return batchStatistics;
+	}
+	
+	public boolean isPipelinedResultMapping() {
+		return pipelinedResultMapping;
+	}
+
+	public void setPipelinedResultMapping(boolean pipelinedResultMapping) {
+		this.pipelinedResultMapping = pipelinedResultMapping;
+	}
+
+	public Integer getResultMappingThreads() {
+		return resultMappingThreads;
+	}
+
+	public void setResultMappingThreads(Integer resultMappingThreads) {
+		this.resultMappingThreads = resultMappingThreads;
+	}
+
+	public Integer getResultMappingQueueSize() {
+		return resultMappingQueueSize;
+	}
+
+	public void setResultMappingQueueSize(Integer resultMappingQueueSize) {
+		this.resultMappingQueueSize = resultMappingQueueSize;
+	}
+	
+	/**
+	 * 映射结果对象的工作线程池，未设置时按resultMappingThreads创建守护线程组成的固定大小线程池，
+	 * 工作线程空闲一段时间后自动退出，不再使用时可以调用shutdownResultMappingExecutor()立即关闭
+	 */
+	public ExecutorService getResultMappingExecutor() {
+		// 双重检查，创建之后每一行的映射都不需要再获取锁
+		ExecutorService executor = resultMappingExecutor;
+		if (executor == null) {
+			synchronized (this) {
+				executor = resultMappingExecutor;
+				if (executor == null) {
+					int threads = resultMappingThreads != null && resultMappingThreads > 0
+							? resultMappingThreads : Runtime.getRuntime().availableProcessors();
+					ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+							new LinkedBlockingQueue<Runnable>(), new ResultMappingThreadFactory());
+					pool.allowCoreThreadTimeOut(true);
+					executor = pool;
+					resultMappingExecutor = executor;
+					resultMappingExecutorCreated = true;
+				}
+			}
+		}
+		return executor;
+	}
+	
+	// 由使用方提供的线程池，由使用方负责关闭
+	public synchronized void setResultMappingExecutor(ExecutorService resultMappingExecutor) {
+		this.resultMappingExecutor = resultMappingExecutor;
+		this.resultMappingExecutorCreated = false;
+	}
+	
+	/**
+	 * 关闭由Configuration创建的映射结果线程池，通过setResultMappingExecutor()设置的线程池不会被关闭
+	 * 关闭后再次使用时重新创建
+	 */
+	public synchronized void shutdownResultMappingExecutor() {
+		if (resultMappingExecutor != null && resultMappingExecutorCreated) {
+			resultMappingExecutor.shutdown();
+			resultMappingExecutor = null;
+			resultMappingExecutorCreated = false;
+		}
+	}
+	
 	public Set<String> getLazyLoadTriggerMethods() {
 		return lazyLoadTriggerMethods;
 	}
@@ -439,6 +589,10 @@ public class Configuration {
 		return mapperRegistry.getMapper(type, sqlSession);
 	}
 	
+	public <T> T getMapper(Class<T> type, AsyncSqlSession asyncSqlSession) {
+		return mapperRegistry.getMapper(type, asyncSqlSession);
+	}
+	
 	public boolean hasMapper(Class<?> type) {
 		return mapperRegistry.hasMapper(type);
 	}
@@ -517,6 +671,10 @@ public class Configuration {
 		return mappedStatements.containsKey(statementName);
 	}
 	
+	public void addMappedStatement(MappedStatement ms) {
+		mappedStatements.put(ms.getId(), ms);
+	}
+	
 	public MappedStatement getMappedStatement(String id) {
 		return this.getMappedStatement(id, true);
 	}
@@ -557,13 +715,61 @@ public class Configuration {
 	}
 	
 	public ObjectFactory getObjectFactory() {
-		return null;
+		return objectFactory;
 	}
 	
 	public MetaObject newMetaObject(Object object) {
 		return MetaObject.forObject(object, objectFactory, objectWrapperFactory, reflectorFactory);
 	}
 	
+	// 创建执行SQL语句的各个组件
+	// [start]
+	public ParameterHandler newParameterHandler(MappedStatement mappedStatement, Object parameterObject, BoundSql boundSql) {
+		return mappedStatement.getLang().createParameterHandler(mappedStatement, parameterObject, boundSql);
+	}
+	
+	public ResultSetHandler newResultSetHandler(Executor executor, MappedStatement mappedStatement, RowBounds rowBounds, ParameterHandler parameterHandler,
+			ResultHandler<?> resultHandler, BoundSql boundSql) {
+		return new DefaultResultSetHandler(executor, mappedStatement, parameterHandler, resultHandler, boundSql, rowBounds);
+	}
+	
+	public StatementHandler newStatementHandler(Executor executor, MappedStatement mappedStatement, Object parameterObject, RowBounds rowBounds,
+			ResultHandler<?> resultHandler, BoundSql boundSql) {
+		return new RoutingStatementHandler(executor, mappedStatement, parameterObject, rowBounds, resultHandler, boundSql);
+	}
+	
+	public Executor newExecutor(Transaction transaction) {
+		return newExecutor(transaction, defaultExecutorType);
+	}
+	
+	// 根据执行器类型创建对应的Executor，未指定时使用defaultExecutorType
+	public Executor newExecutor(Transaction transaction, ExecutorType executorType) {
+		executorType = executorType == null ? defaultExecutorType : executorType;
+		executorType = executorType == null ? ExecutorType.SIMPLE : executorType;
+		Executor executor;
+		if (ExecutorType.BATCH == executorType) {
+			executor = new BatchExecutor(this, transaction);
+		} else if (ExecutorType.REUSE == executorType) {
+			executor = new ReuseExecutor(this, transaction);
+		} else {
+			executor = new SimpleExecutor(this, transaction);
+		}
+		return executor;
+	}
+	// [end]
+	
+	// 映射结果的工作线程，静态内部类不持有Configuration的引用
+	private static class ResultMappingThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger();
+		
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "ResultMapping-worker-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+	
 	protected static class StrictMap<V> extends HashMap<String, V> {
 		
 		private static final long serialVersionUID = -7417525687823583926L;
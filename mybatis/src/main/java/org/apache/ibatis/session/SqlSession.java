@@ -6,6 +6,8 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.cursor.Flow;
+import org.apache.ibatis.executor.BatchResult;
 
 /**
  * 使用MyBatis时用到的主要的Java接口
@@ -50,11 +52,21 @@ public interface SqlSession extends Closeable {
 	
 	<T> Cursor<T> selectCursor(String statement, Object parameter, RowBounds rowBounds);
 	
-	void select(String statement, Object parameter, ResultHandler handler);
+	/**
+	 * 以Flow.Publisher的形式返回查询结果，订阅者请求数据时才打开游标并逐行读取，
+	 * 订阅完成、出错或取消时关闭语句。和Cursor一样，必须在会话关闭之前使用
+	 */
+	<T> Flow.Publisher<T> selectPublisher(String statement);
+	
+	<T> Flow.Publisher<T> selectPublisher(String statement, Object parameter);
+	
+	<T> Flow.Publisher<T> selectPublisher(String statement, Object parameter, RowBounds rowBounds);
+	
+	void select(String statement, Object parameter, ResultHandler<?> handler);
 	
-	void select(String statement, ResultHandler handler);
+	void select(String statement, ResultHandler<?> handler);
 	
-	void select(String statement, Object parameter, RowBounds rowBounds, ResultHandler handler);
+	void select(String statement, Object parameter, RowBounds rowBounds, ResultHandler<?> handler);
 	
 	int insert(String statement);
 	
@@ -72,7 +84,7 @@ public interface SqlSession extends Closeable {
 	
 	void commit(boolean force);
 	
-	List<Object> flushStatements();
+	List<BatchResult> flushStatements();
 	
 	void rollback();
 	
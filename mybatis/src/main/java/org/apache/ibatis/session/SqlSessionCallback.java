@@ -0,0 +1,10 @@
+package org.apache.ibatis.session;
+
+/**
+ * 在AsyncSqlSession为每次调用打开的SqlSession中执行的操作
+ * 操作正常返回时提交事务，抛出异常时回滚，之后关闭SqlSession
+ */
+public interface SqlSessionCallback<T> {
+
+	T doInSession(SqlSession session);
+}
@@ -0,0 +1,27 @@
+package org.apache.ibatis.session;
+
+import java.sql.Connection;
+
+/**
+ * 创建SqlSession的工厂，可以从数据源或已有的连接创建SqlSession
+ */
+public interface SqlSessionFactory {
+
+	SqlSession openSession();
+	
+	SqlSession openSession(boolean autoCommit);
+	
+	SqlSession openSession(Connection connection);
+	
+	SqlSession openSession(TransactionIsolationLevel level);
+	
+	SqlSession openSession(ExecutorType execType);
+	
+	SqlSession openSession(ExecutorType execType, boolean autoCommit);
+	
+	SqlSession openSession(ExecutorType execType, TransactionIsolationLevel level);
+	
+	SqlSession openSession(ExecutorType execType, Connection connection);
+	
+	Configuration getConfiguration();
+}
@@ -0,0 +1,66 @@
+package org.apache.ibatis.session;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Properties;
+
+import org.apache.ibatis.builder.xml.XMLConfigBuilder;
+import org.apache.ibatis.exceptions.ExceptionFactory;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
+
+/**
+ * 解析mybatis-config.xml配置文件，创建SqlSessionFactory
+ */
+public class SqlSessionFactoryBuilder {
+
+	public SqlSessionFactory build(Reader reader) {
+		return build(reader, null, null);
+	}
+	
+	public SqlSessionFactory build(Reader reader, String environment) {
+		return build(reader, environment, null);
+	}
+	
+	public SqlSessionFactory build(Reader reader, String environment, Properties properties) {
+		try {
+			XMLConfigBuilder parser = new XMLConfigBuilder(reader, environment, properties);
+			return build(parser.parse());
+		} catch (Exception e) {
+			throw ExceptionFactory.wrapException("Error building SqlSession.", e);
+		} finally {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				// Intentionally ignore. Prefer previous error.
+			}
+		}
+	}
+	
+	public SqlSessionFactory build(InputStream inputStream) {
+		return build(inputStream, null, null);
+	}
+	
+	public SqlSessionFactory build(InputStream inputStream, String environment) {
+		return build(inputStream, environment, null);
+	}
+	
+	public SqlSessionFactory build(InputStream inputStream, String environment, Properties properties) {
+		try {
+			XMLConfigBuilder parser = new XMLConfigBuilder(inputStream, environment, properties);
+			return build(parser.parse());
+		} catch (Exception e) {
+			throw ExceptionFactory.wrapException("Error building SqlSession.", e);
+		} finally {
+			try {
+				inputStream.close();
+			} catch (IOException e) {
+				// Intentionally ignore. Prefer previous error.
+			}
+		}
+	}
+	
+	public SqlSessionFactory build(Configuration config) {
+		return new DefaultSqlSessionFactory(config);
+	}
+}
@@ -0,0 +1,261 @@
+package org.apache.ibatis.session.defaults;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.routing.ReadWriteRoutingDataSource;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.AsyncSqlSession;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionCallback;
+import org.apache.ibatis.session.SqlSessionFactory;
+
+/**
+ * AsyncSqlSession的默认实现，每次调用都通过SqlSessionFactory打开一个新的SqlSession，在线程池中执行
+ * 未指定线程池时:
+ * 1) 运行在支持虚拟线程的JDK(21及以上)时，每个调用使用一个虚拟线程，等待连接池的空闲连接时不占用平台线程
+ * 2) 否则使用线程数不超过连接池最大活动连接数的线程池，多出来的调用在队列中等待，而不是占用线程阻塞在连接池上
+ * 两种情况下同时获取连接的调用数都由连接池限制
+ */
+public class DefaultAsyncSqlSession implements AsyncSqlSession {
+
+	private static final Log log = LogFactory.getLog(DefaultAsyncSqlSession.class);
+	
+	private final SqlSessionFactory sqlSessionFactory;
+	private final ExecutorType executorType;       // 每次调用打开的SqlSession使用的执行器类型
+	private final Executor executor;               // 执行调用的线程池
+	private final ExecutorService ownedExecutor;   // 默认创建的线程池，close()时关闭
+	
+	public DefaultAsyncSqlSession(SqlSessionFactory sqlSessionFactory) {
+		this(sqlSessionFactory, null, null);
+	}
+	
+	public DefaultAsyncSqlSession(SqlSessionFactory sqlSessionFactory, Executor executor) {
+		this(sqlSessionFactory, null, executor);
+	}
+	
+	public DefaultAsyncSqlSession(SqlSessionFactory sqlSessionFactory, ExecutorType executorType, Executor executor) {
+		this.sqlSessionFactory = sqlSessionFactory;
+		this.executorType = executorType == null ? sqlSessionFactory.getConfiguration().getDefaultExecutorType() : executorType;
+		if (executor == null) {
+			this.ownedExecutor = createDefaultExecutor(sqlSessionFactory.getConfiguration());
+			this.executor = ownedExecutor;
+		} else {
+			this.ownedExecutor = null;
+			this.executor = executor;
+		}
+	}
+	
+	// 查询
+	// [start]
+	@Override
+	public <T> CompletableFuture<T> selectOne(String statement) {
+		return selectOne(statement, null);
+	}
+
+	@Override
+	public <T> CompletableFuture<T> selectOne(final String statement, final Object parameter) {
+		return execute(new SqlSessionCallback<T>() {
+			@Override
+			public T doInSession(SqlSession session) {
+				return session.<T>selectOne(statement, parameter);
+			}
+		});
+	}
+
+	@Override
+	public <E> CompletableFuture<List<E>> selectList(String statement) {
+		return selectList(statement, null, RowBounds.DEFAULT);
+	}
+
+	@Override
+	public <E> CompletableFuture<List<E>> selectList(String statement, Object parameter) {
+		return selectList(statement, parameter, RowBounds.DEFAULT);
+	}
+
+	@Override
+	public <E> CompletableFuture<List<E>> selectList(final String statement, final Object parameter, final RowBounds rowBounds) {
+		return execute(new SqlSessionCallback<List<E>>() {
+			@Override
+			public List<E> doInSession(SqlSession session) {
+				return session.<E>selectList(statement, parameter, rowBounds);
+			}
+		});
+	}
+
+	@Override
+	public <K, V> CompletableFuture<Map<K, V>> selectMap(final String statement, final Object parameter, final String mapKey) {
+		return execute(new SqlSessionCallback<Map<K, V>>() {
+			@Override
+			public Map<K, V> doInSession(SqlSession session) {
+				return session.<K, V>selectMap(statement, parameter, mapKey);
+			}
+		});
+	}
+	// [end]
+	
+	// 更新，insert和delete都通过update()完成
+	// [start]
+	@Override
+	public CompletableFuture<Integer> insert(String statement) {
+		return update(statement, null);
+	}
+
+	@Override
+	public CompletableFuture<Integer> insert(String statement, Object parameter) {
+		return update(statement, parameter);
+	}
+
+	@Override
+	public CompletableFuture<Integer> update(String statement) {
+		return update(statement, null);
+	}
+
+	@Override
+	public CompletableFuture<Integer> update(final String statement, final Object parameter) {
+		return execute(new SqlSessionCallback<Integer>() {
+			@Override
+			public Integer doInSession(SqlSession session) {
+				return session.update(statement, parameter);
+			}
+		});
+	}
+
+	@Override
+	public CompletableFuture<Integer> delete(String statement) {
+		return update(statement, null);
+	}
+
+	@Override
+	public CompletableFuture<Integer> delete(String statement, Object parameter) {
+		return update(statement, parameter);
+	}
+	// [end]
+	
+	/**
+	 * 在线程池中打开新的SqlSession执行callback，正常返回时提交，抛出异常时关闭会话(回滚未提交的更新)
+	 * 任务开始执行之前future已经被取消时，不再打开SqlSession
+	 */
+	@Override
+	public <T> CompletableFuture<T> execute(final SqlSessionCallback<T> callback) {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					if (future.isDone()) {
+						return;
+					}
+					SqlSession session = null;
+					try {
+						session = sqlSessionFactory.openSession(executorType);
+						T result = callback.doInSession(session);
+						session.commit();
+						future.complete(result);
+					} catch (Throwable t) {
+						future.completeExceptionally(t);
+					} finally {
+						if (session != null) {
+							session.close();
+						}
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	@Override
+	public <T> T getMapper(Class<T> type) {
+		return getConfiguration().<T>getMapper(type, this);
+	}
+
+	@Override
+	public Configuration getConfiguration() {
+		return sqlSessionFactory.getConfiguration();
+	}
+	
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	@Override
+	public void close() {
+		if (ownedExecutor != null) {
+			ownedExecutor.shutdown();
+		}
+	}
+	
+	// 创建默认的线程池，优先使用虚拟线程
+	private static ExecutorService createDefaultExecutor(Configuration configuration) {
+		try {
+			// 源码需要兼容JDK 8，只能通过反射调用Executors.newVirtualThreadPerTaskExecutor()
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (NoSuchMethodException e) {
+			// JDK 21之前没有虚拟线程
+		} catch (Exception e) {
+			log.debug("Could not create a virtual thread executor, falling back to a platform thread pool. Cause: " + e);
+		}
+		int threads = getMaximumConnections(configuration);
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+					
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "AsyncSqlSession-worker-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+	
+	// 连接池最多能同时取出的连接数，线程数超过它时多出的线程只会阻塞在连接池上
+	private static int getMaximumConnections(Configuration configuration) {
+		Environment environment = configuration.getEnvironment();
+		DataSource dataSource = environment == null ? null : environment.getDataSource();
+		if (dataSource instanceof PooledDataSource) {
+			return getMaximumConnections((PooledDataSource) dataSource);
+		} else if (dataSource instanceof ReadWriteRoutingDataSource) {
+			ReadWriteRoutingDataSource routing = (ReadWriteRoutingDataSource) dataSource;
+			int connections = getMaximumConnections(routing.getPrimary());
+			for (int i = 0; i < routing.getReplicaCount(); i++) {
+				connections += getMaximumConnections(routing.getReplica(i));
+			}
+			return connections;
+		}
+		return Runtime.getRuntime().availableProcessors() * 2;
+	}
+	
+	private static int getMaximumConnections(PooledDataSource dataSource) {
+		int connections = dataSource.getPoolMaximumActiveConnections();
+		if (dataSource.getPoolMaximumTotalConnections() > 0) {
+			connections = Math.min(connections, dataSource.getPoolMaximumTotalConnections());
+		}
+		return Math.max(1, connections);
+	}
+}
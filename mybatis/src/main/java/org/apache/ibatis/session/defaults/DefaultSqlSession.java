@@ -0,0 +1,353 @@
+package org.apache.ibatis.session.defaults;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.binding.BindingException;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.cursor.Flow;
+import org.apache.ibatis.cursor.defaults.CursorPublisher;
+import org.apache.ibatis.exceptions.ExceptionFactory;
+import org.apache.ibatis.exceptions.TooManyResultsException;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.result.DefaultMapResultHandler;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+
+/**
+ * SqlSession的默认实现，所有数据库操作都委托给Executor完成
+ * 该类不是线程安全的，每个线程(每次请求)应该使用自己的SqlSession
+ */
+public class DefaultSqlSession implements SqlSession {
+
+	private Configuration configuration;
+	private Executor executor;
+	
+	private boolean autoCommit;           // 是否自动提交
+	private boolean dirty;                // 是否执行过更新操作，决定提交或回滚时是否需要真正操作数据库
+	private List<Cursor<?>> cursorList;   // 记录打开的游标，关闭会话时一起关闭
+	
+	public DefaultSqlSession(Configuration configuration, Executor executor, boolean autoCommit) {
+		this.configuration = configuration;
+		this.executor = executor;
+		this.dirty = false;
+		this.autoCommit = autoCommit;
+	}
+	
+	public DefaultSqlSession(Configuration configuration, Executor executor) {
+		this(configuration, executor, false);
+	}
+	
+	// 查询
+	// [start]
+	@Override
+	public <T> T selectOne(String statement) {
+		return this.<T>selectOne(statement, null);
+	}
+
+	@Override
+	public <T> T selectOne(String statement, Object parameter) {
+		List<T> list = this.<T>selectList(statement, parameter);
+		if (list.size() == 1) {
+			return list.get(0);
+		} else if (list.size() > 1) {
+			throw new TooManyResultsException("Expected one result (or null) to be returned by selectOne(), but found: " + list.size());
+		} else {
+			return null;
+		}
+	}
+
+	@Override
+	public <E> List<E> selectList(String statement) {
+		return this.selectList(statement, null);
+	}
+
+	@Override
+	public <E> List<E> selectList(String statement, Object parameter) {
+		return this.selectList(statement, parameter, RowBounds.DEFAULT);
+	}
+
+	@Override
+	public <E> List<E> selectList(String statement, Object parameter, RowBounds rowBounds) {
+		try {
+			MappedStatement ms = configuration.getMappedStatement(statement);
+			return executor.query(ms, wrapCollection(parameter), rowBounds, Executor.NO_RESULT_HANDLER);
+		} catch (Exception e) {
+			throw ExceptionFactory.wrapException("Error querying database.", e);
+		}
+	}
+
+	@Override
+	public <K, V> Map<K, V> selectMap(String statement, String mapKey) {
+		return this.selectMap(statement, null, mapKey, RowBounds.DEFAULT);
+	}
+
+	@Override
+	public <K, V> Map<K, V> selectMap(String statement, Object parameter, String mapKey) {
+		return this.selectMap(statement, parameter, mapKey, RowBounds.DEFAULT);
+	}
+
+	// 查询得到列表后，以每个结果对象的mapKey属性作为key放入Map
+	@Override
+	public <K, V> Map<K, V> selectMap(String statement, Object parameter, String mapKey, RowBounds rowBounds) {
+		final List<? extends V> list = selectList(statement, parameter, rowBounds);
+		final DefaultMapResultHandler<K, V> mapResultHandler = new DefaultMapResultHandler<K, V>(mapKey,
+				configuration.getObjectFactory(), configuration.getObjectWrapperFactory(), configuration.getReflectorFactory());
+		final DefaultResultContext<V> context = new DefaultResultContext<V>();
+		for (V o : list) {
+			context.nextResultObject(o);
+			mapResultHandler.handleResult(context);
+		}
+		return mapResultHandler.getMappedResults();
+	}
+
+	@Override
+	public <T> Cursor<T> selectCursor(String statement) {
+		return selectCursor(statement, null);
+	}
+
+	@Override
+	public <T> Cursor<T> selectCursor(String statement, Object parameter) {
+		return selectCursor(statement, parameter, RowBounds.DEFAULT);
+	}
+
+	@Override
+	public <T> Cursor<T> selectCursor(String statement, Object parameter, RowBounds rowBounds) {
+		try {
+			MappedStatement ms = configuration.getMappedStatement(statement);
+			Cursor<T> cursor = executor.queryCursor(ms, wrapCollection(parameter), rowBounds);
+			registerCursor(cursor);
+			return cursor;
+		} catch (Exception e) {
+			throw ExceptionFactory.wrapException("Error querying database.", e);
+		}
+	}
+
+	@Override
+	public <T> Flow.Publisher<T> selectPublisher(String statement) {
+		return selectPublisher(statement, null);
+	}
+
+	@Override
+	public <T> Flow.Publisher<T> selectPublisher(String statement, Object parameter) {
+		return selectPublisher(statement, parameter, RowBounds.DEFAULT);
+	}
+
+	@Override
+	public <T> Flow.Publisher<T> selectPublisher(final String statement, final Object parameter, final RowBounds rowBounds) {
+		final Integer maxFetchSize;
+		try {
+			MappedStatement ms = configuration.getMappedStatement(statement);
+			// 语句配置的fetchSize作为按请求数调整fetchSize时的上限
+			maxFetchSize = ms.getFetchSize() != null ? ms.getFetchSize() : configuration.getDefaultFetchSize();
+		} catch (Exception e) {
+			throw ExceptionFactory.wrapException("Error querying database.", e);
+		}
+		return new CursorPublisher<T>(new CursorPublisher.CursorOpener<T>() {
+			@Override
+			public Cursor<T> open() {
+				return DefaultSqlSession.this.<T>selectCursor(statement, parameter, rowBounds);
+			}
+		}, maxFetchSize != null ? maxFetchSize : CursorPublisher.DEFAULT_MAX_FETCH_SIZE);
+	}
+
+	@Override
+	public void select(String statement, Object parameter, ResultHandler<?> handler) {
+		select(statement, parameter, RowBounds.DEFAULT, handler);
+	}
+
+	@Override
+	public void select(String statement, ResultHandler<?> handler) {
+		select(statement, null, RowBounds.DEFAULT, handler);
+	}
+
+	@Override
+	public void select(String statement, Object parameter, RowBounds rowBounds, ResultHandler<?> handler) {
+		try {
+			MappedStatement ms = configuration.getMappedStatement(statement);
+			executor.query(ms, wrapCollection(parameter), rowBounds, handler);
+		} catch (Exception e) {
+			throw ExceptionFactory.wrapException("Error querying database.", e);
+		}
+	}
+	// [end]
+	
+	// 更新，insert和delete都通过update()完成
+	// [start]
+	@Override
+	public int insert(String statement) {
+		return insert(statement, null);
+	}
+
+	@Override
+	public int insert(String statement, Object parameter) {
+		return update(statement, parameter);
+	}
+
+	@Override
+	public int update(String statement) {
+		return update(statement, null);
+	}
+
+	@Override
+	public int update(String statement, Object parameter) {
+		try {
+			dirty = true;
+			MappedStatement ms = configuration.getMappedStatement(statement);
+			return executor.update(ms, wrapCollection(parameter));
+		} catch (Exception e) {
+			throw ExceptionFactory.wrapException("Error updating database.", e);
+		}
+	}
+
+	@Override
+	public int delete(String statement) {
+		return update(statement, null);
+	}
+
+	@Override
+	public int delete(String statement, Object parameter) {
+		return update(statement, parameter);
+	}
+	// [end]
+	
+	// 事务
+	// [start]
+	@Override
+	public void commit() {
+		commit(false);
+	}
+
+	@Override
+	public void commit(boolean force) {
+		try {
+			executor.commit(isCommitOrRollbackRequired(force));
+			dirty = false;
+		} catch (Exception e) {
+			throw ExceptionFactory.wrapException("Error committing transaction.", e);
+		}
+	}
+
+	@Override
+	public List<BatchResult> flushStatements() {
+		try {
+			return executor.flushStatements();
+		} catch (Exception e) {
+			throw ExceptionFactory.wrapException("Error flushing statements.", e);
+		}
+	}
+
+	@Override
+	public void rollback() {
+		rollback(false);
+	}
+
+	@Override
+	public void rollback(boolean force) {
+		try {
+			executor.rollback(isCommitOrRollbackRequired(force));
+			dirty = false;
+		} catch (Exception e) {
+			throw ExceptionFactory.wrapException("Error rolling back transaction.", e);
+		}
+	}
+
+	// 关闭会话时，未提交的更新会被回滚
+	@Override
+	public void close() {
+		executor.close(isCommitOrRollbackRequired(false));
+		closeCursors();
+		dirty = false;
+	}
+	
+	// 非自动提交且执行过更新操作，或者强制提交/回滚时，才需要真正提交或回滚
+	private boolean isCommitOrRollbackRequired(boolean force) {
+		return (!autoCommit && dirty) || force;
+	}
+	// [end]
+	
+	private void closeCursors() {
+		if (cursorList != null && cursorList.size() != 0) {
+			for (Cursor<?> cursor : cursorList) {
+				try {
+					cursor.close();
+				} catch (IOException e) {
+					throw ExceptionFactory.wrapException("Error closing cursor.", e);
+				}
+			}
+			cursorList.clear();
+		}
+	}
+	
+	private <T> void registerCursor(Cursor<T> cursor) {
+		if (cursorList == null) {
+			cursorList = new ArrayList<Cursor<?>>();
+		}
+		cursorList.add(cursor);
+	}
+
+	@Override
+	public void clearCache() {
+		executor.clearLocalCache();
+	}
+
+	@Override
+	public Configuration getConfiguration() {
+		return configuration;
+	}
+
+	@Override
+	public <T> T getMapper(Class<T> type) {
+		return configuration.<T>getMapper(type, this);
+	}
+
+	@Override
+	public Connection getConnection() {
+		try {
+			return executor.getTransaction().getConnection();
+		} catch (SQLException e) {
+			throw ExceptionFactory.wrapException("Error getting a new connection.", e);
+		}
+	}
+	
+	// 集合和数组类型的实参包装为Map，在SQL中可以通过collection、list、array引用
+	private Object wrapCollection(final Object object) {
+		if (object instanceof Collection) {
+			StrictMap<Object> map = new StrictMap<Object>();
+			map.put("collection", object);
+			if (object instanceof List) {
+				map.put("list", object);
+			}
+			return map;
+		} else if (object != null && object.getClass().isArray()) {
+			StrictMap<Object> map = new StrictMap<Object>();
+			map.put("array", object);
+			return map;
+		}
+		return object;
+	}
+	
+	public static class StrictMap<V> extends HashMap<String, V> {
+		
+		private static final long serialVersionUID = -5741767162221585340L;
+		
+		@Override
+		public V get(Object key) {
+			if (!super.containsKey(key)) {
+				throw new BindingException("Parameter '" + key + "' not found. Available parameters are " + this.keySet());
+			}
+			return super.get(key);
+		}
+	}
+}
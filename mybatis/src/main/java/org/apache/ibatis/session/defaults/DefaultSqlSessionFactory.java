@@ -0,0 +1,126 @@
+package org.apache.ibatis.session.defaults;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.apache.ibatis.exceptions.ExceptionFactory;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.TransactionIsolationLevel;
+import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.TransactionFactory;
+import org.apache.ibatis.transaction.managed.ManagedTransactionFactory;
+
+/**
+ * SqlSessionFactory的默认实现，每次调用openSession()都创建新的事务和执行器
+ */
+public class DefaultSqlSessionFactory implements SqlSessionFactory {
+
+	private final Configuration configuration;
+	
+	public DefaultSqlSessionFactory(Configuration configuration) {
+		this.configuration = configuration;
+	}
+	
+	@Override
+	public SqlSession openSession() {
+		return openSessionFromDataSource(configuration.getDefaultExecutorType(), null, false);
+	}
+
+	@Override
+	public SqlSession openSession(boolean autoCommit) {
+		return openSessionFromDataSource(configuration.getDefaultExecutorType(), null, autoCommit);
+	}
+
+	@Override
+	public SqlSession openSession(Connection connection) {
+		return openSessionFromConnection(configuration.getDefaultExecutorType(), connection);
+	}
+
+	@Override
+	public SqlSession openSession(TransactionIsolationLevel level) {
+		return openSessionFromDataSource(configuration.getDefaultExecutorType(), level, false);
+	}
+
+	@Override
+	public SqlSession openSession(ExecutorType execType) {
+		return openSessionFromDataSource(execType, null, false);
+	}
+
+	@Override
+	public SqlSession openSession(ExecutorType execType, boolean autoCommit) {
+		return openSessionFromDataSource(execType, null, autoCommit);
+	}
+
+	@Override
+	public SqlSession openSession(ExecutorType execType, TransactionIsolationLevel level) {
+		return openSessionFromDataSource(execType, level, false);
+	}
+
+	@Override
+	public SqlSession openSession(ExecutorType execType, Connection connection) {
+		return openSessionFromConnection(execType, connection);
+	}
+
+	@Override
+	public Configuration getConfiguration() {
+		return configuration;
+	}
+	
+	// 根据Environment中配置的数据源和事务工厂创建事务，数据库连接在第一次执行SQL时才获取
+	private SqlSession openSessionFromDataSource(ExecutorType execType, TransactionIsolationLevel level, boolean autoCommit) {
+		Transaction tx = null;
+		try {
+			final Environment environment = configuration.getEnvironment();
+			final TransactionFactory transactionFactory = getTransactionFactoryFromEnvironment(environment);
+			tx = transactionFactory.newTransaction(environment.getDataSource(), level, autoCommit);
+			final Executor executor = configuration.newExecutor(tx, execType);
+			return new DefaultSqlSession(configuration, executor, autoCommit);
+		} catch (Exception e) {
+			closeTransaction(tx);
+			throw ExceptionFactory.wrapException("Error opening session.", e);
+		}
+	}
+	
+	// 使用已有的连接创建事务，autoCommit以连接当前的设置为准
+	private SqlSession openSessionFromConnection(ExecutorType execType, Connection connection) {
+		try {
+			boolean autoCommit;
+			try {
+				autoCommit = connection.getAutoCommit();
+			} catch (SQLException e) {
+				// 部分驱动不支持获取autoCommit，按照大部分驱动的默认值处理
+				autoCommit = true;
+			}
+			final Environment environment = configuration.getEnvironment();
+			final TransactionFactory transactionFactory = getTransactionFactoryFromEnvironment(environment);
+			final Transaction tx = transactionFactory.newTransaction(connection);
+			final Executor executor = configuration.newExecutor(tx, execType);
+			return new DefaultSqlSession(configuration, executor, autoCommit);
+		} catch (Exception e) {
+			throw ExceptionFactory.wrapException("Error opening session.", e);
+		}
+	}
+	
+	// 没有配置环境或事务工厂时，由容器管理事务
+	private TransactionFactory getTransactionFactoryFromEnvironment(Environment environment) {
+		if (environment == null || environment.getTransactionFactory() == null) {
+			return new ManagedTransactionFactory();
+		}
+		return environment.getTransactionFactory();
+	}
+	
+	private void closeTransaction(Transaction tx) {
+		if (tx != null) {
+			try {
+				tx.close();
+			} catch (SQLException ignore) {
+				// Intentionally ignore. Prefer previous error.
+			}
+		}
+	}
+}
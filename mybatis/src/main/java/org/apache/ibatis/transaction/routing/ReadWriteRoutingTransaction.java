@@ -0,0 +1,86 @@
+package org.apache.ibatis.transaction.routing;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.apache.ibatis.datasource.routing.ReadWriteRouting;
+import org.apache.ibatis.datasource.routing.ReadWriteRoutingDataSource;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.TransactionIsolationLevel;
+import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+
+/**
+ * 读写分离的事务，一个会话最多持有一个主库连接和一个从库连接，都在第一次使用时才获取
+ * 1) 当前线程的ReadWriteRouting提示可以路由到从库、并且本会话还没有使用过主库时，返回从库连接
+ * 2) 其他情况返回主库连接；执行过写操作(INSERT/UPDATE/DELETE)之后，本会话之后的读操作也使用主库，
+ *    保证会话能读到自己写入的数据。提交之后从库仍可能有复制延迟，所以直到会话关闭都不再切换回从库
+ * 3) 提交、回滚和关闭同时作用于两个连接，关闭时清除当前线程的所有路由提示(包括只读标记)
+ */
+public class ReadWriteRoutingTransaction implements Transaction {
+
+	private static final Log log = LogFactory.getLog(ReadWriteRoutingTransaction.class);
+
+	private final JdbcTransaction primary;   // 主库连接所在的事务
+	private final JdbcTransaction replica;   // 从库连接所在的事务
+	private boolean stickToPrimary;          // 本会话是否已经在主库上执行过写操作
+
+	public ReadWriteRoutingTransaction(ReadWriteRoutingDataSource dataSource, TransactionIsolationLevel level, boolean autoCommit) {
+		this.primary = new JdbcTransaction(dataSource.getPrimary(), level, autoCommit);
+		this.replica = new JdbcTransaction(dataSource.getReplicaDataSource(), level, autoCommit);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		if (!stickToPrimary && ReadWriteRouting.isReadRoute()) {
+			return replica.getConnection();
+		}
+		// 只有写操作才使之后的读操作固定在主库上，没有路由提示的操作只是本次使用主库
+		if (!stickToPrimary && ReadWriteRouting.isWrite()) {
+			if (log.isDebugEnabled()) {
+				log.debug("Routing session to the primary until it is closed.");
+			}
+			stickToPrimary = true;
+		}
+		return primary.getConnection();
+	}
+
+	@Override
+	public void commit() throws SQLException {
+		try {
+			primary.commit();
+		} finally {
+			replica.commit();
+		}
+	}
+
+	@Override
+	public void rollback() throws SQLException {
+		try {
+			primary.rollback();
+		} finally {
+			replica.rollback();
+		}
+	}
+
+	@Override
+	public void close() throws SQLException {
+		try {
+			primary.close();
+		} finally {
+			replica.close();
+			ReadWriteRouting.clear();
+		}
+	}
+
+	@Override
+	public Integer getTimeout() throws SQLException {
+		return null;
+	}
+
+	// 本会话之后的操作是否都会使用主库
+	public boolean isStickToPrimary() {
+		return stickToPrimary;
+	}
+}
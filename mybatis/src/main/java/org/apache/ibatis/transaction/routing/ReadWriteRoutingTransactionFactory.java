@@ -0,0 +1,36 @@
+package org.apache.ibatis.transaction.routing;
+
+import java.sql.Connection;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.datasource.routing.ReadWriteRoutingDataSource;
+import org.apache.ibatis.session.TransactionIsolationLevel;
+import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.TransactionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+
+/**
+ * 读写分离事务工厂，数据源为ReadWriteRoutingDataSource时创建ReadWriteRoutingTransaction，否则与JdbcTransactionFactory一致
+ */
+public class ReadWriteRoutingTransactionFactory implements TransactionFactory {
+
+	@Override
+	public void setProperties(Properties props) {
+	}
+
+	@Override
+	public Transaction newTransaction(Connection conn) {
+		return new JdbcTransaction(conn);
+	}
+
+	@Override
+	public Transaction newTransaction(DataSource dataSource, TransactionIsolationLevel level, boolean autoCommit) {
+		if (dataSource instanceof ReadWriteRoutingDataSource) {
+			return new ReadWriteRoutingTransaction((ReadWriteRoutingDataSource) dataSource, level, autoCommit);
+		}
+		return new JdbcTransaction(dataSource, level, autoCommit);
+	}
+
+}
@@ -3,8 +3,15 @@ package org.apache.ibatis.type;
 import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * 未知Java类型(Object)使用的TypeHandler，在运行时根据实参的类型或结果集列的类型选择真正的TypeHandler
+ * 找不到合适的TypeHandler时使用ObjectTypeHandler
+ */
 public class UnknowTypeHandler extends BaseTypeHandler<Object> {
 
 	private static final ObjectTypeHandler OBJECT_TYPE_HANDLER = new ObjectTypeHandler();
@@ -15,38 +22,100 @@ public class UnknowTypeHandler extends BaseTypeHandler<Object> {
 		this.typeHandlerRegistry = typeHandlerRegistry;
 	}
 	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Override
 	public void setNonNullParameter(PreparedStatement ps, int i, Object parameter, JdbcType jdbcType)
 			throws SQLException {
 		TypeHandler handler = resolveTypeHandler(parameter, jdbcType);
+		handler.setParameter(ps, i, parameter, jdbcType);
 	}
 
 	@Override
 	public Object getNullableResult(ResultSet rs, String columnName) throws SQLException {
-		// TODO Auto-generated method stub
-		return null;
+		TypeHandler<?> handler = resolveTypeHandler(rs, columnName);
+		return handler.getResult(rs, columnName);
 	}
 
 	@Override
 	public Object getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
-		// TODO Auto-generated method stub
-		return null;
+		TypeHandler<?> handler = resolveTypeHandler(rs.getMetaData(), columnIndex);
+		if (handler == null || handler instanceof UnknowTypeHandler) {
+			handler = OBJECT_TYPE_HANDLER;
+		}
+		return handler.getResult(rs, columnIndex);
 	}
 
 	@Override
 	public Object getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
-		// TODO Auto-generated method stub
-		return null;
+		return cs.getObject(columnIndex);
 	}
 	
+	// 根据实参的实际类型查找TypeHandler
 	private TypeHandler<? extends Object> resolveTypeHandler(Object parameter, JdbcType jdbcType) {
-		TypeHandler<? extends Object> handler = null;
+		TypeHandler<? extends Object> handler;
 		if (parameter == null) {
 			handler = OBJECT_TYPE_HANDLER;
 		} else {
-			
+			handler = typeHandlerRegistry.getTypeHandler(parameter.getClass(), jdbcType);
+			// check if handler is null (issue #270)
+			if (handler == null || handler instanceof UnknowTypeHandler) {
+				handler = OBJECT_TYPE_HANDLER;
+			}
 		}
 		return handler;
 	}
-
+	
+	// 根据结果集中列的类型查找TypeHandler
+	private TypeHandler<?> resolveTypeHandler(ResultSet rs, String column) {
+		try {
+			Map<String, Integer> columnIndexLookup = new HashMap<String, Integer>();
+			ResultSetMetaData rsmd = rs.getMetaData();
+			int count = rsmd.getColumnCount();
+			for (int i = 1; i <= count; i++) {
+				String name = rsmd.getColumnName(i);
+				columnIndexLookup.put(name, i);
+			}
+			Integer columnIndex = columnIndexLookup.get(column);
+			TypeHandler<?> handler = null;
+			if (columnIndex != null) {
+				handler = resolveTypeHandler(rsmd, columnIndex);
+			}
+			if (handler == null || handler instanceof UnknowTypeHandler) {
+				handler = OBJECT_TYPE_HANDLER;
+			}
+			return handler;
+		} catch (SQLException e) {
+			throw new TypeException("Error determining JDBC type for column " + column + ".  Cause: " + e, e);
+		}
+	}
+	
+	private TypeHandler<?> resolveTypeHandler(ResultSetMetaData rsmd, Integer columnIndex) throws SQLException {
+		TypeHandler<?> handler = null;
+		JdbcType jdbcType = safeGetJdbcTypeForColumn(rsmd, columnIndex);
+		Class<?> javaType = safeGetClassForColumn(rsmd, columnIndex);
+		if (javaType != null && jdbcType != null) {
+			handler = typeHandlerRegistry.getTypeHandler(javaType, jdbcType);
+		} else if (javaType != null) {
+			handler = typeHandlerRegistry.getTypeHandler(javaType);
+		} else if (jdbcType != null) {
+			handler = typeHandlerRegistry.getTypeHandler(jdbcType);
+		}
+		return handler;
+	}
+	
+	private JdbcType safeGetJdbcTypeForColumn(ResultSetMetaData rsmd, Integer columnIndex) {
+		try {
+			return JdbcType.forCode(rsmd.getColumnType(columnIndex));
+		} catch (Exception e) {
+			return null;
+		}
+	}
+	
+	private Class<?> safeGetClassForColumn(ResultSetMetaData rsmd, Integer columnIndex) {
+		try {
+			return Class.forName(rsmd.getColumnClassName(columnIndex));
+		} catch (Exception e) {
+			return null;
+		}
+	}
 }